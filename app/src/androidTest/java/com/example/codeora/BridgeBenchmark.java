@@ -0,0 +1,147 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the per-message cost of the batched NativeBridge with the old one-call-per-message
+ * WebAppInterface style, both on the Java side alone and across a real WebView boundary.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BridgeBenchmark {
+
+    private static final String TAG = "BridgeBenchmark";
+    private static final int MESSAGES = 100;
+    private static final String PAYLOAD = "{\"conversation\":\"c1\",\"text\":\"hello there\"}";
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    // What the old interface did per message: receive a fresh String and handle it right away.
+    @Test
+    public void legacyOneCallPerMessage() {
+        LegacyInterface legacy = new LegacyInterface();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            for (int i = 0; i < MESSAGES; i++) {
+                legacy.showToast(new String(PAYLOAD.toCharArray()));
+            }
+        }
+        assertTrue(legacy.calls.get() > 0);
+    }
+
+    // The same messages arriving as one batch and decoded through a single reused view.
+    @Test
+    public void batchedDecode() {
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < MESSAGES; i++) {
+            builder.append("bench").append(BridgeCodec.FIELD).append(BridgeCodec.FIELD)
+                    .append(PAYLOAD).append(BridgeCodec.RECORD);
+        }
+        String batch = builder.toString();
+        BridgeCodec.Message message = new BridgeCodec.Message();
+        int[] length = new int[1];
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            BridgeCodec.decode(batch, message, m -> length[0] += m.payload().length());
+        }
+        assertTrue(length[0] > 0);
+    }
+
+    // Times the JS side of MESSAGES legacy calls against MESSAGES batched sends in a WebView.
+    @Test
+    public void crossingCostInWebView() throws InterruptedException {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        CountDownLatch loaded = new CountDownLatch(1);
+        CountDownLatch measured = new CountDownLatch(1);
+        AtomicReference<String> result = new AtomicReference<>();
+        CountDownLatch batchedReceived = new CountDownLatch(MESSAGES);
+        LegacyInterface legacy = new LegacyInterface();
+        WebView[] holder = new WebView[1];
+
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            WebView webView = new WebView(context);
+            webView.getSettings().setJavaScriptEnabled(true);
+            NativeBridge bridge = new NativeBridge(context);
+            bridge.register("bench", (message, reply) -> batchedReceived.countDown());
+            bridge.attach(webView, "https://bench.invalid");
+            webView.addJavascriptInterface(legacy, "Legacy");
+            webView.setWebViewClient(new WebViewClient() {
+                @Override
+                public void onPageStarted(WebView view, String url, Bitmap favicon) {
+                    bridge.onPageStarted(url);
+                }
+
+                @Override
+                public void onPageFinished(WebView view, String url) {
+                    loaded.countDown();
+                }
+            });
+            webView.loadDataWithBaseURL("https://bench.invalid/", "<html><body></body></html>",
+                    "text/html", "utf-8", null);
+            holder[0] = webView;
+        });
+        assertTrue(loaded.await(30, TimeUnit.SECONDS));
+
+        String script = "(function(){var n=" + MESSAGES + ",p=" + PAYLOAD + ";"
+                + "var t0=performance.now();"
+                + "for(var i=0;i<n;i++){Legacy.showToast(JSON.stringify(p));}"
+                + "var t1=performance.now();"
+                + "for(var j=0;j<n;j++){NativeBridge.send('bench',p);}"
+                + "NativeBridge.flush();"
+                + "var t2=performance.now();"
+                + "return [t1-t0,t2-t1];})()";
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                holder[0].evaluateJavascript(script, value -> {
+                    result.set(value);
+                    measured.countDown();
+                }));
+        assertTrue(measured.await(30, TimeUnit.SECONDS));
+
+        String[] millis = result.get().replace("[", "").replace("]", "").split(",");
+        double legacyNanos = Double.parseDouble(millis[0]) * 1e6 / MESSAGES;
+        double batchedNanos = Double.parseDouble(millis[1]) * 1e6 / MESSAGES;
+        Log.i(TAG, "Per message: legacy=" + (long) legacyNanos + "ns batched=" + (long) batchedNanos + "ns");
+        Bundle status = new Bundle();
+        status.putLong("legacy_ns_per_message", (long) legacyNanos);
+        status.putLong("batched_ns_per_message", (long) batchedNanos);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+
+        assertEquals(MESSAGES, legacy.calls.get());
+        // Batches are handled on the bridge's own thread, after the script has already returned
+        assertTrue(batchedReceived.await(30, TimeUnit.SECONDS));
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> holder[0].destroy());
+    }
+
+    public static class LegacyInterface {
+        final AtomicInteger calls = new AtomicInteger();
+
+        @JavascriptInterface
+        public void showToast(String toast) {
+            if (toast.length() > 0) {
+                calls.incrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.Bundle;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Scrolls a 50k-message thread served by HistoryChannel, once through the virtualized list in
+ * history.js and once through a list that keeps every loaded message in the DOM, which is
+ * what the old lazy-loading script grew into. Reports frame intervals while scrolling, DOM
+ * size, JS heap and the app's PSS.
+ */
+@RunWith(AndroidJUnit4.class)
+public class HistoryBenchmark {
+
+    private static final String TAG = "HistoryBenchmark";
+    private static final String DATABASE = "history-bench.db";
+    private static final String CONVERSATION = "bench";
+    private static final int THREAD_SIZE = 50_000;
+    private static final int SCROLL_MILLIS = 20000;
+    private static final int SCROLL_STEP_PX = 600;
+
+    private Context context;
+    private MessageStore store;
+    private ActivityScenario<internet> scenario;
+    private WebView webView;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE);
+        store = new MessageStore(context, DATABASE);
+        List<ChatMessage> batch = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        for (int i = 0; i < THREAD_SIZE; i++) {
+            batch.add(new ChatMessage(CONVERSATION, "m" + i, now - (THREAD_SIZE - i) * 1000L,
+                    i % 2 == 0 ? "alice" : "bob", "Message " + i + " in a long thread", null));
+            if (batch.size() == 1000) {
+                store.putMessages(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (scenario != null) {
+            scenario.close();
+        }
+        store.close();
+        context.deleteDatabase(DATABASE);
+    }
+
+    @Test
+    public void virtualizedList() throws Exception {
+        JSONObject metrics = scroll(
+                "var list=NativeHistory.mount(el,{conversationId:'" + CONVERSATION + "'});"
+                        + "list.ready.then(function(){Bench.onReady();});"
+                        + "window.__metrics=function(){list.reportMetrics().then(function(m){"
+                        + "Bench.onMetrics(JSON.stringify(m));});};");
+        report("virtualized", metrics);
+        // Recycled rows stay bounded however far the thread was scrolled.
+        assertTrue(metrics.getInt("rowNodes") < 200);
+    }
+
+    @Test
+    public void appendEveryMessage() throws Exception {
+        JSONObject metrics = scroll(
+                "var frames=new NativeHistory.FrameRecorder(),session,loading=false,more=true,loaded=0;"
+                        + "function older(){if(loading||!more)return;loading=true;"
+                        + "NativeBridge.request('history',{op:'next',session:session}).then(function(r){"
+                        + "loading=false;more=r.hasMore;var f=document.createDocumentFragment();"
+                        + "for(var i=r.messages.length-1;i>=0;i--){var d=document.createElement('div');"
+                        + "d.style.height='72px';d.textContent=r.messages[i].sender+': '+r.messages[i].body;"
+                        + "f.appendChild(d);}"
+                        + "var h=el.scrollHeight;el.insertBefore(f,el.firstChild);el.scrollTop+=el.scrollHeight-h;"
+                        + "loaded+=r.messages.length;});}"
+                        + "el.style.overflowY='auto';"
+                        + "el.addEventListener('scroll',function(){frames.onScroll();"
+                        + "if(el.scrollTop<el.clientHeight*2)older();},{passive:true});"
+                        + "NativeBridge.request('history',{op:'open',conversationId:'" + CONVERSATION + "'})"
+                        + ".then(function(r){session=r.session;older();setTimeout(function(){"
+                        + "el.scrollTop=el.scrollHeight;Bench.onReady();},500);});"
+                        + "window.__metrics=function(){var m=frames.summary();m.loaded=loaded;"
+                        + "m.rowNodes=el.childElementCount;m.domNodes=document.getElementsByTagName('*').length;"
+                        + "if(performance.memory)m.jsHeapBytes=performance.memory.usedJSHeapSize;"
+                        + "m.op='metrics';m.session=session;NativeBridge.request('history',m).then(function(r){"
+                        + "m.nativePssKb=r.nativePssKb;delete m.op;Bench.onMetrics(JSON.stringify(m));});};");
+        report("append", metrics);
+    }
+
+    // Mounts a list with the given script (el is the full-screen container), scrolls it
+    // upwards for SCROLL_MILLIS and returns what window.__metrics() reports.
+    private JSONObject scroll(String mountScript) throws Exception {
+        CountDownLatch loaded = new CountDownLatch(1);
+        Probe probe = new Probe();
+        scenario = ActivityScenario.launch(internet.class);
+        // Any of the app's activities serves as a window, so the WebView lays out and draws frames.
+        scenario.onActivity(activity -> {
+            webView = new WebView(activity);
+            webView.getSettings().setJavaScriptEnabled(true);
+            NativeBridge bridge = new NativeBridge(activity);
+            bridge.register(HistoryChannel.CHANNEL, new HistoryChannel(store));
+            bridge.attach(webView, "https://bench.invalid");
+            webView.addJavascriptInterface(probe, "Bench");
+            webView.setWebViewClient(new WebViewClient() {
+                @Override
+                public void onPageStarted(WebView view, String url, Bitmap favicon) {
+                    bridge.onPageStarted(url);
+                }
+
+                @Override
+                public void onPageFinished(WebView view, String url) {
+                    loaded.countDown();
+                }
+            });
+            activity.setContentView(webView);
+            webView.loadDataWithBaseURL("https://bench.invalid/",
+                    "<html><body style=\"margin:0\"><div id=\"list\" style=\"height:100vh\"></div></body></html>",
+                    "text/html", "utf-8", null);
+        });
+        assertTrue(loaded.await(30, TimeUnit.SECONDS));
+        evaluate("(function(){var el=document.getElementById('list');" + mountScript + "})()");
+        assertTrue(probe.ready.await(30, TimeUnit.SECONDS));
+
+        evaluate("(function(){var el=document.getElementById('list');"
+                + "var end=performance.now()+" + SCROLL_MILLIS + ";"
+                + "function step(now){el.scrollTop-=" + SCROLL_STEP_PX + ";"
+                + "if(now<end)requestAnimationFrame(step);else setTimeout(window.__metrics,600);}"
+                + "requestAnimationFrame(step);})()");
+        assertTrue(probe.measured.await(SCROLL_MILLIS + 30000, TimeUnit.MILLISECONDS));
+        return new JSONObject(probe.metrics);
+    }
+
+    private void evaluate(String script) {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> webView.evaluateJavascript(script, null));
+    }
+
+    private static void report(String list, JSONObject metrics) throws Exception {
+        Log.i(TAG, list + ": " + metrics);
+        Bundle status = new Bundle();
+        status.putDouble(list + "_frame_p50_ms", metrics.getDouble("p50"));
+        status.putDouble(list + "_frame_p95_ms", metrics.getDouble("p95"));
+        status.putDouble(list + "_frame_p99_ms", metrics.getDouble("p99"));
+        status.putInt(list + "_janky_frames", metrics.getInt("janky"));
+        status.putInt(list + "_loaded", metrics.getInt("loaded"));
+        status.putInt(list + "_dom_nodes", metrics.getInt("domNodes"));
+        status.putLong(list + "_js_heap_bytes", metrics.optLong("jsHeapBytes", -1));
+        status.putLong(list + "_pss_kb", metrics.getLong("nativePssKb"));
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    public static class Probe {
+        final CountDownLatch ready = new CountDownLatch(1);
+        final CountDownLatch measured = new CountDownLatch(1);
+        volatile String metrics;
+
+        @JavascriptInterface
+        public void onReady() {
+            ready.countDown();
+        }
+
+        @JavascriptInterface
+        public void onMetrics(String json) {
+            metrics = json;
+            measured.countDown();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.LinearGradient;
+import android.graphics.Paint;
+import android.graphics.Shader;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Loads a gallery-heavy conversation, 120 camera-sized JPEGs in 160 px tiles, once with the
+ * originals handed straight to the renderer and once through ImageInterceptor's sized route.
+ * The photos come from memory so the network does not blur the numbers. Reports time until
+ * every image has loaded on a cold and a warm load, bytes handed to the renderer, the
+ * pipeline's hit ratio and the app's PSS.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ImageBenchmark {
+
+    private static final String TAG = "ImageBenchmark";
+    private static final String ORIGIN = "https://bench.invalid";
+    private static final int IMAGES = 120;
+    private static final int DISTINCT_PHOTOS = 8;
+    private static final int TILE_CSS_PX = 160;
+
+    private final byte[][] photos = new byte[DISTINCT_PHOTOS][];
+    private Context context;
+    private File cacheDir;
+    private ActivityScenario<internet> scenario;
+    private WebView webView;
+    private volatile long servedBytes;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        cacheDir = new File(context.getCacheDir(), "image-bench");
+        deleteCache();
+        for (int i = 0; i < DISTINCT_PHOTOS; i++) {
+            Bitmap bitmap = Bitmap.createBitmap(3000, 2000, Bitmap.Config.ARGB_8888);
+            Paint paint = new Paint();
+            paint.setShader(new LinearGradient(0, 0, 3000, 2000, Color.HSVToColor(new float[]{i * 45f, 0.8f, 0.9f}),
+                    Color.BLACK, Shader.TileMode.MIRROR));
+            new Canvas(bitmap).drawRect(0, 0, 3000, 2000, paint);
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            bitmap.compress(Bitmap.CompressFormat.JPEG, 90, out);
+            bitmap.recycle();
+            photos[i] = out.toByteArray();
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (scenario != null) {
+            scenario.close();
+        }
+        deleteCache();
+    }
+
+    @Test
+    public void originalsInTheRenderer() throws Exception {
+        run("direct", false, request -> {
+            byte[] photo = photoFor(request);
+            return photo == null ? null : response("image/jpeg", photo);
+        }, null);
+    }
+
+    @Test
+    public void nativeThumbnails() throws Exception {
+        ImagePipeline pipeline = new ImagePipeline(new WebCache(cacheDir, 64L * 1024 * 1024),
+                Runtime.getRuntime().maxMemory() / 8,
+                url -> new ImagePipeline.Image("image/jpeg", photos[indexOf(url) % DISTINCT_PHOTOS]),
+                new ImageInterceptor.WebpTranscoder());
+        float density = context.getResources().getDisplayMetrics().density;
+        ImageInterceptor interceptor = new ImageInterceptor(pipeline, "bench.invalid", density, 1080);
+        run("native", true, request -> {
+            WebResourceResponse response = interceptor.intercept(request);
+            if (response != null) {
+                servedBytes += Long.parseLong(response.getResponseHeaders().get("Content-Length"));
+            }
+            return response;
+        }, pipeline);
+        assertEquals(IMAGES, pipeline.stats().fetches);
+        assertTrue(pipeline.stats().memoryHits >= IMAGES);
+    }
+
+    private interface Handler {
+        WebResourceResponse handle(WebResourceRequest request);
+    }
+
+    // With sized set, the page asks for tile-sized thumbnails through the native route.
+    private void run(String mode, boolean sized, Handler handler, ImagePipeline pipeline) throws Exception {
+        Probe probe = new Probe();
+        scenario = ActivityScenario.launch(internet.class);
+        scenario.onActivity(activity -> {
+            webView = new WebView(activity);
+            webView.getSettings().setJavaScriptEnabled(true);
+            webView.addJavascriptInterface(probe, "Bench");
+            webView.setWebViewClient(new WebViewClient() {
+                @Override
+                public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+                    return handler.handle(request);
+                }
+            });
+            activity.setContentView(webView);
+        });
+
+        long cold = load(probe, sized);
+        long coldBytes = servedBytes;
+        // Memory cache off in the renderer: a new document decodes everything again.
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> webView.clearCache(false));
+        long warm = load(probe, sized);
+
+        Debug.MemoryInfo memory = new Debug.MemoryInfo();
+        Debug.getMemoryInfo(memory);
+        Log.i(TAG, mode + ": cold=" + cold + "ms warm=" + warm + "ms pss=" + memory.getTotalPss() + "KB"
+                + (pipeline != null ? " " + pipeline.stats() : ""));
+        Bundle status = new Bundle();
+        status.putLong(mode + "_cold_ms", cold);
+        status.putLong(mode + "_warm_ms", warm);
+        status.putLong(mode + "_pss_kb", memory.getTotalPss());
+        status.putLong(mode + "_cold_bytes", coldBytes);
+        if (pipeline != null) {
+            status.putDouble(mode + "_hit_ratio", pipeline.stats().hitRatio());
+        }
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    // Milliseconds from starting the document until every gallery image has loaded.
+    private long load(Probe probe, boolean sized) throws InterruptedException {
+        probe.done = new CountDownLatch(1);
+        StringBuilder html = new StringBuilder("<html><body style=\"margin:0\">");
+        for (int i = 0; i < IMAGES; i++) {
+            String photo = ORIGIN + "/media/photo-" + i + ".jpg";
+            String src = sized
+                    ? ORIGIN + ImageInterceptor.ROUTE + "?src=" + Uri.encode(photo) + "&w=" + TILE_CSS_PX : photo;
+            html.append("<img width=\"").append(TILE_CSS_PX).append("\" height=\"").append(TILE_CSS_PX * 2 / 3)
+                    .append("\" src=\"").append(src.replace("&", "&amp;")).append("\">");
+        }
+        html.append("<script>var left=").append(IMAGES).append(";")
+                .append("Array.prototype.forEach.call(document.images,function(img){")
+                .append("function done(){if(--left===0)Bench.onLoaded();}")
+                .append("if(img.complete)done();else{img.onload=done;img.onerror=done;}});</script></body></html>");
+        long startedAt = SystemClock.elapsedRealtime();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() ->
+                webView.loadDataWithBaseURL(ORIGIN + "/", html.toString(), "text/html", "utf-8", null));
+        assertTrue(probe.done.await(60, TimeUnit.SECONDS));
+        return SystemClock.elapsedRealtime() - startedAt;
+    }
+
+    private byte[] photoFor(WebResourceRequest request) {
+        int index = indexOf(request.getUrl().toString());
+        if (index < 0) {
+            return null;
+        }
+        servedBytes += photos[index % DISTINCT_PHOTOS].length;
+        return photos[index % DISTINCT_PHOTOS];
+    }
+
+    private static int indexOf(String url) {
+        int start = url.indexOf("/media/photo-");
+        if (start < 0) {
+            return -1;
+        }
+        return Integer.parseInt(url.substring(start + "/media/photo-".length(), url.length() - ".jpg".length()));
+    }
+
+    private static WebResourceResponse response(String mimeType, byte[] bytes) {
+        return new WebResourceResponse(mimeType, null, new ByteArrayInputStream(bytes));
+    }
+
+    private void deleteCache() {
+        File[] files = cacheDir.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        cacheDir.delete();
+    }
+
+    public static class Probe {
+        volatile CountDownLatch done;
+
+        @JavascriptInterface
+        public void onLoaded() {
+            done.countDown();
+        }
+    }
+}
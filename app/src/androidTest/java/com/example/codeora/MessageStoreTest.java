@@ -0,0 +1,119 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(AndroidJUnit4.class)
+public class MessageStoreTest {
+
+    private static final String TAG = "MessageStoreTest";
+    private static final String DATABASE = "messages-test.db";
+    private static final int THREAD_SIZE = 10000;
+
+    private Context context;
+    private MessageStore store;
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        context.deleteDatabase(DATABASE);
+        store = new MessageStore(context, DATABASE);
+    }
+
+    @After
+    public void tearDown() {
+        store.close();
+        context.deleteDatabase(DATABASE);
+    }
+
+    @Test
+    public void pagesThroughALongThreadNewestFirst() {
+        seed("c1", THREAD_SIZE);
+        seed("c2", 10);
+        assertEquals(THREAD_SIZE, store.countMessages("c1"));
+
+        long start = SystemClock.elapsedRealtime();
+        MessageStore.Page first = store.pageBefore("c1", null, 50);
+        Log.i(TAG, "First page of " + THREAD_SIZE + " messages in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        assertEquals(50, first.messages.size());
+        assertEquals("m" + (THREAD_SIZE - 1), first.messages.get(0).messageId);
+
+        int seen = first.messages.size();
+        long previous = first.messages.get(first.messages.size() - 1).timestamp;
+        String cursor = first.nextCursor;
+        while (cursor != null) {
+            MessageStore.Page page = store.pageBefore("c1", cursor, 500);
+            for (ChatMessage message : page.messages) {
+                assertEquals("c1", message.conversationId);
+                assertTrue(message.timestamp <= previous);
+                previous = message.timestamp;
+            }
+            seen += page.messages.size();
+            cursor = page.nextCursor;
+        }
+        assertEquals(THREAD_SIZE, seen);
+    }
+
+    @Test
+    public void pagesForwardFromACursor() {
+        seed("c1", 100);
+        MessageStore.Page page = store.pageAfter("c1", 1000L + 89 + ":m89", 50);
+        assertEquals(10, page.messages.size());
+        assertEquals("m90", page.messages.get(0).messageId);
+        assertNull(page.nextCursor);
+    }
+
+    @Test
+    public void searchFollowsUpdatesAndDeletes() {
+        List<ChatMessage> messages = new ArrayList<>();
+        messages.add(new ChatMessage("c1", "a", 1, "ann", "lunch at noon?", null));
+        messages.add(new ChatMessage("c1", "b", 2, "bob", "sure, see you there", null));
+        messages.add(new ChatMessage("c2", "c", 3, "cat", "lunch tomorrow", "{\"edited\":false}"));
+        store.putMessages(messages);
+
+        assertEquals(2, store.search("lunch", null, 10).size());
+        assertEquals(1, store.search("lunch", "c2", 10).size());
+        assertEquals("{\"edited\":false}", store.search("tomorrow", null, 10).get(0).extra);
+
+        List<ChatMessage> edit = new ArrayList<>();
+        edit.add(new ChatMessage("c1", "a", 1, "ann", "dinner at eight?", null));
+        store.putMessages(edit);
+        assertEquals(1, store.search("lunch", null, 10).size());
+        assertEquals(1, store.search("dinner", null, 10).size());
+
+        store.deleteMessage("c1", "a");
+        assertEquals(0, store.search("dinner", null, 10).size());
+        assertEquals(1, store.countMessages("c1"));
+    }
+
+    @Test
+    public void storesSyncCursors() {
+        assertNull(store.getSyncCursor("inbox"));
+        store.setSyncCursor("inbox", "42");
+        store.setSyncCursor("inbox", "43");
+        assertEquals("43", store.getSyncCursor("inbox"));
+    }
+
+    private void seed(String conversationId, int count) {
+        List<ChatMessage> messages = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(new ChatMessage(conversationId, "m" + i, 1000L + i, "user" + (i % 3),
+                    "message number " + i, null));
+        }
+        store.putMessages(messages);
+    }
+}
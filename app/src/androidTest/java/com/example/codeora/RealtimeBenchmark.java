@@ -0,0 +1,185 @@
+package com.example.codeora;
+
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pushes messages through a local echo server speaking the RealtimeSession protocol, once
+ * through RealtimeConnection's batching and once as one frame per message on a plain socket.
+ * Reports messages per second and the send-to-receive latency distribution.
+ */
+@RunWith(AndroidJUnit4.class)
+public class RealtimeBenchmark {
+
+    private static final String TAG = "RealtimeBenchmark";
+    private static final int MESSAGES = 20_000;
+
+    private MockWebServer server;
+    private final OkHttpClient client = new OkHttpClient();
+
+    @Before
+    public void setUp() throws Exception {
+        server = new MockWebServer();
+        server.enqueue(new MockResponse().withWebSocketUpgrade(new EchoServer()));
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        server.shutdown();
+    }
+
+    @Test
+    public void batchedConnection() throws Exception {
+        FrameStats latency = new FrameStats(0);
+        CountDownLatch received = new CountDownLatch(MESSAGES);
+        CountDownLatch open = new CountDownLatch(1);
+        RealtimeConnection connection = new RealtimeConnection(client);
+        connection.setListener(new RealtimeConnection.Listener() {
+            @Override
+            public void onMessages(List<RealtimeSession.Incoming> messages) {
+                long now = System.nanoTime();
+                for (RealtimeSession.Incoming message : messages) {
+                    latency.record((now - message.payload.optLong("sentAt")) / 1_000_000.0);
+                    received.countDown();
+                }
+            }
+
+            @Override
+            public void onStateChanged(String state, boolean resync) {
+                if ("open".equals(state)) {
+                    open.countDown();
+                }
+            }
+        });
+        connection.connect(server.url("/realtime").toString().replace("http", "ws"));
+        assertTrue(open.await(10, TimeUnit.SECONDS));
+
+        long startedAt = SystemClock.elapsedRealtime();
+        for (int i = 0; i < MESSAGES; i++) {
+            connection.send("c" + (i % 8), new JSONObject().put("sentAt", System.nanoTime()));
+        }
+        assertTrue(received.await(60, TimeUnit.SECONDS));
+        long elapsed = SystemClock.elapsedRealtime() - startedAt;
+        JSONObject stats = connection.stats();
+        connection.close();
+        report("batched", elapsed, latency, stats.getLong("sentFrames"));
+    }
+
+    @Test
+    public void framePerMessage() throws Exception {
+        FrameStats latency = new FrameStats(0);
+        CountDownLatch received = new CountDownLatch(MESSAGES);
+        CountDownLatch welcomed = new CountDownLatch(1);
+        WebSocket socket = client.newWebSocket(new Request.Builder()
+                .url(server.url("/realtime")).build(), new WebSocketListener() {
+            @Override
+            public void onOpen(WebSocket webSocket, Response response) {
+                webSocket.send("{\"type\":\"hello\",\"lastSeq\":0,\"subscribe\":[]}");
+            }
+
+            @Override
+            public void onMessage(WebSocket webSocket, String text) {
+                try {
+                    JSONObject frame = new JSONObject(text);
+                    if ("welcome".equals(frame.getString("type"))) {
+                        welcomed.countDown();
+                        return;
+                    }
+                    long now = System.nanoTime();
+                    JSONArray messages = frame.getJSONArray("messages");
+                    for (int i = 0; i < messages.length(); i++) {
+                        latency.record((now - messages.getJSONObject(i).getJSONObject("payload").getLong("sentAt"))
+                                / 1_000_000.0);
+                        received.countDown();
+                    }
+                } catch (JSONException e) {
+                    fail(e.getMessage());
+                }
+            }
+        });
+        assertTrue(welcomed.await(10, TimeUnit.SECONDS));
+
+        long startedAt = SystemClock.elapsedRealtime();
+        for (int i = 0; i < MESSAGES; i++) {
+            JSONObject message = new JSONObject().put("clientSeq", i + 1).put("conversationId", "c" + (i % 8))
+                    .put("payload", new JSONObject().put("sentAt", System.nanoTime()));
+            socket.send(new JSONObject().put("type", "batch").put("messages", new JSONArray().put(message)).toString());
+        }
+        assertTrue(received.await(60, TimeUnit.SECONDS));
+        long elapsed = SystemClock.elapsedRealtime() - startedAt;
+        socket.close(1000, null);
+        report("per_message", elapsed, latency, MESSAGES);
+    }
+
+    private static void report(String mode, long elapsedMillis, FrameStats latency, long frames) throws JSONException {
+        double perSecond = MESSAGES * 1000.0 / Math.max(1, elapsedMillis);
+        Log.i(TAG, mode + ": " + Math.round(perSecond) + " msg/s over " + frames + " frames, latency " + latency.toJson());
+        Bundle status = new Bundle();
+        status.putDouble(mode + "_messages_per_second", perSecond);
+        status.putDouble(mode + "_latency_p50_ms", latency.percentile(0.5));
+        status.putDouble(mode + "_latency_p99_ms", latency.percentile(0.99));
+        status.putLong(mode + "_frames", frames);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    // Answers hello with a welcome and echoes every batch back with server sequence numbers,
+    // acknowledging it in the same frame.
+    private static class EchoServer extends WebSocketListener {
+        private final AtomicLong seq = new AtomicLong();
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            try {
+                JSONObject frame = new JSONObject(text);
+                if ("hello".equals(frame.getString("type"))) {
+                    webSocket.send("{\"type\":\"welcome\",\"session\":\"bench\",\"resumed\":false}");
+                    return;
+                }
+                if (!"batch".equals(frame.getString("type"))) {
+                    return;
+                }
+                JSONArray in = frame.getJSONArray("messages");
+                JSONArray out = new JSONArray();
+                long ack = 0;
+                for (int i = 0; i < in.length(); i++) {
+                    JSONObject message = in.getJSONObject(i);
+                    ack = message.getLong("clientSeq");
+                    out.put(new JSONObject().put("seq", seq.incrementAndGet())
+                            .put("conversationId", message.getString("conversationId"))
+                            .put("payload", message.getJSONObject("payload")));
+                }
+                webSocket.send(new JSONObject().put("type", "batch").put("messages", out).put("ack", ack).toString());
+            } catch (JSONException e) {
+                webSocket.close(1011, e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.example.codeora;
+
+import android.Manifest;
+import android.app.UiAutomation;
+import android.content.Context;
+import android.os.Bundle;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.PermissionRequest;
+import android.webkit.WebChromeClient;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.rule.GrantPermissionRule;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures the native voice pipeline against getUserMedia + MediaRecorder inside a WebView.
+ * CPU is read from /proc for the app and every WebView sandboxed process through the shell, so
+ * the renderer's share of the JS path is counted too. Latency is the delay from the end of a
+ * chunk's audio to its arrival on the Java side.
+ */
+@RunWith(AndroidJUnit4.class)
+public class VoiceBenchmark {
+
+    private static final String TAG = "VoiceBenchmark";
+    private static final int RECORD_MILLIS = 5000;
+    private static final int BITRATE = VoiceBitrate.LOW_BITRATE;
+
+    @Rule
+    public BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Rule
+    public GrantPermissionRule permissionRule = GrantPermissionRule.grant(Manifest.permission.RECORD_AUDIO);
+
+    // Encoder cost for one second of speech-band audio, without capture.
+    @Test
+    public void aacEncodeOneSecond() throws IOException {
+        int sampleRate = VoiceBitrate.sampleRateFor(BITRATE);
+        byte[] pcm = new byte[sampleRate * 2];
+        for (int i = 0; i < sampleRate; i++) {
+            short sample = (short) (Math.sin(2 * Math.PI * 220 * i / sampleRate) * 8000);
+            pcm[2 * i] = (byte) sample;
+            pcm[2 * i + 1] = (byte) (sample >> 8);
+        }
+        AacEncoder encoder = new AacEncoder(sampleRate, BITRATE);
+        AtomicLong bytes = new AtomicLong();
+        try {
+            BenchmarkState state = benchmarkRule.getState();
+            while (state.keepRunning()) {
+                encoder.encode(pcm, pcm.length, (data, length, presentationTimeUs) -> bytes.addAndGet(length));
+            }
+        } finally {
+            encoder.release();
+        }
+        assertTrue(bytes.get() > 0);
+    }
+
+    @Test
+    public void nativeRecorder() throws Exception {
+        AtomicInteger chunks = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(1);
+        VoiceRecorder.Stats[] stats = new VoiceRecorder.Stats[1];
+        long cpuBefore = cpuMillis();
+        VoiceRecorder recorder = new VoiceRecorder(BITRATE, RECORD_MILLIS * 2, new VoiceRecorder.Listener() {
+            @Override
+            public void onChunk(int sequence, byte[] data, int length) {
+                chunks.incrementAndGet();
+            }
+
+            @Override
+            public void onFinished(VoiceRecorder.Stats result) {
+                stats[0] = result;
+                done.countDown();
+            }
+
+            @Override
+            public void onError(Exception e) {
+                done.countDown();
+            }
+        });
+        recorder.start();
+        SystemClock.sleep(RECORD_MILLIS);
+        recorder.stop();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        long cpu = cpuMillis() - cpuBefore;
+
+        assertNotNull(stats[0]);
+        assertTrue(chunks.get() > 0);
+        report("native", cpu, stats[0].averageLatencyMillis, stats[0].maxLatencyMillis, stats[0].bytes);
+    }
+
+    @Test
+    public void webViewMediaRecorder() throws Exception {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        CountDownLatch started = new CountDownLatch(1);
+        ChunkCollector collector = new ChunkCollector(started);
+        WebView[] holder = new WebView[1];
+        String page = "<html><body><script>"
+                + "navigator.mediaDevices.getUserMedia({audio:true}).then(function(s){"
+                + "var r=new MediaRecorder(s,{audioBitsPerSecond:" + BITRATE + "});"
+                + "r.ondataavailable=function(e){var f=new FileReader();"
+                + "f.onload=function(){Bench.onChunk(f.result.length);};f.readAsDataURL(e.data);};"
+                + "window.__rec=r;window.__stream=s;r.start(" + VoiceRecorder.CHUNK_MILLIS + ");Bench.onStarted();"
+                + "}).catch(function(e){Bench.onError(String(e));});"
+                + "</script></body></html>";
+        long cpuBefore = cpuMillis();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            WebView webView = new WebView(context);
+            webView.getSettings().setJavaScriptEnabled(true);
+            webView.getSettings().setMediaPlaybackRequiresUserGesture(false);
+            webView.addJavascriptInterface(collector, "Bench");
+            webView.setWebViewClient(new WebViewClient());
+            webView.setWebChromeClient(new WebChromeClient() {
+                @Override
+                public void onPermissionRequest(PermissionRequest request) {
+                    request.grant(request.getResources());
+                }
+            });
+            webView.loadDataWithBaseURL("https://bench.invalid/", page, "text/html", "utf-8", null);
+            holder[0] = webView;
+        });
+        assertTrue("getUserMedia did not start: " + collector.error, started.await(30, TimeUnit.SECONDS));
+        SystemClock.sleep(RECORD_MILLIS);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> holder[0].evaluateJavascript(
+                "window.__rec.stop();window.__stream.getTracks().forEach(function(t){t.stop();});", null));
+        SystemClock.sleep(VoiceRecorder.CHUNK_MILLIS * 2);
+        long cpu = cpuMillis() - cpuBefore;
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> holder[0].destroy());
+
+        assertTrue(collector.latencies.size() > 0);
+        long sum = 0;
+        long max = 0;
+        for (long latency : collector.latencies) {
+            sum += latency;
+            max = Math.max(max, latency);
+        }
+        report("webview", cpu, sum / collector.latencies.size(), max, collector.bytes.get());
+    }
+
+    private static void report(String path, long cpuMillis, long averageLatency, long maxLatency, long bytes) {
+        Log.i(TAG, path + ": cpu=" + cpuMillis + "ms latency avg=" + averageLatency + "ms max=" + maxLatency
+                + "ms bytes=" + bytes);
+        Bundle status = new Bundle();
+        status.putLong(path + "_cpu_ms", cpuMillis);
+        status.putLong(path + "_latency_avg_ms", averageLatency);
+        status.putLong(path + "_latency_max_ms", maxLatency);
+        InstrumentationRegistry.getInstrumentation().sendStatus(0, status);
+    }
+
+    // Total user+system CPU of the app and WebView's sandboxed renderer/GPU processes.
+    private static long cpuMillis() throws IOException {
+        String packageName = InstrumentationRegistry.getInstrumentation().getTargetContext().getPackageName();
+        long ticks = 0;
+        for (String line : shell("ps -A -o PID,NAME")) {
+            String[] parts = line.trim().split("\\s+");
+            if (parts.length < 2 || !(parts[1].startsWith(packageName) || parts[1].contains("sandboxed_process")
+                    || parts[1].contains("webview"))) {
+                continue;
+            }
+            for (String stat : shell("cat /proc/" + parts[0] + "/stat")) {
+                // Fields after the ")" of the command name; utime and stime are the 12th and 13th.
+                String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" ");
+                if (fields.length > 12) {
+                    ticks += Long.parseLong(fields[11]) + Long.parseLong(fields[12]);
+                }
+            }
+        }
+        // USER_HZ is 100 on Android kernels.
+        return ticks * 10;
+    }
+
+    private static List<String> shell(String command) throws IOException {
+        UiAutomation automation = InstrumentationRegistry.getInstrumentation().getUiAutomation();
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new ParcelFileDescriptor.AutoCloseInputStream(automation.executeShellCommand(command))))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lines.add(line);
+            }
+        }
+        return lines;
+    }
+
+    public static class ChunkCollector {
+        final List<Long> latencies = new ArrayList<>();
+        final AtomicLong bytes = new AtomicLong();
+        final CountDownLatch started;
+        volatile String error;
+        private long startedAt;
+
+        ChunkCollector(CountDownLatch started) {
+            this.started = started;
+        }
+
+        @JavascriptInterface
+        public void onStarted() {
+            startedAt = SystemClock.elapsedRealtime();
+            started.countDown();
+        }
+
+        // Chunk n carries audio up to startedAt + (n + 1) * CHUNK_MILLIS.
+        @JavascriptInterface
+        public synchronized void onChunk(int base64Length) {
+            long audioEnd = startedAt + (latencies.size() + 1L) * VoiceRecorder.CHUNK_MILLIS;
+            latencies.add(Math.max(0, SystemClock.elapsedRealtime() - audioEnd));
+            bytes.addAndGet(base64Length * 3L / 4);
+        }
+
+        @JavascriptInterface
+        public void onError(String message) {
+            error = message;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.codeora;
+
+import android.Manifest;
+import android.content.MutableContextWrapper;
+import android.content.pm.ActivityInfo;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebView;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.rule.GrantPermissionRule;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import static org.junit.Assert.*;
+
+/**
+ * Rotates and recreates MainActivity once the chat has loaded and checks that the WebView
+ * survived and, through WebViewTraffic, that it did not start a document. The live chat keeps
+ * polling and fetching on its own, so subresource requests are logged rather than asserted.
+ * Needs network access for the initial load.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WebViewRetentionTest {
+
+    private static final String TAG = "WebViewRetentionTest";
+    private static final long LOAD_TIMEOUT_MILLIS = 60000;
+    // Long enough for a reload to have started if one was going to.
+    private static final long SETTLE_MILLIS = 3000;
+
+    @Rule
+    public GrantPermissionRule permissionRule = GrantPermissionRule.grant(Manifest.permission.RECORD_AUDIO);
+
+    private ActivityScenario<MainActivity> scenario;
+
+    @Before
+    public void setUp() {
+        scenario = ActivityScenario.launch(MainActivity.class);
+        waitForPageLoaded();
+    }
+
+    @After
+    public void tearDown() {
+        scenario.close();
+    }
+
+    @Test
+    public void rotationKeepsActivityAndPage() {
+        MainActivity[] before = new MainActivity[1];
+        WebView[] webViewBefore = new WebView[1];
+        scenario.onActivity(activity -> {
+            before[0] = activity;
+            webViewBefore[0] = activity.findViewById(R.id.webview);
+        });
+        long documents = WebViewTraffic.documents();
+        long requests = WebViewTraffic.requests();
+
+        scenario.onActivity(activity -> activity.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_LANDSCAPE));
+        SystemClock.sleep(SETTLE_MILLIS);
+        scenario.onActivity(activity -> activity.setRequestedOrientation(ActivityInfo.SCREEN_ORIENTATION_PORTRAIT));
+        SystemClock.sleep(SETTLE_MILLIS);
+
+        scenario.onActivity(activity -> {
+            assertSame(before[0], activity);
+            assertSame(webViewBefore[0], activity.findViewById(R.id.webview));
+        });
+        report("rotation", documents, requests);
+    }
+
+    // Stands in for configuration changes the activity does not absorb, such as dark mode.
+    @Test
+    public void recreationHandsOverTheWebView() {
+        WebView[] webViewBefore = new WebView[1];
+        scenario.onActivity(activity -> webViewBefore[0] = activity.findViewById(R.id.webview));
+        long documents = WebViewTraffic.documents();
+        long requests = WebViewTraffic.requests();
+
+        scenario.recreate();
+        SystemClock.sleep(SETTLE_MILLIS);
+
+        scenario.onActivity(activity -> {
+            WebView webView = activity.findViewById(R.id.webview);
+            assertSame(webViewBefore[0], webView);
+            assertSame(activity, ((MutableContextWrapper) webView.getContext()).getBaseContext());
+        });
+        report("recreate", documents, requests);
+    }
+
+    private static void report(String change, long documentsBefore, long requestsBefore) {
+        long documents = WebViewTraffic.documents() - documentsBefore;
+        long requests = WebViewTraffic.requests() - requestsBefore;
+        Log.i(TAG, change + ": documents=" + documents + " requests=" + requests);
+        assertEquals(change + " started a document load", 0, documents);
+    }
+
+    private void waitForPageLoaded() {
+        long deadline = SystemClock.elapsedRealtime() + LOAD_TIMEOUT_MILLIS;
+        int[] progress = new int[1];
+        while (SystemClock.elapsedRealtime() < deadline) {
+            scenario.onActivity(activity -> progress[0] = ((WebView) activity.findViewById(R.id.webview)).getProgress());
+            if (progress[0] == 100 && WebViewTraffic.documents() > 0) {
+                // Let late subresources and the page's own startup fetches finish.
+                SystemClock.sleep(SETTLE_MILLIS);
+                return;
+            }
+            SystemClock.sleep(200);
+        }
+        fail("Chat page did not load");
+    }
+}
@@ -0,0 +1,128 @@
+// Page side of NativeBridge. Messages are queued and handed to Java in a single
+// window.Android.postMessage call per animation frame instead of one crossing per message;
+// native batches come back as message events on the same object.
+(function () {
+    var port = window.Android;
+    if (window.__nativeBridge || !port || !port.postMessage) {
+        return;
+    }
+    var FIELD = '\u001f';
+    var RECORD = '\u001e';
+    var queue = [];
+    var scheduled = false;
+    var nextId = 1;
+    var pending = {};
+    var listeners = {};
+
+    function flush() {
+        if (!scheduled) {
+            return;
+        }
+        scheduled = false;
+        if (queue.length === 0) {
+            return;
+        }
+        var batch = queue.join('');
+        queue.length = 0;
+        port.postMessage(batch);
+    }
+
+    function schedule() {
+        if (scheduled) {
+            return;
+        }
+        scheduled = true;
+        // rAF does not run while the page is hidden, so a timer backs it up.
+        window.requestAnimationFrame(flush);
+        setTimeout(flush, 50);
+    }
+
+    function post(channel, id, payload) {
+        var json = payload === undefined ? '' : JSON.stringify(payload);
+        queue.push(channel + FIELD + id + FIELD + json + RECORD);
+        schedule();
+    }
+
+    function deliver(kind, channel, id, value) {
+        if (kind === 'e') {
+            var fns = listeners[channel];
+            if (fns) {
+                for (var i = 0; i < fns.length; i++) {
+                    try {
+                        fns[i](value);
+                    } catch (e) {
+                        console.error(e);
+                    }
+                }
+            }
+            return;
+        }
+        var request = pending[id];
+        if (!request) {
+            return;
+        }
+        delete pending[id];
+        if (kind === 'r') {
+            request.resolve(value);
+        } else {
+            request.reject(new Error(value));
+        }
+    }
+
+    window.__nativeBridge = {
+        // Fire-and-forget message to a native channel.
+        send: function (channel, payload) {
+            post(channel, '', payload);
+        },
+        // Resolves with the native handler's reply, correlated by id.
+        request: function (channel, payload) {
+            return new Promise(function (resolve, reject) {
+                var id = String(nextId++);
+                pending[id] = {resolve: resolve, reject: reject};
+                post(channel, id, payload);
+            });
+        },
+        on: function (channel, fn) {
+            (listeners[channel] = listeners[channel] || []).push(fn);
+        },
+        off: function (channel, fn) {
+            var fns = listeners[channel];
+            if (fns) {
+                listeners[channel] = fns.filter(function (f) { return f !== fn; });
+            }
+        },
+        flush: function () {
+            scheduled = true;
+            flush();
+        },
+        receive: function (batch) {
+            var start = 0;
+            while (start < batch.length) {
+                var end = batch.indexOf(RECORD, start);
+                if (end < 0) {
+                    end = batch.length;
+                }
+                var f1 = batch.indexOf(FIELD, start);
+                var f2 = batch.indexOf(FIELD, f1 + 1);
+                var f3 = batch.indexOf(FIELD, f2 + 1);
+                if (f1 > start && f3 > f2 && f3 < end) {
+                    var json = batch.substring(f3 + 1, end);
+                    deliver(batch.substring(start, f1), batch.substring(f1 + 1, f2),
+                            batch.substring(f2 + 1, f3), json ? JSON.parse(json) : undefined);
+                }
+                start = end + 1;
+            }
+        }
+    };
+    window.NativeBridge = window.__nativeBridge;
+    port.onmessage = function (event) {
+        window.__nativeBridge.receive(event.data);
+    };
+    // Kept for pages that still call window.Android.showToast directly.
+    port.showToast = function (text) {
+        window.__nativeBridge.send('toast', String(text));
+    };
+    // An empty batch tells native which document to answer.
+    port.postMessage('');
+    document.dispatchEvent(new Event('nativebridgeready'));
+})();
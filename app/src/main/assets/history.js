@@ -0,0 +1,297 @@
+// Page side of HistoryChannel: a virtualized, newest-at-the-bottom message list. Only the
+// rows around the viewport exist in the DOM; rows that scroll out are reused for the rows
+// scrolling in. Older pages are requested from the native side, which keeps the next ones
+// loaded ahead, when the viewport gets within a screen or so of the oldest loaded row.
+// Under memory pressure the native side asks, on the "memory" channel, to keep only a number
+// of rows beyond the viewport; the rest are dropped and paged back in when scrolled to.
+(function () {
+    if (window.NativeHistory || !window.NativeBridge) {
+        return;
+    }
+    var CHANNEL = 'history';
+    var JANK_MILLIS = 1000 / 60 * 1.5;
+
+    function percentile(sorted, p) {
+        if (sorted.length === 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, Math.floor(sorted.length * p))];
+    }
+
+    // Frame intervals while the list is scrolling; idle frames are not counted.
+    function FrameRecorder() {
+        this.samples = [];
+        this.scrollingUntil = 0;
+        this.last = 0;
+        this.running = false;
+    }
+
+    FrameRecorder.prototype.onScroll = function () {
+        this.scrollingUntil = performance.now() + 500;
+        if (!this.running) {
+            this.running = true;
+            this.last = 0;
+            requestAnimationFrame(this.tick.bind(this));
+        }
+    };
+
+    FrameRecorder.prototype.tick = function (now) {
+        if (this.last) {
+            this.samples.push(now - this.last);
+        }
+        this.last = now;
+        if (now < this.scrollingUntil) {
+            requestAnimationFrame(this.tick.bind(this));
+        } else {
+            this.running = false;
+        }
+    };
+
+    FrameRecorder.prototype.summary = function () {
+        var sorted = this.samples.slice().sort(function (a, b) { return a - b; });
+        var janky = 0;
+        for (var i = 0; i < sorted.length; i++) {
+            if (sorted[i] > JANK_MILLIS) {
+                janky++;
+            }
+        }
+        return {
+            frames: sorted.length,
+            p50: percentile(sorted, 0.5),
+            p95: percentile(sorted, 0.95),
+            p99: percentile(sorted, 0.99),
+            janky: janky
+        };
+    };
+
+    function VirtualList(container, options) {
+        this.container = container;
+        this.conversationId = options.conversationId;
+        this.rowHeight = options.rowHeight || 72;
+        this.overscan = options.overscan || 10;
+        this.pageSize = options.pageSize || 100;
+        this.render = options.render || function (node, message) {
+            node.textContent = (message.sender ? message.sender + ': ' : '') + (message.body || '');
+        };
+        this.messages = [];   // newest first
+        this.rows = {};       // message index -> node
+        this.free = [];
+        this.session = null;
+        this.loading = false;
+        this.hasMore = true;
+        this.total = 0;
+        this.frames = new FrameRecorder();
+        this.scheduled = false;
+
+        container.style.overflowY = 'auto';
+        container.style.position = container.style.position || 'relative';
+        this.sizer = document.createElement('div');
+        this.sizer.style.position = 'relative';
+        this.sizer.style.width = '100%';
+        container.appendChild(this.sizer);
+        this.onScroll = this.onScroll.bind(this);
+        container.addEventListener('scroll', this.onScroll, {passive: true});
+        this.onMemory = this.onMemory.bind(this);
+        NativeBridge.on('memory', this.onMemory);
+    }
+
+    VirtualList.prototype.openSession = function (before) {
+        var request = {op: 'open', conversationId: this.conversationId, pageSize: this.pageSize};
+        if (before) {
+            request.before = before;
+        }
+        return NativeBridge.request(CHANNEL, request);
+    };
+
+    VirtualList.prototype.open = function () {
+        var self = this;
+        return this.openSession(null)
+            .then(function (reply) {
+                self.session = reply.session;
+                self.total = reply.total;
+                return self.loadOlder();
+            })
+            .then(function () {
+                self.container.scrollTop = self.container.scrollHeight;
+                self.update();
+            });
+    };
+
+    VirtualList.prototype.loadOlder = function () {
+        if (this.loading || !this.hasMore || !this.session) {
+            return Promise.resolve();
+        }
+        this.loading = true;
+        var self = this;
+        return NativeBridge.request(CHANNEL, {op: 'next', session: this.session}).then(function (reply) {
+            self.loading = false;
+            self.hasMore = reply.hasMore;
+            if (reply.messages.length === 0) {
+                return;
+            }
+            // Older rows are added above; keep what the reader is looking at in place.
+            var previousHeight = self.messages.length * self.rowHeight;
+            Array.prototype.push.apply(self.messages, reply.messages);
+            self.sizer.style.height = (self.messages.length * self.rowHeight) + 'px';
+            self.container.scrollTop += self.messages.length * self.rowHeight - previousHeight;
+            self.update();
+        }, function (error) {
+            self.loading = false;
+            console.error('History page failed', error);
+        });
+    };
+
+    VirtualList.prototype.onScroll = function () {
+        this.frames.onScroll();
+        if (!this.scheduled) {
+            this.scheduled = true;
+            requestAnimationFrame(this.update.bind(this));
+        }
+    };
+
+    VirtualList.prototype.topOf = function (index) {
+        return (this.messages.length - 1 - index) * this.rowHeight;
+    };
+
+    // Index 0 is the newest message at the bottom, so the visible range is computed from the
+    // distance between the viewport and the end of the list.
+    VirtualList.prototype.update = function () {
+        this.scheduled = false;
+        var count = this.messages.length;
+        if (count === 0) {
+            return;
+        }
+        var height = count * this.rowHeight;
+        var viewTop = this.container.scrollTop;
+        var viewBottom = viewTop + this.container.clientHeight;
+        var first = Math.max(0, Math.floor((height - viewBottom) / this.rowHeight) - this.overscan);
+        var last = Math.min(count - 1, Math.ceil((height - viewTop) / this.rowHeight) + this.overscan);
+
+        for (var key in this.rows) {
+            var index = +key;
+            if (index < first || index > last) {
+                this.free.push(this.rows[key]);
+                delete this.rows[key];
+            }
+        }
+        for (var i = first; i <= last; i++) {
+            var node = this.rows[i];
+            if (!node) {
+                node = this.free.pop();
+                if (!node) {
+                    node = document.createElement('div');
+                    node.className = 'history-row';
+                    node.style.position = 'absolute';
+                    node.style.left = '0';
+                    node.style.right = '0';
+                    node.style.height = this.rowHeight + 'px';
+                    node.style.overflow = 'hidden';
+                    this.sizer.appendChild(node);
+                }
+                this.render(node, this.messages[i]);
+                this.rows[i] = node;
+            }
+            node.style.transform = 'translateY(' + this.topOf(i) + 'px)';
+            node.style.display = '';
+        }
+        for (var j = 0; j < this.free.length; j++) {
+            this.free[j].style.display = 'none';
+        }
+
+        if (this.hasMore && last >= count - 1 - this.overscan - Math.ceil(this.container.clientHeight / this.rowHeight)) {
+            this.loadOlder();
+        }
+    };
+
+    VirtualList.prototype.onMemory = function (event) {
+        if (event.phase === 'trim' && event.keepHistoryRows >= 0) {
+            this.trim(event.keepHistoryRows);
+        }
+    };
+
+    // Drops the spare nodes and every loaded message more than keep rows above the viewport,
+    // then reopens the session below the oldest kept message so scrolling up pages them back.
+    VirtualList.prototype.trim = function (keep) {
+        for (var i = 0; i < this.free.length; i++) {
+            this.sizer.removeChild(this.free[i]);
+        }
+        this.free = [];
+        var count = this.messages.length;
+        var lastVisible = Math.ceil((count * this.rowHeight - this.container.scrollTop) / this.rowHeight);
+        var limit = lastVisible + keep;
+        if (limit >= count - 1 || this.loading || !this.session) {
+            return;
+        }
+        for (var key in this.rows) {
+            if (+key > limit) {
+                this.sizer.removeChild(this.rows[key]);
+                delete this.rows[key];
+            }
+        }
+        // The dropped rows sat above the viewport; shift up so nothing visible moves.
+        var removed = count - 1 - limit;
+        this.messages.length = limit + 1;
+        this.sizer.style.height = (this.messages.length * this.rowHeight) + 'px';
+        this.container.scrollTop -= removed * this.rowHeight;
+
+        var oldest = this.messages[limit];
+        var self = this;
+        NativeBridge.send(CHANNEL, {op: 'close', session: this.session});
+        this.session = null;
+        this.loading = true;
+        this.openSession(oldest.timestamp + ':' + oldest.id).then(function (reply) {
+            self.session = reply.session;
+            self.loading = false;
+            self.hasMore = true;
+            self.update();
+        }, function (error) {
+            self.loading = false;
+            console.error('History session failed', error);
+        });
+    };
+
+    VirtualList.prototype.metrics = function () {
+        var result = this.frames.summary();
+        result.loaded = this.messages.length;
+        result.total = this.total;
+        result.rowNodes = this.sizer.childElementCount;
+        result.domNodes = document.getElementsByTagName('*').length;
+        if (performance.memory) {
+            result.jsHeapBytes = performance.memory.usedJSHeapSize;
+        }
+        return result;
+    };
+
+    // Sends the metrics to the native side, which logs them with the process's memory.
+    VirtualList.prototype.reportMetrics = function () {
+        var payload = this.metrics();
+        payload.op = 'metrics';
+        payload.session = this.session;
+        return NativeBridge.request(CHANNEL, payload).then(function (reply) {
+            payload.nativePssKb = reply.nativePssKb;
+            delete payload.op;
+            return payload;
+        });
+    };
+
+    VirtualList.prototype.destroy = function () {
+        this.container.removeEventListener('scroll', this.onScroll);
+        NativeBridge.off('memory', this.onMemory);
+        if (this.session) {
+            NativeBridge.send(CHANNEL, {op: 'close', session: this.session});
+        }
+        this.container.removeChild(this.sizer);
+    };
+
+    window.NativeHistory = {
+        // Exposed so other lists can be measured the same way.
+        FrameRecorder: FrameRecorder,
+        // options: {conversationId, rowHeight?, overscan?, pageSize?, render?(node, message)}
+        mount: function (container, options) {
+            var list = new VirtualList(container, options);
+            list.ready = list.open();
+            return list;
+        }
+    };
+    document.dispatchEvent(new Event('nativehistoryready'));
+})();
@@ -0,0 +1,91 @@
+// Page side of CustomTabs' link prediction: watches the external links in the chat with an
+// IntersectionObserver and reports the visible ones, with how much of each is visible, for how
+// long and where in the viewport, at most every half second. A link being touched is reported
+// at once, since that is the best hint of what opens next.
+(function () {
+    if (window.__codeoraLinks || !window.NativeBridge || !window.IntersectionObserver) {
+        return;
+    }
+    window.__codeoraLinks = true;
+    var CHANNEL = 'links';
+    var REPORT_MILLIS = 500;
+    var visible = new Map();
+    var touched = null;
+    var timer = 0;
+
+    function external(a) {
+        return /^https?:$/.test(a.protocol) && a.host !== location.host;
+    }
+
+    function report() {
+        timer = 0;
+        var now = performance.now();
+        var height = window.innerHeight || 1;
+        var links = [];
+        visible.forEach(function (state, a) {
+            var rect = a.getBoundingClientRect();
+            links.push({
+                url: a.href,
+                ratio: Math.round(state.ratio * 100) / 100,
+                dwellMs: Math.round(now - state.since),
+                position: Math.max(0, Math.min(1, (rect.top + rect.height / 2) / height)),
+                touched: a === touched
+            });
+        });
+        if (touched && !visible.has(touched)) {
+            links.push({url: touched.href, ratio: 1, dwellMs: 0, position: 1, touched: true});
+        }
+        NativeBridge.send(CHANNEL, {op: 'visible', links: links});
+    }
+
+    function schedule() {
+        if (!timer) {
+            timer = setTimeout(report, REPORT_MILLIS);
+        }
+    }
+
+    var observer = new IntersectionObserver(function (entries) {
+        entries.forEach(function (entry) {
+            if (entry.isIntersecting) {
+                var state = visible.get(entry.target);
+                visible.set(entry.target, {ratio: entry.intersectionRatio, since: state ? state.since : performance.now()});
+            } else {
+                visible.delete(entry.target);
+            }
+        });
+        schedule();
+    }, {threshold: [0, 0.5, 1]});
+
+    function watch(root) {
+        if (root.tagName === 'A' && external(root)) {
+            observer.observe(root);
+        }
+        if (root.querySelectorAll) {
+            Array.prototype.forEach.call(root.querySelectorAll('a[href]'), function (a) {
+                if (external(a)) {
+                    observer.observe(a);
+                }
+            });
+        }
+    }
+
+    new MutationObserver(function (mutations) {
+        mutations.forEach(function (mutation) {
+            Array.prototype.forEach.call(mutation.addedNodes, function (node) {
+                if (node.nodeType === 1) {
+                    watch(node);
+                }
+            });
+        });
+    }).observe(document.documentElement, {childList: true, subtree: true});
+    watch(document.documentElement);
+
+    document.addEventListener('pointerdown', function (event) {
+        var a = event.target.closest && event.target.closest('a[href]');
+        if (a && external(a)) {
+            touched = a;
+            clearTimeout(timer);
+            report();
+        }
+    }, {capture: true, passive: true});
+})();
@@ -0,0 +1,46 @@
+// Page side of NativeNetwork's comparison: reports Resource Timing phases for the requests
+// Chromium's own stack made, in batches every few seconds. Cross-origin entries without
+// Timing-Allow-Origin carry no phases and are skipped.
+(function () {
+    if (window.__codeoraNet || !window.NativeBridge || !window.PerformanceObserver) {
+        return;
+    }
+    window.__codeoraNet = true;
+    var CHANNEL = 'network';
+    var FLUSH_MILLIS = 5000;
+    var pending = [];
+
+    function phase(start, end) {
+        return start > 0 && end >= start ? Math.round((end - start) * 100) / 100 : -1;
+    }
+
+    function add(entry) {
+        if (!entry.responseStart) {
+            return;
+        }
+        var reused = entry.connectStart === entry.connectEnd;
+        pending.push({
+            dns: reused ? -1 : phase(entry.domainLookupStart, entry.domainLookupEnd),
+            connect: reused ? -1 : phase(entry.connectStart, entry.connectEnd),
+            tls: entry.secureConnectionStart > 0 ? phase(entry.secureConnectionStart, entry.connectEnd) : -1,
+            ttfb: phase(entry.requestStart, entry.responseStart),
+            total: Math.round(entry.duration * 100) / 100,
+            reused: reused,
+            protocol: entry.nextHopProtocol || ''
+        });
+    }
+
+    try {
+        new PerformanceObserver(function (list) {
+            list.getEntries().forEach(add);
+        }).observe({type: 'resource', buffered: true});
+    } catch (e) {
+        return;
+    }
+    setInterval(function () {
+        if (pending.length) {
+            NativeBridge.send(CHANNEL, {op: 'webview', timings: pending});
+            pending = [];
+        }
+    }, FLUSH_MILLIS);
+})();
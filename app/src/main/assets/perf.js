@@ -0,0 +1,65 @@
+// Page side of PerfMonitor, injected only while the performance HUD is on. Sends the
+// requestAnimationFrame intervals, long tasks and JS heap size to the "perf" channel once a
+// second.
+(function () {
+    if (window.__perfProbe || !window.NativeBridge) {
+        return;
+    }
+    var raf = [];
+    var longTasks = [];
+    var last = 0;
+    var observer = null;
+    var probe = {active: true};
+
+    function tick(now) {
+        if (!probe.active) {
+            return;
+        }
+        if (last) {
+            raf.push(Math.round((now - last) * 100) / 100);
+        }
+        last = now;
+        requestAnimationFrame(tick);
+    }
+
+    function flush() {
+        var sample = {op: 'samples', raf: raf, longTasks: longTasks};
+        if (performance.memory) {
+            sample.jsHeapUsed = performance.memory.usedJSHeapSize;
+            sample.jsHeapTotal = performance.memory.totalJSHeapSize;
+        }
+        raf = [];
+        longTasks = [];
+        NativeBridge.send('perf', sample);
+    }
+
+    try {
+        observer = new PerformanceObserver(function (list) {
+            var entries = list.getEntries();
+            for (var i = 0; i < entries.length; i++) {
+                longTasks.push(Math.round(entries[i].duration));
+            }
+        });
+        observer.observe({entryTypes: ['longtask']});
+    } catch (e) {
+        observer = null;
+    }
+
+    // Hidden pages get no rAF; do not count the gap as one long frame.
+    document.addEventListener('visibilitychange', function () {
+        last = 0;
+    });
+
+    var timer = setInterval(flush, 1000);
+    probe.stop = function () {
+        probe.active = false;
+        clearInterval(timer);
+        if (observer) {
+            observer.disconnect();
+        }
+        flush();
+        delete window.__perfProbe;
+    };
+    window.__perfProbe = probe;
+    requestAnimationFrame(tick);
+})();
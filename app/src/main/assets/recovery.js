@@ -0,0 +1,98 @@
+// Page side of RendererRecovery. capture() describes what the user is looking at and typing;
+// restore() puts it back after the WebView was rebuilt. A page that knows better can provide
+// window.CodeoraState = {capture: fn() -> object, restore: fn(state) -> boolean}; otherwise
+// the draft is read from the first text box and the anchor is the topmost element carrying
+// a data-message-id attribute.
+(function () {
+    if (window.__codeoraRecovery || !window.NativeBridge) {
+        return;
+    }
+    var CHANNEL = 'recovery';
+
+    function draftField() {
+        return document.querySelector('textarea, [contenteditable="true"], input[type="text"]');
+    }
+
+    function anchor() {
+        var messages = document.querySelectorAll('[data-message-id]');
+        for (var i = 0; i < messages.length; i++) {
+            var rect = messages[i].getBoundingClientRect();
+            if (rect.bottom > 0) {
+                return {id: messages[i].getAttribute('data-message-id'), offset: Math.round(rect.top)};
+            }
+        }
+        return null;
+    }
+
+    function capture() {
+        var state = {url: location.href, scrollY: Math.round(window.scrollY)};
+        var field = draftField();
+        if (field) {
+            state.draft = field.isContentEditable ? field.textContent : field.value;
+        }
+        var top = anchor();
+        if (top) {
+            state.anchorMessageId = top.id;
+            state.anchorOffset = top.offset;
+        }
+        if (window.CodeoraState && typeof window.CodeoraState.capture === 'function') {
+            var own = window.CodeoraState.capture() || {};
+            for (var key in own) {
+                state[key] = own[key];
+            }
+        }
+        return state;
+    }
+
+    function applyGeneric(state) {
+        var field = draftField();
+        if (state.draft && field) {
+            if (field.isContentEditable) {
+                field.textContent = state.draft;
+            } else {
+                field.value = state.draft;
+            }
+            field.dispatchEvent(new Event('input', {bubbles: true}));
+        }
+        if (state.anchorMessageId) {
+            var target = document.querySelector('[data-message-id="' + CSS.escape(state.anchorMessageId) + '"]');
+            if (!target) {
+                return false;
+            }
+            target.scrollIntoView();
+            window.scrollBy(0, -(state.anchorOffset || 0));
+        } else if (state.scrollY) {
+            window.scrollTo(0, state.scrollY);
+        }
+        return !state.draft || !!field;
+    }
+
+    // The app renders asynchronously after load, so keep trying for a couple of seconds.
+    function restore(state) {
+        var started = Date.now();
+        function attempt() {
+            var done;
+            if (window.CodeoraState && typeof window.CodeoraState.restore === 'function') {
+                done = window.CodeoraState.restore(state) !== false;
+            } else {
+                done = applyGeneric(state);
+            }
+            if (done || Date.now() - started > 2000) {
+                NativeBridge.send(CHANNEL, {op: 'restored', applied: done});
+            } else {
+                setTimeout(attempt, 100);
+            }
+        }
+        document.dispatchEvent(new CustomEvent('nativerestore', {detail: state}));
+        attempt();
+    }
+
+    window.__codeoraRecovery = {
+        capture: capture,
+        restore: restore,
+        // For pages that want to save at moments that matter, e.g. when the draft changes.
+        save: function () {
+            NativeBridge.send(CHANNEL, {op: 'snapshot', state: capture()});
+        }
+    };
+})();
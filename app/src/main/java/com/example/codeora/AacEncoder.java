@@ -0,0 +1,107 @@
+package com.example.codeora;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+// Mono 16-bit PCM in, ADTS-framed AAC-LC out, through the platform MediaCodec encoder.
+public class AacEncoder {
+
+    private static final long TIMEOUT_US = 10000;
+    private static final int MAX_FRAME_SIZE = 8192;
+
+    public interface Sink {
+        // data is reused after the call returns.
+        void onFrame(byte[] data, int length, long presentationTimeUs);
+    }
+
+    private final MediaCodec codec;
+    private final int sampleRate;
+    private final int sampleRateIndex;
+    private final MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+    private final byte[] frame = new byte[Adts.HEADER_SIZE + MAX_FRAME_SIZE];
+    private long queuedBytes = 0;
+
+    public AacEncoder(int sampleRate, int bitrate) throws IOException {
+        this.sampleRate = sampleRate;
+        this.sampleRateIndex = Adts.sampleRateIndex(sampleRate);
+        MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC, sampleRate, 1);
+        format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
+        format.setInteger(MediaFormat.KEY_BIT_RATE, bitrate);
+        format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, 16384);
+        codec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
+        try {
+            codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            codec.start();
+        } catch (RuntimeException e) {
+            codec.release();
+            throw e;
+        }
+    }
+
+    // Timestamps are derived from the amount of PCM queued, so they stay gapless.
+    public void encode(byte[] pcm, int length, Sink sink) {
+        int offset = 0;
+        while (offset < length) {
+            int index = codec.dequeueInputBuffer(TIMEOUT_US);
+            if (index >= 0) {
+                ByteBuffer input = codec.getInputBuffer(index);
+                input.clear();
+                int count = Math.min(length - offset, input.remaining());
+                input.put(pcm, offset, count);
+                codec.queueInputBuffer(index, 0, count, presentationTimeUs(), 0);
+                queuedBytes += count;
+                offset += count;
+            }
+            drain(sink, false);
+        }
+    }
+
+    public void finish(Sink sink) {
+        int index;
+        while ((index = codec.dequeueInputBuffer(TIMEOUT_US)) < 0) {
+            drain(sink, false);
+        }
+        codec.queueInputBuffer(index, 0, 0, presentationTimeUs(), MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+        drain(sink, true);
+    }
+
+    public void release() {
+        codec.release();
+    }
+
+    public long presentationTimeUs() {
+        return queuedBytes / 2 * 1_000_000L / sampleRate;
+    }
+
+    private void drain(Sink sink, boolean untilEndOfStream) {
+        while (true) {
+            int index = codec.dequeueOutputBuffer(info, untilEndOfStream ? TIMEOUT_US : 0);
+            if (index == MediaCodec.INFO_TRY_AGAIN_LATER) {
+                if (!untilEndOfStream) {
+                    return;
+                }
+                continue;
+            }
+            if (index < 0) {
+                // Output format or buffer changes; the ADTS header carries all we need.
+                continue;
+            }
+            boolean config = (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+            if (!config && info.size > 0 && info.size <= MAX_FRAME_SIZE) {
+                ByteBuffer output = codec.getOutputBuffer(index);
+                output.position(info.offset).limit(info.offset + info.size);
+                Adts.writeHeader(frame, 0, info.size, sampleRateIndex, 1);
+                output.get(frame, Adts.HEADER_SIZE, info.size);
+                sink.onFrame(frame, Adts.HEADER_SIZE + info.size, info.presentationTimeUs);
+            }
+            codec.releaseOutputBuffer(index, false);
+            if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.codeora;
+
+// ADTS framing for raw AAC-LC frames, so encoded chunks are self-describing and can be
+// concatenated and played as an audio/aac stream without a container.
+public final class Adts {
+
+    public static final int HEADER_SIZE = 7;
+    private static final int[] SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+    private static final int PROFILE_AAC_LC = 2;
+
+    private Adts() {
+    }
+
+    public static int sampleRateIndex(int sampleRate) {
+        for (int i = 0; i < SAMPLE_RATES.length; i++) {
+            if (SAMPLE_RATES[i] == sampleRate) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No ADTS index for " + sampleRate + " Hz");
+    }
+
+    // Writes the header for a frame of payloadLength bytes at out[offset..offset+7).
+    public static void writeHeader(byte[] out, int offset, int payloadLength, int sampleRateIndex, int channels) {
+        int frameLength = payloadLength + HEADER_SIZE;
+        out[offset] = (byte) 0xFF;
+        out[offset + 1] = (byte) 0xF1; // MPEG-4, layer 0, no CRC
+        out[offset + 2] = (byte) (((PROFILE_AAC_LC - 1) << 6) | (sampleRateIndex << 2) | (channels >> 2));
+        out[offset + 3] = (byte) (((channels & 3) << 6) | (frameLength >> 11));
+        out[offset + 4] = (byte) ((frameLength >> 3) & 0xFF);
+        out[offset + 5] = (byte) (((frameLength & 7) << 5) | 0x1F);
+        out[offset + 6] = (byte) 0xFC;
+    }
+}
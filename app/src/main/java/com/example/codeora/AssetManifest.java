@@ -0,0 +1,131 @@
+package com.example.codeora;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// The set of build assets one deploy of the web app needs. Read from the app's
+// asset-manifest.json when it publishes one:
+//   {"version": "<build id>", "assets": [{"url": "/_next/static/...", "sha256": "<hex>"?}, ...]}
+// and otherwise derived from the script and stylesheet references in the document itself.
+// Only content-hashed URLs are kept: they never change meaning, so a version can be served
+// next to any document that references it without mixing builds.
+public class AssetManifest {
+
+    private static final Pattern ASSET_REFERENCE = Pattern.compile(
+            "<(?:script|link)\\b[^>]*?\\b(?:src|href)\\s*=\\s*[\"']([^\"']+)[\"']", Pattern.CASE_INSENSITIVE);
+
+    public static class Asset {
+        public final String url;
+        // Lowercase hex, or null when the manifest does not pin the content.
+        public final String sha256;
+
+        Asset(String url, String sha256) {
+            this.url = url;
+            this.sha256 = sha256;
+        }
+    }
+
+    public final String version;
+    public final List<Asset> assets;
+
+    AssetManifest(String version, List<Asset> assets) {
+        this.version = version;
+        this.assets = assets;
+    }
+
+    public static AssetManifest fromJson(String json, String baseUrl) throws JSONException {
+        JSONObject object = new JSONObject(json);
+        JSONArray array = object.getJSONArray("assets");
+        List<Asset> assets = new ArrayList<>(array.length());
+        Set<String> seen = new LinkedHashSet<>();
+        for (int i = 0; i < array.length(); i++) {
+            Object item = array.get(i);
+            String url;
+            String sha256 = null;
+            if (item instanceof JSONObject) {
+                url = ((JSONObject) item).getString("url");
+                sha256 = ((JSONObject) item).optString("sha256", null);
+            } else {
+                url = String.valueOf(item);
+            }
+            String absolute = resolve(baseUrl, url);
+            if (absolute != null && CacheLoader.isImmutableAsset(absolute) && seen.add(absolute)) {
+                assets.add(new Asset(absolute, sha256 == null ? null : sha256.toLowerCase()));
+            }
+        }
+        String version = object.optString("version", null);
+        return new AssetManifest(version != null ? version : versionOf(assets), assets);
+    }
+
+    // Same-origin hashed scripts and stylesheets referenced by the document.
+    public static AssetManifest fromHtml(String html, String documentUrl) {
+        String origin = originOf(documentUrl);
+        Set<String> urls = new LinkedHashSet<>();
+        Matcher matcher = ASSET_REFERENCE.matcher(html);
+        while (matcher.find()) {
+            String absolute = resolve(documentUrl, matcher.group(1).replace("&amp;", "&"));
+            if (absolute != null && absolute.startsWith(origin) && CacheLoader.isImmutableAsset(absolute)) {
+                urls.add(absolute);
+            }
+        }
+        List<Asset> assets = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            assets.add(new Asset(url, null));
+        }
+        return new AssetManifest(versionOf(assets), assets);
+    }
+
+    // Hashed URLs change with every build, so hashing the sorted set identifies the build.
+    static String versionOf(List<Asset> assets) {
+        List<String> urls = new ArrayList<>(assets.size());
+        for (Asset asset : assets) {
+            urls.add(asset.url);
+        }
+        Collections.sort(urls);
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String url : urls) {
+                digest.update(url.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            byte[] hash = digest.digest();
+            StringBuilder hex = new StringBuilder(16);
+            for (int i = 0; i < 8; i++) {
+                hex.append(Character.forDigit((hash[i] >> 4) & 0xf, 16));
+                hex.append(Character.forDigit(hash[i] & 0xf, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(urls.hashCode());
+        }
+    }
+
+    private static String resolve(String base, String reference) {
+        try {
+            URI uri = new URI(base).resolve(reference.trim());
+            String scheme = uri.getScheme();
+            return "https".equals(scheme) || "http".equals(scheme) ? uri.toString() : null;
+        } catch (URISyntaxException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String originOf(String url) {
+        URI uri = URI.create(url);
+        return uri.getScheme() + "://" + uri.getRawAuthority() + "/";
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.codeora;
+
+import org.json.JSONException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+// Fetches the current build's manifest and downloads its assets in parallel into a staged
+// AssetStore version. The version is committed only when every asset arrived and verified,
+// so a half-downloaded build is never served.
+public class AssetPreloader {
+
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    public static class Result {
+        public final String version;
+        public final int assets;
+        public final int failed;
+        public final long bytes;
+        public final long elapsedMillis;
+        // The slowest single download, which bounds the batch on an idle pool.
+        public final long maxLatencyMillis;
+        public final boolean committed;
+
+        Result(String version, int assets, int failed, long bytes, long elapsedMillis, long maxLatencyMillis,
+               boolean committed) {
+            this.version = version;
+            this.assets = assets;
+            this.failed = failed;
+            this.bytes = bytes;
+            this.elapsedMillis = elapsedMillis;
+            this.maxLatencyMillis = maxLatencyMillis;
+            this.committed = committed;
+        }
+
+        @Override
+        public String toString() {
+            return "version " + version + ": " + (assets - failed) + "/" + assets + " assets, " + bytes
+                    + " bytes in " + elapsedMillis + " ms (slowest " + maxLatencyMillis + " ms)"
+                    + (committed ? "" : ", not committed");
+        }
+    }
+
+    private final AssetStore store;
+    private final int timeoutMillis;
+    private final ExecutorService workers;
+
+    public AssetPreloader(AssetStore store, int timeoutMillis, ExecutorService workers) {
+        this.store = store;
+        this.timeoutMillis = timeoutMillis;
+        this.workers = workers;
+    }
+
+    // The published manifest when there is one, otherwise the assets the document references.
+    public AssetManifest loadManifest(String manifestUrl, String documentUrl, String cookie) throws IOException {
+        HttpURLConnection connection = open(manifestUrl, cookie);
+        try {
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_OK) {
+                try (InputStream in = connection.getInputStream()) {
+                    return AssetManifest.fromJson(readString(in), manifestUrl);
+                } catch (JSONException e) {
+                    throw new IOException("Malformed asset manifest: " + e.getMessage());
+                }
+            }
+            if (status != HttpURLConnection.HTTP_NOT_FOUND) {
+                throw new IOException("Asset manifest returned HTTP " + status);
+            }
+        } finally {
+            connection.disconnect();
+        }
+
+        connection = open(documentUrl, cookie);
+        connection.setRequestProperty("Accept", "text/html");
+        try {
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Document returned HTTP " + status);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return AssetManifest.fromHtml(readString(in), documentUrl);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Blocks the calling thread, which must not be one of the workers.
+    public Result preload(AssetManifest manifest, String cookie) throws IOException, InterruptedException {
+        long startedAt = System.nanoTime();
+        AssetStore.Staging staging = store.stage(manifest.version);
+        boolean committed = false;
+        try {
+            List<ParallelBatch.Outcome<Long>> outcomes = ParallelBatch.run(manifest.assets,
+                    asset -> download(asset, staging, cookie), workers);
+            int failed = 0;
+            long bytes = 0;
+            long maxLatency = 0;
+            for (ParallelBatch.Outcome<Long> outcome : outcomes) {
+                if (outcome.error != null) {
+                    failed++;
+                } else {
+                    bytes += outcome.value;
+                }
+                maxLatency = Math.max(maxLatency, outcome.latencyMillis());
+            }
+            if (failed == 0 && !manifest.assets.isEmpty()) {
+                staging.commit();
+                committed = true;
+            }
+            return new Result(manifest.version, manifest.assets.size(), failed, bytes,
+                    (System.nanoTime() - startedAt) / 1_000_000, maxLatency, committed);
+        } finally {
+            if (!committed) {
+                staging.abort();
+            }
+        }
+    }
+
+    private long download(AssetManifest.Asset asset, AssetStore.Staging staging, String cookie) throws IOException {
+        HttpURLConnection connection = open(asset.url, cookie);
+        try {
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException(asset.url + " returned HTTP " + status);
+            }
+            String contentType = connection.getContentType();
+            MessageDigest digest = asset.sha256 != null ? sha256() : null;
+            long total = 0;
+            try (InputStream in = connection.getInputStream();
+                 OutputStream out = staging.create(asset.url, CacheLoader.mimeTypeOf(contentType),
+                         CacheLoader.charsetOf(contentType))) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                    if (digest != null) {
+                        digest.update(buffer, 0, read);
+                    }
+                    total += read;
+                }
+            }
+            if (digest != null && !asset.sha256.equals(hex(digest.digest()))) {
+                staging.discard(asset.url);
+                throw new IOException(asset.url + " does not match its manifest hash");
+            }
+            return total;
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open(String url, String cookie) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setInstanceFollowRedirects(true);
+        if (cookie != null) {
+            connection.setRequestProperty("Cookie", cookie);
+        }
+        return connection;
+    }
+
+    private static String readString(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16));
+            hex.append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+}
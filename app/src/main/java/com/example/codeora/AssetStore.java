@@ -0,0 +1,274 @@
+package com.example.codeora;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+
+// Versioned on-disk store of preloaded build assets. A version is staged in its own
+// directory, committed by an atomic rename and recorded as pending; it becomes the one that
+// is served only when promote() is called at the start of the next document load, so a
+// page never sees assets from two builds. Version names come from the server and name
+// directories, so only plain file names are accepted.
+public class AssetStore {
+
+    private static final String VERSIONS_DIR = "versions";
+    private static final String STAGING_PREFIX = "staging-";
+    private static final String INDEX_FILE = "index.properties";
+    private static final String STATE_FILE = "state.properties";
+    private static final Pattern VERSION_NAME = Pattern.compile("[A-Za-z0-9._-]{1,128}");
+
+    public static class Asset {
+        public final String url;
+        public final String mimeType;
+        public final String encoding;
+        public final File file;
+
+        Asset(String url, String mimeType, String encoding, File file) {
+            this.url = url;
+            this.mimeType = mimeType;
+            this.encoding = encoding;
+            this.file = file;
+        }
+
+        public InputStream open() throws IOException {
+            return new FileInputStream(file);
+        }
+    }
+
+    private static final class Version {
+        final String name;
+        final Map<String, Asset> assets;
+
+        Version(String name, Map<String, Asset> assets) {
+            this.name = name;
+            this.assets = assets;
+        }
+    }
+
+    // Collects one version's files before it is committed.
+    public final class Staging {
+        private final String version;
+        private final File directory;
+        private final Properties index = new Properties();
+        private int count = 0;
+
+        Staging(String version, File directory) {
+            this.version = version;
+            this.directory = directory;
+        }
+
+        public OutputStream create(String url, String mimeType, String encoding) throws IOException {
+            String name;
+            synchronized (index) {
+                name = Integer.toString(count++);
+                index.setProperty(name + ".url", url);
+                if (mimeType != null) {
+                    index.setProperty(name + ".mime", mimeType);
+                }
+                if (encoding != null) {
+                    index.setProperty(name + ".encoding", encoding);
+                }
+            }
+            return new FileOutputStream(new File(directory, name));
+        }
+
+        // Drops a file whose download failed or did not verify.
+        public void discard(String url) {
+            synchronized (index) {
+                for (String key : index.stringPropertyNames()) {
+                    if (key.endsWith(".url") && url.equals(index.getProperty(key))) {
+                        String name = key.substring(0, key.length() - ".url".length());
+                        index.remove(key);
+                        index.remove(name + ".mime");
+                        index.remove(name + ".encoding");
+                        new File(directory, name).delete();
+                    }
+                }
+            }
+        }
+
+        public void commit() throws IOException {
+            synchronized (index) {
+                try (OutputStream out = new FileOutputStream(new File(directory, INDEX_FILE))) {
+                    index.store(out, version);
+                }
+            }
+            File target = versionDirectory(version);
+            deleteRecursively(target);
+            target.getParentFile().mkdirs();
+            if (!directory.renameTo(target)) {
+                throw new IOException("Could not commit asset version " + version);
+            }
+            Version loaded = loadVersion(version);
+            synchronized (AssetStore.this) {
+                pending = loaded;
+                writeState();
+            }
+        }
+
+        public void abort() {
+            deleteRecursively(directory);
+        }
+    }
+
+    private final File root;
+    private volatile Version active;
+    private Version pending;
+
+    public AssetStore(File root) {
+        this.root = root;
+        load();
+    }
+
+    public synchronized String activeVersion() {
+        return active != null ? active.name : null;
+    }
+
+    public synchronized String pendingVersion() {
+        return pending != null ? pending.name : null;
+    }
+
+    public boolean hasVersion(String version) {
+        return version.equals(activeVersion()) || version.equals(pendingVersion());
+    }
+
+    public Staging stage(String version) throws IOException {
+        if (!isValidVersion(version)) {
+            throw new IOException("Invalid asset version " + version);
+        }
+        File directory = new File(root, STAGING_PREFIX + version + "-" + System.nanoTime());
+        if (!directory.mkdirs()) {
+            throw new IOException("Could not create " + directory);
+        }
+        return new Staging(version, directory);
+    }
+
+    // Switches to the newest committed version, if any, and deletes the rest.
+    public synchronized void promote() {
+        if (pending == null) {
+            return;
+        }
+        active = pending;
+        pending = null;
+        writeState();
+        prune();
+    }
+
+    // Lock-free: the active version is only ever replaced as a whole.
+    public Asset lookup(String url) {
+        Version version = active;
+        if (version == null) {
+            return null;
+        }
+        Asset asset = version.assets.get(url);
+        return asset != null && asset.file.exists() ? asset : null;
+    }
+
+    private File versionDirectory(String version) {
+        return new File(new File(root, VERSIONS_DIR), version);
+    }
+
+    private void load() {
+        File[] files = root.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().startsWith(STAGING_PREFIX)) {
+                    deleteRecursively(file);
+                }
+            }
+        }
+        Properties state = new Properties();
+        try (InputStream in = new FileInputStream(new File(root, STATE_FILE))) {
+            state.load(in);
+        } catch (IOException e) {
+            return;
+        }
+        // A version that was pending when the process died can be served from the first document.
+        String name = state.getProperty("pending", state.getProperty("active"));
+        if (name != null) {
+            active = loadVersion(name);
+        }
+        pending = null;
+        prune();
+    }
+
+    static boolean isValidVersion(String version) {
+        return version != null && VERSION_NAME.matcher(version).matches()
+                && !version.equals(".") && !version.equals("..");
+    }
+
+    private Version loadVersion(String name) {
+        if (!isValidVersion(name)) {
+            return null;
+        }
+        File directory = versionDirectory(name);
+        Properties index = new Properties();
+        try (InputStream in = new FileInputStream(new File(directory, INDEX_FILE))) {
+            index.load(in);
+        } catch (IOException e) {
+            return null;
+        }
+        Map<String, Asset> assets = new HashMap<>();
+        for (String key : index.stringPropertyNames()) {
+            if (key.endsWith(".url")) {
+                String file = key.substring(0, key.length() - ".url".length());
+                String url = index.getProperty(key);
+                assets.put(url, new Asset(url, index.getProperty(file + ".mime"),
+                        index.getProperty(file + ".encoding"), new File(directory, file)));
+            }
+        }
+        return new Version(name, Collections.unmodifiableMap(assets));
+    }
+
+    private void writeState() {
+        Properties state = new Properties();
+        if (active != null) {
+            state.setProperty("active", active.name);
+        }
+        if (pending != null) {
+            state.setProperty("pending", pending.name);
+        }
+        File tmp = new File(root, STATE_FILE + ".tmp");
+        try (OutputStream out = new FileOutputStream(tmp)) {
+            state.store(out, null);
+        } catch (IOException e) {
+            tmp.delete();
+            return;
+        }
+        File target = new File(root, STATE_FILE);
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+        }
+    }
+
+    private void prune() {
+        File[] versions = new File(root, VERSIONS_DIR).listFiles();
+        if (versions == null) {
+            return;
+        }
+        for (File version : versions) {
+            String name = version.getName();
+            if ((active == null || !name.equals(active.name)) && (pending == null || !name.equals(pending.name))) {
+                deleteRecursively(version);
+            }
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.codeora;
+
+import java.nio.CharBuffer;
+
+// Wire format of the JS bridge. A batch is a sequence of records terminated by RECORD, each
+// made of FIELD-separated parts. Page -> native records are "channel, id, payload"; native ->
+// page records carry a leading kind (response, error or event). Payloads are JSON text, which
+// never contains the raw separator characters because JSON escapes all control characters.
+public final class BridgeCodec {
+
+    public static final char FIELD = '\u001F';
+    public static final char RECORD = '\u001E';
+
+    public static final char KIND_RESPONSE = 'r';
+    public static final char KIND_ERROR = 'x';
+    public static final char KIND_EVENT = 'e';
+
+    private BridgeCodec() {
+    }
+
+    // A view of one record inside a batch. Decoding reuses a single instance for every record,
+    // so handlers must copy anything they keep beyond the callback.
+    public static final class Message {
+        private String batch;
+        private int channelStart;
+        private int channelEnd;
+        private int idStart;
+        private int idEnd;
+        private int payloadStart;
+        private int payloadEnd;
+
+        public boolean isChannel(String name) {
+            return name.length() == channelEnd - channelStart
+                    && batch.regionMatches(channelStart, name, 0, name.length());
+        }
+
+        public String channel() {
+            return batch.substring(channelStart, channelEnd);
+        }
+
+        public boolean hasId() {
+            return idEnd > idStart;
+        }
+
+        public String id() {
+            return batch.substring(idStart, idEnd);
+        }
+
+        public boolean hasPayload() {
+            return payloadEnd > payloadStart;
+        }
+
+        // Read-only window onto the batch; no characters are copied.
+        public CharSequence payload() {
+            return CharBuffer.wrap(batch, payloadStart, payloadEnd);
+        }
+
+        public String payloadString() {
+            return batch.substring(payloadStart, payloadEnd);
+        }
+    }
+
+    public interface Sink {
+        void onMessage(Message message);
+    }
+
+    // Returns the number of well-formed records delivered to the sink; malformed ones are skipped.
+    public static int decode(String batch, Message message, Sink sink) {
+        int count = 0;
+        int start = 0;
+        int length = batch.length();
+        message.batch = batch;
+        while (start < length) {
+            int end = batch.indexOf(RECORD, start);
+            if (end < 0) {
+                end = length;
+            }
+            int firstField = batch.indexOf(FIELD, start);
+            int secondField = firstField < 0 || firstField >= end ? -1 : batch.indexOf(FIELD, firstField + 1);
+            if (firstField > start && secondField >= 0 && secondField < end) {
+                message.channelStart = start;
+                message.channelEnd = firstField;
+                message.idStart = firstField + 1;
+                message.idEnd = secondField;
+                message.payloadStart = secondField + 1;
+                message.payloadEnd = end;
+                sink.onMessage(message);
+                count++;
+            }
+            start = end + 1;
+        }
+        message.batch = null;
+        return count;
+    }
+
+    public static void encode(StringBuilder out, char kind, String channel, String id, CharSequence payload) {
+        if (payload != null) {
+            for (int i = 0, n = payload.length(); i < n; i++) {
+                char c = payload.charAt(i);
+                if (c == FIELD || c == RECORD) {
+                    throw new IllegalArgumentException("Bridge payloads must be JSON text");
+                }
+            }
+        }
+        out.append(kind).append(FIELD)
+                .append(channel).append(FIELD)
+                .append(id == null ? "" : id).append(FIELD);
+        if (payload != null) {
+            out.append(payload);
+        }
+        out.append(RECORD);
+    }
+
+    // Appends value as a double-quoted JavaScript string literal.
+    public static void appendJsString(StringBuilder out, CharSequence value) {
+        out.append('"');
+        for (int i = 0, n = value.length(); i < n; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\u2028':
+                case '\u2029':
+                    appendUnicodeEscape(out, c);
+                    break;
+                default:
+                    if (c < 0x20) {
+                        appendUnicodeEscape(out, c);
+                    } else {
+                        out.append(c);
+                    }
+            }
+        }
+        out.append('"');
+    }
+
+    private static void appendUnicodeEscape(StringBuilder out, char c) {
+        out.append("\\u");
+        for (int shift = 12; shift >= 0; shift -= 4) {
+            out.append(Character.forDigit((c >> shift) & 0xf, 16));
+        }
+    }
+}
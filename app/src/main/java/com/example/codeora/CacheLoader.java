@@ -0,0 +1,248 @@
+package com.example.codeora;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Decides how a request is answered from the WebCache: hashed static assets are served
+// straight from disk, documents are revalidated with ETag/Last-Modified, and a cached
+// document is served stale when the network is unreachable. Responses marked no-store or
+// private are never written to disk.
+public class CacheLoader {
+
+    private static final Pattern STATIC_EXTENSION = Pattern.compile(
+            ".*\\.(js|mjs|css|woff2?|ttf|otf|eot|png|jpe?g|gif|webp|avif|svg|ico)$");
+    // Content-hashed file names such as main.3f9a1c2b.js or index-BxT8q1Zk.css.
+    private static final Pattern HASHED_NAME = Pattern.compile(
+            ".*[.\\-_](?=[0-9A-Za-z_\\-]*[0-9])[0-9A-Za-z_\\-]{8,}\\.[a-z0-9]+$");
+
+    public static class Response {
+        public final int status;
+        public final String reason;
+        public final String mimeType;
+        public final String encoding;
+        public final Map<String, String> headers;
+        public final List<String> cookies;
+        public final InputStream body;
+        public final boolean fromCache;
+
+        Response(int status, String reason, String mimeType, String encoding, Map<String, String> headers,
+                 List<String> cookies, InputStream body, boolean fromCache) {
+            this.status = status;
+            this.reason = reason;
+            this.mimeType = mimeType;
+            this.encoding = encoding;
+            this.headers = headers;
+            this.cookies = cookies;
+            this.body = body;
+            this.fromCache = fromCache;
+        }
+    }
+
+    private final WebCache cache;
+    private final int timeoutMillis;
+
+    public CacheLoader(WebCache cache, int timeoutMillis) {
+        this.cache = cache;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public WebCache getCache() {
+        return cache;
+    }
+
+    // Hashed build output never changes under the same URL, so it never needs revalidation.
+    public static boolean isImmutableAsset(String url) {
+        String path = pathOf(url);
+        if (!STATIC_EXTENSION.matcher(path).matches()) {
+            return false;
+        }
+        return path.contains("/_next/static/") || path.contains("/assets/") || HASHED_NAME.matcher(path).matches();
+    }
+
+    public static boolean isDocument(String url, String accept) {
+        if (accept != null && accept.contains("text/html")) {
+            return true;
+        }
+        String path = pathOf(url);
+        return path.isEmpty() || path.endsWith("/") || path.endsWith(".html");
+    }
+
+    // Null when the origin redirects: the WebView has to follow it itself, so the document gets
+    // its real URL and the redirect's cookies.
+    public Response load(String url, Map<String, String> requestHeaders, boolean revalidate) throws IOException {
+        if (!revalidate) {
+            WebCache.Entry entry = cache.get(url);
+            if (entry != null) {
+                return fromEntry(entry);
+            }
+            return fetch(url, requestHeaders, null, false);
+        }
+
+        WebCache.Entry entry = cache.peek(url);
+        try {
+            return fetch(url, requestHeaders, entry, true);
+        } catch (IOException e) {
+            if (entry == null) {
+                throw e;
+            }
+            // Offline: the last good copy beats an error page.
+            cache.markRevalidated(entry);
+            return fromEntry(entry);
+        }
+    }
+
+    private Response fetch(String url, Map<String, String> requestHeaders, WebCache.Entry entry,
+                           boolean countMiss) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        connection.setInstanceFollowRedirects(false);
+        if (requestHeaders != null) {
+            for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+                connection.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        if (entry != null) {
+            if (entry.etag != null) {
+                connection.setRequestProperty("If-None-Match", entry.etag);
+            }
+            if (entry.lastModified != null) {
+                connection.setRequestProperty("If-Modified-Since", entry.lastModified);
+            }
+        }
+
+        int status = connection.getResponseCode();
+        List<String> cookies = cookiesOf(connection);
+        if (status == HttpURLConnection.HTTP_NOT_MODIFIED && entry != null) {
+            connection.disconnect();
+            cache.markRevalidated(entry);
+            Response cached = fromEntry(entry);
+            return new Response(cached.status, cached.reason, cached.mimeType, cached.encoding,
+                    cached.headers, cookies, cached.body, true);
+        }
+        if (countMiss) {
+            cache.markMiss();
+        }
+        if (status >= 300 && status < 400) {
+            connection.disconnect();
+            if (entry != null) {
+                // e.g. signed out and sent to /login; the old page is not this URL any more.
+                cache.remove(url);
+            }
+            return null;
+        }
+
+        String contentType = connection.getContentType();
+        String mimeType = mimeTypeOf(contentType);
+        String encoding = charsetOf(contentType);
+        String reason = connection.getResponseMessage();
+        InputStream body = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (body == null) {
+            body = new ByteArrayInputStream(new byte[0]);
+        }
+
+        String cacheControl = connection.getHeaderField("Cache-Control");
+        String allowOrigin = connection.getHeaderField("Access-Control-Allow-Origin");
+        boolean storable = status == HttpURLConnection.HTTP_OK && isShareable(cacheControl);
+        if (storable) {
+            body = cache.store(url, mimeType, encoding, connection.getHeaderField("ETag"),
+                    connection.getHeaderField("Last-Modified"), allowOrigin, 0, body);
+        } else if (entry != null) {
+            // The server no longer has what we cached, or no longer lets it be kept; do not
+            // serve it offline later.
+            cache.remove(url);
+        }
+
+        Map<String, String> headers = new HashMap<>();
+        if (allowOrigin != null) {
+            headers.put("Access-Control-Allow-Origin", allowOrigin);
+        }
+        if (cacheControl != null) {
+            headers.put("Cache-Control", cacheControl);
+        }
+        return new Response(status, reason == null || reason.isEmpty() ? "OK" : reason, mimeType, encoding,
+                headers, cookies, body, false);
+    }
+
+    private Response fromEntry(WebCache.Entry entry) throws IOException {
+        // Only what the origin allowed; documents fetched with the user's cookies usually say nothing.
+        Map<String, String> headers = new HashMap<>();
+        if (entry.allowOrigin != null) {
+            headers.put("Access-Control-Allow-Origin", entry.allowOrigin);
+        }
+        return new Response(HttpURLConnection.HTTP_OK, "OK", entry.mimeType, entry.encoding, headers,
+                Collections.<String>emptyList(), entry.open(), true);
+    }
+
+    // no-store must not be written anywhere, and private is one user's page, e.g. a chat document
+    // rendered with their cookies, which a cache on disk could later show to someone else.
+    static boolean isShareable(String cacheControl) {
+        if (cacheControl == null) {
+            return true;
+        }
+        for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+            String name = directive.trim();
+            if (name.equals("no-store") || name.equals("private") || name.startsWith("private=")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static List<String> cookiesOf(HttpURLConnection connection) {
+        List<String> cookies = connection.getHeaderFields().get("Set-Cookie");
+        return cookies == null ? Collections.<String>emptyList() : new ArrayList<>(cookies);
+    }
+
+    static String mimeTypeOf(String contentType) {
+        if (contentType == null) {
+            return "application/octet-stream";
+        }
+        int semicolon = contentType.indexOf(';');
+        return (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim();
+    }
+
+    static String charsetOf(String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int index = contentType.toLowerCase(Locale.US).indexOf("charset=");
+        if (index < 0) {
+            return null;
+        }
+        String charset = contentType.substring(index + "charset=".length());
+        int semicolon = charset.indexOf(';');
+        if (semicolon >= 0) {
+            charset = charset.substring(0, semicolon);
+        }
+        return charset.replace("\"", "").trim();
+    }
+
+    private static String pathOf(String url) {
+        int scheme = url.indexOf("://");
+        int start = url.indexOf('/', scheme < 0 ? 0 : scheme + 3);
+        if (start < 0) {
+            return "";
+        }
+        int end = url.length();
+        int query = url.indexOf('?', start);
+        int fragment = url.indexOf('#', start);
+        if (query >= 0) {
+            end = query;
+        }
+        if (fragment >= 0 && fragment < end) {
+            end = fragment;
+        }
+        return url.substring(start, end).toLowerCase(Locale.US);
+    }
+}
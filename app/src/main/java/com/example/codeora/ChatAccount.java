@@ -0,0 +1,33 @@
+package com.example.codeora;
+
+import android.content.SharedPreferences;
+
+// Notices when the chat's cookies change, i.e. a sign-out, a sign-in or another account, so a
+// cache filled with one account's responses can be emptied before the next one is served. Only
+// a hash of the cookie is kept, persisted so the check also spans process restarts.
+public class ChatAccount {
+
+    private final SharedPreferences prefs;
+    private final String key;
+    private String account;
+
+    public ChatAccount(SharedPreferences prefs, String key) {
+        this.prefs = prefs;
+        this.key = key;
+    }
+
+    // True when cookie (null when signed out) differs from the last one seen in any process.
+    public synchronized boolean changed(String cookie) {
+        String current = cookie == null ? "" : WebCache.keyFor(cookie);
+        if (current.equals(account)) {
+            return false;
+        }
+        String previous = account != null ? account : prefs.getString(key, null);
+        account = current;
+        if (current.equals(previous)) {
+            return false;
+        }
+        prefs.edit().putString(key, current).apply();
+        return true;
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.codeora;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// A chat message as stored natively. Fields the store does not index are kept verbatim in
+// extra so the web app gets back exactly what it wrote.
+public class ChatMessage {
+
+    public final String conversationId;
+    public final String messageId;
+    public final long timestamp;
+    public final String sender;
+    public final String body;
+    public final String extra;
+
+    public ChatMessage(String conversationId, String messageId, long timestamp, String sender, String body, String extra) {
+        this.conversationId = conversationId;
+        this.messageId = messageId;
+        this.timestamp = timestamp;
+        this.sender = sender;
+        this.body = body;
+        this.extra = extra;
+    }
+
+    public static ChatMessage fromJson(JSONObject json) throws JSONException {
+        JSONObject extra = json.optJSONObject("extra");
+        return new ChatMessage(
+                json.getString("conversationId"),
+                json.getString("id"),
+                json.getLong("timestamp"),
+                json.optString("sender", null),
+                json.optString("body", ""),
+                extra == null ? null : extra.toString());
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("conversationId", conversationId);
+        json.put("id", messageId);
+        json.put("timestamp", timestamp);
+        if (sender != null) {
+            json.put("sender", sender);
+        }
+        json.put("body", body);
+        if (extra != null) {
+            json.put("extra", new JSONObject(extra));
+        }
+        return json;
+    }
+}
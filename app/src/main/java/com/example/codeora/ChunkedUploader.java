@@ -0,0 +1,418 @@
+package com.example.codeora;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Streams a file to the upload endpoint in fixed-size chunks so memory stays at
+// parallelism x chunkSize however large the file is. The protocol is resumable:
+//   POST <endpoint>                      {name, mimeType, size, chunkSize} -> {uploadId}
+//   GET  <endpoint>/<id>                 -> {received: [chunk indexes]}, 404 once expired
+//   PUT  <endpoint>/<id>/chunks/<index>  raw bytes with Content-Range
+//   POST <endpoint>/<id>/complete        {chunks, size} -> the server's final response
+// Session ids are kept in a SessionStore so an interrupted upload only sends missing chunks.
+public class ChunkedUploader {
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+    public static final int DEFAULT_PARALLELISM = 3;
+
+    public interface Source {
+        // -1 when the provider cannot tell, e.g. for a pipe.
+        long size();
+
+        boolean isSeekable();
+
+        // Fills dst starting at position. Sources that are not seekable are only ever read in
+        // order, with each position following the previous read.
+        int read(ByteBuffer dst, long position) throws IOException;
+    }
+
+    public interface SessionStore {
+        String get(String key);
+
+        void put(String key, String uploadId);
+
+        void remove(String key);
+    }
+
+    public interface Listener {
+        // Called from upload threads after each chunk; total is -1 while the size is unknown.
+        void onProgress(long uploaded, long total);
+    }
+
+    public interface CancellationSignal {
+        boolean isCancelled();
+    }
+
+    public static class Result {
+        public final String uploadId;
+        public final String response;
+        public final long bytes;
+        public final int chunks;
+        public final int resumedChunks;
+        public final long elapsedMillis;
+
+        Result(String uploadId, String response, long bytes, int chunks, int resumedChunks, long elapsedMillis) {
+            this.uploadId = uploadId;
+            this.response = response;
+            this.bytes = bytes;
+            this.chunks = chunks;
+            this.resumedChunks = resumedChunks;
+            this.elapsedMillis = elapsedMillis;
+        }
+    }
+
+    private final String endpoint;
+    private final int chunkSize;
+    private final int parallelism;
+    private final int timeoutMillis;
+    private final RetryPolicy retryPolicy;
+    private final SessionStore sessions;
+    private final ExecutorService workers;
+
+    public ChunkedUploader(String endpoint, int chunkSize, int parallelism, int timeoutMillis,
+                           RetryPolicy retryPolicy, SessionStore sessions, ExecutorService workers) {
+        this.endpoint = endpoint;
+        this.chunkSize = chunkSize;
+        this.parallelism = parallelism;
+        this.timeoutMillis = timeoutMillis;
+        this.retryPolicy = retryPolicy;
+        this.sessions = sessions;
+        this.workers = workers;
+    }
+
+    public static Source fileSource(FileChannel channel, long size) {
+        boolean seekable = size >= 0;
+        return new Source() {
+            @Override
+            public long size() {
+                return size;
+            }
+
+            @Override
+            public boolean isSeekable() {
+                return seekable;
+            }
+
+            @Override
+            public int read(ByteBuffer dst, long position) throws IOException {
+                return seekable ? channel.read(dst, position) : channel.read(dst);
+            }
+        };
+    }
+
+    // Blocks until the upload completes; chunk transfers run on the worker pool.
+    public Result upload(Source source, String key, String name, String mimeType, String cookie,
+                         Listener listener, CancellationSignal cancellation) throws IOException {
+        long startedAt = System.currentTimeMillis();
+        String uploadId = sessions.get(key);
+        Set<Integer> received = uploadId != null ? fetchReceived(uploadId, cookie) : null;
+        if (received == null) {
+            uploadId = createSession(name, mimeType, source.size(), cookie);
+            sessions.put(key, uploadId);
+            received = Collections.emptySet();
+        }
+
+        Transfer transfer = new Transfer(source, uploadId, received, cookie, listener, cancellation);
+        List<Future<Void>> futures = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            futures.add(workers.submit(transfer::run));
+        }
+        IOException failure = null;
+        for (Future<Void> future : futures) {
+            try {
+                future.get();
+            } catch (ExecutionException e) {
+                transfer.failed = true;
+                if (failure == null) {
+                    failure = e.getCause() instanceof IOException
+                            ? (IOException) e.getCause() : new IOException(e.getCause());
+                }
+            } catch (InterruptedException e) {
+                transfer.failed = true;
+                Thread.currentThread().interrupt();
+                failure = new InterruptedIOException("Upload interrupted");
+            }
+        }
+        if (failure != null) {
+            // The session stays in the store so the next attempt resumes.
+            throw failure;
+        }
+        if (cancellation.isCancelled()) {
+            throw new InterruptedIOException("Upload cancelled");
+        }
+
+        String response = complete(uploadId, transfer.chunkCount, transfer.totalBytes, cookie);
+        sessions.remove(key);
+        return new Result(uploadId, response, transfer.totalBytes, transfer.chunkCount,
+                transfer.resumedChunks, System.currentTimeMillis() - startedAt);
+    }
+
+    // Hands out chunk indexes in order; reading happens under the lock so sequential sources
+    // are consumed in order, while the network transfers overlap.
+    private final class Transfer {
+        final Source source;
+        final String uploadId;
+        final Set<Integer> received;
+        final String cookie;
+        final Listener listener;
+        final CancellationSignal cancellation;
+        final long knownSize;
+        final AtomicLong uploaded = new AtomicLong();
+        final Object readLock = new Object();
+        int nextIndex = 0;
+        long readPosition = 0;
+        boolean exhausted = false;
+        int chunkCount;
+        long totalBytes;
+        int resumedChunks;
+        volatile boolean failed = false;
+
+        Transfer(Source source, String uploadId, Set<Integer> received, String cookie, Listener listener,
+                 CancellationSignal cancellation) {
+            this.source = source;
+            this.uploadId = uploadId;
+            this.received = received;
+            this.cookie = cookie;
+            this.listener = listener;
+            this.cancellation = cancellation;
+            this.knownSize = source.size();
+            if (knownSize >= 0) {
+                chunkCount = (int) ((knownSize + chunkSize - 1) / chunkSize);
+                totalBytes = knownSize;
+            }
+        }
+
+        Void run() throws IOException {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(chunkSize);
+            while (!failed && !cancellation.isCancelled()) {
+                int index;
+                long offset;
+                boolean alreadyReceived;
+                synchronized (readLock) {
+                    if (exhausted) {
+                        return null;
+                    }
+                    index = nextIndex++;
+                    offset = (long) index * chunkSize;
+                    alreadyReceived = received.contains(index);
+                    if (knownSize >= 0 && index >= chunkCount) {
+                        exhausted = true;
+                        return null;
+                    }
+                    if (alreadyReceived && source.isSeekable() && knownSize >= 0) {
+                        // Nothing to read; the limit only carries the length for progress.
+                        buffer.clear();
+                        buffer.limit((int) Math.min(chunkSize, knownSize - offset));
+                    } else {
+                        fill(buffer, offset);
+                    }
+                    if (knownSize < 0 && buffer.limit() < chunkSize) {
+                        // A short read marks the end of a source of unknown size.
+                        exhausted = true;
+                        chunkCount = buffer.limit() > 0 ? index + 1 : index;
+                        totalBytes = offset + buffer.limit();
+                        if (buffer.limit() == 0) {
+                            return null;
+                        }
+                    }
+                    if (alreadyReceived) {
+                        resumedChunks++;
+                    }
+                }
+                if (!alreadyReceived) {
+                    long total;
+                    synchronized (readLock) {
+                        total = exhausted ? totalBytes : knownSize;
+                    }
+                    putChunk(uploadId, index, offset, buffer, total, cookie);
+                }
+                long done = uploaded.addAndGet(buffer.limit());
+                if (listener != null) {
+                    listener.onProgress(done, knownSize);
+                }
+            }
+            return null;
+        }
+
+        private void fill(ByteBuffer buffer, long offset) throws IOException {
+            buffer.clear();
+            long position = source.isSeekable() ? offset : readPosition;
+            while (buffer.hasRemaining()) {
+                int n = source.read(buffer, position + buffer.position());
+                if (n < 0) {
+                    break;
+                }
+            }
+            buffer.flip();
+            readPosition = position + buffer.limit();
+        }
+    }
+
+    private void putChunk(String uploadId, int index, long offset, ByteBuffer chunk, long total, String cookie)
+            throws IOException {
+        int length = chunk.limit();
+        String range = "bytes " + offset + "-" + (offset + length - 1) + "/" + (total >= 0 ? total : "*");
+        for (int attempt = 1; ; attempt++) {
+            int status;
+            try {
+                HttpURLConnection connection = open(endpoint + "/" + uploadId + "/chunks/" + index, "PUT", cookie);
+                try {
+                    connection.setDoOutput(true);
+                    connection.setFixedLengthStreamingMode(length);
+                    connection.setRequestProperty("Content-Type", "application/octet-stream");
+                    connection.setRequestProperty("Content-Range", range);
+                    ByteBuffer view = chunk.duplicate();
+                    view.position(0).limit(length);
+                    try (OutputStream out = connection.getOutputStream()) {
+                        WritableByteChannel channel = Channels.newChannel(out);
+                        while (view.hasRemaining()) {
+                            channel.write(view);
+                        }
+                    }
+                    status = connection.getResponseCode();
+                } finally {
+                    connection.disconnect();
+                }
+            } catch (IOException e) {
+                if (attempt >= retryPolicy.getMaxAttempts()) {
+                    throw e;
+                }
+                sleep(retryPolicy.delayFor(attempt));
+                continue;
+            }
+            if (status / 100 == 2) {
+                return;
+            }
+            if (!RetryPolicy.isTransientStatus(status) || attempt >= retryPolicy.getMaxAttempts()) {
+                throw new IOException("Chunk " + index + " failed with HTTP " + status);
+            }
+            sleep(retryPolicy.delayFor(attempt));
+        }
+    }
+
+    private String createSession(String name, String mimeType, long size, String cookie) throws IOException {
+        try {
+            JSONObject request = new JSONObject();
+            request.put("name", name);
+            request.put("mimeType", mimeType);
+            request.put("size", size >= 0 ? size : JSONObject.NULL);
+            request.put("chunkSize", chunkSize);
+            String response = postJson(endpoint, request.toString(), cookie);
+            return new JSONObject(response).getString("uploadId");
+        } catch (JSONException e) {
+            throw new IOException("Malformed upload session response", e);
+        }
+    }
+
+    // Returns null when the server no longer knows the session and a new one is needed.
+    private Set<Integer> fetchReceived(String uploadId, String cookie) throws IOException {
+        HttpURLConnection connection = open(endpoint + "/" + uploadId, "GET", cookie);
+        try {
+            int status = connection.getResponseCode();
+            if (status == HttpURLConnection.HTTP_NOT_FOUND || status == HttpURLConnection.HTTP_GONE) {
+                return null;
+            }
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Upload status failed with HTTP " + status);
+            }
+            JSONArray array = new JSONObject(readFully(connection.getInputStream())).optJSONArray("received");
+            Set<Integer> received = new HashSet<>();
+            if (array != null) {
+                for (int i = 0; i < array.length(); i++) {
+                    received.add((int) array.getLong(i));
+                }
+            }
+            return received;
+        } catch (JSONException e) {
+            throw new IOException("Malformed upload status response", e);
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private String complete(String uploadId, int chunks, long size, String cookie) throws IOException {
+        try {
+            JSONObject request = new JSONObject();
+            request.put("chunks", chunks);
+            request.put("size", size);
+            return postJson(endpoint + "/" + uploadId + "/complete", request.toString(), cookie);
+        } catch (JSONException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private String postJson(String url, String json, String cookie) throws IOException {
+        byte[] body = json.getBytes(StandardCharsets.UTF_8);
+        HttpURLConnection connection = open(url, "POST", cookie);
+        try {
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            if (status / 100 != 2) {
+                throw new IOException("POST " + url + " failed with HTTP " + status);
+            }
+            return readFully(connection.getInputStream());
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private HttpURLConnection open(String url, String method, String cookie) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setRequestMethod(method);
+        connection.setConnectTimeout(timeoutMillis);
+        connection.setReadTimeout(timeoutMillis);
+        if (cookie != null) {
+            connection.setRequestProperty("Cookie", cookie);
+        }
+        return connection;
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Upload interrupted");
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        try (InputStream input = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int n;
+            while ((n = input.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import android.net.NetworkInfo;
+import android.net.NetworkRequest;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+// App-wide view of the default network, kept current by a ConnectivityManager.NetworkCallback.
+// Listeners are called on the main thread with the current state when they subscribe and
+// again whenever the network changes: connected, type or metered. Bandwidth estimates move with
+// every capabilities callback, so they only refresh what getState() returns.
+public class ConnectivityMonitor {
+
+    private static final String TAG = "ConnectivityMonitor";
+
+    public enum Type { NONE, WIFI, CELLULAR, ETHERNET, OTHER }
+
+    public static class NetworkState {
+        public static final NetworkState DISCONNECTED = new NetworkState(false, Type.NONE, false, 0, 0);
+
+        public final boolean connected;
+        public final Type type;
+        public final boolean metered;
+        public final int downstreamKbps;
+        public final int upstreamKbps;
+
+        NetworkState(boolean connected, Type type, boolean metered, int downstreamKbps, int upstreamKbps) {
+            this.connected = connected;
+            this.type = type;
+            this.metered = metered;
+            this.downstreamKbps = downstreamKbps;
+            this.upstreamKbps = upstreamKbps;
+        }
+
+        // The same network as far as listeners care; the bandwidth estimates are left out.
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof NetworkState)) {
+                return false;
+            }
+            NetworkState other = (NetworkState) o;
+            return connected == other.connected && type == other.type && metered == other.metered;
+        }
+
+        @Override
+        public int hashCode() {
+            int result = connected ? 1 : 0;
+            result = 31 * result + type.hashCode();
+            return 31 * result + (metered ? 1 : 0);
+        }
+
+        boolean sameBandwidth(NetworkState other) {
+            return downstreamKbps == other.downstreamKbps && upstreamKbps == other.upstreamKbps;
+        }
+
+        @Override
+        public String toString() {
+            return connected ? type + (metered ? " metered" : "") + " down=" + downstreamKbps
+                    + "kbps up=" + upstreamKbps + "kbps" : "DISCONNECTED";
+        }
+    }
+
+    public interface Listener {
+        void onNetworkStateChanged(NetworkState state);
+    }
+
+    private static ConnectivityMonitor instance;
+
+    private final ConnectivityManager connectivityManager;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private volatile NetworkState state;
+
+    public static synchronized ConnectivityMonitor get(Context context) {
+        if (instance == null) {
+            instance = new ConnectivityMonitor(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ConnectivityMonitor(Context context) {
+        connectivityManager = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        state = initialState();
+        if (connectivityManager == null) {
+            return;
+        }
+        ConnectivityManager.NetworkCallback callback = new DefaultNetworkCallback();
+        try {
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+                connectivityManager.registerDefaultNetworkCallback(callback);
+            } else {
+                NetworkRequest request = new NetworkRequest.Builder()
+                        .addCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)
+                        .build();
+                connectivityManager.registerNetworkCallback(request, callback);
+            }
+        } catch (RuntimeException e) {
+            // Thrown when the per-app callback limit is hit; fall back to the one-shot state.
+            Log.e(TAG, "Could not register network callback", e);
+        }
+    }
+
+    public NetworkState getState() {
+        return state;
+    }
+
+    public boolean isConnected() {
+        return state.connected;
+    }
+
+    public void addListener(Listener listener) {
+        listeners.add(listener);
+        NetworkState current = state;
+        mainHandler.post(() -> {
+            if (listeners.contains(listener)) {
+                listener.onNetworkStateChanged(current);
+            }
+        });
+    }
+
+    public void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    private void update(NetworkState newState) {
+        if (newState.equals(state)) {
+            if (!newState.sameBandwidth(state)) {
+                state = newState;
+            }
+            return;
+        }
+        state = newState;
+        Log.d(TAG, "Network state: " + newState);
+        mainHandler.post(() -> {
+            for (Listener listener : listeners) {
+                listener.onNetworkStateChanged(newState);
+            }
+        });
+    }
+
+    private NetworkState initialState() {
+        if (connectivityManager == null) {
+            return NetworkState.DISCONNECTED;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            Network network = connectivityManager.getActiveNetwork();
+            if (network == null) {
+                return NetworkState.DISCONNECTED;
+            }
+            return stateOf(connectivityManager.getNetworkCapabilities(network));
+        }
+        NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
+        if (activeNetworkInfo == null || !activeNetworkInfo.isConnected()) {
+            return NetworkState.DISCONNECTED;
+        }
+        Type type = activeNetworkInfo.getType() == ConnectivityManager.TYPE_WIFI ? Type.WIFI
+                : activeNetworkInfo.getType() == ConnectivityManager.TYPE_MOBILE ? Type.CELLULAR : Type.OTHER;
+        return new NetworkState(true, type, connectivityManager.isActiveNetworkMetered(), 0, 0);
+    }
+
+    private static NetworkState stateOf(NetworkCapabilities capabilities) {
+        if (capabilities == null || !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_INTERNET)) {
+            return NetworkState.DISCONNECTED;
+        }
+        Type type;
+        if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_WIFI)) {
+            type = Type.WIFI;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR)) {
+            type = Type.CELLULAR;
+        } else if (capabilities.hasTransport(NetworkCapabilities.TRANSPORT_ETHERNET)) {
+            type = Type.ETHERNET;
+        } else {
+            type = Type.OTHER;
+        }
+        boolean metered = !capabilities.hasCapability(NetworkCapabilities.NET_CAPABILITY_NOT_METERED);
+        return new NetworkState(true, type, metered, capabilities.getLinkDownstreamBandwidthKbps(),
+                capabilities.getLinkUpstreamBandwidthKbps());
+    }
+
+    private class DefaultNetworkCallback extends ConnectivityManager.NetworkCallback {
+        @Override
+        public void onAvailable(@NonNull Network network) {
+            update(stateOf(connectivityManager.getNetworkCapabilities(network)));
+        }
+
+        @Override
+        public void onCapabilitiesChanged(@NonNull Network network, @NonNull NetworkCapabilities capabilities) {
+            update(stateOf(capabilities));
+        }
+
+        @Override
+        public void onLost(@NonNull Network network) {
+            // Before N this callback covers every network, so ask what is left rather than
+            // assuming the lost one was the default.
+            update(initialState());
+        }
+    }
+}
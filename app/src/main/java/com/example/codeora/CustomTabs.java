@@ -0,0 +1,227 @@
+package com.example.codeora;
+
+import android.app.Activity;
+import android.content.ActivityNotFoundException;
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.Bundle;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.browser.customtabs.CustomTabsCallback;
+import androidx.browser.customtabs.CustomTabsClient;
+import androidx.browser.customtabs.CustomTabsIntent;
+import androidx.browser.customtabs.CustomTabsService;
+import androidx.browser.customtabs.CustomTabsServiceConnection;
+import androidx.browser.customtabs.CustomTabsSession;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Opens web links that leave the chat in a Custom Tab, so the chat WebView keeps its page and
+// the user comes back to it with one back press. Once the chat is up, bind() connects to the
+// browser's Custom Tabs service and warms it up; the page then reports the links on screen
+// over the "links" channel (assets/links.js) and the LinkPredictor's best guesses are passed
+// to mayLaunchUrl. Open latency, up to the tab's first navigation event and until its page has
+// loaded, is kept separately for tabs opened cold, warmed, and on a predicted link, and can be
+// read with NativeBridge.request('links', {op: 'stats'}). Falls back to a plain VIEW intent
+// when no browser supports Custom Tabs.
+public class CustomTabs implements NativeBridge.ChannelHandler {
+
+    public static final String CHANNEL = "links";
+    private static final String TAG = "CustomTabs";
+    private static final int MAX_OTHER_LIKELY = 3;
+
+    private static CustomTabs instance;
+
+    private final LinkPredictor predictor = new LinkPredictor(MAX_OTHER_LIKELY);
+    private final Map<String, FrameStats> latency = new LinkedHashMap<>();
+    private CustomTabsSession session;
+    private boolean binding;
+    private boolean warmedUp;
+    // The tab being opened: its mode and when open() was called.
+    private String openingMode;
+    private long openingSince;
+    private boolean openingStarted;
+    private long mayLaunchCalls;
+
+    public static synchronized CustomTabs get() {
+        if (instance == null) {
+            instance = new CustomTabs();
+        }
+        return instance;
+    }
+
+    // Connects to the default browser's Custom Tabs service, if it has one, and warms it up.
+    public synchronized void bind(Context context) {
+        if (session != null || binding) {
+            return;
+        }
+        Context app = context.getApplicationContext();
+        String browser = CustomTabsClient.getPackageName(app, null);
+        if (browser == null) {
+            Log.d(TAG, "No browser with Custom Tabs support");
+            return;
+        }
+        binding = CustomTabsClient.bindCustomTabsService(app, browser, new CustomTabsServiceConnection() {
+            @Override
+            public void onCustomTabsServiceConnected(ComponentName name, CustomTabsClient client) {
+                boolean warmed = client.warmup(0);
+                CustomTabsSession newSession = client.newSession(new TabCallback());
+                synchronized (CustomTabs.this) {
+                    binding = false;
+                    warmedUp = warmed;
+                    session = newSession;
+                }
+                Log.d(TAG, "Connected to " + name.getPackageName() + ", warmed up: " + warmed);
+            }
+
+            @Override
+            public void onServiceDisconnected(ComponentName name) {
+                synchronized (CustomTabs.this) {
+                    binding = false;
+                    warmedUp = false;
+                    session = null;
+                }
+            }
+        });
+    }
+
+    // Returns how long the launch took in milliseconds, or -1 when nothing could open the link.
+    public long open(Activity activity, Uri uri) {
+        long startedAt = SystemClock.elapsedRealtime();
+        CustomTabsSession current;
+        synchronized (this) {
+            current = session;
+            openingMode = current == null || !warmedUp ? "cold"
+                    : predictor.wasPredicted(uri.toString()) ? "predicted" : "warm";
+            openingSince = startedAt;
+            openingStarted = false;
+        }
+        predictor.onOpened(uri.toString());
+        try {
+            CustomTabsIntent.Builder builder = current != null
+                    ? new CustomTabsIntent.Builder(current) : new CustomTabsIntent.Builder();
+            builder.setShowTitle(true).build().launchUrl(activity, uri);
+        } catch (ActivityNotFoundException e) {
+            synchronized (this) {
+                openingMode = null;
+            }
+            try {
+                activity.startActivity(new Intent(Intent.ACTION_VIEW, uri).addCategory(Intent.CATEGORY_BROWSABLE));
+            } catch (ActivityNotFoundException e2) {
+                Log.w(TAG, "Nothing can open " + uri);
+                return -1;
+            }
+        }
+        return SystemClock.elapsedRealtime() - startedAt;
+    }
+
+    // visible: {links: [{url, ratio, dwellMs, position, touched}]}  -> {}
+    // stats:   {}  -> {connected, warmedUp, mayLaunchCalls, latency: {cold_started: {...}, ...}}
+    @Override
+    public void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        try {
+            JSONObject request = new JSONObject(message.payloadString());
+            String op = request.getString("op");
+            if ("visible".equals(op)) {
+                JSONArray links = request.getJSONArray("links");
+                List<LinkPredictor.Candidate> candidates = new ArrayList<>(links.length());
+                for (int i = 0; i < links.length(); i++) {
+                    JSONObject link = links.getJSONObject(i);
+                    candidates.add(new LinkPredictor.Candidate(link.getString("url"), link.optDouble("ratio", 0),
+                            link.optLong("dwellMs"), link.optDouble("position", 0), link.optBoolean("touched")));
+                }
+                prepare(predictor.update(candidates));
+                reply.success("{}");
+            } else if ("stats".equals(op)) {
+                reply.success(stats().toString());
+            } else {
+                reply.error("Unknown links op " + op);
+            }
+        } catch (JSONException e) {
+            reply.error(String.valueOf(e.getMessage()));
+        }
+    }
+
+    public synchronized JSONObject stats() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("connected", session != null);
+        json.put("warmedUp", warmedUp);
+        json.put("mayLaunchCalls", mayLaunchCalls);
+        JSONObject modes = new JSONObject();
+        for (Map.Entry<String, FrameStats> entry : latency.entrySet()) {
+            modes.put(entry.getKey(), entry.getValue().toJson());
+        }
+        json.put("latency", modes);
+        return json;
+    }
+
+    private void prepare(LinkPredictor.Prediction prediction) {
+        CustomTabsSession current;
+        synchronized (this) {
+            current = session;
+        }
+        if (prediction == null || current == null) {
+            return;
+        }
+        // Nothing but web pages reaches the browser's preloader.
+        if (!LinkPredictor.isWeb(prediction.likely)) {
+            return;
+        }
+        List<Bundle> others = new ArrayList<>(prediction.others.size());
+        for (String url : prediction.others) {
+            if (!LinkPredictor.isWeb(url)) {
+                continue;
+            }
+            Bundle bundle = new Bundle();
+            bundle.putParcelable(CustomTabsService.KEY_URL, Uri.parse(url));
+            others.add(bundle);
+        }
+        if (current.mayLaunchUrl(Uri.parse(prediction.likely), null, others)) {
+            synchronized (this) {
+                mayLaunchCalls++;
+            }
+        }
+    }
+
+    private synchronized void record(String phase) {
+        if (openingMode == null) {
+            return;
+        }
+        String key = openingMode + "_" + phase;
+        FrameStats stats = latency.get(key);
+        if (stats == null) {
+            stats = new FrameStats(0);
+            latency.put(key, stats);
+        }
+        long millis = SystemClock.elapsedRealtime() - openingSince;
+        stats.record(millis);
+        Log.d(TAG, "Custom Tab " + key + " after " + millis + " ms");
+    }
+
+    private class TabCallback extends CustomTabsCallback {
+        @Override
+        public void onNavigationEvent(int navigationEvent, Bundle extras) {
+            synchronized (CustomTabs.this) {
+                if (navigationEvent == NAVIGATION_STARTED && !openingStarted) {
+                    openingStarted = true;
+                    record("started");
+                } else if (navigationEvent == NAVIGATION_FINISHED || navigationEvent == NAVIGATION_FAILED) {
+                    record(navigationEvent == NAVIGATION_FINISHED ? "finished" : "failed");
+                    openingMode = null;
+                } else if (navigationEvent == TAB_HIDDEN) {
+                    openingMode = null;
+                }
+            }
+        }
+    }
+}
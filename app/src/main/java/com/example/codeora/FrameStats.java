@@ -0,0 +1,112 @@
+package com.example.codeora;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Arrays;
+
+// Distribution of frame (or task) durations in 0.25 ms buckets up to one second, so a long
+// session costs a fixed amount of memory and percentiles come straight from the histogram.
+// Dropped frames are counted against the display's frame interval: a frame that took 2.4
+// intervals hid two vsyncs' worth of updates.
+public class FrameStats {
+
+    private static final double BUCKET_MILLIS = 0.25;
+    private static final int BUCKETS = 4000;
+    // A frame is janky when it misses its deadline by half an interval or more.
+    private static final double JANK_FACTOR = 1.5;
+
+    private final double frameIntervalMillis;
+    private final int[] histogram = new int[BUCKETS + 1];
+    private long count;
+    private long dropped;
+    private long janky;
+    private double totalMillis;
+    private double maxMillis;
+
+    public FrameStats(double frameIntervalMillis) {
+        this.frameIntervalMillis = frameIntervalMillis;
+    }
+
+    public synchronized void record(double millis) {
+        if (millis < 0) {
+            return;
+        }
+        int bucket = (int) Math.min(BUCKETS, millis / BUCKET_MILLIS);
+        histogram[bucket]++;
+        count++;
+        totalMillis += millis;
+        maxMillis = Math.max(maxMillis, millis);
+        if (frameIntervalMillis > 0) {
+            long intervals = Math.round(millis / frameIntervalMillis);
+            dropped += Math.max(0, intervals - 1);
+            if (millis >= frameIntervalMillis * JANK_FACTOR) {
+                janky++;
+            }
+        }
+    }
+
+    public synchronized long count() {
+        return count;
+    }
+
+    public synchronized long dropped() {
+        return dropped;
+    }
+
+    public synchronized long janky() {
+        return janky;
+    }
+
+    public synchronized double max() {
+        return maxMillis;
+    }
+
+    public synchronized double total() {
+        return totalMillis;
+    }
+
+    // Upper edge of the bucket holding the given fraction of samples; 0 when empty.
+    public synchronized double percentile(double fraction) {
+        if (count == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(fraction * count));
+        long seen = 0;
+        for (int i = 0; i <= BUCKETS; i++) {
+            seen += histogram[i];
+            if (seen >= rank) {
+                return i == BUCKETS ? maxMillis : Math.min(maxMillis, (i + 1) * BUCKET_MILLIS);
+            }
+        }
+        return maxMillis;
+    }
+
+    public synchronized void reset() {
+        Arrays.fill(histogram, 0);
+        count = 0;
+        dropped = 0;
+        janky = 0;
+        totalMillis = 0;
+        maxMillis = 0;
+    }
+
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", count);
+        json.put("p50", round(percentile(0.50)));
+        json.put("p95", round(percentile(0.95)));
+        json.put("p99", round(percentile(0.99)));
+        json.put("max", round(maxMillis));
+        json.put("mean", round(count == 0 ? 0 : totalMillis / count));
+        if (frameIntervalMillis > 0) {
+            json.put("dropped", dropped);
+            json.put("janky", janky);
+        }
+        return json;
+    }
+
+    private static double round(double millis) {
+        return Math.round(millis * 100) / 100.0;
+    }
+}
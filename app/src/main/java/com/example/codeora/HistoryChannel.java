@@ -0,0 +1,137 @@
+package com.example.codeora;
+
+import android.os.Debug;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bridge channel "history": serves a conversation's history to the virtualized list in
+// history.js page by page, keeping the next pages loaded ahead of the viewport. Sessions live
+// until the page closes them or a new document starts.
+public class HistoryChannel implements NativeBridge.ChannelHandler, NativeBridge.PageListener,
+        MemoryGovernor.Trimmable {
+
+    public static final String CHANNEL = "history";
+    private static final String TAG = "HistoryChannel";
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int PREFETCH_PAGES = 2;
+    private static final long PAGE_TIMEOUT_MILLIS = 10000;
+
+    // Replies wait here for a page; loads run on their own pool so a waiting reply never
+    // holds up the load it is waiting for.
+    private static final ExecutorService replies = Executors.newCachedThreadPool();
+    private static final ExecutorService loads = Executors.newFixedThreadPool(2);
+
+    private final MessageStore store;
+    private final Map<String, HistoryPager> sessions = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public HistoryChannel(MessageStore store) {
+        this.store = store;
+        MemoryGovernor.register(this);
+    }
+
+    // Prefetched pages are only a head start; they are loaded again when asked for.
+    @Override
+    public void onTrim(TrimPolicy policy) {
+        for (HistoryPager pager : sessions.values()) {
+            pager.dropPrefetched();
+        }
+    }
+
+    // A reload or navigation never closes its sessions, so they all go with the old document.
+    @Override
+    public void onPageStarted() {
+        for (String session : sessions.keySet()) {
+            HistoryPager pager = sessions.remove(session);
+            if (pager != null) {
+                pager.close();
+            }
+        }
+    }
+
+    // open:    {conversationId, pageSize?, before?} -> {session, total}
+    // next:    {session}                            -> {messages, hasMore, waitedMs}  newest first
+    // close:   {session}                            -> {}
+    // metrics: {session?, ...page metrics}          -> {nativePssKb}
+    @Override
+    public void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        String payload = message.payloadString();
+        replies.execute(() -> {
+            try {
+                reply.success(handle(new JSONObject(payload)).toString());
+            } catch (Exception e) {
+                Log.e(TAG, "History request failed", e);
+                reply.error(String.valueOf(e.getMessage()));
+            }
+        });
+    }
+
+    JSONObject handle(JSONObject request) throws Exception {
+        String op = request.getString("op");
+        JSONObject result = new JSONObject();
+        switch (op) {
+            case "open": {
+                String conversationId = request.getString("conversationId");
+                int pageSize = Math.max(1, Math.min(MAX_PAGE_SIZE, request.optInt("pageSize", DEFAULT_PAGE_SIZE)));
+                String session = "h" + nextId.incrementAndGet();
+                HistoryPager pager = new HistoryPager((before, limit) -> {
+                    MessageStore.Page page = store.pageBefore(conversationId, before, limit);
+                    return new HistoryPager.Page(page.messages, page.nextCursor);
+                }, pageSize, PREFETCH_PAGES, loads, request.optString("before", null));
+                sessions.put(session, pager);
+                result.put("session", session);
+                result.put("total", store.countMessages(conversationId));
+                break;
+            }
+            case "next": {
+                HistoryPager pager = pagerOf(request);
+                long startedAt = System.nanoTime();
+                HistoryPager.Page page = pager.next(PAGE_TIMEOUT_MILLIS);
+                List<ChatMessage> messages = page == null ? Collections.<ChatMessage>emptyList() : page.messages;
+                result.put("messages", MessageStoreChannel.toJson(messages));
+                result.put("hasMore", pager.hasMore());
+                result.put("waitedMs", (System.nanoTime() - startedAt) / 1_000_000);
+                break;
+            }
+            case "close": {
+                HistoryPager pager = sessions.remove(request.getString("session"));
+                if (pager != null) {
+                    Log.d(TAG, "History session closed: " + pager.stats());
+                    pager.close();
+                }
+                break;
+            }
+            case "metrics": {
+                Debug.MemoryInfo memory = new Debug.MemoryInfo();
+                Debug.getMemoryInfo(memory);
+                HistoryPager pager = sessions.get(request.optString("session", ""));
+                Log.i(TAG, "History metrics: " + request + " nativePssKb=" + memory.getTotalPss()
+                        + (pager != null ? " pager: " + pager.stats() : ""));
+                result.put("nativePssKb", memory.getTotalPss());
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown history op " + op);
+        }
+        return result;
+    }
+
+    private HistoryPager pagerOf(JSONObject request) throws JSONException {
+        HistoryPager pager = sessions.get(request.getString("session"));
+        if (pager == null) {
+            throw new IllegalArgumentException("Unknown history session");
+        }
+        return pager;
+    }
+}
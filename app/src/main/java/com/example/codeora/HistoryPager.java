@@ -0,0 +1,196 @@
+package com.example.codeora;
+
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeoutException;
+
+// Walks one conversation from newest to oldest in fixed-size pages and keeps a few pages
+// loaded ahead of the reader, so a page the viewport is about to need is usually already in
+// memory when the web app asks for it. Loads for one pager run one at a time in cursor order.
+public class HistoryPager {
+
+    public interface Source {
+        Page load(String before, int limit) throws Exception;
+    }
+
+    public static class Page {
+        public final List<ChatMessage> messages;
+        // Null once the start of the conversation was reached.
+        public final String nextCursor;
+
+        public Page(List<ChatMessage> messages, String nextCursor) {
+            this.messages = messages;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    public static class Stats {
+        public final int pages;
+        // Pages that were already loaded when requested.
+        public final int prefetchHits;
+        public final long totalWaitMillis;
+        public final long maxWaitMillis;
+
+        Stats(int pages, int prefetchHits, long totalWaitMillis, long maxWaitMillis) {
+            this.pages = pages;
+            this.prefetchHits = prefetchHits;
+            this.totalWaitMillis = totalWaitMillis;
+            this.maxWaitMillis = maxWaitMillis;
+        }
+
+        @Override
+        public String toString() {
+            return pages + " pages, " + prefetchHits + " prefetched, waited " + totalWaitMillis
+                    + " ms total, " + maxWaitMillis + " ms max";
+        }
+    }
+
+    private final Source source;
+    private final int pageSize;
+    private final int prefetchPages;
+    private final Executor executor;
+
+    private final ArrayDeque<Page> ready = new ArrayDeque<>();
+    private String cursor;
+    private boolean exhausted;
+    // Position just after the last page handed out.
+    private String readCursor;
+    private boolean readExhausted;
+    private int generation;
+    private boolean loading;
+    private boolean closed;
+    private Exception failure;
+
+    private int pages;
+    private int prefetchHits;
+    private long totalWaitMillis;
+    private long maxWaitMillis;
+
+    public HistoryPager(Source source, int pageSize, int prefetchPages, Executor executor) {
+        this(source, pageSize, prefetchPages, executor, null);
+    }
+
+    // Starts strictly older than the given cursor, e.g. to resume below rows the page kept.
+    public HistoryPager(Source source, int pageSize, int prefetchPages, Executor executor, String before) {
+        this.source = source;
+        this.pageSize = pageSize;
+        this.prefetchPages = prefetchPages;
+        this.executor = executor;
+        this.cursor = before;
+        this.readCursor = before;
+    }
+
+    // Returns the next older page, or null once the conversation is exhausted. Waits for an
+    // in-flight load if nothing is ready yet and tops the prefetch window back up.
+    public Page next(long timeoutMillis) throws Exception {
+        long startedAt = System.nanoTime();
+        long deadline = startedAt + timeoutMillis * 1_000_000;
+        Page page;
+        boolean hit;
+        synchronized (this) {
+            hit = !ready.isEmpty();
+            fill();
+            while (ready.isEmpty() && !exhausted && failure == null && !closed) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    throw new TimeoutException("History page not loaded in " + timeoutMillis + " ms");
+                }
+                wait(Math.max(1, remaining / 1_000_000));
+            }
+            if (ready.isEmpty() && failure != null) {
+                Exception error = failure;
+                failure = null;
+                throw error;
+            }
+            page = ready.poll();
+            if (page != null) {
+                readCursor = page.nextCursor;
+                readExhausted = page.nextCursor == null;
+                long waited = (System.nanoTime() - startedAt) / 1_000_000;
+                pages++;
+                prefetchHits += hit ? 1 : 0;
+                totalWaitMillis += waited;
+                maxWaitMillis = Math.max(maxWaitMillis, waited);
+            }
+            fill();
+        }
+        return page;
+    }
+
+    public synchronized boolean hasMore() {
+        return !ready.isEmpty() || !exhausted;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(pages, prefetchHits, totalWaitMillis, maxWaitMillis);
+    }
+
+    // Drops pages loaded ahead without losing the position; they are loaded again on demand.
+    public synchronized void dropPrefetched() {
+        ready.clear();
+        cursor = readCursor;
+        exhausted = readExhausted;
+        // A load in flight belongs to the dropped window.
+        generation++;
+    }
+
+    public synchronized void close() {
+        closed = true;
+        ready.clear();
+        notifyAll();
+    }
+
+    // Caller holds the lock.
+    private void fill() {
+        if (loading || closed || exhausted || failure != null || ready.size() >= prefetchPages) {
+            return;
+        }
+        loading = true;
+        executor.execute(this::loadAhead);
+    }
+
+    private void loadAhead() {
+        while (true) {
+            String before;
+            int loadGeneration;
+            synchronized (this) {
+                if (closed || exhausted || ready.size() >= prefetchPages) {
+                    loading = false;
+                    return;
+                }
+                before = cursor;
+                loadGeneration = generation;
+            }
+            Page page;
+            try {
+                page = source.load(before, pageSize);
+            } catch (Exception e) {
+                synchronized (this) {
+                    if (loadGeneration != generation && !closed) {
+                        continue;
+                    }
+                    failure = e;
+                    loading = false;
+                    notifyAll();
+                }
+                return;
+            }
+            synchronized (this) {
+                if (closed) {
+                    loading = false;
+                    return;
+                }
+                if (loadGeneration != generation) {
+                    continue;
+                }
+                if (!page.messages.isEmpty()) {
+                    ready.add(page);
+                }
+                cursor = page.nextCursor;
+                exhausted = page.nextCursor == null;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,264 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.webkit.CookieManager;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+// Serves chat avatars and image attachments through the ImagePipeline so the renderer gets
+// WebP already scaled to display size instead of decoding full-size photos on every load.
+// The page can ask for an exact size with
+//   /__native/image?src=<encoded image URL>&w=<CSS px>
+// on the chat origin; any other raster image request is scaled to the screen width. Only
+// images on the chat's own hosts are handled, since they are fetched with that host's cookies;
+// everything else, like hashed build images, is left to the WebView and the other caches.
+// Thumbnails follow the original's Cache-Control, and both caches are emptied when the chat's
+// cookies change, so one account's attachments are never served to the next.
+public class ImageInterceptor implements MemoryGovernor.Trimmable {
+
+    private static final String TAG = "ImageInterceptor";
+    static final String ROUTE = "/__native/image";
+    private static final long MAX_DISK_SIZE = 64L * 1024 * 1024;
+    private static final int TIMEOUT_MILLIS = 15000;
+    private static final int MAX_DIMENSION = 2048;
+    private static final int WEBP_QUALITY = 80;
+    private static final Pattern RASTER = Pattern.compile(".*\\.(jpe?g|png|webp)$");
+    private static final String PREFS_NAME = "images";
+    private static final String KEY_ACCOUNT = "account";
+    private static final long MAX_BROWSER_AGE_SECONDS = 86400;
+
+    private static ImageInterceptor instance;
+
+    private final ImagePipeline pipeline;
+    private final String documentHost;
+    // Hosts whose images are fetched natively; attachments on another host need adding here.
+    private final Set<String> imageHosts;
+    private final float density;
+    private final int defaultDimension;
+    // Whose cookies the cached thumbnails were fetched with; null when not tracked.
+    private ChatAccount account;
+
+    public static synchronized ImageInterceptor get(Context context) {
+        if (instance == null) {
+            Context app = context.getApplicationContext();
+            DisplayMetrics metrics = app.getResources().getDisplayMetrics();
+            // An eighth of the heap the app may use, as the platform suggests for bitmap caches.
+            long memoryBytes = Runtime.getRuntime().maxMemory() / 8;
+            WebCache disk = new WebCache(new File(app.getCacheDir(), "images"), MAX_DISK_SIZE);
+            instance = new ImageInterceptor(new ImagePipeline(disk, memoryBytes, ImageInterceptor::fetch,
+                    new WebpTranscoder()), Uri.parse(MainActivity.CHAT_URL).getHost(), metrics.density,
+                    Math.max(metrics.widthPixels, metrics.heightPixels));
+            instance.account = new ChatAccount(app.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE),
+                    KEY_ACCOUNT);
+        }
+        return instance;
+    }
+
+    ImageInterceptor(ImagePipeline pipeline, String documentHost, float density, int defaultDimension) {
+        this.pipeline = pipeline;
+        this.documentHost = documentHost;
+        this.imageHosts = Collections.singleton(documentHost);
+        this.density = density;
+        this.defaultDimension = Math.min(MAX_DIMENSION, defaultDimension);
+        MemoryGovernor.register(this);
+    }
+
+    public ImagePipeline.Stats stats() {
+        return pipeline.stats();
+    }
+
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        String scheme = uri.getScheme();
+        if (!"GET".equals(request.getMethod()) || !("https".equals(scheme) || "http".equals(scheme))
+                || request.isForMainFrame()) {
+            return null;
+        }
+        String source;
+        int maxDimension;
+        if (ROUTE.equals(uri.getPath()) && documentHost != null && documentHost.equals(uri.getHost())) {
+            source = uri.getQueryParameter("src");
+            if (source == null || !isImageHost(Uri.parse(source))) {
+                return null;
+            }
+            maxDimension = dimensionOf(uri.getQueryParameter("w"), uri.getQueryParameter("h"));
+        } else {
+            String path = uri.getPath();
+            if (path == null || !isImageHost(uri) || !RASTER.matcher(path.toLowerCase(Locale.US)).matches()
+                    || CacheLoader.isImmutableAsset(uri.toString())) {
+                return null;
+            }
+            source = uri.toString();
+            maxDimension = defaultDimension;
+        }
+
+        checkAccount();
+        try {
+            ImagePipeline.Image image = pipeline.load(source, maxDimension);
+            // No Access-Control-Allow-Origin: these are the chat's own images, fetched with its
+            // cookies, and other origins must not be able to read them.
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", image.maxAgeMillis <= 0 ? "no-store"
+                    : "private, max-age=" + Math.min(MAX_BROWSER_AGE_SECONDS, image.maxAgeMillis / 1000));
+            headers.put("Content-Length", Integer.toString(image.bytes.length));
+            return new WebResourceResponse(image.mimeType, null, 200, "OK", headers,
+                    new ByteArrayInputStream(image.bytes));
+        } catch (IOException e) {
+            // The WebView fetches it itself, full size.
+            Log.w(TAG, "Image load failed for " + source + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // The page's rendered images stay decoded in the renderer; the native thumbnails are only
+    // a head start for the next request, so they go first.
+    @Override
+    public void onTrim(TrimPolicy policy) {
+        pipeline.trimMemory(policy.dropImages ? 0 : pipeline.maxMemoryBytes() / 2);
+        Log.d(TAG, "Trimmed images; " + pipeline.stats());
+    }
+
+    // What was cached with another account's cookies goes.
+    private void checkAccount() {
+        if (account != null && account.changed(CookieManager.getInstance().getCookie(MainActivity.CHAT_URL))) {
+            pipeline.clear();
+            Log.d(TAG, "Chat cookies changed; cleared cached images");
+        }
+    }
+
+    private boolean isImageHost(Uri uri) {
+        String scheme = uri.getScheme();
+        return ("https".equals(scheme) || "http".equals(scheme)) && uri.getHost() != null
+                && imageHosts.contains(uri.getHost().toLowerCase(Locale.US));
+    }
+
+    private int dimensionOf(String width, String height) {
+        int css = Math.max(parse(width), parse(height));
+        if (css <= 0) {
+            return defaultDimension;
+        }
+        // Round up to 64 px steps so nearby sizes share a thumbnail.
+        int pixels = (int) Math.ceil(css * density / 64.0) * 64;
+        return Math.min(MAX_DIMENSION, pixels);
+    }
+
+    private static int parse(String value) {
+        try {
+            return value == null ? 0 : Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static ImagePipeline.Image fetch(String url) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT_MILLIS);
+        connection.setReadTimeout(TIMEOUT_MILLIS);
+        // The cookie is for this host only; a redirect elsewhere is left to the WebView.
+        connection.setInstanceFollowRedirects(false);
+        String cookie = CookieManager.getInstance().getCookie(url);
+        if (cookie != null) {
+            connection.setRequestProperty("Cookie", cookie);
+        }
+        try {
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("HTTP " + status);
+            }
+            String mimeType = CacheLoader.mimeTypeOf(connection.getContentType());
+            if (!mimeType.startsWith("image/")) {
+                throw new IOException("Not an image: " + mimeType);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return new ImagePipeline.Image(mimeType, ImagePipeline.readFully(in),
+                        ImagePipeline.maxAgeOf(connection.getHeaderField("Cache-Control")));
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    // Decodes at a power-of-two sample size, scales to fit, turns it upright by its EXIF
+    // orientation (WebP output carries no EXIF) and re-encodes as WebP. GIFs and SVGs keep their
+    // original bytes, as does anything that would not get smaller.
+    static class WebpTranscoder implements ImagePipeline.Transcoder {
+
+        @Override
+        public ImagePipeline.Image thumbnail(ImagePipeline.Image original, int maxDimension) throws IOException {
+            if ("image/gif".equals(original.mimeType) || "image/svg+xml".equals(original.mimeType)) {
+                return null;
+            }
+            BitmapFactory.Options bounds = new BitmapFactory.Options();
+            bounds.inJustDecodeBounds = true;
+            BitmapFactory.decodeByteArray(original.bytes, 0, original.bytes.length, bounds);
+            if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+                return null;
+            }
+            BitmapFactory.Options decode = new BitmapFactory.Options();
+            decode.inSampleSize = ImageScaling.sampleSizeFor(bounds.outWidth, bounds.outHeight, maxDimension);
+            Bitmap bitmap = BitmapFactory.decodeByteArray(original.bytes, 0, original.bytes.length, decode);
+            if (bitmap == null) {
+                throw new IOException("Undecodable " + original.mimeType);
+            }
+            int[] target = ImageScaling.targetSize(bitmap.getWidth(), bitmap.getHeight(), maxDimension);
+            Matrix matrix = new Matrix();
+            matrix.postScale((float) target[0] / bitmap.getWidth(), (float) target[1] / bitmap.getHeight());
+            int[] upright = ImageScaling.orientationTransform(orientationOf(original.bytes));
+            Matrix orient = new Matrix();
+            orient.setValues(new float[]{upright[0], upright[1], 0, upright[2], upright[3], 0, 0, 0, 1});
+            matrix.postConcat(orient);
+            Bitmap scaled = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+            if (scaled != bitmap) {
+                bitmap.recycle();
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try {
+                scaled.compress(webpFormat(), WEBP_QUALITY, out);
+            } finally {
+                scaled.recycle();
+            }
+            if (out.size() >= original.bytes.length) {
+                return null;
+            }
+            return new ImagePipeline.Image("image/webp", out.toByteArray());
+        }
+
+        private static int orientationOf(byte[] bytes) {
+            try {
+                return new ExifInterface(new ByteArrayInputStream(bytes))
+                        .getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+            } catch (IOException e) {
+                return ExifInterface.ORIENTATION_NORMAL;
+            }
+        }
+
+        @SuppressWarnings("deprecation")
+        private static Bitmap.CompressFormat webpFormat() {
+            return Build.VERSION.SDK_INT >= Build.VERSION_CODES.R
+                    ? Bitmap.CompressFormat.WEBP_LOSSY : Bitmap.CompressFormat.WEBP;
+        }
+    }
+}
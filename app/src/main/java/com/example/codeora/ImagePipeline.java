@@ -0,0 +1,328 @@
+package com.example.codeora;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+// Chat images at display size. A request is answered from a memory LRU of thumbnails, then
+// from the WebCache on disk, and only then fetched and transcoded; concurrent requests for the
+// same thumbnail, or for two sizes of the same original, share a single fetch. Thumbnails are
+// held encoded (WebP from the Android transcoder) because that is what the WebView is handed;
+// decoded bitmaps never outlive the transcode. Both tiers keep a thumbnail only as long as the
+// original's Cache-Control allows, and never when it says no-store; clear() empties them, e.g.
+// when the signed-in account changes.
+public class ImagePipeline {
+
+    public interface Fetcher {
+        Image fetch(String url) throws IOException;
+    }
+
+    public interface Transcoder {
+        // The image scaled to fit maxDimension, or null to serve the original as is (e.g. an
+        // animated GIF or a format the platform cannot decode).
+        Image thumbnail(Image original, int maxDimension) throws IOException;
+    }
+
+    public static final class Image {
+        public final String mimeType;
+        public final byte[] bytes;
+        // How long the image may be reused; 0 when it must not be stored at all.
+        public final long maxAgeMillis;
+
+        public Image(String mimeType, byte[] bytes) {
+            this(mimeType, bytes, DEFAULT_MAX_AGE_MILLIS);
+        }
+
+        public Image(String mimeType, byte[] bytes, long maxAgeMillis) {
+            this.mimeType = mimeType;
+            this.bytes = bytes;
+            this.maxAgeMillis = maxAgeMillis;
+        }
+    }
+
+    private static final class Held {
+        final Image image;
+        final long expiresAt;
+
+        Held(Image image, long expiresAt) {
+            this.image = image;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    // For responses that say nothing about how long they may be kept.
+    static final long DEFAULT_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+
+    public static final class Stats {
+        public final long requests;
+        public final long memoryHits;
+        public final long diskHits;
+        public final long fetches;
+        public final long joined;
+        public final long failures;
+        public final long fetchedBytes;
+        public final long servedBytes;
+        public final long memoryBytes;
+
+        Stats(long requests, long memoryHits, long diskHits, long fetches, long joined, long failures,
+              long fetchedBytes, long servedBytes, long memoryBytes) {
+            this.requests = requests;
+            this.memoryHits = memoryHits;
+            this.diskHits = diskHits;
+            this.fetches = fetches;
+            this.joined = joined;
+            this.failures = failures;
+            this.fetchedBytes = fetchedBytes;
+            this.servedBytes = servedBytes;
+            this.memoryBytes = memoryBytes;
+        }
+
+        public double memoryHitRatio() {
+            return requests == 0 ? 0 : (double) memoryHits / requests;
+        }
+
+        public double hitRatio() {
+            return requests == 0 ? 0 : (double) (memoryHits + diskHits) / requests;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.US,
+                    "requests=%d memoryHits=%d diskHits=%d fetches=%d joined=%d failures=%d hitRatio=%.2f "
+                            + "fetched=%dKB served=%dKB memory=%dKB",
+                    requests, memoryHits, diskHits, fetches, joined, failures, hitRatio(),
+                    fetchedBytes / 1024, servedBytes / 1024, memoryBytes / 1024);
+        }
+    }
+
+    private final WebCache disk;
+    private final Fetcher fetcher;
+    private final Transcoder transcoder;
+    private final long maxMemoryBytes;
+    private final LinkedHashMap<String, Held> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private final ConcurrentHashMap<String, FutureTask<Image>> inFlight = new ConcurrentHashMap<>();
+    private long memoryBytes;
+    // Bumped by clear(), so loads that started before it do not store what they fetched.
+    private int generation;
+    private long requests;
+    private long memoryHits;
+    private long diskHits;
+    private long fetches;
+    private long joined;
+    private long failures;
+    private long fetchedBytes;
+    private long servedBytes;
+
+    public ImagePipeline(WebCache disk, long maxMemoryBytes, Fetcher fetcher, Transcoder transcoder) {
+        this.disk = disk;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.fetcher = fetcher;
+        this.transcoder = transcoder;
+    }
+
+    // Blocks the calling thread, which for the WebView is one of its IO threads.
+    public Image load(String url, int maxDimension) throws IOException {
+        String key = keyFor(url, maxDimension);
+        Image image;
+        synchronized (this) {
+            requests++;
+            Held held = memory.get(key);
+            if (held != null && System.currentTimeMillis() < held.expiresAt) {
+                memoryHits++;
+                servedBytes += held.image.bytes.length;
+                return held.image;
+            }
+        }
+        try {
+            image = once(key, () -> produce(key, url, maxDimension));
+        } catch (IOException e) {
+            synchronized (this) {
+                failures++;
+            }
+            throw e;
+        }
+        synchronized (this) {
+            servedBytes += image.bytes.length;
+        }
+        return image;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(requests, memoryHits, diskHits, fetches, joined, failures, fetchedBytes, servedBytes,
+                memoryBytes);
+    }
+
+    // Shrinks the memory LRU to at most maxBytes, least recently served first; 0 empties it.
+    public synchronized void trimMemory(long maxBytes) {
+        Iterator<Map.Entry<String, Held>> it = memory.entrySet().iterator();
+        while (memoryBytes > maxBytes && it.hasNext()) {
+            memoryBytes -= it.next().getValue().image.bytes.length;
+            it.remove();
+        }
+    }
+
+    // Forgets every thumbnail, in memory and on disk. Loads already running keep nothing.
+    public synchronized void clear() {
+        memory.clear();
+        memoryBytes = 0;
+        disk.clear();
+        generation++;
+    }
+
+    // Milliseconds a response with this Cache-Control may be reused; 0 for no-store and
+    // no-cache, which would need revalidating on every use.
+    static long maxAgeOf(String cacheControl) {
+        if (cacheControl == null) {
+            return DEFAULT_MAX_AGE_MILLIS;
+        }
+        long maxAge = DEFAULT_MAX_AGE_MILLIS;
+        for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+            directive = directive.trim();
+            if (directive.equals("no-store") || directive.equals("no-cache")) {
+                return 0;
+            }
+            if (directive.startsWith("max-age=")) {
+                try {
+                    maxAge = Math.max(0, Long.parseLong(directive.substring(8).trim())) * 1000;
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return maxAge;
+    }
+
+    public long maxMemoryBytes() {
+        return maxMemoryBytes;
+    }
+
+    static String keyFor(String url, int maxDimension) {
+        return url + "#" + maxDimension;
+    }
+
+    private Image produce(String key, String url, int maxDimension) throws IOException {
+        int startedIn;
+        synchronized (this) {
+            startedIn = generation;
+        }
+        Image image = readDisk(key);
+        if (image != null) {
+            synchronized (this) {
+                diskHits++;
+            }
+        } else {
+            Image original = once(url, () -> {
+                Image fetched = fetcher.fetch(url);
+                synchronized (this) {
+                    fetches++;
+                    fetchedBytes += fetched.bytes.length;
+                }
+                return fetched;
+            });
+            Image thumbnail = transcoder.thumbnail(original, maxDimension);
+            image = thumbnail == null ? original
+                    : new Image(thumbnail.mimeType, thumbnail.bytes, original.maxAgeMillis);
+            if (image.maxAgeMillis > 0 && isGeneration(startedIn)) {
+                writeDisk(key, image);
+            }
+        }
+        if (isGeneration(startedIn)) {
+            remember(key, image);
+        }
+        return image;
+    }
+
+    // Runs work for key unless another thread already is, in which case its result is shared.
+    private Image once(String key, Work work) throws IOException {
+        FutureTask<Image> task = new FutureTask<>(work::run);
+        FutureTask<Image> running = inFlight.putIfAbsent(key, task);
+        if (running != null) {
+            synchronized (this) {
+                joined++;
+            }
+            return await(running);
+        }
+        try {
+            task.run();
+            return await(task);
+        } finally {
+            inFlight.remove(key, task);
+        }
+    }
+
+    private static Image await(FutureTask<Image> task) throws IOException {
+        try {
+            return task.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        }
+    }
+
+    private synchronized boolean isGeneration(int startedIn) {
+        return generation == startedIn;
+    }
+
+    private synchronized void remember(String key, Image image) {
+        // Anything bigger than an eighth of the budget would flush too much to be worth it.
+        if (image.maxAgeMillis <= 0 || image.bytes.length > maxMemoryBytes / 8) {
+            return;
+        }
+        Held previous = memory.put(key, new Held(image, System.currentTimeMillis() + image.maxAgeMillis));
+        if (previous != null) {
+            memoryBytes -= previous.image.bytes.length;
+        }
+        memoryBytes += image.bytes.length;
+        trimMemory(maxMemoryBytes);
+    }
+
+    private Image readDisk(String key) throws IOException {
+        WebCache.Entry entry = disk.get(key);
+        if (entry == null) {
+            return null;
+        }
+        long maxAge = entry.expiresAt == 0 ? DEFAULT_MAX_AGE_MILLIS : entry.expiresAt - System.currentTimeMillis();
+        try (InputStream in = entry.open()) {
+            return new Image(entry.mimeType, readFully(in), Math.max(1, maxAge));
+        }
+    }
+
+    private void writeDisk(String key, Image image) throws IOException {
+        // The cache commits an entry once its stream has been read to the end.
+        try (InputStream in = disk.store(key, image.mimeType, null, null, null,
+                System.currentTimeMillis() + image.maxAgeMillis, new ByteArrayInputStream(image.bytes))) {
+            byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1) {
+                // Drain.
+            }
+        }
+    }
+
+    static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private interface Work {
+        Image run() throws IOException;
+    }
+}
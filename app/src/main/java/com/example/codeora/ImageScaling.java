@@ -0,0 +1,63 @@
+package com.example.codeora;
+
+// Size arithmetic for downscaling photos: a power-of-two inSampleSize keeps the decode itself
+// small, then an exact scale brings the longest edge down to the target.
+public final class ImageScaling {
+
+    private ImageScaling() {
+    }
+
+    // Largest power of two that still decodes at or above maxDimension on the longest edge.
+    public static int sampleSizeFor(int width, int height, int maxDimension) {
+        int longest = Math.max(width, height);
+        int sampleSize = 1;
+        while (longest / (sampleSize * 2) >= maxDimension) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // {width, height} fitting within maxDimension with the aspect ratio kept; never upscales.
+    public static int[] targetSize(int width, int height, int maxDimension) {
+        int longest = Math.max(width, height);
+        if (longest <= maxDimension) {
+            return new int[]{width, height};
+        }
+        double scale = (double) maxDimension / longest;
+        return new int[]{
+                Math.max(1, (int) Math.round(width * scale)),
+                Math.max(1, (int) Math.round(height * scale))};
+    }
+
+    // Quarter turns clockwise needed to display an image with the given EXIF orientation.
+    public static int rotationDegrees(int exifOrientation) {
+        switch (exifOrientation) {
+            case 6:
+            case 5:
+                return 90;
+            case 3:
+            case 4:
+                return 180;
+            case 8:
+            case 7:
+                return 270;
+            default:
+                return 0;
+        }
+    }
+
+    // EXIF orientations 2, 4, 5 and 7 are mirrored as well as rotated.
+    public static boolean isMirrored(int exifOrientation) {
+        return exifOrientation == 2 || exifOrientation == 4 || exifOrientation == 5 || exifOrientation == 7;
+    }
+
+    // {a, b, c, d} with x' = a*x + b*y and y' = c*x + d*y (y pointing down) that shows an image
+    // with the given EXIF orientation upright: rotated first, then mirrored, as ExifInterface does.
+    public static int[] orientationTransform(int exifOrientation) {
+        int degrees = rotationDegrees(exifOrientation);
+        int cos = degrees == 0 ? 1 : degrees == 180 ? -1 : 0;
+        int sin = degrees == 90 ? 1 : degrees == 270 ? -1 : 0;
+        int mirror = isMirrored(exifOrientation) ? -1 : 1;
+        return new int[]{mirror * cos, -mirror * sin, sin, cos};
+    }
+}
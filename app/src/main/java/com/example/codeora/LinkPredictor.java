@@ -0,0 +1,133 @@
+package com.example.codeora;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Ranks the external links on screen by how likely the user is to open one next, so the
+// browser can be told to prepare the best guess with mayLaunchUrl. A link the user is touching
+// outranks everything; otherwise links that are fully visible, have been on screen for a while,
+// sit lower in the viewport (newer messages) and point at hosts the user opened before rank
+// higher. Only http and https links are ranked, since the page reports whatever it renders. A
+// new prediction is only produced when the ranking actually changes.
+public class LinkPredictor {
+
+    public static final class Candidate {
+        public final String url;
+        // Fraction of the link that is visible, 0..1.
+        public final double visibleRatio;
+        public final long dwellMillis;
+        // Vertical position of the link's centre in the viewport, 0 at the top, 1 at the bottom.
+        public final double position;
+        public final boolean touched;
+
+        public Candidate(String url, double visibleRatio, long dwellMillis, double position, boolean touched) {
+            this.url = url;
+            this.visibleRatio = visibleRatio;
+            this.dwellMillis = dwellMillis;
+            this.position = position;
+            this.touched = touched;
+        }
+    }
+
+    public static final class Prediction {
+        public final String likely;
+        public final List<String> others;
+
+        Prediction(String likely, List<String> others) {
+            this.likely = likely;
+            this.others = others;
+        }
+    }
+
+    private static final double DWELL_SATURATION_MILLIS = 2000;
+    private static final double MIN_VISIBLE_RATIO = 0.5;
+
+    private final int maxOthers;
+    private final Map<String, Integer> openedHosts = new HashMap<>();
+    private List<String> lastRanking = Collections.emptyList();
+
+    public LinkPredictor(int maxOthers) {
+        this.maxOthers = maxOthers;
+    }
+
+    // The links on screen now; returns a new prediction, or null when it has not changed.
+    public synchronized Prediction update(List<Candidate> candidates) {
+        List<Candidate> eligible = new ArrayList<>();
+        Map<Candidate, Double> scores = new HashMap<>();
+        for (Candidate candidate : candidates) {
+            if (isWeb(candidate.url) && (candidate.touched || candidate.visibleRatio >= MIN_VISIBLE_RATIO)) {
+                eligible.add(candidate);
+                scores.put(candidate, score(candidate));
+            }
+        }
+        Collections.sort(eligible, (a, b) -> Double.compare(scores.get(b), scores.get(a)));
+        List<String> ranking = new ArrayList<>();
+        for (Candidate candidate : eligible) {
+            if (!ranking.contains(candidate.url)) {
+                ranking.add(candidate.url);
+            }
+            if (ranking.size() == maxOthers + 1) {
+                break;
+            }
+        }
+        if (ranking.isEmpty() || ranking.equals(lastRanking)) {
+            return null;
+        }
+        lastRanking = ranking;
+        return new Prediction(ranking.get(0), new ArrayList<>(ranking.subList(1, ranking.size())));
+    }
+
+    // Whether url was part of the latest prediction.
+    public synchronized boolean wasPredicted(String url) {
+        return lastRanking.contains(url);
+    }
+
+    public synchronized void onOpened(String url) {
+        String host = hostOf(url);
+        if (host != null) {
+            Integer count = openedHosts.get(host);
+            openedHosts.put(host, count == null ? 1 : count + 1);
+        }
+        // The next report starts a fresh ranking.
+        lastRanking = Collections.emptyList();
+    }
+
+    double score(Candidate candidate) {
+        if (candidate.touched) {
+            return 100;
+        }
+        double score = candidate.visibleRatio;
+        score += Math.min(candidate.dwellMillis, DWELL_SATURATION_MILLIS) / DWELL_SATURATION_MILLIS;
+        score += 0.5 * Math.max(0, Math.min(1, candidate.position));
+        Integer opened = openedHosts.get(hostOf(candidate.url));
+        if (opened != null) {
+            score += Math.log(1 + opened);
+        }
+        return score;
+    }
+
+    static boolean isWeb(String url) {
+        try {
+            URI uri = new URI(url);
+            String scheme = uri.getScheme();
+            return ("https".equalsIgnoreCase(scheme) || "http".equalsIgnoreCase(scheme)) && uri.getHost() != null;
+        } catch (URISyntaxException e) {
+            return false;
+        }
+    }
+
+    private static String hostOf(String url) {
+        try {
+            String host = new URI(url).getHost();
+            return host == null ? null : host.toLowerCase(Locale.ROOT);
+        } catch (URISyntaxException e) {
+            return null;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.codeora;
 
 import android.Manifest;
+import android.content.ClipData;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
@@ -9,9 +11,12 @@ import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
-import android.webkit.JavascriptInterface;
+import android.view.ViewGroup;
 import android.webkit.PermissionRequest;
+import android.webkit.RenderProcessGoneDetail;
 import android.webkit.ValueCallback;
 import android.webkit.WebChromeClient;
 import android.webkit.WebResourceError;
@@ -24,33 +29,178 @@ import android.widget.ProgressBar;
 import android.widget.Toast;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 import androidx.core.content.ContextCompat;
+import androidx.lifecycle.Lifecycle;
+import androidx.tracing.Trace;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";
     private static final int FILE_CHOOSER_REQUEST_CODE = 1;
     private static final int PERMISSION_REQUEST_CODE = 2;
+    private static final String SYNC_EVENT_CHANNEL = "sync";
+    private static final String MEDIA_EVENT_CHANNEL = "media";
+    private static final String WEBVIEW_STATE = "webview_state";
+    private static final ExecutorService mediaExecutor = Executors.newSingleThreadExecutor();
+    // Bounded so several full-size photo decodes cannot run at once
+    private static final ExecutorService mediaWorkers = Executors.newFixedThreadPool(3);
+    static final String CHAT_URL = "https://chat-app-theta-puce-66.vercel.app/";
+    static final String CHAT_ORIGIN = "https://chat-app-theta-puce-66.vercel.app";
+    // Shared so the retry budget spans activity instances
+    private static final RetryPolicy RETRY_POLICY = RetryPolicy.defaultPolicy();
 
     private WebView webView;
     private ProgressBar progressBar;
     private ValueCallback<Uri[]> filePathCallback;
     private boolean hasRecordAudioPermission = false;
+    private WebCacheInterceptor webCacheInterceptor;
+    private ImageInterceptor imageInterceptor;
+    private NativeNetwork nativeNetwork;
+    private PreloadController preloadController;
+    private NativeBridge bridge;
+    private PerfMonitor perfMonitor;
+    private RendererRecovery rendererRecovery;
+    private VoiceChannel voiceChannel;
+    private PopupWindows popupWindows;
+    private NavigationController navigation;
+    private final MemoryGovernor memoryGovernor = new MemoryGovernor();
+    private boolean wasStopped = false;
+    private boolean fullyDrawnReported = false;
+    private ConnectivityMonitor connectivityMonitor;
+    private boolean mainFrameFailed = false;
+    private boolean mainFrameErrorInLoad = false;
+    private MainFrameRetryScheduler retryScheduler;
+    private final ConnectivityMonitor.Listener networkListener = state -> {
+        if (state.connected) {
+            preloadController.preloadAsync();
+        }
+        if (state.connected && mainFrameFailed) {
+            Log.d(TAG, "Network is back (" + state + "), reloading in place");
+            reloadAfterFailure();
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        Trace.beginSection(StartupMetrics.TRACE_MAIN_ON_CREATE);
         super.onCreate(savedInstanceState);
+        StartupMetrics.mark(StartupMetrics.MAIN_CREATED);
+        WebViewWarmup warmup = WebViewWarmup.get();
+        // Without a warmed WebView, inflating the layout is where the WebView gets initialized
+        boolean coldWebView = !warmup.hasWebView();
+        if (coldWebView) {
+            Trace.beginSection(StartupMetrics.TRACE_WEBVIEW_INIT);
+        }
         setContentView(R.layout.activity_main);
+        if (coldWebView) {
+            Trace.endSection();
+        }
 
         requestNecessaryPermissions();
+        SyncScheduler.schedule(this);
 
         webView = findViewById(R.id.webview);
         progressBar = findViewById(R.id.progressBar);
 
-        webView.setWebViewClient(new CustomWebViewClient());
-        webView.setWebChromeClient(new CustomWebChromeClient());
+        webCacheInterceptor = WebCacheInterceptor.get(this, CHAT_URL);
+        imageInterceptor = ImageInterceptor.get(this);
+        nativeNetwork = NativeNetwork.get(this);
+        if (getIntent().hasExtra(NativeNetwork.EXTRA_ENABLE)) {
+            nativeNetwork.setEnabled(getIntent().getBooleanExtra(NativeNetwork.EXTRA_ENABLE, false));
+        }
+        preloadController = PreloadController.get(this);
+        connectivityMonitor = ConnectivityMonitor.get(this);
+        connectivityMonitor.addListener(networkListener);
+        rendererRecovery = new RendererRecovery(this);
+        navigation = new NavigationController(this, CHAT_URL);
+        retryScheduler = new MainFrameRetryScheduler(RETRY_POLICY, new MainFrameRetryScheduler.Callback() {
+            @Override
+            public void retryLoad() {
+                webView.reload();
+            }
+
+            @Override
+            public void onGaveUp() {
+                showErrorPage();
+            }
+        });
+        boolean warmedPageFinished = warmup.isPageFinished();
+        boolean warmedPageFailed = warmup.hasFailed();
+        // A WebView handed over from the instance destroyed by a configuration change wins
+        NativeBridge retainedBridge = RetainedWebView.getBridge();
+        WebView retained = RetainedWebView.adopt(this);
+        NativeBridge warmedBridge = warmup.getBridge();
+        WebView warmed = retained == null ? warmup.adopt(this) : null;
+        if (retained != null) {
+            swapInWebView(retained);
+            bridge = retainedBridge;
+        } else if (warmed != null) {
+            swapInWebView(warmed);
+            bridge = warmedBridge;
+        } else {
+            // The inflated WebView holds the activity itself and could not be retained
+            swapInWebView(RetainedWebView.create(this));
+            bridge = configureWebView(webView, this);
+        }
+        attachWebView();
+        popupWindows = new PopupWindows(this, webView.getSettings().getUserAgentString());
+        if (getIntent().hasExtra(PerfMonitor.EXTRA_ENABLE)) {
+            perfMonitor.setEnabled(getIntent().getBooleanExtra(PerfMonitor.EXTRA_ENABLE, false));
+        }
+
+        if (retained != null) {
+            Log.d(TAG, "Kept the WebView across a configuration change");
+            progressBar.setVisibility(webView.getProgress() < 100 ? ProgressBar.VISIBLE : ProgressBar.GONE);
+        } else if (warmed == null) {
+            preloadController.preloadAsync();
+            Trace.beginSection(StartupMetrics.TRACE_FIRST_LOAD_URL);
+            StartupMetrics.beginPageLoad();
+            // After process death, bring back the history and page the user was on
+            Bundle webViewState = savedInstanceState != null ? savedInstanceState.getBundle(WEBVIEW_STATE) : null;
+            if (webViewState == null || webView.restoreState(webViewState) == null) {
+                webView.loadUrl(CHAT_URL);
+            }
+            Trace.endSection();
+        } else if (warmedPageFailed) {
+            handleMainFrameFailure(true, -1);
+        } else if (warmedPageFinished) {
+            progressBar.setVisibility(ProgressBar.GONE);
+            webView.post(this::onChatInteractive);
+        } else {
+            progressBar.setVisibility(ProgressBar.VISIBLE);
+            progressBar.setProgress(webView.getProgress());
+        }
+        Trace.endSection();
+    }
+
+    // The chat page is loaded and visible; also marks "fully drawn" for startup benchmarks.
+    private void onChatInteractive() {
+        StartupMetrics.reportInteractive();
+        if (!fullyDrawnReported) {
+            fullyDrawnReported = true;
+            reportFullyDrawn();
+        }
+        popupWindows.prewarmWhenIdle();
+        // Warm the browser only now, so it does not compete with the chat's own startup
+        CustomTabs.get().bind(this);
+    }
+
+    // Shared by MainActivity and WebViewWarmup so a warmed WebView is configured identically.
+    static NativeBridge configureWebView(WebView webView, Context context) {
         WebSettings webSettings = webView.getSettings();
         webSettings.setJavaScriptEnabled(true);
         webSettings.setDomStorageEnabled(true);
@@ -62,42 +212,199 @@ public class MainActivity extends AppCompatActivity {
         webSettings.setBuiltInZoomControls(true);
         webSettings.setDisplayZoomControls(false);
         webSettings.setSupportMultipleWindows(true);
-        webSettings.setCacheMode(WebSettings.LOAD_NO_CACHE);
+        // Static assets and documents are cached by WebCacheInterceptor; let the WebView use its
+        // own HTTP cache for everything else instead of re-downloading on every start.
+        webSettings.setCacheMode(WebSettings.LOAD_DEFAULT);
         webSettings.setLoadWithOverviewMode(true);
 
         // Set the custom user agent string
         String defaultUserAgent = webSettings.getUserAgentString();
         webSettings.setUserAgentString(defaultUserAgent + " MyApp");
 
-        webView.addJavascriptInterface(new WebAppInterface(this), "Android");
-        webView.loadUrl("https://chat-app-theta-puce-66.vercel.app/");
+        NativeBridge bridge = new NativeBridge(context);
+        bridge.register(MessageStoreChannel.CHANNEL, new MessageStoreChannel(MessageStore.get(context)));
+        bridge.register(HistoryChannel.CHANNEL, new HistoryChannel(MessageStore.get(context)));
+        bridge.register(UploadChannel.CHANNEL, new UploadChannel(context, bridge));
+        bridge.register(NativeNetwork.CHANNEL, NativeNetwork.get(context));
+        bridge.register(RealtimeChannel.CHANNEL, new RealtimeChannel(RealtimeConnection.get(context), bridge));
+        bridge.register(OutboxChannel.CHANNEL, new OutboxChannel(context, bridge));
+        bridge.register(CustomTabs.CHANNEL, CustomTabs.get());
+        // "media" {maxImageDimension?, jpegQuality?, transcodeVideo?, videoBitrate?} tunes compression of picked files
+        bridge.register(MEDIA_EVENT_CHANNEL, (message, reply) -> {
+            try {
+                MediaCompressor.setOptions(MediaCompressor.Options.fromJson(new JSONObject(message.payloadString())));
+                reply.success("{}");
+            } catch (JSONException e) {
+                reply.error(String.valueOf(e.getMessage()));
+            }
+        });
+        bridge.attach(webView, CHAT_ORIGIN);
+        return bridge;
+    }
+
+    // Installs this activity's clients and per-activity channels on the current WebView.
+    private void attachWebView() {
+        webView.setWebViewClient(new CustomWebViewClient());
+        webView.setWebChromeClient(new CustomWebChromeClient());
+        perfMonitor = new PerfMonitor(this, webView);
+        bridge.register(PerfMonitor.CHANNEL, perfMonitor);
+        bridge.register(RendererRecovery.CHANNEL, rendererRecovery);
+        // Per activity, so recording stops with it
+        if (voiceChannel != null) {
+            voiceChannel.cancel();
+        }
+        voiceChannel = new VoiceChannel(this, bridge);
+        bridge.register(VoiceChannel.CHANNEL, voiceChannel);
+        navigation.attach(bridge);
+        bridge.register(NavigationController.CHANNEL, navigation);
+        rendererRecovery.attach(webView);
+        memoryGovernor.attach(webView, bridge);
+    }
+
+    // The renderer is gone and the WebView with it. Builds a new one in its place and reloads
+    // the page the user was on; RendererRecovery restores the rest once it has loaded.
+    private void recoverFromRendererLoss(boolean crashed) {
+        String url = rendererRecovery.onRendererGone(crashed);
+        boolean resumed = getLifecycle().getCurrentState().isAtLeast(Lifecycle.State.RESUMED);
+        perfMonitor.onWebViewLost();
+        swapInWebView(RetainedWebView.create(this));
+        bridge = configureWebView(webView, this);
+        attachWebView();
+        if (resumed) {
+            perfMonitor.start();
+        }
+        progressBar.setVisibility(ProgressBar.VISIBLE);
+        webView.loadUrl(url);
+    }
+
+    // Replaces the current WebView, e.g. the one inflated from the layout with the one warmed up
+    // during the splash, or a dead one after a renderer crash.
+    private void swapInWebView(WebView warmed) {
+        ViewGroup parent = (ViewGroup) webView.getParent();
+        int index = parent.indexOfChild(webView);
+        ViewGroup.LayoutParams layoutParams = webView.getLayoutParams();
+        parent.removeView(webView);
+        webView.destroy();
+        warmed.setId(R.id.webview);
+        parent.addView(warmed, index, layoutParams);
+        webView = warmed;
     }
 
     private void requestNecessaryPermissions() {
+        List<String> missing = new ArrayList<>();
         if (ContextCompat.checkSelfPermission(this, Manifest.permission.RECORD_AUDIO) != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this,
-                    new String[]{Manifest.permission.RECORD_AUDIO},
-                    PERMISSION_REQUEST_CODE);
+            missing.add(Manifest.permission.RECORD_AUDIO);
         } else {
             hasRecordAudioPermission = true;
         }
+        // Background sync posts notifications for messages that arrive while the app is closed
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(this, Manifest.permission.POST_NOTIFICATIONS) != PackageManager.PERMISSION_GRANTED) {
+            missing.add(Manifest.permission.POST_NOTIFICATIONS);
+        }
+        if (!missing.isEmpty()) {
+            StartupMetrics.beginPermissionRequest();
+            ActivityCompat.requestPermissions(this, missing.toArray(new String[0]), PERMISSION_REQUEST_CODE);
+        }
     }
 
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
         if (requestCode == PERMISSION_REQUEST_CODE) {
-            if (grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-                hasRecordAudioPermission = true;
-            } else {
-                hasRecordAudioPermission = false;
-                Toast.makeText(this, "Permission denied. The app needs this permission to function properly.", Toast.LENGTH_SHORT).show();
+            StartupMetrics.endPermissionRequest();
+            for (int i = 0; i < permissions.length && i < grantResults.length; i++) {
+                if (!Manifest.permission.RECORD_AUDIO.equals(permissions[i])) {
+                    continue;
+                }
+                if (grantResults[i] == PackageManager.PERMISSION_GRANTED) {
+                    hasRecordAudioPermission = true;
+                } else {
+                    hasRecordAudioPermission = false;
+                    Toast.makeText(this, "Permission denied. The app needs this permission to function properly.", Toast.LENGTH_SHORT).show();
+                }
             }
         }
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        memoryGovernor.onForeground();
+        perfMonitor.start();
+        rendererRecovery.start();
+        // Back from the error screen while online, e.g. after a server error
+        if (mainFrameFailed && connectivityMonitor.isConnected()) {
+            reloadAfterFailure();
+        }
+        // Background sync may have written new messages to the store while we were stopped
+        if (wasStopped) {
+            wasStopped = false;
+            bridge.emit(SYNC_EVENT_CHANNEL, "{\"source\":\"background\"}");
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        voiceChannel.stop();
+        perfMonitor.stop();
+        rendererRecovery.stop();
+        super.onPause();
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        SyncNotifier.setChatVisible(true);
+    }
+
+    @Override
+    protected void onStop() {
+        wasStopped = true;
+        SyncNotifier.setChatVisible(false);
+        super.onStop();
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        memoryGovernor.onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        memoryGovernor.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+    }
+
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        // Only read after process death; a configuration change hands over the WebView itself
+        Bundle webViewState = new Bundle();
+        if (webView.saveState(webViewState) != null) {
+            outState.putBundle(WEBVIEW_STATE, webViewState);
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        connectivityMonitor.removeListener(networkListener);
+        retryScheduler.cancel();
+        memoryGovernor.release();
+        popupWindows.destroy();
+        voiceChannel.cancel();
+        if (isChangingConfigurations() && RetainedWebView.retain(webView, bridge)) {
+            Log.d(TAG, "Handing the WebView to the recreated activity");
+        }
+        super.onDestroy();
+    }
+
     @Override
     public void onBackPressed() {
+        if (popupWindows.onBackPressed()) {
+            return;
+        }
         if (webView.canGoBack()) {
             webView.goBack();
         } else {
@@ -105,63 +412,59 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    private void injectLazyLoadingScript() {
-        webView.evaluateJavascript(
-                "(function() {" +
-                        "   window.addEventListener('scroll', function() {" +
-                        "       var loader = document.getElementById('loader');" +
-                        "       if (!loader) {" +
-                        "           loader = document.createElement('div');" +
-                        "           loader.id = 'loader';" +
-                        "           loader.style.position = 'fixed';" +
-                        "           loader.style.bottom = '10px';" +
-                        "           loader.style.left = '50%';" +
-                        "           loader.style.transform = 'translateX(-50%)';" +
-                        "           loader.style.display = 'none';" +
-                        "           loader.innerHTML = '<div style=\"width: 30px; height: 30px; border: 4px solid #f3f3f3; border-top: 4px solid #3498db; border-radius: 50%; animation: spin 2s linear infinite;\"></div>';" +
-                        "           document.body.appendChild(loader);" +
-                        "           var style = document.createElement('style');" +
-                        "           style.type = 'text/css';" +
-                        "           style.innerHTML = '@keyframes spin { 0% { transform: rotate(0deg); } 100% { transform: rotate(360deg); } }';" +
-                        "           document.head.appendChild(style);" +
-                        "       }" +
-                        "       var content = document.getElementById('content');" +
-                        "       if (!content) {" +
-                        "           content = document.body;" +
-                        "       }" +
-                        "       var lastSection = content.lastElementChild;" +
-                        "       var rect = lastSection.getBoundingClientRect();" +
-                        "       if (rect.bottom <= window.innerHeight) {" +
-                        "           loader.style.display = 'block';" +
-                        "           setTimeout(function() {" +
-                        "               var newSection = document.createElement('div');" +
-                        "               newSection.className = 'section';" +
-                        "               newSection.innerHTML = '';" +
-                        "               content.appendChild(newSection);" +
-                        "               loader.style.display = 'none';" +
-                        "           }, 1000);" +
-                        "       }" +
-                        "   });" +
-                        "})()", null);
-    }
-
+    // Covers the chat with the error screen but keeps this activity and its WebView alive, so
+    // the page can be reloaded in place when the network returns.
     private void showErrorPage() {
+        if (mainFrameFailed) {
+            return;
+        }
+        mainFrameFailed = true;
         Intent intent = new Intent(MainActivity.this, internet.class);
         startActivity(intent);
-        finish();
     }
 
-    public class WebAppInterface {
-        Context mContext;
+    // Transient failures are retried in place; offline failures wait for the network instead.
+    private void handleMainFrameFailure(boolean isTransient, long retryAfterMillis) {
+        if (!connectivityMonitor.isConnected()) {
+            retryScheduler.cancel();
+            showErrorPage();
+        } else {
+            retryScheduler.onFailure(isTransient, retryAfterMillis);
+        }
+    }
 
-        WebAppInterface(Context c) {
-            mContext = c;
+    private static boolean isTransientError(WebResourceError error) {
+        if (Build.VERSION.SDK_INT < Build.VERSION_CODES.M) {
+            return true;
         }
+        switch (error.getErrorCode()) {
+            case WebViewClient.ERROR_TIMEOUT:
+            case WebViewClient.ERROR_CONNECT:
+            case WebViewClient.ERROR_HOST_LOOKUP:
+            case WebViewClient.ERROR_IO:
+            case WebViewClient.ERROR_TOO_MANY_REQUESTS:
+            case WebViewClient.ERROR_UNKNOWN:
+                return true;
+            default:
+                return false;
+        }
+    }
 
-        @JavascriptInterface
-        public void showToast(String toast) {
-            Toast.makeText(mContext, toast, Toast.LENGTH_SHORT).show();
+    private static String retryAfterOf(WebResourceResponse response) {
+        Map<String, String> headers = response.getResponseHeaders();
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                if ("Retry-After".equalsIgnoreCase(header.getKey())) {
+                    return header.getValue();
+                }
+            }
         }
+        return null;
+    }
+
+    private void reloadAfterFailure() {
+        mainFrameFailed = false;
+        webView.reload();
     }
 
     private class CustomWebViewClient extends WebViewClient {
@@ -169,6 +472,12 @@ public class MainActivity extends AppCompatActivity {
         public void onPageStarted(WebView view, String url, Bitmap favicon) {
             super.onPageStarted(view, url, favicon);
             progressBar.setVisibility(ProgressBar.VISIBLE);
+            mainFrameErrorInLoad = false;
+            bridge.onPageStarted(url);
+            navigation.onPageStarted();
+            perfMonitor.onPageStarted();
+            WebViewTraffic.recordDocument();
+            StartupMetrics.mark(StartupMetrics.PAGE_STARTED);
             Log.d(TAG, "Page started loading: " + url);
 
             new Handler().postDelayed(() -> {
@@ -180,11 +489,55 @@ public class MainActivity extends AppCompatActivity {
         }
 
         @Override
-        public boolean shouldOverrideUrlLoading(WebView view, String url) {
-            view.loadUrl(url);
+        public void onPageFinished(WebView view, String url) {
+            super.onPageFinished(view, url);
+            if (!mainFrameErrorInLoad) {
+                retryScheduler.onSuccess();
+            }
+            rendererRecovery.onPageFinished(view);
+            navigation.onPageFinished();
+        }
+
+        @Override
+        @RequiresApi(Build.VERSION_CODES.O)
+        public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+            // A WebView replaced earlier is already destroyed; only the current one is rebuilt
+            if (view == webView) {
+                recoverFromRendererLoss(detail.didCrash());
+            }
             return true;
         }
 
+        // Chat pages continue in the WebView itself; everything else is routed away from it
+        @Override
+        @RequiresApi(Build.VERSION_CODES.N)
+        public boolean shouldOverrideUrlLoading(WebView view, WebResourceRequest request) {
+            return navigation.shouldOverride(request.getUrl(), request.isForMainFrame(), request.isRedirect());
+        }
+
+        // Only called before API 24, where the request is not available
+        @Override
+        @SuppressWarnings("deprecation")
+        public boolean shouldOverrideUrlLoading(WebView view, String url) {
+            return Build.VERSION.SDK_INT < Build.VERSION_CODES.N && navigation.shouldOverride(Uri.parse(url), true, false);
+        }
+
+        @Override
+        public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+            WebViewTraffic.recordRequest();
+            WebResourceResponse response = preloadController.intercept(request);
+            if (response == null) {
+                response = imageInterceptor.intercept(request);
+            }
+            if (response == null) {
+                response = webCacheInterceptor.intercept(request);
+            }
+            if (response == null) {
+                response = nativeNetwork.intercept(request);
+            }
+            return response != null ? response : super.shouldInterceptRequest(view, request);
+        }
+
         @Override
         public void onReceivedError(@NonNull WebView view, @NonNull WebResourceRequest request, @NonNull WebResourceError error) {
             super.onReceivedError(view, request, error);
@@ -192,7 +545,8 @@ public class MainActivity extends AppCompatActivity {
                 Log.e(TAG, "WebView error: " + error.getDescription());
             }
             if (request.isForMainFrame()) {
-                showErrorPage();
+                mainFrameErrorInLoad = true;
+                handleMainFrameFailure(isTransientError(error), -1);
             }
         }
 
@@ -201,7 +555,9 @@ public class MainActivity extends AppCompatActivity {
             super.onReceivedHttpError(view, request, errorResponse);
             Log.e(TAG, "HTTP error: " + errorResponse.getReasonPhrase());
             if (request.isForMainFrame()) {
-                showErrorPage();
+                mainFrameErrorInLoad = true;
+                handleMainFrameFailure(RetryPolicy.isTransientStatus(errorResponse.getStatusCode()),
+                        RetryPolicy.parseRetryAfterMillis(retryAfterOf(errorResponse)));
             }
         }
     }
@@ -212,12 +568,29 @@ public class MainActivity extends AppCompatActivity {
             if (hasRecordAudioPermission) {
                 request.grant(request.getResources());
             } else {
+                StartupMetrics.beginPermissionRequest();
                 ActivityCompat.requestPermissions(MainActivity.this,
                         new String[]{Manifest.permission.RECORD_AUDIO},
                         PERMISSION_REQUEST_CODE);
             }
         }
 
+        // Popups and sign-in windows open above the chat instead of replacing it
+        @Override
+        public boolean onCreateWindow(WebView view, boolean isDialog, boolean isUserGesture, Message resultMsg) {
+            // Scripts may not open windows on their own, e.g. from a timer or a redirect.
+            if (!isUserGesture) {
+                return false;
+            }
+            // target="_blank" links that leave the chat open in a Custom Tab rather than a popup
+            WebView.HitTestResult hit = view.getHitTestResult();
+            if (hit.getType() == WebView.HitTestResult.SRC_ANCHOR_TYPE && hit.getExtra() != null
+                    && navigation.openIfExternal(Uri.parse(hit.getExtra()))) {
+                return false;
+            }
+            return popupWindows.onCreateWindow(resultMsg);
+        }
+
         @Override
         public boolean onShowFileChooser(WebView webView, ValueCallback<Uri[]> filePathCallback, FileChooserParams fileChooserParams) {
             if (MainActivity.this.filePathCallback != null) {
@@ -227,6 +600,13 @@ public class MainActivity extends AppCompatActivity {
             Intent intent = new Intent(Intent.ACTION_GET_CONTENT);
             intent.addCategory(Intent.CATEGORY_OPENABLE);
             intent.setType("*/*");
+            String[] mimeTypes = mimeTypesOf(fileChooserParams.getAcceptTypes());
+            if (mimeTypes.length > 0) {
+                intent.putExtra(Intent.EXTRA_MIME_TYPES, mimeTypes);
+            }
+            if (fileChooserParams.getMode() == FileChooserParams.MODE_OPEN_MULTIPLE) {
+                intent.putExtra(Intent.EXTRA_ALLOW_MULTIPLE, true);
+            }
             startActivityForResult(Intent.createChooser(intent, "File Chooser"), FILE_CHOOSER_REQUEST_CODE);
             return true;
         }
@@ -237,6 +617,13 @@ public class MainActivity extends AppCompatActivity {
             if (newProgress == 100) {
                 progressBar.setVisibility(ProgressBar.GONE);
                 Log.d(TAG, "Page fully loaded");
+                StartupMetrics.mark(StartupMetrics.PAGE_FINISHED);
+                StartupMetrics.endPageLoad();
+                onChatInteractive();
+                Log.d(TAG, webCacheInterceptor.stats().toString());
+                Log.d(TAG, "Images: " + imageInterceptor.stats());
+                Log.d(TAG, "Network: " + nativeNetwork.timings().summary());
+                Log.d(TAG, bridge.stats());
             }
             super.onProgressChanged(view, newProgress);
         }
@@ -249,13 +636,88 @@ public class MainActivity extends AppCompatActivity {
             if (filePathCallback != null) {
                 Uri[] results = null;
                 if (resultCode == RESULT_OK && data != null) {
-                    String dataString = data.getDataString();
-                    if (dataString != null) {
-                        results = new Uri[]{Uri.parse(dataString)};
-                    }
+                    results = pickedUris(data);
+                }
+                if (results == null) {
+                    filePathCallback.onReceiveValue(null);
+                } else {
+                    prepareAndDeliver(results, filePathCallback);
                 }
-                filePathCallback.onReceiveValue(results);
                 filePathCallback = null;
             }
         }
+    }
+
+    // Multi-select pickers return ClipData; single picks may only set the data URI.
+    private static Uri[] pickedUris(Intent data) {
+        ClipData clipData = data.getClipData();
+        if (clipData != null && clipData.getItemCount() > 0) {
+            List<Uri> uris = new ArrayList<>(clipData.getItemCount());
+            for (int i = 0; i < clipData.getItemCount(); i++) {
+                Uri uri = clipData.getItemAt(i).getUri();
+                if (uri != null) {
+                    uris.add(uri);
+                }
+            }
+            return uris.isEmpty() ? null : uris.toArray(new Uri[0]);
+        }
+        String dataString = data.getDataString();
+        return dataString != null ? new Uri[]{Uri.parse(dataString)} : null;
+    }
+
+    // The page's accept attribute may also list extensions, which the picker cannot filter on.
+    private static String[] mimeTypesOf(String[] acceptTypes) {
+        List<String> mimeTypes = new ArrayList<>();
+        if (acceptTypes != null) {
+            for (String type : acceptTypes) {
+                if (type != null && type.contains("/")) {
+                    mimeTypes.add(type.trim());
+                }
+            }
+        }
+        return mimeTypes.toArray(new String[0]);
+    }
+
+    // Resolves and compresses the picked files in parallel off the main thread, then hands all
+    // of them to the page at once and reports per-item results as a "media" bridge event.
+    private void prepareAndDeliver(Uri[] picked, ValueCallback<Uri[]> callback) {
+        MediaCompressor compressor = new MediaCompressor(this);
+        MediaCompressor.Options options = MediaCompressor.getOptions();
+        NativeBridge pageBridge = bridge;
+        mediaExecutor.execute(() -> {
+            long startedAt = SystemClock.elapsedRealtime();
+            compressor.deleteStaleOutputs();
+            List<ParallelBatch.Outcome<MediaCompressor.Result>> outcomes;
+            try {
+                outcomes = ParallelBatch.run(Arrays.asList(picked), uri -> compressor.compress(uri, options),
+                        mediaWorkers);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                runOnUiThread(() -> callback.onReceiveValue(picked));
+                return;
+            }
+            Uri[] prepared = new Uri[picked.length];
+            JSONArray items = new JSONArray();
+            for (int i = 0; i < picked.length; i++) {
+                ParallelBatch.Outcome<MediaCompressor.Result> outcome = outcomes.get(i);
+                MediaCompressor.Result result = outcome.value;
+                prepared[i] = result != null ? result.uri : picked[i];
+                try {
+                    JSONObject item = result != null ? result.toJson() : new JSONObject().put("uri", picked[i].toString());
+                    item.put("latencyMs", outcome.latencyMillis());
+                    items.put(item);
+                } catch (JSONException e) {
+                    Log.e(TAG, "Could not encode media report", e);
+                }
+            }
+            long totalMillis = SystemClock.elapsedRealtime() - startedAt;
+            Log.d(TAG, "Prepared " + picked.length + " picked files in " + totalMillis + " ms: " + items);
+            String report = "{\"totalMs\":" + totalMillis + ",\"items\":" + items + "}";
+            runOnUiThread(() -> {
+                // The page can hand these to the native "upload" channel instead of reading them
+                UploadChannel.allow(prepared);
+                callback.onReceiveValue(prepared);
+                pageBridge.emit(MEDIA_EVENT_CHANNEL, report);
+            });
+        });
     }}
\ No newline at end of file
@@ -0,0 +1,100 @@
+package com.example.codeora;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+// Re-issues failed main-frame loads in place with backoff. Only when a failure is not
+// transient, or the attempts or retry budget run out, does it hand over to the error screen.
+public class MainFrameRetryScheduler {
+
+    private static final String TAG = "MainFrameRetry";
+
+    public interface Callback {
+        void retryLoad();
+
+        void onGaveUp();
+    }
+
+    private static final RetryStats stats = new RetryStats();
+
+    private final RetryPolicy policy;
+    private final Callback callback;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable retryRunnable = this::retryNow;
+    private int attempt = 0;
+    private long firstFailureAt = 0;
+    private boolean pending = false;
+
+    public MainFrameRetryScheduler(RetryPolicy policy, Callback callback) {
+        this.policy = policy;
+        this.callback = callback;
+    }
+
+    public static RetryStats stats() {
+        return stats;
+    }
+
+    public boolean isRetrying() {
+        return attempt > 0;
+    }
+
+    // retryAfterMillis is the server's Retry-After hint, or -1 when there is none.
+    public void onFailure(boolean isTransient, long retryAfterMillis) {
+        stats.recordFailure();
+        if (pending) {
+            return;
+        }
+        if (attempt == 0) {
+            firstFailureAt = SystemClock.elapsedRealtime();
+        }
+        attempt++;
+        // A Retry-After beyond the policy's longest backoff goes straight to the error screen
+        // rather than leaving the user on a spinner.
+        long delay = isTransient ? policy.delayFor(attempt, retryAfterMillis) : -1;
+        if (delay < 0 || !policy.tryAcquire(attempt)) {
+            Log.w(TAG, "Giving up after " + (attempt - 1) + " retries; " + stats);
+            stats.recordGaveUp();
+            reset();
+            callback.onGaveUp();
+            return;
+        }
+        Log.d(TAG, "Retrying main frame in " + delay + " ms (attempt " + attempt + ")");
+        pending = true;
+        handler.postDelayed(retryRunnable, delay);
+    }
+
+    public void onSuccess() {
+        if (pending) {
+            return;
+        }
+        long recoveryMillis = attempt == 0 ? 0 : SystemClock.elapsedRealtime() - firstFailureAt;
+        stats.recordSuccess(attempt, recoveryMillis);
+        policy.onSuccess();
+        if (attempt > 0) {
+            Log.d(TAG, "Recovered after " + attempt + " retries in " + recoveryMillis + " ms; " + stats);
+        }
+        reset();
+    }
+
+    // Stops any scheduled retry, e.g. because the device went offline and the connectivity
+    // monitor will trigger the reload instead.
+    public void cancel() {
+        handler.removeCallbacks(retryRunnable);
+        reset();
+    }
+
+    private void retryNow() {
+        pending = false;
+        stats.recordRetry();
+        callback.retryLoad();
+    }
+
+    private void reset() {
+        handler.removeCallbacks(retryRunnable);
+        pending = false;
+        attempt = 0;
+        firstFailureAt = 0;
+    }
+}
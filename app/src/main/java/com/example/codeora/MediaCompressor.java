@@ -0,0 +1,419 @@
+package com.example.codeora;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.database.Cursor;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.media.MediaMetadataRetriever;
+import android.media.MediaMuxer;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.os.SystemClock;
+import android.provider.OpenableColumns;
+import android.util.Log;
+import android.view.Surface;
+
+import androidx.core.content.FileProvider;
+import androidx.exifinterface.media.ExifInterface;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+// Shrinks picked media before the page sees it. Photos are decoded at a reduced sample size,
+// scaled to the target edge, rotated upright and re-encoded as JPEG, which drops all EXIF
+// (location included). Videos can optionally be re-encoded to a lower bitrate with MediaCodec.
+// A re-encoded photo always replaces the original, so no EXIF reaches the page; a transcoded
+// video only when it is actually smaller.
+public class MediaCompressor {
+
+    private static final String TAG = "MediaCompressor";
+    private static final String OUTPUT_DIR = "media";
+    private static final long OUTPUT_MAX_AGE_MILLIS = 24 * 60 * 60 * 1000L;
+    private static final long CODEC_TIMEOUT_US = 10000;
+
+    public static class Options {
+        public final int maxImageDimension;
+        public final int jpegQuality;
+        public final boolean transcodeVideo;
+        public final int videoBitrate;
+
+        public Options(int maxImageDimension, int jpegQuality, boolean transcodeVideo, int videoBitrate) {
+            this.maxImageDimension = maxImageDimension;
+            this.jpegQuality = jpegQuality;
+            this.transcodeVideo = transcodeVideo;
+            this.videoBitrate = videoBitrate;
+        }
+
+        public static Options defaults() {
+            return new Options(2048, 80, false, 2_000_000);
+        }
+
+        // Missing keys keep their defaults, so the page only sends what it wants to change.
+        public static Options fromJson(JSONObject json) {
+            Options defaults = defaults();
+            return new Options(
+                    Math.max(256, json.optInt("maxImageDimension", defaults.maxImageDimension)),
+                    Math.max(1, Math.min(100, json.optInt("jpegQuality", defaults.jpegQuality))),
+                    json.optBoolean("transcodeVideo", defaults.transcodeVideo),
+                    Math.max(100_000, json.optInt("videoBitrate", defaults.videoBitrate)));
+        }
+    }
+
+    public static class Result {
+        public final Uri uri;
+        public final String name;
+        public final String mimeType;
+        public final long originalBytes;
+        public final long outputBytes;
+        public final long elapsedMillis;
+        public final boolean compressed;
+
+        Result(Uri uri, String name, String mimeType, long originalBytes, long outputBytes, long elapsedMillis,
+               boolean compressed) {
+            this.uri = uri;
+            this.name = name;
+            this.mimeType = mimeType;
+            this.originalBytes = originalBytes;
+            this.outputBytes = outputBytes;
+            this.elapsedMillis = elapsedMillis;
+            this.compressed = compressed;
+        }
+
+        public JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("uri", uri.toString());
+            json.put("name", name);
+            json.put("mimeType", mimeType);
+            json.put("originalBytes", originalBytes);
+            json.put("outputBytes", outputBytes);
+            json.put("elapsedMs", elapsedMillis);
+            json.put("compressed", compressed);
+            return json;
+        }
+    }
+
+    private static volatile Options options = Options.defaults();
+
+    public static Options getOptions() {
+        return options;
+    }
+
+    public static void setOptions(Options newOptions) {
+        options = newOptions;
+    }
+
+    private final Context context;
+    private final File outputDir;
+
+    public MediaCompressor(Context context) {
+        this.context = context.getApplicationContext();
+        this.outputDir = new File(this.context.getCacheDir(), OUTPUT_DIR);
+    }
+
+    // Runs on a background thread. Never throws: on any failure the original is kept.
+    public Result compress(Uri uri, Options options) {
+        long startedAt = SystemClock.elapsedRealtime();
+        ContentResolver resolver = context.getContentResolver();
+        String name = displayName(resolver, uri);
+        String originalMimeType = resolver.getType(uri);
+        String mimeType = originalMimeType;
+        long originalBytes = sizeOf(uri);
+        File output = null;
+        try {
+            outputDir.mkdirs();
+            if (mimeType != null && mimeType.startsWith("image/") && !"image/gif".equals(mimeType)) {
+                output = compressImage(uri, options);
+                mimeType = output != null ? "image/jpeg" : mimeType;
+            } else if (options.transcodeVideo && mimeType != null && mimeType.startsWith("video/")) {
+                output = transcodeVideo(uri, options);
+                mimeType = output != null ? "video/mp4" : mimeType;
+            }
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Keeping original " + uri, e);
+            if (output != null) {
+                output.delete();
+            }
+            output = null;
+        }
+        long elapsed = SystemClock.elapsedRealtime() - startedAt;
+        // A re-encoded photo is kept even when it is not smaller, since the original carries EXIF.
+        boolean isVideo = mimeType != null && mimeType.startsWith("video/");
+        if (output == null || isVideo && originalBytes >= 0 && output.length() >= originalBytes) {
+            if (output != null) {
+                output.delete();
+            }
+            return new Result(uri, name, originalMimeType, originalBytes, originalBytes, elapsed, false);
+        }
+        Uri compressed = FileProvider.getUriForFile(context, context.getPackageName() + ".fileprovider", output);
+        return new Result(compressed, name, mimeType, originalBytes, output.length(), elapsed, true);
+    }
+
+    // Removes outputs of earlier picks; the page has long finished with them.
+    public void deleteStaleOutputs() {
+        File[] files = outputDir.listFiles();
+        if (files == null) {
+            return;
+        }
+        long cutoff = System.currentTimeMillis() - OUTPUT_MAX_AGE_MILLIS;
+        for (File file : files) {
+            if (file.lastModified() < cutoff) {
+                file.delete();
+            }
+        }
+    }
+
+    private File compressImage(Uri uri, Options options) throws IOException {
+        ContentResolver resolver = context.getContentResolver();
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            BitmapFactory.decodeStream(in, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            return null;
+        }
+        int orientation;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            orientation = in == null ? ExifInterface.ORIENTATION_NORMAL
+                    : new ExifInterface(in).getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
+        }
+
+        BitmapFactory.Options decode = new BitmapFactory.Options();
+        decode.inSampleSize = ImageScaling.sampleSizeFor(bounds.outWidth, bounds.outHeight, options.maxImageDimension);
+        Bitmap bitmap;
+        try (InputStream in = resolver.openInputStream(uri)) {
+            bitmap = BitmapFactory.decodeStream(in, null, decode);
+        }
+        if (bitmap == null) {
+            return null;
+        }
+        if (bitmap.hasAlpha()) {
+            // JPEG would flatten transparency, e.g. in stickers and screenshots of overlays.
+            bitmap.recycle();
+            return null;
+        }
+        int[] target = ImageScaling.targetSize(bitmap.getWidth(), bitmap.getHeight(), options.maxImageDimension);
+        Matrix matrix = new Matrix();
+        matrix.postScale((float) target[0] / bitmap.getWidth(), (float) target[1] / bitmap.getHeight());
+        int[] upright = ImageScaling.orientationTransform(orientation);
+        Matrix orient = new Matrix();
+        orient.setValues(new float[]{upright[0], upright[1], 0, upright[2], upright[3], 0, 0, 0, 1});
+        matrix.postConcat(orient);
+        Bitmap transformed = Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+        if (transformed != bitmap) {
+            bitmap.recycle();
+        }
+
+        File output = File.createTempFile("img", ".jpg", outputDir);
+        try (OutputStream out = new FileOutputStream(output)) {
+            transformed.compress(Bitmap.CompressFormat.JPEG, options.jpegQuality, out);
+        } finally {
+            transformed.recycle();
+        }
+        return output;
+    }
+
+    // Decodes the video track straight into the encoder's input surface at the source
+    // resolution and re-encodes it as AVC at the target bitrate; audio is copied untouched.
+    private File transcodeVideo(Uri uri, Options options) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        MediaCodec decoder = null;
+        MediaCodec encoder = null;
+        MediaMuxer muxer = null;
+        Surface surface = null;
+        File output = File.createTempFile("vid", ".mp4", outputDir);
+        boolean muxerStarted = false;
+        try {
+            extractor.setDataSource(context, uri, null);
+            int videoTrack = findTrack(extractor, "video/");
+            int audioTrack = findTrack(extractor, "audio/");
+            if (videoTrack < 0) {
+                output.delete();
+                return null;
+            }
+            MediaFormat inputFormat = extractor.getTrackFormat(videoTrack);
+            if (inputFormat.containsKey(MediaFormat.KEY_BIT_RATE)
+                    && inputFormat.getInteger(MediaFormat.KEY_BIT_RATE) <= options.videoBitrate) {
+                output.delete();
+                return null;
+            }
+            int width = inputFormat.getInteger(MediaFormat.KEY_WIDTH);
+            int height = inputFormat.getInteger(MediaFormat.KEY_HEIGHT);
+            MediaFormat outputFormat = MediaFormat.createVideoFormat(MediaFormat.MIMETYPE_VIDEO_AVC, width, height);
+            outputFormat.setInteger(MediaFormat.KEY_COLOR_FORMAT, MediaCodecInfo.CodecCapabilities.COLOR_FormatSurface);
+            outputFormat.setInteger(MediaFormat.KEY_BIT_RATE, options.videoBitrate);
+            outputFormat.setInteger(MediaFormat.KEY_FRAME_RATE, inputFormat.containsKey(MediaFormat.KEY_FRAME_RATE)
+                    ? inputFormat.getInteger(MediaFormat.KEY_FRAME_RATE) : 30);
+            outputFormat.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, 2);
+
+            encoder = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_VIDEO_AVC);
+            encoder.configure(outputFormat, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+            surface = encoder.createInputSurface();
+            encoder.start();
+            decoder = MediaCodec.createDecoderByType(inputFormat.getString(MediaFormat.KEY_MIME));
+            decoder.configure(inputFormat, surface, null, 0);
+            decoder.start();
+
+            muxer = new MediaMuxer(output.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+            muxer.setOrientationHint(rotationOf(uri));
+            extractor.selectTrack(videoTrack);
+
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            boolean inputDone = false;
+            boolean decoderDone = false;
+            boolean encoderDone = false;
+            int muxerVideoTrack = -1;
+            int muxerAudioTrack = -1;
+            while (!encoderDone) {
+                if (!inputDone) {
+                    int index = decoder.dequeueInputBuffer(CODEC_TIMEOUT_US);
+                    if (index >= 0) {
+                        ByteBuffer buffer = decoder.getInputBuffer(index);
+                        int size = extractor.readSampleData(buffer, 0);
+                        if (size < 0) {
+                            decoder.queueInputBuffer(index, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+                            inputDone = true;
+                        } else {
+                            decoder.queueInputBuffer(index, 0, size, extractor.getSampleTime(), 0);
+                            extractor.advance();
+                        }
+                    }
+                }
+                if (!decoderDone) {
+                    int index = decoder.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+                    if (index >= 0) {
+                        decoder.releaseOutputBuffer(index, info.size > 0);
+                        if ((info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+                            encoder.signalEndOfInputStream();
+                            decoderDone = true;
+                        }
+                    }
+                }
+                int index = encoder.dequeueOutputBuffer(info, CODEC_TIMEOUT_US);
+                if (index == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                    muxerVideoTrack = muxer.addTrack(encoder.getOutputFormat());
+                    if (audioTrack >= 0) {
+                        muxerAudioTrack = muxer.addTrack(extractor.getTrackFormat(audioTrack));
+                    }
+                    muxer.start();
+                    muxerStarted = true;
+                } else if (index >= 0) {
+                    ByteBuffer encoded = encoder.getOutputBuffer(index);
+                    boolean config = (info.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) != 0;
+                    if (!config && info.size > 0 && muxerStarted) {
+                        muxer.writeSampleData(muxerVideoTrack, encoded, info);
+                    }
+                    encoder.releaseOutputBuffer(index, false);
+                    encoderDone = (info.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0;
+                }
+            }
+            if (muxerAudioTrack >= 0) {
+                copyTrack(uri, audioTrack, muxer, muxerAudioTrack);
+            }
+            return output;
+        } catch (IOException | RuntimeException e) {
+            output.delete();
+            throw e;
+        } finally {
+            extractor.release();
+            if (decoder != null) {
+                decoder.release();
+            }
+            if (encoder != null) {
+                encoder.release();
+            }
+            if (surface != null) {
+                surface.release();
+            }
+            if (muxer != null) {
+                try {
+                    if (muxerStarted) {
+                        muxer.stop();
+                    }
+                } finally {
+                    muxer.release();
+                }
+            }
+        }
+    }
+
+    private void copyTrack(Uri uri, int track, MediaMuxer muxer, int muxerTrack) throws IOException {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(context, uri, null);
+            extractor.selectTrack(track);
+            ByteBuffer buffer = ByteBuffer.allocate(256 * 1024);
+            MediaCodec.BufferInfo info = new MediaCodec.BufferInfo();
+            while (true) {
+                int size = extractor.readSampleData(buffer, 0);
+                if (size < 0) {
+                    break;
+                }
+                info.set(0, size, extractor.getSampleTime(), extractor.getSampleFlags());
+                muxer.writeSampleData(muxerTrack, buffer, info);
+                extractor.advance();
+            }
+        } finally {
+            extractor.release();
+        }
+    }
+
+    private static int findTrack(MediaExtractor extractor, String prefix) {
+        for (int i = 0; i < extractor.getTrackCount(); i++) {
+            String mime = extractor.getTrackFormat(i).getString(MediaFormat.KEY_MIME);
+            if (mime != null && mime.startsWith(prefix)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private int rotationOf(Uri uri) {
+        MediaMetadataRetriever retriever = new MediaMetadataRetriever();
+        try {
+            retriever.setDataSource(context, uri);
+            String rotation = retriever.extractMetadata(MediaMetadataRetriever.METADATA_KEY_VIDEO_ROTATION);
+            return rotation != null ? Integer.parseInt(rotation) : 0;
+        } catch (RuntimeException e) {
+            return 0;
+        } finally {
+            try {
+                retriever.release();
+            } catch (IOException | RuntimeException ignored) {
+                // release() only declares IOException from API 29 on
+            }
+        }
+    }
+
+    public static String displayName(ContentResolver resolver, Uri uri) {
+        try (Cursor cursor = resolver.query(uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getString(0);
+            }
+        } catch (RuntimeException e) {
+            Log.w(TAG, "No display name for " + uri, e);
+        }
+        return uri.getLastPathSegment();
+    }
+
+    private long sizeOf(Uri uri) {
+        try (ParcelFileDescriptor pfd = context.getContentResolver().openFileDescriptor(uri, "r")) {
+            return pfd != null ? pfd.getStatSize() : -1;
+        } catch (IOException | RuntimeException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.codeora;
+
+import android.os.Debug;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.WebView;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Turns onTrimMemory levels into a TrimPolicy and applies it: the page is told on the
+// "memory" channel to drop images and collapse history, registered native caches are
+// cleared, and the WebView's timers are paused while nothing is visible. Coming back to the
+// foreground resumes timers at once and then lets the page refill in two steps, so the first
+// frames are not competing with every cache being rebuilt. Heap, native heap and PSS are
+// logged before and a few seconds after each trim for tuning.
+public class MemoryGovernor {
+
+    public static final String CHANNEL = "memory";
+    private static final String TAG = "MemoryGovernor";
+    // Lets the page react to the memory event before its timers stop.
+    private static final long PAUSE_DELAY_MILLIS = 1000;
+    private static final long MEASURE_DELAY_MILLIS = 3000;
+    private static final long RESTORE_VISIBLE_DELAY_MILLIS = 300;
+    private static final long RESTORE_FULL_DELAY_MILLIS = 2000;
+
+    public interface Trimmable {
+        void onTrim(TrimPolicy policy);
+    }
+
+    private static final Set<Trimmable> trimmables = Collections.newSetFromMap(new WeakHashMap<>());
+    // Debug.getMemoryInfo is slow; measure off the main thread.
+    private static final ExecutorService sampler = Executors.newSingleThreadExecutor();
+
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private WebView webView;
+    private NativeBridge bridge;
+    private TrimPolicy applied = TrimPolicy.none();
+    private boolean timersPaused;
+
+    private final Runnable pauseTimers = () -> {
+        if (webView != null && !timersPaused) {
+            webView.onPause();
+            webView.pauseTimers();
+            timersPaused = true;
+        }
+    };
+
+    // Native caches that can be rebuilt on demand; held weakly.
+    public static void register(Trimmable trimmable) {
+        synchronized (trimmables) {
+            trimmables.add(trimmable);
+        }
+    }
+
+    // The WebView to manage; called again with the replacement after a renderer recovery.
+    public void attach(WebView webView, NativeBridge bridge) {
+        this.webView = webView;
+        this.bridge = bridge;
+        timersPaused = false;
+    }
+
+    // From onDestroy; drops pending steps that would touch the WebView.
+    public void release() {
+        mainHandler.removeCallbacksAndMessages(null);
+        webView = null;
+        bridge = null;
+    }
+
+    public void onTrimMemory(int level) {
+        TrimPolicy policy = TrimPolicy.forLevel(level);
+        if (policy.isCoveredBy(applied)) {
+            return;
+        }
+        applied = applied.combine(policy);
+        sampler.execute(() -> {
+            Sample before = Sample.take();
+            mainHandler.post(() -> apply(level, policy));
+            mainHandler.postDelayed(() -> sampler.execute(() ->
+                    Log.i(TAG, "Trim level " + level + " (" + policy.pressure.label + "): "
+                            + before.diff(Sample.take()))), MEASURE_DELAY_MILLIS);
+        });
+    }
+
+    // From onResume.
+    public void onForeground() {
+        mainHandler.removeCallbacks(pauseTimers);
+        if (timersPaused && webView != null) {
+            webView.resumeTimers();
+            webView.onResume();
+            timersPaused = false;
+        }
+        TrimPolicy previous = applied;
+        applied = TrimPolicy.none();
+        if (previous.pressure == TrimPolicy.Pressure.NONE && !previous.dropImages && previous.keepHistoryRows < 0) {
+            return;
+        }
+        mainHandler.postDelayed(() -> emit("normal", "visible", null), RESTORE_VISIBLE_DELAY_MILLIS);
+        mainHandler.postDelayed(() -> emit("normal", "full", null), RESTORE_FULL_DELAY_MILLIS);
+    }
+
+    private void apply(int level, TrimPolicy policy) {
+        if (!policy.isCoveredBy(applied)) {
+            // Back in the foreground before the trim got here.
+            return;
+        }
+        if (policy.dropImages || policy.keepHistoryRows >= 0) {
+            emit(policy.pressure.label, "trim", policy);
+        }
+        if (policy.freeNativeCaches) {
+            List<Trimmable> targets;
+            synchronized (trimmables) {
+                targets = new ArrayList<>(trimmables);
+            }
+            for (Trimmable trimmable : targets) {
+                trimmable.onTrim(policy);
+            }
+        }
+        if (policy.pauseTimers && !timersPaused) {
+            mainHandler.removeCallbacks(pauseTimers);
+            mainHandler.postDelayed(pauseTimers, PAUSE_DELAY_MILLIS);
+        }
+        Log.d(TAG, "Applied trim level " + level + " as " + policy.pressure.label);
+    }
+
+    // {level: "normal" | "low" | "critical", phase: "trim" | "visible" | "full",
+    //  dropImages?, keepHistoryRows?}
+    private void emit(String label, String phase, TrimPolicy policy) {
+        if (bridge == null) {
+            return;
+        }
+        try {
+            JSONObject event = new JSONObject();
+            event.put("level", label);
+            event.put("phase", phase);
+            if (policy != null) {
+                event.put("dropImages", policy.dropImages);
+                event.put("keepHistoryRows", policy.keepHistoryRows);
+            }
+            bridge.emit(CHANNEL, event.toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not encode memory event", e);
+        }
+    }
+
+    private static final class Sample {
+        final long javaHeapKb;
+        final long nativeHeapKb;
+        final long pssKb;
+
+        Sample(long javaHeapKb, long nativeHeapKb, long pssKb) {
+            this.javaHeapKb = javaHeapKb;
+            this.nativeHeapKb = nativeHeapKb;
+            this.pssKb = pssKb;
+        }
+
+        static Sample take() {
+            Runtime runtime = Runtime.getRuntime();
+            Debug.MemoryInfo memory = new Debug.MemoryInfo();
+            Debug.getMemoryInfo(memory);
+            return new Sample((runtime.totalMemory() - runtime.freeMemory()) / 1024,
+                    Debug.getNativeHeapAllocatedSize() / 1024, memory.getTotalPss());
+        }
+
+        String diff(Sample after) {
+            return "heap " + javaHeapKb + " -> " + after.javaHeapKb + " KB, native " + nativeHeapKb + " -> "
+                    + after.nativeHeapKb + " KB, pss " + pssKb + " -> " + after.pssKb + " KB";
+        }
+    }
+}
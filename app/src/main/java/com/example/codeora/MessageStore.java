@@ -0,0 +1,250 @@
+package com.example.codeora;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Local chat history. Messages are paged per conversation with keyset queries on
+// (timestamp, message_id), so opening a long thread reads one index range instead of
+// scanning. Bodies are indexed in an external-content FTS4 table kept in sync by triggers.
+public class MessageStore extends SQLiteOpenHelper implements SyncEngine.Store {
+
+    private static final String DATABASE_NAME = "messages.db";
+    private static final int DATABASE_VERSION = 1;
+
+    public static class Page {
+        public final List<ChatMessage> messages;
+        // Pass back as "before" to continue; null when the start of the thread was reached.
+        public final String nextCursor;
+
+        Page(List<ChatMessage> messages, String nextCursor) {
+            this.messages = messages;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    private static MessageStore instance;
+
+    public static synchronized MessageStore get(Context context) {
+        if (instance == null) {
+            instance = new MessageStore(context.getApplicationContext(), DATABASE_NAME);
+        }
+        return instance;
+    }
+
+    MessageStore(Context context, String name) {
+        super(context, name, null, DATABASE_VERSION);
+    }
+
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        db.enableWriteAheadLogging();
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE messages ("
+                + "conversation_id TEXT NOT NULL, "
+                + "message_id TEXT NOT NULL, "
+                + "timestamp INTEGER NOT NULL, "
+                + "sender TEXT, "
+                + "body TEXT, "
+                + "extra TEXT, "
+                + "PRIMARY KEY (conversation_id, message_id))");
+        db.execSQL("CREATE INDEX messages_by_time ON messages (conversation_id, timestamp, message_id)");
+        db.execSQL("CREATE VIRTUAL TABLE messages_fts USING fts4(content=\"messages\", body)");
+        db.execSQL("CREATE TRIGGER messages_bu BEFORE UPDATE ON messages BEGIN "
+                + "DELETE FROM messages_fts WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER messages_bd BEFORE DELETE ON messages BEGIN "
+                + "DELETE FROM messages_fts WHERE docid = old.rowid; END");
+        db.execSQL("CREATE TRIGGER messages_au AFTER UPDATE ON messages BEGIN "
+                + "INSERT INTO messages_fts (docid, body) VALUES (new.rowid, new.body); END");
+        db.execSQL("CREATE TRIGGER messages_ai AFTER INSERT ON messages BEGIN "
+                + "INSERT INTO messages_fts (docid, body) VALUES (new.rowid, new.body); END");
+        db.execSQL("CREATE TABLE sync_cursors (name TEXT PRIMARY KEY, value TEXT)");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Only version 1 exists so far.
+    }
+
+    // Inserts or updates messages in one transaction. Updates go through UPDATE rather than
+    // INSERT OR REPLACE because REPLACE deletes without firing the FTS delete trigger.
+    public void putMessages(List<ChatMessage> messages) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            SQLiteStatement update = db.compileStatement("UPDATE messages SET timestamp = ?, sender = ?, "
+                    + "body = ?, extra = ? WHERE conversation_id = ? AND message_id = ?");
+            SQLiteStatement insert = db.compileStatement("INSERT INTO messages "
+                    + "(conversation_id, message_id, timestamp, sender, body, extra) VALUES (?, ?, ?, ?, ?, ?)");
+            for (ChatMessage message : messages) {
+                update.clearBindings();
+                update.bindLong(1, message.timestamp);
+                bindNullable(update, 2, message.sender);
+                bindNullable(update, 3, message.body);
+                bindNullable(update, 4, message.extra);
+                update.bindString(5, message.conversationId);
+                update.bindString(6, message.messageId);
+                if (update.executeUpdateDelete() == 0) {
+                    insert.clearBindings();
+                    insert.bindString(1, message.conversationId);
+                    insert.bindString(2, message.messageId);
+                    insert.bindLong(3, message.timestamp);
+                    bindNullable(insert, 4, message.sender);
+                    bindNullable(insert, 5, message.body);
+                    bindNullable(insert, 6, message.extra);
+                    insert.executeInsert();
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    @Override
+    public void applyDelta(List<ChatMessage> messages, String cursorName, String cursor) {
+        SQLiteDatabase db = getWritableDatabase();
+        db.beginTransaction();
+        try {
+            putMessages(messages);
+            if (cursor != null) {
+                setSyncCursor(cursorName, cursor);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    public void deleteMessage(String conversationId, String messageId) {
+        getWritableDatabase().delete("messages", "conversation_id = ? AND message_id = ?",
+                new String[]{conversationId, messageId});
+    }
+
+    // Newest-first page of a conversation, strictly older than the cursor when one is given.
+    public Page pageBefore(String conversationId, String before, int limit) {
+        String selection = "conversation_id = ?";
+        String[] args = {conversationId};
+        long[] position = parseCursor(before);
+        if (position != null) {
+            String messageId = before.substring(before.indexOf(':') + 1);
+            selection += " AND (timestamp < ? OR (timestamp = ? AND message_id < ?))";
+            args = new String[]{conversationId, Long.toString(position[0]), Long.toString(position[0]), messageId};
+        }
+        List<ChatMessage> messages = query(selection, args, "timestamp DESC, message_id DESC", limit + 1);
+        String nextCursor = null;
+        if (messages.size() > limit) {
+            messages.remove(limit);
+            ChatMessage last = messages.get(limit - 1);
+            nextCursor = cursorOf(last);
+        }
+        return new Page(messages, nextCursor);
+    }
+
+    // Oldest-first messages newer than the cursor, used to catch a thread up after a sync.
+    public Page pageAfter(String conversationId, String after, int limit) {
+        String selection = "conversation_id = ?";
+        String[] args = {conversationId};
+        long[] position = parseCursor(after);
+        if (position != null) {
+            String messageId = after.substring(after.indexOf(':') + 1);
+            selection += " AND (timestamp > ? OR (timestamp = ? AND message_id > ?))";
+            args = new String[]{conversationId, Long.toString(position[0]), Long.toString(position[0]), messageId};
+        }
+        List<ChatMessage> messages = query(selection, args, "timestamp ASC, message_id ASC", limit + 1);
+        String nextCursor = null;
+        if (messages.size() > limit) {
+            messages.remove(limit);
+            nextCursor = cursorOf(messages.get(limit - 1));
+        }
+        return new Page(messages, nextCursor);
+    }
+
+    // Full-text search across all conversations, or one when conversationId is non-null.
+    public List<ChatMessage> search(String query, String conversationId, int limit) {
+        String sql = "SELECT m.conversation_id, m.message_id, m.timestamp, m.sender, m.body, m.extra "
+                + "FROM messages_fts f JOIN messages m ON m.rowid = f.docid "
+                + "WHERE messages_fts MATCH ?"
+                + (conversationId != null ? " AND m.conversation_id = ?" : "")
+                + " ORDER BY m.timestamp DESC LIMIT " + limit;
+        String[] args = conversationId != null ? new String[]{query, conversationId} : new String[]{query};
+        try (Cursor cursor = getReadableDatabase().rawQuery(sql, args)) {
+            return readMessages(cursor);
+        }
+    }
+
+    public long countMessages(String conversationId) {
+        return DatabaseUtils.queryNumEntries(getReadableDatabase(), "messages",
+                "conversation_id = ?", new String[]{conversationId});
+    }
+
+    // Incremental sync position, opaque to the store (e.g. a server sequence number).
+    @Override
+    public String getSyncCursor(String name) {
+        try (Cursor cursor = getReadableDatabase().query("sync_cursors", new String[]{"value"},
+                "name = ?", new String[]{name}, null, null, null)) {
+            return cursor.moveToFirst() ? cursor.getString(0) : null;
+        }
+    }
+
+    public void setSyncCursor(String name, String value) {
+        ContentValues values = new ContentValues();
+        values.put("name", name);
+        values.put("value", value);
+        getWritableDatabase().insertWithOnConflict("sync_cursors", null, values, SQLiteDatabase.CONFLICT_REPLACE);
+    }
+
+    private List<ChatMessage> query(String selection, String[] args, String orderBy, int limit) {
+        try (Cursor cursor = getReadableDatabase().query("messages",
+                new String[]{"conversation_id", "message_id", "timestamp", "sender", "body", "extra"},
+                selection, args, null, null, orderBy, Integer.toString(limit))) {
+            return readMessages(cursor);
+        }
+    }
+
+    private static List<ChatMessage> readMessages(Cursor cursor) {
+        List<ChatMessage> messages = new ArrayList<>(cursor.getCount());
+        while (cursor.moveToNext()) {
+            messages.add(new ChatMessage(cursor.getString(0), cursor.getString(1), cursor.getLong(2),
+                    cursor.getString(3), cursor.getString(4), cursor.getString(5)));
+        }
+        return messages;
+    }
+
+    static String cursorOf(ChatMessage message) {
+        return message.timestamp + ":" + message.messageId;
+    }
+
+    private static long[] parseCursor(String cursor) {
+        if (cursor == null) {
+            return null;
+        }
+        int colon = cursor.indexOf(':');
+        if (colon <= 0) {
+            return null;
+        }
+        try {
+            return new long[]{Long.parseLong(cursor.substring(0, colon))};
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
+    }
+}
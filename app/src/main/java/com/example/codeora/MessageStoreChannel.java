@@ -0,0 +1,113 @@
+package com.example.codeora;
+
+import android.util.Log;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Bridge channel "store": lets the web app read and write the native MessageStore.
+// Requests are JSON objects with an "op" field; see handle() for the supported operations.
+public class MessageStoreChannel implements NativeBridge.ChannelHandler {
+
+    public static final String CHANNEL = "store";
+    private static final String TAG = "MessageStoreChannel";
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 500;
+
+    // One writer thread keeps database work off both the UI and the JavaBridge thread.
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    private final MessageStore store;
+
+    public MessageStoreChannel(MessageStore store) {
+        this.store = store;
+    }
+
+    @Override
+    public void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        String payload = message.payloadString();
+        executor.execute(() -> {
+            try {
+                reply.success(handle(new JSONObject(payload)).toString());
+            } catch (JSONException | RuntimeException e) {
+                Log.e(TAG, "Store request failed", e);
+                reply.error(String.valueOf(e.getMessage()));
+            }
+        });
+    }
+
+    // put:       {messages: [...]}                      -> {count}
+    // delete:    {conversationId, id}                   -> {}
+    // page:      {conversationId, before?, limit?}      -> {messages, nextCursor}  newest first
+    // after:     {conversationId, after?, limit?}       -> {messages, nextCursor}  oldest first
+    // search:    {query, conversationId?, limit?}       -> {messages}
+    // getCursor: {name}                                 -> {value}
+    // setCursor: {name, value}                          -> {}
+    JSONObject handle(JSONObject request) throws JSONException {
+        String op = request.getString("op");
+        JSONObject result = new JSONObject();
+        switch (op) {
+            case "put": {
+                JSONArray array = request.getJSONArray("messages");
+                List<ChatMessage> messages = new ArrayList<>(array.length());
+                for (int i = 0; i < array.length(); i++) {
+                    messages.add(ChatMessage.fromJson(array.getJSONObject(i)));
+                }
+                store.putMessages(messages);
+                result.put("count", messages.size());
+                break;
+            }
+            case "delete":
+                store.deleteMessage(request.getString("conversationId"), request.getString("id"));
+                break;
+            case "page": {
+                MessageStore.Page page = store.pageBefore(request.getString("conversationId"),
+                        request.optString("before", null), limitOf(request));
+                putPage(result, page);
+                break;
+            }
+            case "after": {
+                MessageStore.Page page = store.pageAfter(request.getString("conversationId"),
+                        request.optString("after", null), limitOf(request));
+                putPage(result, page);
+                break;
+            }
+            case "search":
+                result.put("messages", toJson(store.search(request.getString("query"),
+                        request.optString("conversationId", null), limitOf(request))));
+                break;
+            case "getCursor":
+                result.put("value", store.getSyncCursor(request.getString("name")));
+                break;
+            case "setCursor":
+                store.setSyncCursor(request.getString("name"), request.getString("value"));
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown store op " + op);
+        }
+        return result;
+    }
+
+    private static int limitOf(JSONObject request) {
+        return Math.max(1, Math.min(MAX_PAGE_SIZE, request.optInt("limit", DEFAULT_PAGE_SIZE)));
+    }
+
+    private static void putPage(JSONObject result, MessageStore.Page page) throws JSONException {
+        result.put("messages", toJson(page.messages));
+        result.put("nextCursor", page.nextCursor == null ? JSONObject.NULL : page.nextCursor);
+    }
+
+    static JSONArray toJson(List<ChatMessage> messages) throws JSONException {
+        JSONArray array = new JSONArray();
+        for (ChatMessage message : messages) {
+            array.put(message.toJson());
+        }
+        return array;
+    }
+}
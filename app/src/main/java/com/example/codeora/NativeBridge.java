@@ -0,0 +1,310 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+import android.webkit.WebView;
+import android.widget.Toast;
+
+import androidx.webkit.JavaScriptReplyProxy;
+import androidx.webkit.WebMessageCompat;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+
+import org.json.JSONException;
+import org.json.JSONTokener;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// JS <-> native bridge exposed to the page as window.Android through a web message listener, so
+// only the main frame of the chat origin gets it: other origins the WebView loads (sign-in pages,
+// iframes) never see the object, and messages from anywhere else are dropped. The page-side shim
+// (assets/bridge.js) is installed at document start on the chat origin only; it queues messages
+// and crosses into Java once per animation frame, and replies and events going the other way are
+// buffered here and posted back to that frame once per frame. WebViews too old for web message
+// listeners get no bridge at all.
+public class NativeBridge {
+
+    private static final String TAG = "NativeBridge";
+    public static final String JS_NAME = "Android";
+    // The bridge itself first; the rest build on window.NativeBridge.
+    private static final String[] SHIM_ASSETS = {"bridge.js", "history.js", "recovery.js", "net.js", "links.js"};
+
+    public interface ChannelHandler {
+        // Called on the bridge's background thread, in the order the page sent the messages.
+        // The message is only valid during the call.
+        void onMessage(BridgeCodec.Message message, Reply reply);
+    }
+
+    // Implemented by channels that hold per-document state, to drop it when a new document starts.
+    public interface PageListener {
+        void onPageStarted();
+    }
+
+    // Correlates a response with the page's request. Safe to complete from any thread, once.
+    public final class Reply {
+        private final String channel;
+        private final String id;
+
+        Reply(String channel, String id) {
+            this.channel = channel;
+            this.id = id;
+        }
+
+        public void success(CharSequence json) {
+            if (id != null) {
+                enqueue(BridgeCodec.KIND_RESPONSE, channel, id, json);
+            }
+        }
+
+        public void error(String message) {
+            if (id != null) {
+                StringBuilder json = new StringBuilder(message.length() + 2);
+                BridgeCodec.appendJsString(json, message);
+                enqueue(BridgeCodec.KIND_ERROR, channel, id, json);
+            }
+        }
+    }
+
+    private static final class Registration {
+        final String channel;
+        final ChannelHandler handler;
+
+        Registration(String channel, ChannelHandler handler) {
+            this.channel = channel;
+            this.handler = handler;
+        }
+    }
+
+    private static String shimScript;
+    private static final ExecutorService incoming = Executors.newSingleThreadExecutor();
+
+    private final Context context;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final CopyOnWriteArrayList<Registration> registrations = new CopyOnWriteArrayList<>();
+    private final BridgeCodec.Message message = new BridgeCodec.Message();
+    private final Object outgoingLock = new Object();
+    // Double-buffered so producers keep appending while a frame's batch is being delivered.
+    private StringBuilder outgoing = new StringBuilder(1024);
+    private StringBuilder delivering = new StringBuilder(1024);
+    private boolean flushScheduled = false;
+    private WebView webView;
+    private Uri allowedOrigin;
+    private boolean documentStartShim;
+    // No web message listener: nothing could ever deliver what emit() queues.
+    private volatile boolean disabled;
+    // The chat page's end of the channel, from its latest message; main thread only.
+    private JavaScriptReplyProxy pageProxy;
+
+    private long batchesIn;
+    private long messagesIn;
+    private long batchesOut;
+    private long messagesOut;
+    private int pendingOut;
+
+    private final Choreographer.FrameCallback flushCallback = frameTimeNanos -> flush();
+
+    public NativeBridge(Context context) {
+        this.context = context.getApplicationContext();
+        register("toast", (toast, reply) -> {
+            String text = toast.hasPayload() ? stringValue(toast.payloadString()) : "";
+            mainHandler.post(() -> Toast.makeText(this.context, text, Toast.LENGTH_SHORT).show());
+        });
+    }
+
+    // origin is the only one allowed to talk to the bridge, e.g. "https://chat.example.com".
+    public void attach(WebView webView, String origin) {
+        this.webView = webView;
+        this.allowedOrigin = Uri.parse(origin);
+        if (!WebViewFeature.isFeatureSupported(WebViewFeature.WEB_MESSAGE_LISTENER)) {
+            Log.w(TAG, "WebView has no web message listener; the native bridge is disabled");
+            disabled = true;
+            return;
+        }
+        WebViewCompat.addWebMessageListener(webView, JS_NAME, Collections.singleton(origin), this::onPostMessage);
+        String shim = loadShim(context);
+        if (shim != null && WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT)) {
+            WebViewCompat.addDocumentStartJavaScript(webView, shim, Collections.singleton(origin));
+            documentStartShim = true;
+        }
+    }
+
+    // From onPageStarted: the bridge and its channels drop what the old document left behind, and
+    // WebViews without document-start scripts get the shim here, only when the new document is on
+    // the allowed origin. Nothing is sent again until the new document says hello.
+    public void onPageStarted(String url) {
+        pageProxy = null;
+        synchronized (outgoingLock) {
+            outgoing.setLength(0);
+            pendingOut = 0;
+        }
+        for (Registration registration : registrations) {
+            if (registration.handler instanceof PageListener) {
+                ((PageListener) registration.handler).onPageStarted();
+            }
+        }
+        if (webView == null || documentStartShim || url == null || !isAllowed(Uri.parse(url))) {
+            return;
+        }
+        String shim = loadShim(context);
+        if (shim != null) {
+            webView.evaluateJavascript(shim, null);
+        }
+    }
+
+    public void register(String channel, ChannelHandler handler) {
+        unregister(channel);
+        registrations.add(new Registration(channel, handler));
+    }
+
+    public void unregister(String channel) {
+        for (Registration registration : registrations) {
+            if (registration.channel.equals(channel)) {
+                registrations.remove(registration);
+            }
+        }
+    }
+
+    // Sends an event to listeners registered with NativeBridge.on(channel, fn) in the page.
+    public void emit(String channel, CharSequence json) {
+        enqueue(BridgeCodec.KIND_EVENT, channel, null, json);
+    }
+
+    // On the main thread. The listener is only installed for the allowed origin; the origin and
+    // frame are checked again so nothing but the chat's main frame reaches a channel.
+    private void onPostMessage(WebView view, WebMessageCompat webMessage, Uri sourceOrigin,
+                               boolean isMainFrame, JavaScriptReplyProxy replyProxy) {
+        if (!isMainFrame || !isAllowed(sourceOrigin)) {
+            Log.w(TAG, "Dropped bridge message from " + sourceOrigin + (isMainFrame ? "" : " (subframe)"));
+            return;
+        }
+        // The shim says hello with an empty batch when it is installed, so replies and events
+        // always go to the current document.
+        pageProxy = replyProxy;
+        String batch = webMessage.getData();
+        if (batch != null && !batch.isEmpty()) {
+            incoming.execute(() -> postBatch(batch));
+        }
+        synchronized (outgoingLock) {
+            if (outgoing.length() == 0 || flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        Choreographer.getInstance().postFrameCallback(flushCallback);
+    }
+
+    private void postBatch(String batch) {
+        synchronized (message) {
+            batchesIn++;
+            messagesIn += BridgeCodec.decode(batch, message, this::dispatch);
+        }
+    }
+
+    private boolean isAllowed(Uri origin) {
+        return origin != null && allowedOrigin != null
+                && allowedOrigin.getScheme().equalsIgnoreCase(String.valueOf(origin.getScheme()))
+                && allowedOrigin.getHost().equalsIgnoreCase(String.valueOf(origin.getHost()))
+                && allowedOrigin.getPort() == origin.getPort();
+    }
+
+    public String stats() {
+        synchronized (outgoingLock) {
+            return "NativeBridge in=" + messagesIn + "/" + batchesIn + " batches out="
+                    + messagesOut + "/" + batchesOut + " batches";
+        }
+    }
+
+    private void dispatch(BridgeCodec.Message message) {
+        for (Registration registration : registrations) {
+            if (message.isChannel(registration.channel)) {
+                Reply reply = new Reply(registration.channel, message.hasId() ? message.id() : null);
+                try {
+                    registration.handler.onMessage(message, reply);
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Handler for " + registration.channel + " failed", e);
+                    reply.error(String.valueOf(e.getMessage()));
+                }
+                return;
+            }
+        }
+        Log.w(TAG, "No handler for bridge channel " + message.channel());
+        if (message.hasId()) {
+            new Reply(message.channel(), message.id()).error("Unknown channel");
+        }
+    }
+
+    private void enqueue(char kind, String channel, String id, CharSequence json) {
+        if (disabled) {
+            return;
+        }
+        synchronized (outgoingLock) {
+            BridgeCodec.encode(outgoing, kind, channel, id, json);
+            pendingOut++;
+            if (flushScheduled) {
+                return;
+            }
+            flushScheduled = true;
+        }
+        mainHandler.post(() -> Choreographer.getInstance().postFrameCallback(flushCallback));
+    }
+
+    private void flush() {
+        StringBuilder batch;
+        synchronized (outgoingLock) {
+            flushScheduled = false;
+            // Held until the page has said hello; onPostMessage flushes them then.
+            if (outgoing.length() == 0 || pageProxy == null) {
+                return;
+            }
+            batch = outgoing;
+            outgoing = delivering;
+            delivering = batch;
+            batchesOut++;
+            messagesOut += pendingOut;
+            pendingOut = 0;
+        }
+        pageProxy.postMessage(batch.toString());
+        batch.setLength(0);
+    }
+
+    private static String stringValue(String json) {
+        try {
+            return String.valueOf(new JSONTokener(json).nextValue());
+        } catch (JSONException e) {
+            return json;
+        }
+    }
+
+    private static synchronized String loadShim(Context context) {
+        if (shimScript == null) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            try {
+                for (String asset : SHIM_ASSETS) {
+                    try (InputStream in = context.getAssets().open(asset)) {
+                        int n;
+                        while ((n = in.read(buffer)) != -1) {
+                            out.write(buffer, 0, n);
+                        }
+                    }
+                    out.write('\n');
+                }
+                shimScript = new String(out.toByteArray(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not load bridge shim", e);
+            }
+        }
+        return shimScript;
+    }
+}
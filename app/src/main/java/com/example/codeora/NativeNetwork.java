@@ -0,0 +1,389 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.CookieManager;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Proxy;
+import java.net.UnknownHostException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.Connection;
+import okhttp3.ConnectionPool;
+import okhttp3.Dns;
+import okhttp3.EventListener;
+import okhttp3.Handshake;
+import okhttp3.Headers;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okhttp3.brotli.BrotliInterceptor;
+
+// Optional native network path for the WebView's subresource GETs (API calls, and assets the
+// preload and web caches do not hold). Requests go through one pooled OkHttp client, so calls
+// to the same origin share a multiplexed HTTP/2 connection, responses are decoded from Brotli
+// or gzip natively, and hosts are resolved ahead of use. Each request's DNS, connect, TLS and
+// time to first byte are recorded; with the mode off the page reports the same phases for
+// Chromium's stack from Resource Timing, so a run in each mode gives a comparison:
+//   adb shell am start -n com.example.codeora/.MainActivity --ez native_network true
+// Only requests to the chat's own origin are taken, since they go out with its cookies and the
+// WebView does not say which credentials mode the page asked for; other origins, main-frame
+// loads, non-GET requests (the WebView does not expose their bodies) and range requests always
+// stay on the WebView's own stack.
+public class NativeNetwork implements NativeBridge.ChannelHandler {
+
+    public static final String CHANNEL = "network";
+    public static final String EXTRA_ENABLE = "native_network";
+    private static final String TAG = "NativeNetwork";
+    private static final String PREFS_NAME = "network";
+    private static final String KEY_ENABLED = "native";
+    private static final int TIMEOUT_SECONDS = 15;
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    // The WebView's cache does not see intercepted responses, so its validators would only
+    // turn into 304s that cannot be handed back.
+    private static final List<String> DROPPED_REQUEST_HEADERS = Arrays.asList(
+            "accept-encoding", "if-none-match", "if-modified-since", "cookie");
+
+    private static NativeNetwork instance;
+
+    private final SharedPreferences prefs;
+    private final PrefetchDns dns = new PrefetchDns();
+    private final RequestTimings timings = new RequestTimings();
+    private final OkHttpClient client;
+    private final Uri chatOrigin = Uri.parse(MainActivity.CHAT_URL);
+    private volatile boolean enabled;
+
+    public static synchronized NativeNetwork get(Context context) {
+        if (instance == null) {
+            instance = new NativeNetwork(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private NativeNetwork(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.enabled = prefs.getBoolean(KEY_ENABLED, false);
+        this.client = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .dns(dns)
+                // The Cookie header is set by hand and would follow a redirect to any host;
+                // redirects go back to the WebView instead.
+                .followRedirects(false)
+                .followSslRedirects(false)
+                .addInterceptor(BrotliInterceptor.INSTANCE)
+                .eventListenerFactory(call -> new TimingListener())
+                .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+        ConnectivityMonitor.get(context).addListener(state -> {
+            if (state.connected && enabled) {
+                // Cached answers may belong to the network we just left.
+                dns.refreshAll();
+            }
+        });
+        if (enabled) {
+            prefetch(MainActivity.CHAT_URL);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (this.enabled == enabled) {
+            return;
+        }
+        this.enabled = enabled;
+        prefs.edit().putBoolean(KEY_ENABLED, enabled).apply();
+        timings.reset();
+        if (enabled) {
+            prefetch(MainActivity.CHAT_URL);
+        } else {
+            client.connectionPool().evictAll();
+        }
+        Log.i(TAG, "Native network " + (enabled ? "on" : "off"));
+    }
+
+    // Resolves the hosts of the given URLs in the background.
+    public void prefetch(String... urls) {
+        for (String url : urls) {
+            String host = Uri.parse(url).getHost();
+            if (host != null) {
+                dns.prefetch(host);
+            }
+        }
+    }
+
+    public RequestTimings timings() {
+        return timings;
+    }
+
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (!enabled || request.isForMainFrame() || !"GET".equals(request.getMethod())) {
+            return null;
+        }
+        if (!isChatOrigin(request.getUrl())) {
+            return null;
+        }
+        Request.Builder builder = new Request.Builder().url(request.getUrl().toString());
+        for (Map.Entry<String, String> header : request.getRequestHeaders().entrySet()) {
+            String name = header.getKey().toLowerCase(Locale.US);
+            if ("range".equals(name)) {
+                return null;
+            }
+            if (!DROPPED_REQUEST_HEADERS.contains(name)) {
+                builder.header(header.getKey(), header.getValue());
+            }
+        }
+        String url = request.getUrl().toString();
+        String cookie = CookieManager.getInstance().getCookie(url);
+        if (cookie != null) {
+            builder.header("Cookie", cookie);
+        }
+
+        Response response;
+        try {
+            response = client.newCall(builder.build()).execute();
+        } catch (IOException e) {
+            // Let the WebView try, and report, the failure itself.
+            Log.w(TAG, "Native request failed for " + url + ": " + e.getMessage());
+            return null;
+        }
+        for (String setCookie : response.headers("Set-Cookie")) {
+            CookieManager.getInstance().setCookie(url, setCookie);
+        }
+        ResponseBody body = response.body();
+        int status = response.code();
+        if (body == null || status >= 300 && status < 400) {
+            response.close();
+            return null;
+        }
+        Map<String, String> headers = new HashMap<>();
+        Headers responseHeaders = response.headers();
+        for (String name : responseHeaders.names()) {
+            if ("set-cookie".equalsIgnoreCase(name)) {
+                continue;
+            }
+            headers.put(name, joined(responseHeaders.values(name)));
+        }
+        String reason = response.message();
+        MediaType contentType = body.contentType();
+        String mimeType = contentType != null ? contentType.type() + "/" + contentType.subtype() : "application/octet-stream";
+        String encoding = contentType != null && contentType.charset() != null ? contentType.charset().name() : null;
+        // HTTP/2 has no reason phrase, which WebResourceResponse rejects.
+        return new WebResourceResponse(mimeType, encoding, status, reason.isEmpty() ? "OK" : reason, headers,
+                body.byteStream());
+    }
+
+    // enable:  {}   -> {}
+    // disable: {}   -> {}
+    // stats:   {}   -> {native: {...}, webview: {...}}   see RequestTimings.toJson
+    // webview: {timings: [{dns, connect, tls, ttfb, total, reused, protocol}]}   sent by net.js
+    @Override
+    public void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        try {
+            JSONObject request = new JSONObject(message.payloadString());
+            String op = request.getString("op");
+            if ("enable".equals(op) || "disable".equals(op)) {
+                setEnabled("enable".equals(op));
+                reply.success("{}");
+            } else if ("stats".equals(op)) {
+                reply.success(timings.toJson().toString());
+            } else if ("webview".equals(op)) {
+                // With the native path on, intercepted requests would show up here too.
+                if (!enabled) {
+                    recordWebView(request.getJSONArray("timings"));
+                }
+                reply.success("{}");
+            } else {
+                reply.error("Unknown network op " + op);
+            }
+        } catch (JSONException e) {
+            reply.error(String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void recordWebView(JSONArray entries) throws JSONException {
+        for (int i = 0; i < entries.length(); i++) {
+            JSONObject entry = entries.getJSONObject(i);
+            timings.record(RequestTimings.WEBVIEW, new RequestTimings.Sample(
+                    entry.optDouble("dns", -1), entry.optDouble("connect", -1), entry.optDouble("tls", -1),
+                    entry.optDouble("ttfb", -1), entry.optDouble("total", -1), entry.optBoolean("reused"),
+                    entry.optString("protocol", null)));
+        }
+    }
+
+    private boolean isChatOrigin(Uri uri) {
+        return chatOrigin.getScheme().equals(uri.getScheme())
+                && chatOrigin.getHost().equalsIgnoreCase(String.valueOf(uri.getHost()))
+                && chatOrigin.getPort() == uri.getPort();
+    }
+
+    private static String joined(List<String> values) {
+        StringBuilder value = new StringBuilder();
+        for (String part : values) {
+            if (value.length() > 0) {
+                value.append(", ");
+            }
+            value.append(part);
+        }
+        return value.toString();
+    }
+
+    // Collects one call's phase timings and records them when the body has been read.
+    private class TimingListener extends EventListener {
+        private long callStart;
+        private long dnsStart = -1;
+        private double dnsMillis = -1;
+        private long connectStart = -1;
+        private double connectMillis = -1;
+        private long tlsStart = -1;
+        private double tlsMillis = -1;
+        private long requestStart = -1;
+        private double ttfbMillis = -1;
+        private String protocol;
+
+        @Override
+        public void callStart(Call call) {
+            callStart = SystemClock.elapsedRealtimeNanos();
+        }
+
+        @Override
+        public void dnsStart(Call call, String domainName) {
+            dnsStart = SystemClock.elapsedRealtimeNanos();
+        }
+
+        @Override
+        public void dnsEnd(Call call, String domainName, List<InetAddress> addresses) {
+            dnsMillis = millisSince(dnsStart);
+        }
+
+        @Override
+        public void connectStart(Call call, InetSocketAddress address, Proxy proxy) {
+            connectStart = SystemClock.elapsedRealtimeNanos();
+        }
+
+        @Override
+        public void secureConnectStart(Call call) {
+            tlsStart = SystemClock.elapsedRealtimeNanos();
+        }
+
+        @Override
+        public void secureConnectEnd(Call call, Handshake handshake) {
+            tlsMillis = millisSince(tlsStart);
+        }
+
+        @Override
+        public void connectEnd(Call call, InetSocketAddress address, Proxy proxy, Protocol protocol) {
+            connectMillis = millisSince(connectStart);
+        }
+
+        @Override
+        public void connectionAcquired(Call call, Connection connection) {
+            protocol = connection.protocol().toString();
+        }
+
+        @Override
+        public void requestHeadersStart(Call call) {
+            requestStart = SystemClock.elapsedRealtimeNanos();
+        }
+
+        @Override
+        public void responseHeadersStart(Call call) {
+            ttfbMillis = millisSince(requestStart);
+        }
+
+        @Override
+        public void callEnd(Call call) {
+            timings.record(RequestTimings.NATIVE, new RequestTimings.Sample(dnsMillis, connectMillis, tlsMillis,
+                    ttfbMillis, millisSince(callStart), connectStart < 0, protocol));
+        }
+
+        private double millisSince(long startNanos) {
+            return startNanos < 0 ? -1 : (SystemClock.elapsedRealtimeNanos() - startNanos) / 1_000_000.0;
+        }
+    }
+
+    // Answers from addresses resolved ahead of time where it can, and keeps every host it has
+    // been asked about so the whole set can be resolved again after a network change.
+    private static class PrefetchDns implements Dns {
+        private static final long TTL_MILLIS = 60_000;
+
+        private final Map<String, Resolved> resolved = new ConcurrentHashMap<>();
+        private final Set<String> hosts = Collections.newSetFromMap(new ConcurrentHashMap<>());
+        private final ExecutorService resolver = Executors.newSingleThreadExecutor();
+
+        @Override
+        public List<InetAddress> lookup(String hostname) throws UnknownHostException {
+            hosts.add(hostname);
+            Resolved cached = resolved.get(hostname);
+            if (cached != null && SystemClock.elapsedRealtime() < cached.expiresAt) {
+                return cached.addresses;
+            }
+            return resolve(hostname);
+        }
+
+        void prefetch(String hostname) {
+            hosts.add(hostname);
+            resolver.execute(() -> {
+                try {
+                    resolve(hostname);
+                } catch (UnknownHostException e) {
+                    Log.d(TAG, "Prefetch of " + hostname + " failed");
+                }
+            });
+        }
+
+        void refreshAll() {
+            resolved.clear();
+            for (String hostname : hosts) {
+                prefetch(hostname);
+            }
+        }
+
+        private List<InetAddress> resolve(String hostname) throws UnknownHostException {
+            List<InetAddress> addresses = Dns.SYSTEM.lookup(hostname);
+            resolved.put(hostname, new Resolved(addresses, SystemClock.elapsedRealtime() + TTL_MILLIS));
+            return addresses;
+        }
+    }
+
+    private static final class Resolved {
+        final List<InetAddress> addresses;
+        final long expiresAt;
+
+        Resolved(List<InetAddress> addresses, long expiresAt) {
+            this.addresses = addresses;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
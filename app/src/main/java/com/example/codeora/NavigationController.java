@@ -0,0 +1,259 @@
+package com.example.codeora;
+
+import android.app.Activity;
+import android.content.ActivityNotFoundException;
+import android.content.Intent;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+import android.util.SparseArray;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Acts on NavigationRouter's decisions for the chat WebView's top-level navigations: chat pages
+// load in the WebView, paths the page claimed go to its client-side router over the
+// "navigation" channel, other web links open in a Custom Tab, and tel:, mailto:, intent: and
+// Play Store links go to the apps that handle them. Once a sign-in has started in the WebView,
+// every page of the identity provider stays there until the flow lands back on the chat, and
+// server redirects are never re-routed, so the session ends up in the WebView's cookies.
+// Latency is recorded per route: until onPageFinished in the WebView, until the page
+// acknowledges a hand-off, and the launch time for everything that leaves the app.
+public class NavigationController implements NativeBridge.ChannelHandler {
+
+    public static final String CHANNEL = "navigation";
+    private static final String TAG = "NavigationController";
+    private static final String PLAY_STORE = "com.android.vending";
+    // Identity providers the "auth" rules start a sign-in on; their account pickers, password,
+    // two-factor and session pages are all part of it.
+    private static final List<String> AUTH_HOSTS = Arrays.asList("accounts.google.com", "github.com");
+
+    public interface Handler {
+        // Returns false when nothing on the device could take the link.
+        boolean handle(Activity activity, Uri uri);
+    }
+
+    private final Activity activity;
+    private final NavigationRouter router;
+    private final Map<String, Handler> handlers = new HashMap<>();
+    // Page hand-offs awaiting "done", by id.
+    private final SparseArray<Long> handedOff = new SparseArray<>();
+    private NativeBridge bridge;
+    private NavigationRouter.Route loading;
+    private boolean inAuthFlow;
+    private long loadingSince;
+    private int nextId = 1;
+
+    public NavigationController(Activity activity, String origin) {
+        this.activity = activity;
+        this.router = defaultRouter(origin);
+        // Only what a browser could open: browsable activities, and never the app's own files.
+        handlers.put("view", (from, uri) -> !isLocal(uri) && start(from,
+                new Intent(Intent.ACTION_VIEW, uri).addCategory(Intent.CATEGORY_BROWSABLE)));
+        handlers.put("dial", (from, uri) -> start(from, new Intent(Intent.ACTION_DIAL, uri)));
+        handlers.put("mail", (from, uri) -> start(from, new Intent(Intent.ACTION_SENDTO, uri)));
+        handlers.put("intent", NavigationController::openIntentUri);
+        handlers.put("store", (from, uri) -> start(from, new Intent(Intent.ACTION_VIEW,
+                Uri.parse("market://details?" + uri.getEncodedQuery())).setPackage(PLAY_STORE)));
+    }
+
+    static NavigationRouter defaultRouter(String origin) {
+        return new NavigationRouter.Builder()
+                .webView("chat", origin)
+                // Redirect-based sign-in has to finish in the WebView that holds the session
+                .rule("auth", NavigationRouter.Target.WEBVIEW, null, "https", "accounts.google.com", "/o/oauth2/.*")
+                .rule("auth", NavigationRouter.Target.WEBVIEW, null, "https", "github.com", "/login/oauth/.*")
+                .rule("inline", NavigationRouter.Target.WEBVIEW, null, "about", null, null)
+                .rule("inline", NavigationRouter.Target.WEBVIEW, null, "data", null, null)
+                .rule("inline", NavigationRouter.Target.WEBVIEW, null, "blob", null, null)
+                .handler("dial", "dial", "tel", null, null)
+                .handler("mail", "mail", "mailto", null, null)
+                .handler("intent", "intent", "intent", null, null)
+                .handler("store", "store", "https", "play.google.com", "/store/apps/details")
+                .handler("store", "view", "market", null, null)
+                .build(origin);
+    }
+
+    public void attach(NativeBridge bridge) {
+        this.bridge = bridge;
+    }
+
+    // From shouldOverrideUrlLoading; true when the WebView should not load the URL itself.
+    public boolean shouldOverride(Uri url, boolean isForMainFrame, boolean isRedirect) {
+        if (!isForMainFrame) {
+            return false;
+        }
+        long startedAt = SystemClock.elapsedRealtime();
+        NavigationRouter.Route route = router.route(url.toString());
+        if ("auth".equals(route.name)) {
+            inAuthFlow = true;
+        } else if ("chat".equals(route.name)) {
+            inAuthFlow = false;
+        }
+        // A redirect continues a navigation that was already let in, e.g. an OAuth callback.
+        if (isRedirect || inAuthFlow && isAuthHost(url)) {
+            return false;
+        }
+        switch (route.target) {
+            case WEBVIEW:
+                loading = route;
+                loadingSince = startedAt;
+                return false;
+            case PAGE:
+                if (handOff(url, startedAt)) {
+                    return true;
+                }
+                loading = route;
+                loadingSince = startedAt;
+                return false;
+            case CUSTOM_TAB:
+                openExternal(route, url, startedAt);
+                return true;
+            case HANDLER:
+            default:
+                Handler handler = handlers.get(route.handler);
+                if (handler != null && handler.handle(activity, url)) {
+                    router.recordLatency(route, SystemClock.elapsedRealtime() - startedAt);
+                } else if (isWeb(url)) {
+                    openExternal(route, url, startedAt);
+                } else {
+                    Log.w(TAG, "No handler for " + url);
+                }
+                return true;
+        }
+    }
+
+    // For a link opening a new window: links that leave the chat are opened where they belong
+    // and true is returned; chat links are left to the popup.
+    public boolean openIfExternal(Uri url) {
+        NavigationRouter.Target target = router.route(url.toString()).target;
+        return (target == NavigationRouter.Target.CUSTOM_TAB || target == NavigationRouter.Target.HANDLER)
+                && shouldOverride(url, true, false);
+    }
+
+    // A new document is loading; the old page's claims went with it.
+    public void onPageStarted() {
+        router.setPagePaths(new ArrayList<>());
+        handedOff.clear();
+    }
+
+    public void onPageFinished() {
+        if (loading != null) {
+            router.recordLatency(loading, SystemClock.elapsedRealtime() - loadingSince);
+            loading = null;
+        }
+    }
+
+    // claim: {paths: ["/chat/", ...]}  -> {}  same-origin paths the page routes itself
+    // done:  {id}                      -> {}  the page has rendered a handed-off route
+    // stats: {}                        -> {route: {count, p50, p95, ...}}
+    // Events: {type: "navigate", id, url}
+    @Override
+    public void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        try {
+            JSONObject request = new JSONObject(message.payloadString());
+            String op = request.getString("op");
+            if ("claim".equals(op)) {
+                JSONArray paths = request.getJSONArray("paths");
+                List<String> prefixes = new ArrayList<>(paths.length());
+                for (int i = 0; i < paths.length(); i++) {
+                    prefixes.add(paths.getString(i));
+                }
+                router.setPagePaths(prefixes);
+                reply.success("{}");
+            } else if ("done".equals(op)) {
+                int id = request.getInt("id");
+                activity.runOnUiThread(() -> {
+                    Long startedAt = handedOff.get(id);
+                    if (startedAt != null) {
+                        handedOff.remove(id);
+                        router.recordLatency(NavigationRouter.PAGE, SystemClock.elapsedRealtime() - startedAt);
+                    }
+                });
+                reply.success("{}");
+            } else if ("stats".equals(op)) {
+                reply.success(router.stats().toString());
+            } else {
+                reply.error("Unknown navigation op " + op);
+            }
+        } catch (JSONException e) {
+            reply.error(String.valueOf(e.getMessage()));
+        }
+    }
+
+    private boolean handOff(Uri url, long startedAt) {
+        if (bridge == null) {
+            return false;
+        }
+        int id = nextId++;
+        try {
+            bridge.emit(CHANNEL, new JSONObject().put("type", "navigate").put("id", id)
+                    .put("url", url.toString()).toString());
+        } catch (JSONException e) {
+            return false;
+        }
+        handedOff.put(id, startedAt);
+        return true;
+    }
+
+    private void openExternal(NavigationRouter.Route route, Uri url, long startedAt) {
+        if (CustomTabs.get().open(activity, url) >= 0) {
+            router.recordLatency(route, SystemClock.elapsedRealtime() - startedAt);
+        }
+    }
+
+    private static boolean isAuthHost(Uri url) {
+        String host = url.getHost();
+        return "https".equals(url.getScheme()) && host != null && AUTH_HOSTS.contains(host.toLowerCase(Locale.ROOT));
+    }
+
+    private static boolean isWeb(Uri url) {
+        return "https".equals(url.getScheme()) || "http".equals(url.getScheme());
+    }
+
+    private static boolean isLocal(Uri url) {
+        return "file".equalsIgnoreCase(url.getScheme()) || "content".equalsIgnoreCase(url.getScheme());
+    }
+
+    // Page content picks the intent, so anything the platform throws (FileUriExposedException,
+    // SecurityException) means the link cannot be opened, not that the app should go down.
+    private static boolean start(Activity activity, Intent intent) {
+        try {
+            activity.startActivity(intent);
+            return true;
+        } catch (ActivityNotFoundException e) {
+            return false;
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Could not open " + intent.getData() + ": " + e);
+            return false;
+        }
+    }
+
+    // intent: links name an app; only let them open it as a browsable activity, and fall back
+    // to the link's browser_fallback_url when the app is missing.
+    private static boolean openIntentUri(Activity activity, Uri uri) {
+        Intent intent;
+        try {
+            intent = Intent.parseUri(uri.toString(), Intent.URI_INTENT_SCHEME);
+        } catch (URISyntaxException e) {
+            return false;
+        }
+        intent.addCategory(Intent.CATEGORY_BROWSABLE);
+        intent.setComponent(null);
+        intent.setSelector(null);
+        if (start(activity, intent)) {
+            return true;
+        }
+        String fallback = intent.getStringExtra("browser_fallback_url");
+        return fallback != null && CustomTabs.get().open(activity, Uri.parse(fallback)) >= 0;
+    }
+}
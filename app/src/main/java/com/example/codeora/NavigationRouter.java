@@ -0,0 +1,246 @@
+package com.example.codeora;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+// Decides where a top-level navigation of the chat WebView goes. Rules name a route and match
+// on scheme, host (exact, or "*.example.com" for the domain and its subdomains) and a path
+// regex; they are compiled once into per-host and per-scheme tables, so a lookup only tries
+// the few rules that can apply. Exact hosts win over wildcard hosts, which win over
+// scheme-only rules; within each group the first rule added wins. Unmatched web links go to a
+// Custom Tab and anything else to the "view" handler. Same-origin paths the page has claimed
+// are handed to its own router instead of loading a new document. Per-route latency is kept
+// as a histogram.
+public class NavigationRouter {
+
+    public enum Target {
+        // Let the WebView load it.
+        WEBVIEW,
+        // Hand it to the page's client-side router.
+        PAGE,
+        CUSTOM_TAB,
+        // A native handler, named by Route.handler.
+        HANDLER
+    }
+
+    public static final class Route {
+        public final String name;
+        public final Target target;
+        public final String handler;
+
+        Route(String name, Target target, String handler) {
+            this.name = name;
+            this.target = target;
+            this.handler = handler;
+        }
+    }
+
+    private static final class Rule {
+        final Route route;
+        final Pattern path;
+
+        Rule(Route route, Pattern path) {
+            this.route = route;
+            this.path = path;
+        }
+
+        boolean matches(String path) {
+            return this.path == null || this.path.matcher(path).matches();
+        }
+    }
+
+    private static final class SuffixRule {
+        final String scheme;
+        final String suffix;
+        final Rule rule;
+
+        SuffixRule(String scheme, String suffix, Rule rule) {
+            this.scheme = scheme;
+            this.suffix = suffix;
+            this.rule = rule;
+        }
+    }
+
+    private static final class Spec {
+        final Route route;
+        final String scheme;
+        final String host;
+        final String pathRegex;
+
+        Spec(Route route, String scheme, String host, String pathRegex) {
+            this.route = route;
+            this.scheme = scheme == null ? null : scheme.toLowerCase(Locale.ROOT);
+            this.host = host == null ? null : host.toLowerCase(Locale.ROOT);
+            this.pathRegex = pathRegex;
+        }
+    }
+
+    public static final class Builder {
+        private final List<Spec> specs = new ArrayList<>();
+
+        // scheme and host may be null to match any; pathRegex must match the whole path.
+        public Builder rule(String name, Target target, String handler, String scheme, String host, String pathRegex) {
+            specs.add(new Spec(new Route(name, target, handler), scheme, host, pathRegex));
+            return this;
+        }
+
+        public Builder webView(String name, String origin) {
+            URI uri = URI.create(origin);
+            return rule(name, Target.WEBVIEW, null, uri.getScheme(), uri.getHost(), null);
+        }
+
+        public Builder handler(String name, String handler, String scheme, String host, String pathRegex) {
+            return rule(name, Target.HANDLER, handler, scheme, host, pathRegex);
+        }
+
+        public NavigationRouter build(String origin) {
+            return new NavigationRouter(origin, specs);
+        }
+    }
+
+    public static final Route PAGE = new Route("page", Target.PAGE, null);
+    private static final Route EXTERNAL = new Route("external", Target.CUSTOM_TAB, null);
+    private static final Route OTHER = new Route("other", Target.HANDLER, "view");
+
+    private final String originScheme;
+    private final String originHost;
+    // "scheme://host" -> rules
+    private final Map<String, List<Rule>> exact = new HashMap<>();
+    private final List<SuffixRule> suffixes = new ArrayList<>();
+    private final Map<String, List<Rule>> schemes = new HashMap<>();
+    private final List<Rule> any = new ArrayList<>();
+    private final Map<String, FrameStats> latency = new LinkedHashMap<>();
+    private volatile Pattern pagePaths;
+
+    private NavigationRouter(String origin, List<Spec> specs) {
+        URI uri = URI.create(origin);
+        originScheme = uri.getScheme();
+        originHost = uri.getHost().toLowerCase(Locale.ROOT);
+        for (Spec spec : specs) {
+            Rule rule = new Rule(spec.route, spec.pathRegex == null ? null : Pattern.compile(spec.pathRegex));
+            String scheme = spec.scheme;
+            String host = spec.host;
+            if (host != null && host.startsWith("*.")) {
+                suffixes.add(new SuffixRule(scheme, host.substring(2), rule));
+            } else if (host != null) {
+                for (String s : scheme == null ? new String[]{"http", "https"} : new String[]{scheme}) {
+                    listFor(exact, s + "://" + host).add(rule);
+                }
+            } else if (scheme != null) {
+                listFor(schemes, scheme).add(rule);
+            } else {
+                any.add(rule);
+            }
+        }
+    }
+
+    // Same-origin path prefixes the page routes itself, replacing earlier claims; empty clears.
+    public void setPagePaths(List<String> prefixes) {
+        if (prefixes.isEmpty()) {
+            pagePaths = null;
+            return;
+        }
+        StringBuilder regex = new StringBuilder();
+        for (String prefix : prefixes) {
+            if (regex.length() > 0) {
+                regex.append('|');
+            }
+            regex.append(Pattern.quote(prefix)).append(".*");
+        }
+        pagePaths = Pattern.compile(regex.toString());
+    }
+
+    public Route route(String url) {
+        URI uri;
+        try {
+            uri = new URI(url);
+        } catch (URISyntaxException e) {
+            // Browsers accept links java.net.URI does not, e.g. with unescaped spaces.
+            String lower = url.toLowerCase(Locale.ROOT);
+            return lower.startsWith("https:") || lower.startsWith("http:") ? EXTERNAL : OTHER;
+        }
+        String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+        String host = uri.getHost() == null ? null : uri.getHost().toLowerCase(Locale.ROOT);
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        if (host != null) {
+            Pattern claimed = pagePaths;
+            if (claimed != null && scheme.equals(originScheme) && host.equals(originHost)
+                    && claimed.matcher(path).matches()) {
+                return PAGE;
+            }
+            Route route = first(exact.get(scheme + "://" + host), path);
+            if (route != null) {
+                return route;
+            }
+            for (SuffixRule suffix : suffixes) {
+                if ((suffix.scheme == null || suffix.scheme.equals(scheme))
+                        && (host.equals(suffix.suffix) || host.endsWith("." + suffix.suffix))
+                        && suffix.rule.matches(path)) {
+                    return suffix.rule.route;
+                }
+            }
+        }
+        Route route = first(schemes.get(scheme), path);
+        if (route == null) {
+            route = first(any, path);
+        }
+        if (route != null) {
+            return route;
+        }
+        return "http".equals(scheme) || "https".equals(scheme) ? EXTERNAL : OTHER;
+    }
+
+    public void recordLatency(Route route, double millis) {
+        FrameStats stats;
+        synchronized (latency) {
+            stats = latency.get(route.name);
+            if (stats == null) {
+                stats = new FrameStats(0);
+                latency.put(route.name, stats);
+            }
+        }
+        stats.record(millis);
+    }
+
+    // {route: {count, p50, p95, ...}}
+    public JSONObject stats() throws JSONException {
+        JSONObject json = new JSONObject();
+        synchronized (latency) {
+            for (Map.Entry<String, FrameStats> entry : latency.entrySet()) {
+                json.put(entry.getKey(), entry.getValue().toJson());
+            }
+        }
+        return json;
+    }
+
+    private static Route first(List<Rule> rules, String path) {
+        if (rules == null) {
+            return null;
+        }
+        for (Rule rule : rules) {
+            if (rule.matches(path)) {
+                return rule.route;
+            }
+        }
+        return null;
+    }
+
+    private static List<Rule> listFor(Map<String, List<Rule>> map, String key) {
+        List<Rule> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>();
+            map.put(key, list);
+        }
+        return list;
+    }
+}
@@ -1,18 +1,14 @@
 package com.example.codeora;
 
 import android.content.Context;
-import android.net.ConnectivityManager;
-import android.net.NetworkInfo;
 
 public class NetworkUtil {
 
     public static boolean isNetworkAvailable(Context context) {
-        ConnectivityManager connectivityManager =
-                (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
-        if (connectivityManager != null) {
-            NetworkInfo activeNetworkInfo = connectivityManager.getActiveNetworkInfo();
-            return activeNetworkInfo != null && activeNetworkInfo.isConnected();
-        }
-        return false;
+        return ConnectivityMonitor.get(context).isConnected();
+    }
+
+    public static boolean isMetered(Context context) {
+        return ConnectivityMonitor.get(context).getState().metered;
     }
 }
@@ -0,0 +1,452 @@
+package com.example.codeora;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+// Messages the user sent that the server has not confirmed yet, kept in an OutboxLog so they
+// survive going offline, the process dying, or a reboot. Messages of one conversation go out
+// in the order they were sent; different conversations drain side by side, with up to
+// pipelineDepth batches in flight at once. A client ID that is already queued or was
+// recently delivered is ignored, so a page retrying a send cannot post the message twice.
+// When a batch fails, the conversations in it stop until drain() is called again, e.g. when the
+// network comes back, while the others keep going. A message the server answers for but does
+// not take is rejected; after MAX_REJECTIONS it is dropped and reported, so one bad message
+// cannot hold its conversation up for good.
+public class Outbox {
+
+    public static final class Entry {
+        public final String clientId;
+        public final String conversationId;
+        public final JSONObject payload;
+        public final long enqueuedAt;
+        // Set once the ENQUEUE record is on disk; only durable entries are sent.
+        boolean durable;
+        // Times the server answered without taking it, since this process loaded it.
+        int rejections;
+
+        Entry(String clientId, String conversationId, JSONObject payload, long enqueuedAt) {
+            this.clientId = clientId;
+            this.conversationId = conversationId;
+            this.payload = payload;
+            this.enqueuedAt = enqueuedAt;
+        }
+
+        JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("clientId", clientId);
+            json.put("conversationId", conversationId);
+            json.put("payload", payload);
+            json.put("enqueuedAt", enqueuedAt);
+            return json;
+        }
+
+        static Entry fromJson(JSONObject json) throws JSONException {
+            return new Entry(json.getString("clientId"), json.getString("conversationId"),
+                    json.getJSONObject("payload"), json.getLong("enqueuedAt"));
+        }
+    }
+
+    public interface Sender {
+        // Returns the client IDs the server has taken; the rest stay queued for a later drain.
+        Set<String> send(List<Entry> batch) throws IOException;
+    }
+
+    public interface Listener {
+        void onDelivered(List<String> clientIds);
+
+        // A batch failed or was only partly taken; its conversations wait for the next drain().
+        void onStalled(int consecutiveFailures);
+
+        // Messages the server rejected MAX_REJECTIONS times; they are no longer queued.
+        void onDropped(List<String> clientIds);
+    }
+
+    public interface Clock {
+        long now();
+    }
+
+    private static final int RECENT_DONE = 1000;
+    private static final int COMPACT_AFTER = 500;
+    private static final int LATENCY_SAMPLES = 256;
+    static final int MAX_REJECTIONS = 5;
+
+    private final OutboxLog log;
+    private final Sender sender;
+    private final Executor executor;
+    private final int batchSize;
+    private final int pipelineDepth;
+    private final Clock clock;
+    private Listener listener;
+
+    // Pending entries by conversation, each in send order; a busy conversation has a batch in flight.
+    private final Map<String, ArrayDeque<Entry>> lanes = new LinkedHashMap<>();
+    private final Set<String> busy = new HashSet<>();
+    // Conversations whose last batch failed; they wait for drain().
+    private final Set<String> stalled = new HashSet<>();
+    private final Map<String, Entry> pending = new HashMap<>();
+    private final LinkedHashSet<String> recentDone = new LinkedHashSet<>();
+    private final long[] latencies = new long[LATENCY_SAMPLES];
+    private int inFlight;
+    private int consecutiveFailures;
+    private int doneSinceCompaction;
+
+    private long enqueued;
+    private long delivered;
+    private long duplicates;
+    private long dropped;
+    private long batches;
+    private long failedBatches;
+    private long latencyCount;
+    private long drainStartedAt = -1;
+    private long drainDelivered;
+    private long lastDrainMillis;
+    private long lastDrainDelivered;
+
+    public Outbox(OutboxLog log, Sender sender, Executor executor, int batchSize, int pipelineDepth, Clock clock) {
+        this.log = log;
+        this.sender = sender;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.pipelineDepth = pipelineDepth;
+        this.clock = clock;
+        replay(log.replay());
+    }
+
+    public synchronized void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    // Returns once the message is on disk, or false when the client ID is already known.
+    public boolean enqueue(String clientId, String conversationId, JSONObject payload) throws IOException {
+        Entry entry;
+        synchronized (this) {
+            if (pending.containsKey(clientId) || recentDone.contains(clientId)) {
+                duplicates++;
+                return false;
+            }
+            entry = new Entry(clientId, conversationId, payload, clock.now());
+            // Visible before it is written, so a compaction running meanwhile keeps it.
+            pending.put(clientId, entry);
+            lane(conversationId).add(entry);
+        }
+        try {
+            log.append(OutboxLog.ENQUEUE, entry.toJson());
+        } catch (IOException | JSONException e) {
+            synchronized (this) {
+                pending.remove(clientId);
+                ArrayDeque<Entry> lane = lanes.get(conversationId);
+                lane.remove(entry);
+                if (lane.isEmpty()) {
+                    lanes.remove(conversationId);
+                }
+            }
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        synchronized (this) {
+            entry.durable = true;
+            enqueued++;
+            pump();
+        }
+        return true;
+    }
+
+    // Starts sending whatever is queued; a no-op while batches are already going out.
+    public synchronized void drain() {
+        stalled.clear();
+        pump();
+    }
+
+    public synchronized int depth() {
+        return pending.size();
+    }
+
+    // Waits until the queue is empty or stalled with nothing in flight; true when empty.
+    public synchronized boolean awaitIdle(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (inFlight > 0 || hasSendable()) {
+            long left = deadline - System.currentTimeMillis();
+            if (left <= 0) {
+                break;
+            }
+            wait(left);
+        }
+        return pending.isEmpty();
+    }
+
+    public synchronized JSONObject stats() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("depth", pending.size());
+        json.put("conversations", lanes.size());
+        json.put("inFlight", inFlight);
+        json.put("stalled", stalled.size());
+        json.put("enqueued", enqueued);
+        json.put("delivered", delivered);
+        json.put("duplicates", duplicates);
+        json.put("dropped", dropped);
+        json.put("batches", batches);
+        json.put("failedBatches", failedBatches);
+        json.put("logBytes", log.size());
+        json.put("logAppends", log.appends());
+        json.put("logSyncs", log.syncs());
+        json.put("lastDrainMessages", lastDrainDelivered);
+        json.put("lastDrainMillis", lastDrainMillis);
+        json.put("lastDrainPerSecond", lastDrainMillis == 0 ? 0 : lastDrainDelivered * 1000.0 / lastDrainMillis);
+        int samples = (int) Math.min(latencyCount, LATENCY_SAMPLES);
+        long[] sorted = Arrays.copyOf(latencies, samples);
+        Arrays.sort(sorted);
+        json.put("drainLatencyP50Ms", percentile(sorted, 0.5));
+        json.put("drainLatencyP95Ms", percentile(sorted, 0.95));
+        json.put("drainLatencyMaxMs", samples == 0 ? 0 : sorted[samples - 1]);
+        return json;
+    }
+
+    private void replay(List<OutboxLog.Record> records) {
+        for (OutboxLog.Record record : records) {
+            try {
+                String clientId = record.body.getString("clientId");
+                if (record.type == OutboxLog.ENQUEUE) {
+                    if (pending.containsKey(clientId) || recentDone.contains(clientId)) {
+                        continue;
+                    }
+                    Entry entry = Entry.fromJson(record.body);
+                    entry.durable = true;
+                    pending.put(clientId, entry);
+                    lane(entry.conversationId).add(entry);
+                } else if (record.type == OutboxLog.DONE || record.type == OutboxLog.DROPPED) {
+                    Entry entry = pending.remove(clientId);
+                    if (entry != null) {
+                        removeFromLane(entry);
+                    }
+                    // A dropped message may be sent again under the same client ID.
+                    if (record.type == OutboxLog.DONE) {
+                        rememberDone(clientId);
+                    }
+                }
+            } catch (JSONException e) {
+                // Written by us, so only a bug gets here; skip the record rather than lose the rest.
+            }
+        }
+    }
+
+    private ArrayDeque<Entry> lane(String conversationId) {
+        ArrayDeque<Entry> lane = lanes.get(conversationId);
+        if (lane == null) {
+            lane = new ArrayDeque<>();
+            lanes.put(conversationId, lane);
+        }
+        return lane;
+    }
+
+    private void removeFromLane(Entry entry) {
+        ArrayDeque<Entry> lane = lanes.get(entry.conversationId);
+        if (lane != null) {
+            lane.remove(entry);
+            if (lane.isEmpty()) {
+                lanes.remove(entry.conversationId);
+            }
+        }
+    }
+
+    private void rememberDone(String clientId) {
+        recentDone.add(clientId);
+        if (recentDone.size() > RECENT_DONE) {
+            Iterator<String> it = recentDone.iterator();
+            it.next();
+            it.remove();
+        }
+    }
+
+    private boolean hasSendable() {
+        for (Map.Entry<String, ArrayDeque<Entry>> lane : lanes.entrySet()) {
+            if (!busy.contains(lane.getKey()) && !stalled.contains(lane.getKey())
+                    && lane.getValue().peek().durable) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void pump() {
+        while (inFlight < pipelineDepth) {
+            List<Entry> batch = new ArrayList<>();
+            List<String> claimed = new ArrayList<>();
+            for (Map.Entry<String, ArrayDeque<Entry>> lane : lanes.entrySet()) {
+                if (batch.size() == batchSize) {
+                    break;
+                }
+                if (busy.contains(lane.getKey()) || stalled.contains(lane.getKey())) {
+                    continue;
+                }
+                // The longest durable prefix of the conversation, so order within it holds.
+                int before = batch.size();
+                for (Entry entry : lane.getValue()) {
+                    if (!entry.durable || batch.size() == batchSize) {
+                        break;
+                    }
+                    batch.add(entry);
+                }
+                if (batch.size() > before) {
+                    claimed.add(lane.getKey());
+                }
+            }
+            if (batch.isEmpty()) {
+                break;
+            }
+            busy.addAll(claimed);
+            inFlight++;
+            if (drainStartedAt < 0) {
+                drainStartedAt = clock.now();
+                drainDelivered = 0;
+            }
+            executor.execute(() -> send(batch, claimed));
+        }
+        if (inFlight == 0) {
+            finishDrain();
+        }
+    }
+
+    private void send(List<Entry> batch, List<String> claimed) {
+        Set<String> taken;
+        boolean answered;
+        try {
+            taken = sender.send(batch);
+            answered = true;
+        } catch (IOException | RuntimeException e) {
+            taken = Collections.emptySet();
+            answered = false;
+        }
+        List<JSONObject> done = new ArrayList<>();
+        List<String> ids = new ArrayList<>();
+        List<JSONObject> rejected = new ArrayList<>();
+        List<String> droppedIds = new ArrayList<>();
+        synchronized (this) {
+            // Only a server that answered has rejected anything; a failed request says nothing
+            // about the messages in it.
+            for (Entry entry : batch) {
+                if (answered && !taken.contains(entry.clientId) && ++entry.rejections >= MAX_REJECTIONS) {
+                    droppedIds.add(entry.clientId);
+                }
+            }
+        }
+        try {
+            for (Entry entry : batch) {
+                if (taken.contains(entry.clientId)) {
+                    done.add(new JSONObject().put("clientId", entry.clientId));
+                    ids.add(entry.clientId);
+                }
+            }
+            log.appendAll(OutboxLog.DONE, done);
+        } catch (IOException | JSONException e) {
+            // The server has them; if the DONE records are lost they are sent once more and
+            // the server drops them by client ID.
+        }
+        try {
+            for (String clientId : droppedIds) {
+                rejected.add(new JSONObject().put("clientId", clientId));
+            }
+            log.appendAll(OutboxLog.DROPPED, rejected);
+        } catch (IOException | JSONException e) {
+            // Queued again after a restart, to be rejected and dropped once more.
+        }
+        Listener notify;
+        int failures;
+        synchronized (this) {
+            long now = clock.now();
+            for (Entry entry : batch) {
+                if (taken.contains(entry.clientId)) {
+                    pending.remove(entry.clientId);
+                    removeFromLane(entry);
+                    rememberDone(entry.clientId);
+                    latencies[(int) (latencyCount++ % LATENCY_SAMPLES)] = now - entry.enqueuedAt;
+                } else if (droppedIds.contains(entry.clientId)) {
+                    pending.remove(entry.clientId);
+                    removeFromLane(entry);
+                } else {
+                    stalled.add(entry.conversationId);
+                }
+            }
+            delivered += ids.size();
+            dropped += droppedIds.size();
+            drainDelivered += ids.size();
+            doneSinceCompaction += ids.size() + droppedIds.size();
+            batches++;
+            busy.removeAll(claimed);
+            inFlight--;
+            if (ids.size() + droppedIds.size() < batch.size()) {
+                failedBatches++;
+                consecutiveFailures++;
+            } else {
+                consecutiveFailures = 0;
+            }
+            failures = consecutiveFailures;
+            notify = listener;
+            if (inFlight == 0 && doneSinceCompaction >= COMPACT_AFTER) {
+                compact();
+            }
+            pump();
+            notifyAll();
+        }
+        if (notify != null) {
+            if (!ids.isEmpty()) {
+                notify.onDelivered(ids);
+            }
+            if (!droppedIds.isEmpty()) {
+                notify.onDropped(droppedIds);
+            }
+            if (failures > 0) {
+                notify.onStalled(failures);
+            }
+        }
+    }
+
+    // Drops delivered entries from the log. Holding the lock keeps enqueue() from adding an
+    // entry that this rewrite would miss.
+    private void compact() {
+        List<OutboxLog.Record> records = new ArrayList<>();
+        try {
+            for (String clientId : recentDone) {
+                records.add(new OutboxLog.Record(OutboxLog.DONE, new JSONObject().put("clientId", clientId)));
+            }
+            for (ArrayDeque<Entry> lane : lanes.values()) {
+                for (Entry entry : lane) {
+                    records.add(new OutboxLog.Record(OutboxLog.ENQUEUE, entry.toJson()));
+                }
+            }
+            log.rewrite(records);
+            doneSinceCompaction = 0;
+        } catch (IOException | JSONException e) {
+            // The old log is still whole; try again after the next batch.
+        }
+    }
+
+    private void finishDrain() {
+        if (drainStartedAt < 0) {
+            return;
+        }
+        lastDrainMillis = Math.max(1, clock.now() - drainStartedAt);
+        lastDrainDelivered = drainDelivered;
+        drainStartedAt = -1;
+    }
+
+    private static long percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+}
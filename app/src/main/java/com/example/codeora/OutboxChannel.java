@@ -0,0 +1,152 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.webkit.CookieManager;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Bridge channel "outbox": the page hands a message to the native Outbox instead of posting it
+// itself, and gets its reply as soon as the message is on disk, online or not. The outbox is
+// drained whenever the network comes back, retried with backoff a bounded number of times while
+// the server fails, and flushed by SyncJobService if the app is gone before it empties.
+public class OutboxChannel implements NativeBridge.ChannelHandler {
+
+    public static final String CHANNEL = "outbox";
+    static final String ENDPOINT = MainActivity.CHAT_URL + "api/messages";
+    private static final String TAG = "OutboxChannel";
+    private static final int TIMEOUT_MILLIS = 20000;
+    private static final int BATCH_SIZE = 50;
+    private static final int PIPELINE_DEPTH = 3;
+    // Several minutes of backoff; after that only a reconnect or the sync job drains again.
+    private static final int MAX_RETRIES = 12;
+
+    // Enqueues wait for an fsync, so they stay off the JavaBridge thread.
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private static final RetryPolicy backoff = new RetryPolicy(1000, 60_000, MAX_RETRIES, 0.5, 0, 0, new Random());
+    private static final Runnable retry = OutboxChannel::drainIfConnected;
+    private static Outbox outbox;
+    private static ConnectivityMonitor monitor;
+    // The newest page gets delivery events.
+    private static volatile NativeBridge current;
+
+    private final Context context;
+
+    public OutboxChannel(Context context, NativeBridge bridge) {
+        this.context = context.getApplicationContext();
+        current = bridge;
+        // Opening the log reads it from disk; do that before the page's first send needs it.
+        executor.execute(() -> {
+            try {
+                outbox(this.context);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not open the outbox", e);
+            }
+        });
+    }
+
+    public static synchronized Outbox outbox(Context context) throws IOException {
+        if (outbox == null) {
+            Context app = context.getApplicationContext();
+            OutboxLog log = new OutboxLog(new File(new File(app.getFilesDir(), "outbox"), "log"));
+            OutboxClient client = new OutboxClient(ENDPOINT, TIMEOUT_MILLIS,
+                    () -> CookieManager.getInstance().getCookie(MainActivity.CHAT_URL));
+            outbox = new Outbox(log, client, Executors.newFixedThreadPool(PIPELINE_DEPTH),
+                    BATCH_SIZE, PIPELINE_DEPTH, System::currentTimeMillis);
+            outbox.setListener(new Outbox.Listener() {
+                @Override
+                public void onDelivered(List<String> clientIds) {
+                    emit("delivered", new JSONArray(clientIds));
+                }
+
+                @Override
+                public void onDropped(List<String> clientIds) {
+                    Log.w(TAG, "Outbox dropped " + clientIds.size() + " rejected messages");
+                    emit("failed", new JSONArray(clientIds));
+                }
+
+                @Override
+                public void onStalled(int consecutiveFailures) {
+                    mainHandler.removeCallbacks(retry);
+                    if (consecutiveFailures > backoff.getMaxAttempts()) {
+                        Log.w(TAG, "Outbox stalled with " + outbox.depth() + " queued; waiting for the network");
+                        return;
+                    }
+                    long delay = backoff.delayFor(consecutiveFailures);
+                    Log.d(TAG, "Outbox stalled with " + outbox.depth() + " queued, retrying in " + delay + " ms");
+                    mainHandler.postDelayed(retry, delay);
+                }
+            });
+            monitor = ConnectivityMonitor.get(app);
+            monitor.addListener(state -> {
+                if (state.connected) {
+                    mainHandler.removeCallbacks(retry);
+                    drainIfConnected();
+                }
+            });
+        }
+        return outbox;
+    }
+
+    // enqueue: {clientId, conversationId, payload}  -> {queued, depth}  queued is false for a duplicate
+    // stats:   {}                                   -> {depth, delivered, lastDrainPerSecond, drainLatencyP50Ms, ...}
+    // Events: {type: "delivered", clientIds: [...]}
+    //         {type: "failed", clientIds: [...]}   rejected by the server too often and no longer queued
+    @Override
+    public void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        String payload = message.payloadString();
+        executor.execute(() -> {
+            try {
+                JSONObject request = new JSONObject(payload);
+                String op = request.getString("op");
+                Outbox box = outbox(context);
+                if ("enqueue".equals(op)) {
+                    boolean queued = box.enqueue(request.getString("clientId"),
+                            request.getString("conversationId"), request.getJSONObject("payload"));
+                    reply.success(new JSONObject().put("queued", queued).put("depth", box.depth()).toString());
+                } else if ("stats".equals(op)) {
+                    reply.success(box.stats().toString());
+                } else {
+                    reply.error("Unknown outbox op " + op);
+                }
+            } catch (JSONException | IOException e) {
+                Log.e(TAG, "Outbox request failed", e);
+                reply.error(String.valueOf(e.getMessage()));
+            }
+        });
+    }
+
+    private static void drainIfConnected() {
+        Outbox box;
+        synchronized (OutboxChannel.class) {
+            box = outbox;
+        }
+        if (box != null && monitor.isConnected()) {
+            box.drain();
+        }
+    }
+
+    private static void emit(String type, JSONArray clientIds) {
+        NativeBridge bridge = current;
+        if (bridge == null) {
+            return;
+        }
+        try {
+            bridge.emit(CHANNEL, new JSONObject().put("type", type).put("clientIds", clientIds).toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not encode outbox event", e);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.codeora;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Posts outbox batches to the chat backend: POST <endpoint> with
+// {"messages": [{clientId, conversationId, payload}]} answering {"accepted": [clientId]}.
+// The server treats a clientId it has seen before as accepted without storing it again.
+public class OutboxClient implements Outbox.Sender {
+
+    public interface CookieSource {
+        String cookie();
+    }
+
+    private final String endpoint;
+    private final int timeoutMillis;
+    private final CookieSource cookies;
+
+    public OutboxClient(String endpoint, int timeoutMillis, CookieSource cookies) {
+        this.endpoint = endpoint;
+        this.timeoutMillis = timeoutMillis;
+        this.cookies = cookies;
+    }
+
+    @Override
+    public Set<String> send(List<Outbox.Entry> batch) throws IOException {
+        byte[] body = encode(batch);
+        HttpURLConnection connection = (HttpURLConnection) new URL(endpoint).openConnection();
+        try {
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setRequestMethod("POST");
+            connection.setDoOutput(true);
+            connection.setFixedLengthStreamingMode(body.length);
+            connection.setRequestProperty("Content-Type", "application/json");
+            connection.setRequestProperty("Accept", "application/json");
+            String cookie = cookies.cookie();
+            if (cookie != null) {
+                connection.setRequestProperty("Cookie", cookie);
+            }
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body);
+            }
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Outbox send failed with HTTP " + status);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return parse(readFully(in));
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    static byte[] encode(List<Outbox.Entry> batch) throws IOException {
+        try {
+            JSONArray messages = new JSONArray();
+            for (Outbox.Entry entry : batch) {
+                JSONObject message = new JSONObject();
+                message.put("clientId", entry.clientId);
+                message.put("conversationId", entry.conversationId);
+                message.put("payload", entry.payload);
+                messages.put(message);
+            }
+            return new JSONObject().put("messages", messages).toString().getBytes(StandardCharsets.UTF_8);
+        } catch (JSONException e) {
+            throw new IOException("Could not encode outbox batch", e);
+        }
+    }
+
+    static Set<String> parse(String body) throws IOException {
+        try {
+            JSONArray accepted = new JSONObject(body).getJSONArray("accepted");
+            Set<String> ids = new HashSet<>();
+            for (int i = 0; i < accepted.length(); i++) {
+                ids.add(accepted.getString(i));
+            }
+            return ids;
+        } catch (JSONException e) {
+            throw new IOException("Malformed outbox response", e);
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,275 @@
+package com.example.codeora;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Append-only record log behind the Outbox. Each record is [length][crc32][type][JSON] and an
+// append returns only once it is on disk. Appends that arrive while an fsync is running wait
+// for the next one, so a burst of sends costs a few fsyncs rather than one each. A record torn
+// by a crash fails its checksum and is cut off, with everything after it, when the log is
+// reopened.
+public class OutboxLog implements Closeable {
+
+    public static final byte ENQUEUE = 1;
+    public static final byte DONE = 2;
+    public static final byte DROPPED = 3;
+    private static final int HEADER_BYTES = 9;
+    private static final int MAX_RECORD_BYTES = 1024 * 1024;
+
+    public static final class Record {
+        public final byte type;
+        public final JSONObject body;
+
+        public Record(byte type, JSONObject body) {
+            this.type = type;
+            this.body = body;
+        }
+    }
+
+    private final File file;
+    private final Object syncLock = new Object();
+    private final List<Record> replayed;
+    private FileChannel channel;
+    // written and generation are guarded by this, durable and syncs by syncLock.
+    private long written;
+    private long generation;
+    private long durable;
+    private boolean syncing;
+    private long appends;
+    private long syncs;
+
+    public OutboxLog(File file) throws IOException {
+        this.file = file;
+        File parent = file.getParentFile();
+        if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+            throw new IOException("Cannot create " + parent);
+        }
+        List<Record> records = new ArrayList<>();
+        long valid = read(file, records);
+        replayed = Collections.unmodifiableList(records);
+        channel = new RandomAccessFile(file, "rw").getChannel();
+        if (channel.size() > valid) {
+            channel.truncate(valid);
+            channel.force(false);
+        }
+        channel.position(valid);
+        written = valid;
+        durable = valid;
+    }
+
+    // Everything the log held when it was opened, in append order.
+    public List<Record> replay() {
+        return replayed;
+    }
+
+    public void append(byte type, JSONObject body) throws IOException {
+        appendAll(type, Collections.singletonList(body));
+    }
+
+    // One write and at most one fsync of its own for all the records.
+    public void appendAll(byte type, List<JSONObject> bodies) throws IOException {
+        if (bodies.isEmpty()) {
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (JSONObject body : bodies) {
+            encode(out, type, body);
+        }
+        long end;
+        long generation;
+        synchronized (this) {
+            ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            written += bytes.size();
+            appends += bodies.size();
+            end = written;
+            generation = this.generation;
+        }
+        awaitDurable(end, generation);
+    }
+
+    // Replaces the log with the given records, e.g. only what is still pending. The new file
+    // is complete on disk before it takes the old one's place. Records appended while this runs
+    // may be dropped with the old file, so the caller must include them.
+    public void rewrite(List<Record> records) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (Record record : records) {
+            encode(out, record.type, record.body);
+        }
+        claimSync();
+        try {
+            synchronized (this) {
+                File tmp = new File(file.getPath() + ".tmp");
+                try (RandomAccessFile target = new RandomAccessFile(tmp, "rw")) {
+                    target.setLength(0);
+                    target.write(bytes.toByteArray());
+                    target.getChannel().force(false);
+                }
+                channel.close();
+                boolean renamed = tmp.renameTo(file);
+                channel = new RandomAccessFile(file, "rw").getChannel();
+                if (!renamed) {
+                    tmp.delete();
+                    channel.position(written);
+                    throw new IOException("Cannot replace " + file);
+                }
+                channel.position(bytes.size());
+                written = bytes.size();
+                generation++;
+                synchronized (syncLock) {
+                    durable = written;
+                }
+            }
+        } finally {
+            releaseSync();
+        }
+    }
+
+    public synchronized long size() {
+        return written;
+    }
+
+    public synchronized long appends() {
+        return appends;
+    }
+
+    public long syncs() {
+        synchronized (syncLock) {
+            return syncs;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    private void awaitDurable(long end, long generation) throws IOException {
+        while (true) {
+            synchronized (syncLock) {
+                if (durable >= end) {
+                    return;
+                }
+            }
+            // Lead a sync covering everything written so far, including other threads' appends.
+            claimSync();
+            try {
+                synchronized (syncLock) {
+                    if (durable >= end) {
+                        return;
+                    }
+                }
+                long target;
+                FileChannel current;
+                synchronized (this) {
+                    if (this.generation != generation) {
+                        return;
+                    }
+                    target = written;
+                    current = channel;
+                }
+                current.force(false);
+                synchronized (syncLock) {
+                    durable = Math.max(durable, target);
+                    syncs++;
+                }
+            } finally {
+                releaseSync();
+            }
+        }
+    }
+
+    // Only one thread at a time syncs or rewrites; the others wait here, and most find their
+    // records already covered by the time they get their turn.
+    private void claimSync() throws IOException {
+        synchronized (syncLock) {
+            while (syncing) {
+                try {
+                    syncLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted", e);
+                }
+            }
+            syncing = true;
+        }
+    }
+
+    private void releaseSync() {
+        synchronized (syncLock) {
+            syncing = false;
+            syncLock.notifyAll();
+        }
+    }
+
+    private static void encode(DataOutputStream out, byte type, JSONObject body) throws IOException {
+        byte[] json = body.toString().getBytes(StandardCharsets.UTF_8);
+        CRC32 crc = new CRC32();
+        crc.update(type);
+        crc.update(json, 0, json.length);
+        out.writeInt(json.length + 1);
+        out.writeInt((int) crc.getValue());
+        out.writeByte(type);
+        out.write(json);
+    }
+
+    // Reads intact records into out and returns the offset just past the last one.
+    private static long read(File file, List<Record> out) throws IOException {
+        if (!file.exists()) {
+            return 0;
+        }
+        long valid = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                int checksum;
+                byte[] data;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                    if (length < 1 || length > MAX_RECORD_BYTES) {
+                        break;
+                    }
+                    data = new byte[length];
+                    in.readFully(data);
+                } catch (EOFException e) {
+                    break;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(data, 0, data.length);
+                if ((int) crc.getValue() != checksum) {
+                    break;
+                }
+                try {
+                    out.add(new Record(data[0], new JSONObject(new String(data, 1, data.length - 1, StandardCharsets.UTF_8))));
+                } catch (JSONException e) {
+                    break;
+                }
+                valid += HEADER_BYTES - 1 + length;
+            }
+        }
+        return valid;
+    }
+}
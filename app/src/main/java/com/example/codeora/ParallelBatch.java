@@ -0,0 +1,69 @@
+package com.example.codeora;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+// Runs one task per input on a worker pool and returns the outcomes in input order once all
+// have finished, with per-item timings. A failing item does not fail the batch.
+public final class ParallelBatch {
+
+    public interface Task<T, R> {
+        R run(T input) throws Exception;
+    }
+
+    public static final class Outcome<R> {
+        public final R value;
+        public final Throwable error;
+        // From the start of the batch until a worker picked the item up.
+        public final long queuedMillis;
+        public final long runMillis;
+
+        Outcome(R value, Throwable error, long queuedMillis, long runMillis) {
+            this.value = value;
+            this.error = error;
+            this.queuedMillis = queuedMillis;
+            this.runMillis = runMillis;
+        }
+
+        public long latencyMillis() {
+            return queuedMillis + runMillis;
+        }
+    }
+
+    private ParallelBatch() {
+    }
+
+    // Blocks the calling thread, which must not be one of the executor's workers.
+    public static <T, R> List<Outcome<R>> run(List<T> inputs, Task<T, R> task, ExecutorService executor)
+            throws InterruptedException {
+        long startedAt = System.nanoTime();
+        List<Future<Outcome<R>>> futures = new ArrayList<>(inputs.size());
+        for (T input : inputs) {
+            futures.add(executor.submit(() -> {
+                long pickedUpAt = System.nanoTime();
+                R value = null;
+                Throwable error = null;
+                try {
+                    value = task.run(input);
+                } catch (Exception e) {
+                    error = e;
+                }
+                long finishedAt = System.nanoTime();
+                return new Outcome<>(value, error, (pickedUpAt - startedAt) / 1_000_000,
+                        (finishedAt - pickedUpAt) / 1_000_000);
+            }));
+        }
+        List<Outcome<R>> outcomes = new ArrayList<>(inputs.size());
+        for (Future<Outcome<R>> future : futures) {
+            try {
+                outcomes.add(future.get());
+            } catch (ExecutionException e) {
+                outcomes.add(new Outcome<>(null, e.getCause(), 0, 0));
+            }
+        }
+        return outcomes;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.codeora;
+
+// Fixed-size byte ring between the capture thread and the encoder. The capture side never
+// blocks: if the encoder falls behind by more than the capacity, the oldest audio is
+// overwritten and counted, so a slow encode cannot stall AudioRecord into an overrun.
+public class PcmRingBuffer {
+
+    private final byte[] buffer;
+    private int readPosition = 0;
+    private int size = 0;
+    private long droppedBytes = 0;
+    private boolean closed = false;
+
+    public PcmRingBuffer(int capacity) {
+        buffer = new byte[capacity];
+    }
+
+    public synchronized void write(byte[] src, int offset, int length) {
+        if (closed) {
+            return;
+        }
+        if (length > buffer.length) {
+            // Only the newest capacity bytes can be kept.
+            droppedBytes += length - buffer.length;
+            offset += length - buffer.length;
+            length = buffer.length;
+        }
+        int overflow = size + length - buffer.length;
+        if (overflow > 0) {
+            readPosition = (readPosition + overflow) % buffer.length;
+            size -= overflow;
+            droppedBytes += overflow;
+        }
+        int writePosition = (readPosition + size) % buffer.length;
+        int first = Math.min(length, buffer.length - writePosition);
+        System.arraycopy(src, offset, buffer, writePosition, first);
+        System.arraycopy(src, offset + first, buffer, 0, length - first);
+        size += length;
+        notifyAll();
+    }
+
+    // Waits up to timeoutMillis for data. Returns the bytes read, 0 on timeout, or -1 once
+    // the buffer is closed and drained.
+    public synchronized int read(byte[] dst, int offset, int length, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (size == 0) {
+            if (closed) {
+                return -1;
+            }
+            long remaining = deadline - System.currentTimeMillis();
+            if (remaining <= 0) {
+                return 0;
+            }
+            wait(remaining);
+        }
+        int count = Math.min(length, size);
+        int first = Math.min(count, buffer.length - readPosition);
+        System.arraycopy(buffer, readPosition, dst, offset, first);
+        System.arraycopy(buffer, 0, dst, offset + first, count - first);
+        readPosition = (readPosition + count) % buffer.length;
+        size -= count;
+        return count;
+    }
+
+    // Readers drain what is left and then see end of stream.
+    public synchronized void close() {
+        closed = true;
+        notifyAll();
+    }
+
+    public synchronized int available() {
+        return size;
+    }
+
+    public synchronized long getDroppedBytes() {
+        return droppedBytes;
+    }
+}
@@ -0,0 +1,329 @@
+package com.example.codeora;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.Choreographer;
+import android.view.FrameMetrics;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.view.Window;
+import android.webkit.WebView;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+import androidx.annotation.RequiresApi;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Opt-in performance HUD for the chat. While enabled it records the native window's frame
+// durations (FrameMetrics on API 24+, Choreographer intervals before that), the page's rAF
+// intervals, long tasks and JS heap through the "perf" bridge channel, and the app's PSS.
+// Each resume-to-pause session is written as JSON to the app's external files for offline
+// analysis:
+//   adb shell am start -n com.example.codeora/.MainActivity --ez perf_hud true
+//   adb pull /sdcard/Android/data/com.example.codeora/files/perf
+// The WebView's renderer runs in an isolated process whose memory the app cannot read, so the
+// page's JS heap stands in for renderer memory.
+public class PerfMonitor implements NativeBridge.ChannelHandler {
+
+    public static final String CHANNEL = "perf";
+    public static final String EXTRA_ENABLE = "perf_hud";
+    private static final String TAG = "PerfMonitor";
+    private static final String PREFS_NAME = "perf";
+    private static final String KEY_ENABLED = "enabled";
+    private static final String PROBE_ASSET = "perf.js";
+    private static final long HUD_INTERVAL_MILLIS = 1000;
+    // Debug.getMemoryInfo takes tens of milliseconds; sample it sparingly and off the main thread.
+    private static final long PSS_INTERVAL_MILLIS = 5000;
+
+    private static String probeScript;
+    private static final ExecutorService sampler = Executors.newSingleThreadExecutor();
+
+    private final Activity activity;
+    private final WebView webView;
+    private final SharedPreferences prefs;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private HandlerThread metricsThread;
+    private Object frameMetricsListener;
+    private Choreographer.FrameCallback frameCallback;
+    private TextView hud;
+    private volatile PerfSession session;
+    private long lastPssAt;
+
+    private final Runnable updateHud = new Runnable() {
+        @Override
+        public void run() {
+            PerfSession current = session;
+            if (current == null) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastPssAt >= PSS_INTERVAL_MILLIS) {
+                lastPssAt = now;
+                sampler.execute(() -> {
+                    Debug.MemoryInfo memory = new Debug.MemoryInfo();
+                    Debug.getMemoryInfo(memory);
+                    current.recordAppPss(memory.getTotalPss());
+                });
+            }
+            hud.setText(current.hudText());
+            mainHandler.postDelayed(this, HUD_INTERVAL_MILLIS);
+        }
+    };
+
+    public PerfMonitor(Activity activity, WebView webView) {
+        this.activity = activity;
+        this.webView = webView;
+        this.prefs = activity.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public boolean isEnabled() {
+        return prefs.getBoolean(KEY_ENABLED, false);
+    }
+
+    public void setEnabled(boolean enabled) {
+        if (enabled == isEnabled()) {
+            return;
+        }
+        prefs.edit().putBoolean(KEY_ENABLED, enabled).apply();
+        if (enabled) {
+            start();
+        } else {
+            stop();
+        }
+    }
+
+    // From onResume. Starts a new session when the HUD is on.
+    public void start() {
+        if (!isEnabled() || session != null) {
+            return;
+        }
+        float refreshRate = activity.getWindowManager().getDefaultDisplay().getRefreshRate();
+        PerfSession current = new PerfSession(System.currentTimeMillis(), refreshRate);
+        session = current;
+        showHud();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            startFrameMetrics(current);
+        } else {
+            startChoreographer(current);
+        }
+        injectProbe();
+        lastPssAt = 0;
+        mainHandler.post(updateHud);
+    }
+
+    // From onPause. Ends the session and writes it out.
+    public void stop() {
+        stop(true);
+    }
+
+    // The renderer died; end the session without touching the WebView again.
+    public void onWebViewLost() {
+        stop(false);
+    }
+
+    private void stop(boolean stopProbe) {
+        PerfSession current = session;
+        if (current == null) {
+            return;
+        }
+        session = null;
+        mainHandler.removeCallbacks(updateHud);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            stopFrameMetrics();
+        } else if (frameCallback != null) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            frameCallback = null;
+        }
+        if (stopProbe) {
+            webView.evaluateJavascript("window.__perfProbe && window.__perfProbe.stop();", null);
+        }
+        if (hud != null) {
+            ((ViewGroup) hud.getParent()).removeView(hud);
+            hud = null;
+        }
+        current.end(System.currentTimeMillis());
+        export(current);
+    }
+
+    // A new document has no probe; called from onPageStarted.
+    public void onPageStarted() {
+        if (session != null) {
+            injectProbe();
+        }
+    }
+
+    // enable:  {} -> {}
+    // disable: {} -> {}   ends the session and writes it out
+    // samples: {raf: [ms], longTasks: [ms], jsHeapUsed?, jsHeapTotal?}   sent by perf.js
+    @Override
+    public void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        try {
+            JSONObject request = new JSONObject(message.payloadString());
+            String op = request.getString("op");
+            if ("samples".equals(op)) {
+                record(request);
+                reply.success("{}");
+            } else if ("enable".equals(op) || "disable".equals(op)) {
+                boolean enable = "enable".equals(op);
+                mainHandler.post(() -> setEnabled(enable));
+                reply.success("{}");
+            } else {
+                reply.error("Unknown perf op " + op);
+            }
+        } catch (JSONException e) {
+            reply.error(String.valueOf(e.getMessage()));
+        }
+    }
+
+    private void record(JSONObject samples) throws JSONException {
+        PerfSession current = session;
+        if (current == null) {
+            return;
+        }
+        JSONArray raf = samples.optJSONArray("raf");
+        for (int i = 0; raf != null && i < raf.length(); i++) {
+            current.rafIntervals.record(raf.getDouble(i));
+        }
+        JSONArray longTasks = samples.optJSONArray("longTasks");
+        for (int i = 0; longTasks != null && i < longTasks.length(); i++) {
+            current.longTasks.record(longTasks.getDouble(i));
+        }
+        current.recordJsHeap(samples.optLong("jsHeapUsed", -1), samples.optLong("jsHeapTotal", -1));
+    }
+
+    @RequiresApi(Build.VERSION_CODES.N)
+    private void startFrameMetrics(PerfSession current) {
+        metricsThread = new HandlerThread("FrameMetrics");
+        metricsThread.start();
+        Window.OnFrameMetricsAvailableListener listener = (window, frameMetrics, dropCount) ->
+                current.nativeFrames.record(frameMetrics.getMetric(FrameMetrics.TOTAL_DURATION) / 1_000_000.0);
+        activity.getWindow().addOnFrameMetricsAvailableListener(listener, new Handler(metricsThread.getLooper()));
+        frameMetricsListener = listener;
+    }
+
+    @RequiresApi(Build.VERSION_CODES.N)
+    private void stopFrameMetrics() {
+        if (frameMetricsListener != null) {
+            try {
+                activity.getWindow().removeOnFrameMetricsAvailableListener(
+                        (Window.OnFrameMetricsAvailableListener) frameMetricsListener);
+            } catch (IllegalArgumentException e) {
+                // Already removed with the window.
+            }
+            frameMetricsListener = null;
+        }
+        if (metricsThread != null) {
+            metricsThread.quitSafely();
+            metricsThread = null;
+        }
+    }
+
+    // Frame-to-frame vsync intervals; only an approximation of rendering time, but the only
+    // signal available below API 24.
+    private void startChoreographer(PerfSession current) {
+        frameCallback = new Choreographer.FrameCallback() {
+            private long last;
+
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                if (last != 0) {
+                    current.nativeFrames.record((frameTimeNanos - last) / 1_000_000.0);
+                }
+                last = frameTimeNanos;
+                if (frameCallback == this) {
+                    Choreographer.getInstance().postFrameCallback(this);
+                }
+            }
+        };
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+
+    private void showHud() {
+        if (hud != null) {
+            return;
+        }
+        hud = new TextView(activity);
+        hud.setTextSize(TypedValue.COMPLEX_UNIT_SP, 10);
+        hud.setTextColor(Color.WHITE);
+        hud.setBackgroundColor(0x99000000);
+        int padding = Math.round(4 * activity.getResources().getDisplayMetrics().density);
+        hud.setPadding(padding, padding, padding, padding);
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
+                ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.TOP | Gravity.END);
+        ((FrameLayout) activity.findViewById(android.R.id.content)).addView(hud, params);
+    }
+
+    private void injectProbe() {
+        String script = loadProbe(activity);
+        if (script != null) {
+            webView.evaluateJavascript(script, null);
+        }
+    }
+
+    private void export(PerfSession finished) {
+        File directory = activity.getExternalFilesDir("perf");
+        if (directory == null) {
+            directory = new File(activity.getFilesDir(), "perf");
+        }
+        File dir = directory;
+        new Thread(() -> {
+            String name = "perf-" + new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.US)
+                    .format(new Date(finished.startedAtMillis)) + ".json";
+            File file = new File(dir, name);
+            try {
+                String json = finished.toJson().toString(2);
+                if (!dir.isDirectory() && !dir.mkdirs()) {
+                    throw new IOException("Cannot create " + dir);
+                }
+                try (OutputStream out = new FileOutputStream(file)) {
+                    out.write(json.getBytes(StandardCharsets.UTF_8));
+                }
+                Log.i(TAG, "Perf session written to " + file + ": " + finished.hudText().replace('\n', ' '));
+            } catch (IOException | JSONException e) {
+                Log.w(TAG, "Could not write perf session", e);
+            }
+        }, "PerfExport").start();
+    }
+
+    private static synchronized String loadProbe(Context context) {
+        if (probeScript == null) {
+            try (InputStream in = context.getAssets().open(PROBE_ASSET)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, n);
+                }
+                probeScript = new String(out.toByteArray(), StandardCharsets.UTF_8);
+            } catch (IOException e) {
+                Log.e(TAG, "Could not load perf probe", e);
+            }
+        }
+        return probeScript;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.codeora;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.Locale;
+
+// Everything the performance HUD collects between two resumes of the chat: native frame
+// durations, the page's requestAnimationFrame intervals and long tasks, and memory samples.
+public class PerfSession {
+
+    public final long startedAtMillis;
+    public final double frameIntervalMillis;
+    public final FrameStats nativeFrames;
+    public final FrameStats rafIntervals;
+    public final FrameStats longTasks;
+
+    private long jsHeapUsedBytes = -1;
+    private long jsHeapUsedMaxBytes = -1;
+    private long jsHeapTotalBytes = -1;
+    private long appPssKb = -1;
+    private long appPssMaxKb = -1;
+    private long endedAtMillis;
+
+    public PerfSession(long startedAtMillis, double refreshRate) {
+        this.startedAtMillis = startedAtMillis;
+        this.frameIntervalMillis = refreshRate > 0 ? 1000 / refreshRate : 1000 / 60.0;
+        this.nativeFrames = new FrameStats(frameIntervalMillis);
+        this.rafIntervals = new FrameStats(frameIntervalMillis);
+        // Long tasks are not frames; only their distribution matters.
+        this.longTasks = new FrameStats(0);
+    }
+
+    public synchronized void recordJsHeap(long usedBytes, long totalBytes) {
+        if (usedBytes < 0) {
+            return;
+        }
+        jsHeapUsedBytes = usedBytes;
+        jsHeapTotalBytes = totalBytes;
+        jsHeapUsedMaxBytes = Math.max(jsHeapUsedMaxBytes, usedBytes);
+    }
+
+    public synchronized void recordAppPss(long kb) {
+        appPssKb = kb;
+        appPssMaxKb = Math.max(appPssMaxKb, kb);
+    }
+
+    public synchronized void end(long nowMillis) {
+        endedAtMillis = nowMillis;
+    }
+
+    // Two short lines for the on-screen overlay.
+    public synchronized String hudText() {
+        return String.format(Locale.US, "native p50 %.1f p95 %.1f p99 %.1f ms  dropped %d\n"
+                        + "raf p95 %.1f ms  long tasks %d (max %.0f ms)  heap %s  pss %s",
+                nativeFrames.percentile(0.5), nativeFrames.percentile(0.95), nativeFrames.percentile(0.99),
+                nativeFrames.dropped(), rafIntervals.percentile(0.95), longTasks.count(), longTasks.max(),
+                megabytes(jsHeapUsedBytes), megabytes(appPssKb < 0 ? -1 : appPssKb * 1024));
+    }
+
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("startedAt", startedAtMillis);
+        json.put("durationMs", (endedAtMillis > 0 ? endedAtMillis : System.currentTimeMillis()) - startedAtMillis);
+        json.put("frameIntervalMs", Math.round(frameIntervalMillis * 100) / 100.0);
+        json.put("nativeFrames", nativeFrames.toJson());
+        json.put("rafIntervals", rafIntervals.toJson());
+        JSONObject tasks = longTasks.toJson();
+        tasks.put("totalMs", Math.round(longTasks.total()));
+        json.put("longTasks", tasks);
+        JSONObject memory = new JSONObject();
+        memory.put("jsHeapUsedBytes", jsHeapUsedBytes);
+        memory.put("jsHeapUsedMaxBytes", jsHeapUsedMaxBytes);
+        memory.put("jsHeapTotalBytes", jsHeapTotalBytes);
+        memory.put("appPssKb", appPssKb);
+        memory.put("appPssMaxKb", appPssMaxKb);
+        json.put("memory", memory);
+        return json;
+    }
+
+    private static String megabytes(long bytes) {
+        return bytes < 0 ? "-" : String.format(Locale.US, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
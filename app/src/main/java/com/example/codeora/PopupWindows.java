@@ -0,0 +1,214 @@
+package com.example.codeora;
+
+import android.annotation.SuppressLint;
+import android.app.Activity;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Looper;
+import android.os.Message;
+import android.os.MessageQueue;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.webkit.CookieManager;
+import android.webkit.RenderProcessGoneDetail;
+import android.webkit.WebChromeClient;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+import android.widget.FrameLayout;
+
+import androidx.annotation.RequiresApi;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Child windows the chat page opens (window.open, OAuth sign-in). Each one is a WebView from a
+// WindowPool shown in an overlay above the chat, so the chat WebView keeps its page and never
+// reloads for a popup. Open popups form a stack: back navigates the top one, then closes it.
+// Chromium only accepts a never-navigated WebView for a new window, so the pool's spares are
+// fresh WebViews built while the main thread is idle rather than recycled popups.
+public class PopupWindows implements MemoryGovernor.Trimmable {
+
+    private static final String TAG = "PopupWindows";
+    private static final int MAX_ALIVE = 2;
+    private static final int MAX_SPARES = 1;
+    private static final int MAX_PARKED = 6;
+
+    private final Activity activity;
+    private final String userAgent;
+    private final FrameLayout overlay;
+    private final WindowPool<WebView, Bundle> pool;
+    // Open popup ids, top last.
+    private final List<Integer> stack = new ArrayList<>();
+    private boolean prewarmScheduled;
+    private boolean destroyed;
+    private final MessageQueue.IdleHandler prewarm = this::prewarmStep;
+
+    public PopupWindows(Activity activity, String userAgent) {
+        this.activity = activity;
+        this.userAgent = userAgent;
+        overlay = new FrameLayout(activity);
+        overlay.setBackgroundColor(Color.WHITE);
+        overlay.setVisibility(View.GONE);
+        ((ViewGroup) activity.findViewById(android.R.id.content)).addView(overlay,
+                new ViewGroup.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        pool = new WindowPool<>(new WebViewHost(), MAX_ALIVE, MAX_SPARES, MAX_PARKED);
+        MemoryGovernor.register(this);
+    }
+
+    // From WebChromeClient.onCreateWindow of the chat WebView.
+    public boolean onCreateWindow(Message resultMsg) {
+        int id = pool.open();
+        WebView popup = pool.window(id);
+        stack.add(id);
+        show(id);
+        WebView.WebViewTransport transport = (WebView.WebViewTransport) resultMsg.obj;
+        transport.setWebView(popup);
+        resultMsg.sendToTarget();
+        Log.d(TAG, "Opened popup " + id + ": " + pool.stats());
+        prewarmWhenIdle();
+        return true;
+    }
+
+    // Back goes through the top popup's history, then closes it.
+    public boolean onBackPressed() {
+        if (stack.isEmpty()) {
+            return false;
+        }
+        int top = stack.get(stack.size() - 1);
+        WebView popup = pool.window(top);
+        if (popup != null && popup.canGoBack()) {
+            popup.goBack();
+        } else {
+            close(top);
+        }
+        return true;
+    }
+
+    // Builds the spare WebView once the main thread has nothing else to do.
+    public void prewarmWhenIdle() {
+        if (prewarmScheduled || destroyed) {
+            return;
+        }
+        prewarmScheduled = true;
+        Looper.myQueue().addIdleHandler(prewarm);
+    }
+
+    // A spare built after this would hold the old activity; the pending prewarm goes with it.
+    public void destroy() {
+        destroyed = true;
+        Looper.myQueue().removeIdleHandler(prewarm);
+        prewarmScheduled = false;
+        stack.clear();
+        overlay.removeAllViews();
+        pool.closeAll();
+        ((ViewGroup) overlay.getParent()).removeView(overlay);
+    }
+
+    @Override
+    public void onTrim(TrimPolicy policy) {
+        if (policy.freeNativeCaches) {
+            pool.dropSpares();
+        }
+        if (policy.pressure == TrimPolicy.Pressure.HIGH && !stack.isEmpty()) {
+            pool.parkAllExcept(stack.get(stack.size() - 1));
+        }
+    }
+
+    // Builds one spare; true while the pool wants more.
+    private boolean prewarmStep() {
+        boolean more = !destroyed && !activity.isFinishing() && !activity.isDestroyed() && pool.prewarm();
+        prewarmScheduled = more;
+        return more;
+    }
+
+    private void close(int id) {
+        stack.remove(Integer.valueOf(id));
+        pool.close(id);
+        if (stack.isEmpty()) {
+            overlay.removeAllViews();
+            overlay.setVisibility(View.GONE);
+        } else {
+            show(stack.get(stack.size() - 1));
+        }
+    }
+
+    private void show(int id) {
+        WebView popup = pool.window(id);
+        if (popup == null) {
+            // Its snapshot was dropped; the popup is gone.
+            close(id);
+            return;
+        }
+        if (popup.getParent() != overlay) {
+            overlay.removeAllViews();
+            overlay.addView(popup, new FrameLayout.LayoutParams(
+                    ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.MATCH_PARENT));
+        }
+        overlay.setVisibility(View.VISIBLE);
+    }
+
+    private class WebViewHost implements WindowPool.Host<WebView, Bundle> {
+        @SuppressLint("SetJavaScriptEnabled")
+        @Override
+        public WebView create() {
+            WebView popup = new WebView(activity);
+            WebSettings settings = popup.getSettings();
+            settings.setJavaScriptEnabled(true);
+            settings.setDomStorageEnabled(true);
+            settings.setUserAgentString(userAgent);
+            // Links a popup opens load in the popup itself.
+            settings.setSupportMultipleWindows(false);
+            CookieManager.getInstance().setAcceptThirdPartyCookies(popup, true);
+            popup.setWebViewClient(new WebViewClient() {
+                // A popup can share its renderer with the chat; returning false would kill the app.
+                @Override
+                @RequiresApi(Build.VERSION_CODES.O)
+                public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+                    Log.w(TAG, "Popup renderer gone, crashed=" + detail.didCrash());
+                    int id = pool.idOf(view);
+                    if (id != -1) {
+                        close(id);
+                    } else {
+                        // A spare; the next popup must not get it
+                        pool.dropSpares();
+                    }
+                    return true;
+                }
+            });
+            popup.setWebChromeClient(new WebChromeClient() {
+                @Override
+                public void onCloseWindow(WebView window) {
+                    int id = pool.idOf(window);
+                    if (id != -1) {
+                        close(id);
+                    }
+                }
+            });
+            return popup;
+        }
+
+        @Override
+        public Bundle snapshot(WebView window) {
+            Bundle state = new Bundle();
+            return window.saveState(state) != null ? state : null;
+        }
+
+        @Override
+        public void restore(WebView window, Bundle snapshot) {
+            window.restoreState(snapshot);
+        }
+
+        @Override
+        public void destroy(WebView window) {
+            ViewGroup parent = (ViewGroup) window.getParent();
+            if (parent != null) {
+                parent.removeView(window);
+            }
+            window.stopLoading();
+            window.destroy();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.os.Build;
+import android.util.Log;
+import android.webkit.CookieManager;
+import android.webkit.ServiceWorkerClient;
+import android.webkit.ServiceWorkerController;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Keeps the current build's critical assets pinned on disk ahead of the page asking for them.
+// A preload runs in the background at warm-up and whenever the network comes back; a newly
+// downloaded build only starts being served at the next main-frame navigation, so one page
+// load always sees one build. Service worker fetches go through the same path.
+public class PreloadController {
+
+    private static final String TAG = "PreloadController";
+    static final String MANIFEST_URL = MainActivity.CHAT_URL + "asset-manifest.json";
+    private static final int TIMEOUT_MILLIS = 15000;
+    private static final int PARALLEL_DOWNLOADS = 4;
+
+    private static PreloadController instance;
+
+    private final Context context;
+    private final AssetStore store;
+    private final AssetPreloader preloader;
+    private final ExecutorService runner = Executors.newSingleThreadExecutor();
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public static synchronized PreloadController get(Context context) {
+        if (instance == null) {
+            instance = new PreloadController(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private PreloadController(Context context) {
+        this.context = context;
+        this.store = new AssetStore(new File(context.getFilesDir(), "preload"));
+        this.preloader = new AssetPreloader(store, TIMEOUT_MILLIS,
+                Executors.newFixedThreadPool(PARALLEL_DOWNLOADS));
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            ServiceWorkerController.getInstance().setServiceWorkerClient(new PreloadServiceWorkerClient());
+        }
+    }
+
+    // Safe to call repeatedly; at most one preload runs at a time.
+    public void preloadAsync() {
+        if (!running.compareAndSet(false, true)) {
+            return;
+        }
+        runner.execute(() -> {
+            try {
+                String cookie = CookieManager.getInstance().getCookie(MainActivity.CHAT_URL);
+                AssetManifest manifest = preloader.loadManifest(MANIFEST_URL, MainActivity.CHAT_URL, cookie);
+                if (store.hasVersion(manifest.version)) {
+                    Log.d(TAG, "Build " + manifest.version + " already pinned");
+                    return;
+                }
+                Log.d(TAG, "Preloaded " + preloader.preload(manifest, cookie));
+            } catch (IOException e) {
+                Log.w(TAG, "Preload failed: " + e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.set(false);
+            }
+        });
+    }
+
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        if (!"GET".equals(request.getMethod())) {
+            return null;
+        }
+        if (request.isForMainFrame()) {
+            // A new document is the only point where switching builds cannot mix them.
+            store.promote();
+            return null;
+        }
+        AssetStore.Asset asset = store.lookup(request.getUrl().toString());
+        if (asset == null) {
+            return null;
+        }
+        try {
+            Map<String, String> headers = new HashMap<>();
+            headers.put("Cache-Control", "public, max-age=31536000, immutable");
+            headers.put("Content-Length", Long.toString(asset.file.length()));
+            return new WebResourceResponse(asset.mimeType, asset.encoding, 200, "OK", headers, asset.open());
+        } catch (IOException e) {
+            Log.w(TAG, "Pinned asset unreadable: " + asset.url);
+            return null;
+        }
+    }
+
+    private class PreloadServiceWorkerClient extends ServiceWorkerClient {
+        @Override
+        public WebResourceResponse shouldInterceptRequest(WebResourceRequest request) {
+            WebResourceResponse response = intercept(request);
+            if (response == null) {
+                response = ImageInterceptor.get(context).intercept(request);
+            }
+            if (response == null) {
+                response = WebCacheInterceptor.get(context, MainActivity.CHAT_URL).intercept(request);
+            }
+            if (response == null) {
+                response = NativeNetwork.get(context).intercept(request);
+            }
+            return response;
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.codeora;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.Choreographer;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Bridge side of RealtimeConnection. The page attaches to the shared socket instead of opening
+// its own, and gets received messages as one "realtime" event per display frame, however many
+// arrived since the last one, so a burst costs one bridge round and one render.
+public class RealtimeChannel implements NativeBridge.ChannelHandler, RealtimeConnection.Listener {
+
+    public static final String CHANNEL = "realtime";
+    private static final String TAG = "RealtimeChannel";
+
+    private final RealtimeConnection connection;
+    private final NativeBridge bridge;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<RealtimeSession.Incoming> pending = new ArrayList<>();
+    private boolean frameScheduled;
+
+    private final Choreographer.FrameCallback deliver = frameTimeNanos -> {
+        frameScheduled = false;
+        emitPending();
+    };
+
+    public RealtimeChannel(RealtimeConnection connection, NativeBridge bridge) {
+        this.connection = connection;
+        this.bridge = bridge;
+        connection.setListener(this);
+    }
+
+    // connect:     {url}                      -> {}
+    // subscribe:   {conversationId}           -> {}
+    // unsubscribe: {conversationId}           -> {}
+    // send:        {conversationId, payload}  -> {clientSeq}
+    // stats:       {}                         -> {state, lastSeq, sentMessages, sentFrames, ...}
+    // Events: {type: "messages", messages: [{seq, conversationId, payload}]}
+    //         {type: "state", state, resync}
+    @Override
+    public void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        try {
+            JSONObject request = new JSONObject(message.payloadString());
+            String op = request.getString("op");
+            if ("connect".equals(op)) {
+                connection.setListener(this);
+                connection.connect(request.getString("url"));
+                reply.success("{}");
+            } else if ("subscribe".equals(op)) {
+                connection.subscribe(request.getString("conversationId"));
+                reply.success("{}");
+            } else if ("unsubscribe".equals(op)) {
+                connection.unsubscribe(request.getString("conversationId"));
+                reply.success("{}");
+            } else if ("send".equals(op)) {
+                long clientSeq = connection.send(request.getString("conversationId"),
+                        request.getJSONObject("payload"));
+                reply.success(new JSONObject().put("clientSeq", clientSeq).toString());
+            } else if ("stats".equals(op)) {
+                reply.success(connection.stats().toString());
+            } else {
+                reply.error("Unknown realtime op " + op);
+            }
+        } catch (JSONException e) {
+            reply.error(String.valueOf(e.getMessage()));
+        }
+    }
+
+    @Override
+    public void onMessages(List<RealtimeSession.Incoming> messages) {
+        mainHandler.post(() -> {
+            pending.addAll(messages);
+            if (!frameScheduled) {
+                frameScheduled = true;
+                Choreographer.getInstance().postFrameCallback(deliver);
+            }
+        });
+    }
+
+    @Override
+    public void onStateChanged(String state, boolean resync) {
+        mainHandler.post(() -> {
+            // Messages received before a state change are delivered before it.
+            emitPending();
+            try {
+                bridge.emit(CHANNEL, new JSONObject().put("type", "state").put("state", state)
+                        .put("resync", resync).toString());
+            } catch (JSONException e) {
+                Log.e(TAG, "Could not encode state", e);
+            }
+        });
+    }
+
+    private void emitPending() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        try {
+            JSONArray messages = new JSONArray();
+            for (RealtimeSession.Incoming message : pending) {
+                messages.put(message.toJson());
+            }
+            bridge.emit(CHANNEL, new JSONObject().put("type", "messages").put("messages", messages).toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not encode messages", e);
+        }
+        pending.clear();
+    }
+}
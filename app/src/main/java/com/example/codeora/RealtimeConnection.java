@@ -0,0 +1,317 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.WebSocket;
+import okhttp3.WebSocketListener;
+
+// One app-wide WebSocket for real-time chat, owned by the process rather than an activity, so
+// pausing MainActivity or bouncing through the offline screen does not drop it. Every
+// conversation the page subscribes to shares the socket. Outgoing messages are held for a few
+// milliseconds and sent as one batch frame; OkHttp's pings detect a dead connection, which is
+// then reopened with backoff and resumes the RealtimeSession. Received messages go to the
+// current listener, or are held (up to a limit) while no page is attached.
+public class RealtimeConnection {
+
+    public interface Listener {
+        void onMessages(List<RealtimeSession.Incoming> messages);
+
+        // state: "connecting" | "open" | "waiting" | "closed"; resync when the server lost the session.
+        void onStateChanged(String state, boolean resync);
+    }
+
+    private static final String TAG = "RealtimeConnection";
+    private static final int MAX_BATCH = 64;
+    private static final long LINGER_MILLIS = 8;
+    private static final long PING_SECONDS = 20;
+    private static final long IDLE_CLOSE_MILLIS = 60_000;
+    private static final int MAX_HELD = 1000;
+    private static final int NORMAL_CLOSURE = 1000;
+
+    private static RealtimeConnection instance;
+
+    private final OkHttpClient client;
+    private final RealtimeSession session = new RealtimeSession(MAX_BATCH);
+    private final RetryPolicy backoff = new RetryPolicy(500, 30_000, Integer.MAX_VALUE, 0.5, 0, 0, new Random());
+    private final Handler handler;
+    private final ArrayDeque<RealtimeSession.Incoming> held = new ArrayDeque<>();
+    private Listener listener;
+    private String url;
+    private WebSocket socket;
+    private String state = "closed";
+    private boolean flushScheduled;
+    private boolean heldOverflowed;
+    private int attempt;
+
+    private final Runnable flush = this::flushNow;
+    private final Runnable reconnect = this::open;
+    private final Runnable idleClose = () -> {
+        if (session.isIdle()) {
+            close();
+        }
+    };
+
+    public static synchronized RealtimeConnection get(Context context) {
+        if (instance == null) {
+            instance = new RealtimeConnection(new OkHttpClient.Builder()
+                    .pingInterval(PING_SECONDS, TimeUnit.SECONDS)
+                    .build());
+            ConnectivityMonitor.get(context).addListener(networkState -> {
+                if (networkState.connected) {
+                    instance.reconnectNow();
+                }
+            });
+        }
+        return instance;
+    }
+
+    RealtimeConnection(OkHttpClient client) {
+        this.client = client;
+        HandlerThread thread = new HandlerThread("Realtime");
+        thread.start();
+        this.handler = new Handler(thread.getLooper());
+    }
+
+    // The newest page wins; messages held while none was attached are handed over at once.
+    public void setListener(Listener listener) {
+        handler.post(() -> {
+            this.listener = listener;
+            if (listener == null) {
+                return;
+            }
+            listener.onStateChanged(state, heldOverflowed);
+            heldOverflowed = false;
+            if (!held.isEmpty()) {
+                List<RealtimeSession.Incoming> messages = new ArrayList<>(held);
+                held.clear();
+                listener.onMessages(messages);
+            }
+        });
+    }
+
+    public void connect(String url) {
+        handler.post(() -> {
+            handler.removeCallbacks(idleClose);
+            if (url.equals(this.url) && socket != null) {
+                return;
+            }
+            if (socket != null) {
+                socket.close(NORMAL_CLOSURE, null);
+                socket = null;
+                session.onDisconnected();
+            }
+            this.url = url;
+            attempt = 0;
+            open();
+        });
+    }
+
+    public void subscribe(String conversationId) {
+        handler.post(() -> {
+            handler.removeCallbacks(idleClose);
+            sendControl(session::subscribe, conversationId);
+        });
+    }
+
+    public void unsubscribe(String conversationId) {
+        handler.post(() -> {
+            sendControl(session::unsubscribe, conversationId);
+            if (session.isIdle()) {
+                handler.postDelayed(idleClose, IDLE_CLOSE_MILLIS);
+            }
+        });
+    }
+
+    // Queues a message; returns its client sequence number, which the server acknowledges.
+    public long send(String conversationId, JSONObject payload) {
+        long clientSeq = session.enqueue(conversationId, payload);
+        handler.post(() -> {
+            if (session.unsentCount() >= MAX_BATCH) {
+                handler.removeCallbacks(flush);
+                flushNow();
+            } else if (!flushScheduled) {
+                flushScheduled = true;
+                handler.postDelayed(flush, LINGER_MILLIS);
+            }
+        });
+        return clientSeq;
+    }
+
+    public JSONObject stats() throws JSONException {
+        return session.stats().put("state", state);
+    }
+
+    public void close() {
+        handler.post(() -> {
+            handler.removeCallbacks(reconnect);
+            url = null;
+            if (socket != null) {
+                socket.close(NORMAL_CLOSURE, null);
+                socket = null;
+                session.onDisconnected();
+            }
+            setState("closed", false);
+        });
+    }
+
+    void reconnectNow() {
+        handler.post(() -> {
+            if (url != null && socket == null) {
+                handler.removeCallbacks(reconnect);
+                attempt = 0;
+                open();
+            }
+        });
+    }
+
+    private void open() {
+        if (url == null || socket != null) {
+            return;
+        }
+        setState("connecting", false);
+        socket = client.newWebSocket(new Request.Builder().url(url).build(), new SocketListener());
+    }
+
+    private void flushNow() {
+        flushScheduled = false;
+        if (socket == null || !"open".equals(state)) {
+            return;
+        }
+        try {
+            String frame;
+            while ((frame = session.nextBatchFrame()) != null) {
+                if (!socket.send(frame)) {
+                    // The socket is closing; onFailure or onClosed puts the batch back.
+                    break;
+                }
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not encode batch", e);
+        }
+    }
+
+    private void sendControl(Control control, String conversationId) {
+        try {
+            String frame = control.frame(conversationId);
+            if (frame != null && socket != null && "open".equals(state)) {
+                socket.send(frame);
+            }
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not encode control frame", e);
+        }
+    }
+
+    private void onFrame(WebSocket from, String text) {
+        if (from != socket) {
+            return;
+        }
+        RealtimeSession.Result result;
+        try {
+            result = session.onFrame(text);
+        } catch (JSONException e) {
+            Log.w(TAG, "Unreadable frame: " + e.getMessage());
+            return;
+        }
+        if (result.welcomed) {
+            attempt = 0;
+            setState("open", result.resynced);
+            flushNow();
+        }
+        if (result.delivered.isEmpty()) {
+            return;
+        }
+        if (listener != null) {
+            listener.onMessages(result.delivered);
+            return;
+        }
+        for (RealtimeSession.Incoming message : result.delivered) {
+            if (held.size() == MAX_HELD) {
+                held.poll();
+                heldOverflowed = true;
+            }
+            held.add(message);
+        }
+    }
+
+    private void onLost(WebSocket from, String reason) {
+        if (from != socket) {
+            return;
+        }
+        socket = null;
+        session.onDisconnected();
+        if (url == null) {
+            setState("closed", false);
+            return;
+        }
+        long delay = backoff.delayFor(++attempt);
+        Log.d(TAG, "Connection lost (" + reason + "), reconnecting in " + delay + " ms");
+        setState("waiting", false);
+        handler.postDelayed(reconnect, delay);
+    }
+
+    private void setState(String newState, boolean resync) {
+        if (newState.equals(state) && !resync) {
+            return;
+        }
+        state = newState;
+        if (listener != null) {
+            listener.onStateChanged(newState, resync);
+        }
+    }
+
+    private interface Control {
+        String frame(String conversationId) throws JSONException;
+    }
+
+    // OkHttp calls these on its own threads; everything is handed to the connection's thread.
+    private class SocketListener extends WebSocketListener {
+        @Override
+        public void onOpen(WebSocket webSocket, Response response) {
+            handler.post(() -> {
+                if (webSocket != socket) {
+                    return;
+                }
+                try {
+                    webSocket.send(session.helloFrame());
+                } catch (JSONException e) {
+                    Log.e(TAG, "Could not encode hello", e);
+                }
+            });
+        }
+
+        @Override
+        public void onMessage(WebSocket webSocket, String text) {
+            handler.post(() -> onFrame(webSocket, text));
+        }
+
+        @Override
+        public void onClosing(WebSocket webSocket, int code, String reason) {
+            webSocket.close(NORMAL_CLOSURE, null);
+        }
+
+        @Override
+        public void onClosed(WebSocket webSocket, int code, String reason) {
+            handler.post(() -> onLost(webSocket, "closed " + code));
+        }
+
+        @Override
+        public void onFailure(WebSocket webSocket, Throwable t, Response response) {
+            handler.post(() -> onLost(webSocket, String.valueOf(t.getMessage())));
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.example.codeora;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+// State of the real-time chat connection, kept apart from the socket so it survives
+// reconnects: subscribed conversations, the last server sequence number delivered, and
+// outgoing messages not yet acknowledged. Frames are JSON text:
+//   client: {type: "hello", session?, lastSeq, subscribe: [conversationId]}
+//           {type: "batch", messages: [{clientSeq, conversationId, payload}]}
+//           {type: "subscribe" | "unsubscribe", conversationId}
+//   server: {type: "welcome", session, resumed}
+//           {type: "batch", messages: [{seq, conversationId, payload}], ack?}
+//           {type: "ack", clientSeq}
+// After a reconnect the hello asks the server to resume the session from lastSeq; outgoing
+// messages it never acknowledged are sent again in their original order. When the server
+// cannot resume, the page is told to resync from the store.
+public class RealtimeSession {
+
+    public static final class Incoming {
+        public final long seq;
+        public final String conversationId;
+        public final JSONObject payload;
+
+        Incoming(long seq, String conversationId, JSONObject payload) {
+            this.seq = seq;
+            this.conversationId = conversationId;
+            this.payload = payload;
+        }
+
+        public JSONObject toJson() throws JSONException {
+            JSONObject json = new JSONObject();
+            json.put("seq", seq);
+            json.put("conversationId", conversationId);
+            json.put("payload", payload);
+            return json;
+        }
+    }
+
+    public static final class Result {
+        public final List<Incoming> delivered;
+        public final boolean welcomed;
+        public final boolean resynced;
+
+        Result(List<Incoming> delivered, boolean welcomed, boolean resynced) {
+            this.delivered = delivered;
+            this.welcomed = welcomed;
+            this.resynced = resynced;
+        }
+    }
+
+    private static final class Outgoing {
+        final long clientSeq;
+        final String conversationId;
+        final JSONObject payload;
+
+        Outgoing(long clientSeq, String conversationId, JSONObject payload) {
+            this.clientSeq = clientSeq;
+            this.conversationId = conversationId;
+            this.payload = payload;
+        }
+    }
+
+    private final int maxBatch;
+    private final Set<String> subscriptions = new LinkedHashSet<>();
+    private final ArrayDeque<Outgoing> unsent = new ArrayDeque<>();
+    private final ArrayDeque<Outgoing> unacked = new ArrayDeque<>();
+    private String sessionId;
+    private long lastSeq;
+    private long nextClientSeq = 1;
+    private long sentMessages;
+    private long sentFrames;
+    private long receivedMessages;
+    private long receivedFrames;
+    private long duplicates;
+
+    public RealtimeSession(int maxBatch) {
+        this.maxBatch = maxBatch;
+    }
+
+    public synchronized long enqueue(String conversationId, JSONObject payload) {
+        Outgoing message = new Outgoing(nextClientSeq++, conversationId, payload);
+        unsent.add(message);
+        return message.clientSeq;
+    }
+
+    public synchronized int unsentCount() {
+        return unsent.size();
+    }
+
+    public synchronized int unackedCount() {
+        return unacked.size();
+    }
+
+    public synchronized boolean isIdle() {
+        return subscriptions.isEmpty() && unsent.isEmpty() && unacked.isEmpty();
+    }
+
+    // Up to maxBatch queued messages as one frame, or null when nothing is queued. They stay
+    // held until acknowledged.
+    public synchronized String nextBatchFrame() throws JSONException {
+        if (unsent.isEmpty()) {
+            return null;
+        }
+        JSONArray messages = new JSONArray();
+        while (!unsent.isEmpty() && messages.length() < maxBatch) {
+            Outgoing message = unsent.poll();
+            JSONObject json = new JSONObject();
+            json.put("clientSeq", message.clientSeq);
+            json.put("conversationId", message.conversationId);
+            json.put("payload", message.payload);
+            messages.put(json);
+            unacked.add(message);
+        }
+        sentMessages += messages.length();
+        sentFrames++;
+        return new JSONObject().put("type", "batch").put("messages", messages).toString();
+    }
+
+    public synchronized String helloFrame() throws JSONException {
+        JSONObject hello = new JSONObject();
+        hello.put("type", "hello");
+        if (sessionId != null) {
+            hello.put("session", sessionId);
+        }
+        hello.put("lastSeq", lastSeq);
+        hello.put("subscribe", new JSONArray(new ArrayList<>(subscriptions)));
+        return hello.toString();
+    }
+
+    // Returns the frame to send, or null when nothing changed.
+    public synchronized String subscribe(String conversationId) throws JSONException {
+        if (!subscriptions.add(conversationId)) {
+            return null;
+        }
+        return new JSONObject().put("type", "subscribe").put("conversationId", conversationId).toString();
+    }
+
+    public synchronized String unsubscribe(String conversationId) throws JSONException {
+        if (!subscriptions.remove(conversationId)) {
+            return null;
+        }
+        return new JSONObject().put("type", "unsubscribe").put("conversationId", conversationId).toString();
+    }
+
+    // The socket is gone; whatever was in flight goes out again, ahead of newer messages.
+    public synchronized void onDisconnected() {
+        Iterator<Outgoing> it = unacked.descendingIterator();
+        while (it.hasNext()) {
+            unsent.addFirst(it.next());
+        }
+        unacked.clear();
+    }
+
+    public synchronized Result onFrame(String text) throws JSONException {
+        JSONObject frame = new JSONObject(text);
+        receivedFrames++;
+        String type = frame.getString("type");
+        if ("welcome".equals(type)) {
+            String session = frame.getString("session");
+            boolean resumed = frame.optBoolean("resumed") && session.equals(sessionId);
+            boolean resynced = sessionId != null && !resumed;
+            if (!resumed) {
+                lastSeq = 0;
+            }
+            sessionId = session;
+            return new Result(Collections.<Incoming>emptyList(), true, resynced);
+        }
+        if (frame.has("ack")) {
+            acknowledge(frame.getLong("ack"));
+        }
+        if ("ack".equals(type)) {
+            acknowledge(frame.getLong("clientSeq"));
+            return new Result(Collections.<Incoming>emptyList(), false, false);
+        }
+        List<Incoming> delivered = new ArrayList<>();
+        if ("batch".equals(type)) {
+            JSONArray messages = frame.getJSONArray("messages");
+            for (int i = 0; i < messages.length(); i++) {
+                deliver(messages.getJSONObject(i), delivered);
+            }
+        }
+        return new Result(delivered, false, false);
+    }
+
+    public synchronized JSONObject stats() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("session", sessionId == null ? JSONObject.NULL : sessionId);
+        json.put("lastSeq", lastSeq);
+        json.put("sentMessages", sentMessages);
+        json.put("sentFrames", sentFrames);
+        json.put("receivedMessages", receivedMessages);
+        json.put("receivedFrames", receivedFrames);
+        json.put("duplicates", duplicates);
+        json.put("unsent", unsent.size());
+        json.put("unacked", unacked.size());
+        return json;
+    }
+
+    private void deliver(JSONObject message, List<Incoming> delivered) throws JSONException {
+        long seq = message.getLong("seq");
+        // Replays after a resume can overlap what was already delivered.
+        if (seq <= lastSeq) {
+            duplicates++;
+            return;
+        }
+        lastSeq = seq;
+        receivedMessages++;
+        delivered.add(new Incoming(seq, message.getString("conversationId"), message.optJSONObject("payload")));
+    }
+
+    private void acknowledge(long clientSeq) {
+        while (!unacked.isEmpty() && unacked.peek().clientSeq <= clientSeq) {
+            unacked.poll();
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.webkit.WebView;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+// Keeps a recent UiSnapshot of the chat so MainActivity can rebuild the WebView after its
+// renderer process dies and put the user back where they were, without a relaunch.
+// Snapshots are taken every few seconds while the chat is resumed and whenever the page sends
+// one on the "recovery" channel; the latest is also persisted, when it differs from the one
+// before, so a process restart soon after can use it. Time to recover runs from the renderer's
+// death to the restore being applied.
+public class RendererRecovery implements NativeBridge.ChannelHandler {
+
+    public static final String CHANNEL = "recovery";
+    private static final String TAG = "RendererRecovery";
+    private static final String PREFS_NAME = "recovery";
+    private static final String KEY_SNAPSHOT = "snapshot";
+    private static final String KEY_RECOVERIES = "recoveries";
+    private static final String KEY_TOTAL_MILLIS = "recovery_total_ms";
+    private static final String KEY_MAX_MILLIS = "recovery_max_ms";
+    private static final long SNAPSHOT_INTERVAL_MILLIS = 5000;
+    private static final long MAX_SNAPSHOT_AGE_MILLIS = 60 * 60 * 1000;
+    // Renderer deaths this close together suggest the restored state itself is the problem.
+    private static final long CRASH_LOOP_WINDOW_MILLIS = 60000;
+    private static final int CRASH_LOOP_LIMIT = 3;
+    // recovery.js reports back within about two seconds; give up waiting after this.
+    private static final long RESTORE_TIMEOUT_MILLIS = 5000;
+
+    private final SharedPreferences prefs;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private WebView webView;
+    private volatile UiSnapshot snapshot;
+    private UiSnapshot pendingRestore;
+    private long goneAt;
+    private final long[] recentDeaths = new long[CRASH_LOOP_LIMIT];
+    private int deathCount;
+
+    private final Runnable restoreTimeout = () -> {
+        if (pendingRestore != null) {
+            pendingRestore = null;
+            recordRecovery(false);
+        }
+    };
+
+    private final Runnable periodicCapture = new Runnable() {
+        @Override
+        public void run() {
+            capture();
+            mainHandler.postDelayed(this, SNAPSHOT_INTERVAL_MILLIS);
+        }
+    };
+
+    public RendererRecovery(Context context) {
+        this.prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        String saved = prefs.getString(KEY_SNAPSHOT, null);
+        if (saved != null) {
+            try {
+                snapshot = UiSnapshot.fromJson(new JSONObject(saved), 0);
+            } catch (JSONException e) {
+                prefs.edit().remove(KEY_SNAPSHOT).apply();
+            }
+        }
+    }
+
+    // The WebView to snapshot; called again with the replacement after a recovery.
+    public void attach(WebView webView) {
+        this.webView = webView;
+    }
+
+    public void start() {
+        mainHandler.removeCallbacks(periodicCapture);
+        mainHandler.postDelayed(periodicCapture, SNAPSHOT_INTERVAL_MILLIS);
+    }
+
+    // Takes a last snapshot on the way out.
+    public void stop() {
+        mainHandler.removeCallbacks(periodicCapture);
+        capture();
+    }
+
+    public void capture() {
+        WebView target = webView;
+        if (target == null || pendingRestore != null) {
+            return;
+        }
+        target.evaluateJavascript("window.__codeoraRecovery && JSON.stringify(window.__codeoraRecovery.capture())",
+                value -> {
+                    try {
+                        Object decoded = new JSONTokener(value).nextValue();
+                        if (decoded instanceof String) {
+                            save(new JSONObject((String) decoded));
+                        }
+                    } catch (JSONException e) {
+                        Log.w(TAG, "Unreadable snapshot: " + e.getMessage());
+                    }
+                });
+    }
+
+    // Returns the URL to load in the new WebView and arms the restore for its next page load.
+    public String onRendererGone(boolean crashed) {
+        long now = SystemClock.elapsedRealtime();
+        goneAt = now;
+        recentDeaths[deathCount++ % CRASH_LOOP_LIMIT] = now;
+        boolean crashLoop = deathCount >= CRASH_LOOP_LIMIT
+                && now - recentDeaths[deathCount % CRASH_LOOP_LIMIT] < CRASH_LOOP_WINDOW_MILLIS;
+        UiSnapshot current = snapshot;
+        Log.w(TAG, "Renderer " + (crashed ? "crashed" : "was killed") + "; restoring "
+                + (crashLoop ? "nothing (crash loop)" : current == null ? "nothing" : current.url));
+        if (crashLoop || current == null || !current.isFresh(System.currentTimeMillis(), MAX_SNAPSHOT_AGE_MILLIS)) {
+            pendingRestore = null;
+            return MainActivity.CHAT_URL;
+        }
+        pendingRestore = current;
+        return current.urlWithin(MainActivity.CHAT_URL);
+    }
+
+    // From onPageFinished of the rebuilt WebView.
+    public void onPageFinished(WebView view) {
+        UiSnapshot restore = pendingRestore;
+        if (restore == null) {
+            if (goneAt != 0) {
+                recordRecovery(false);
+            }
+            return;
+        }
+        if (restore.isEmpty()) {
+            pendingRestore = null;
+            recordRecovery(true);
+            return;
+        }
+        try {
+            view.evaluateJavascript("window.__codeoraRecovery && window.__codeoraRecovery.restore("
+                    + restore.toJson() + ")", null);
+            mainHandler.postDelayed(restoreTimeout, RESTORE_TIMEOUT_MILLIS);
+        } catch (JSONException e) {
+            pendingRestore = null;
+            recordRecovery(false);
+        }
+    }
+
+    // snapshot: {state}     pushed by the page, e.g. after the draft changed
+    // restored: {applied}   sent by recovery.js once a restore was attempted
+    @Override
+    public void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        try {
+            JSONObject request = new JSONObject(message.payloadString());
+            String op = request.getString("op");
+            if ("snapshot".equals(op)) {
+                save(request.getJSONObject("state"));
+            } else if ("restored".equals(op)) {
+                boolean applied = request.optBoolean("applied");
+                mainHandler.post(() -> {
+                    mainHandler.removeCallbacks(restoreTimeout);
+                    if (pendingRestore != null) {
+                        pendingRestore = null;
+                        recordRecovery(applied);
+                    }
+                });
+            } else {
+                reply.error("Unknown recovery op " + op);
+                return;
+            }
+            reply.success("{}");
+        } catch (JSONException e) {
+            reply.error(String.valueOf(e.getMessage()));
+        }
+    }
+
+    public String stats() {
+        long count = prefs.getLong(KEY_RECOVERIES, 0);
+        long total = prefs.getLong(KEY_TOTAL_MILLIS, 0);
+        return "recoveries=" + count + " avg=" + (count == 0 ? 0 : total / count) + "ms max="
+                + prefs.getLong(KEY_MAX_MILLIS, 0) + "ms";
+    }
+
+    private synchronized void save(JSONObject state) {
+        UiSnapshot captured = UiSnapshot.fromJson(state, System.currentTimeMillis());
+        UiSnapshot previous = snapshot;
+        snapshot = captured;
+        // The periodic capture mostly finds nothing new; only changes are written out.
+        if (captured.sameStateAs(previous)) {
+            return;
+        }
+        try {
+            prefs.edit().putString(KEY_SNAPSHOT, captured.toJson().toString()).apply();
+        } catch (JSONException e) {
+            Log.w(TAG, "Could not persist snapshot", e);
+        }
+    }
+
+    private void recordRecovery(boolean restored) {
+        long millis = SystemClock.elapsedRealtime() - goneAt;
+        goneAt = 0;
+        long count = prefs.getLong(KEY_RECOVERIES, 0) + 1;
+        prefs.edit()
+                .putLong(KEY_RECOVERIES, count)
+                .putLong(KEY_TOTAL_MILLIS, prefs.getLong(KEY_TOTAL_MILLIS, 0) + millis)
+                .putLong(KEY_MAX_MILLIS, Math.max(prefs.getLong(KEY_MAX_MILLIS, 0), millis))
+                .apply();
+        Log.i(TAG, "Recovered from renderer loss in " + millis + " ms (state "
+                + (restored ? "restored" : "not restored") + "); " + stats());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.codeora;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Per-phase request timings, kept apart per network path ("native" for NativeNetwork,
+// "webview" for what the page's Resource Timing reports about Chromium's own stack) so the two
+// can be compared side by side. A phase a request skipped, such as DNS and connect on a reused
+// connection, is passed as a negative value and left out of that phase's distribution.
+public class RequestTimings {
+
+    public static final String NATIVE = "native";
+    public static final String WEBVIEW = "webview";
+
+    public static final class Sample {
+        public final double dnsMillis;
+        public final double connectMillis;
+        public final double tlsMillis;
+        public final double ttfbMillis;
+        public final double totalMillis;
+        public final boolean reusedConnection;
+        public final String protocol;
+
+        public Sample(double dnsMillis, double connectMillis, double tlsMillis, double ttfbMillis, double totalMillis,
+                      boolean reusedConnection, String protocol) {
+            this.dnsMillis = dnsMillis;
+            this.connectMillis = connectMillis;
+            this.tlsMillis = tlsMillis;
+            this.ttfbMillis = ttfbMillis;
+            this.totalMillis = totalMillis;
+            this.reusedConnection = reusedConnection;
+            this.protocol = protocol;
+        }
+    }
+
+    private static final class Path {
+        final FrameStats dns = new FrameStats(0);
+        final FrameStats connect = new FrameStats(0);
+        final FrameStats tls = new FrameStats(0);
+        final FrameStats ttfb = new FrameStats(0);
+        final FrameStats total = new FrameStats(0);
+        final Map<String, Long> protocols = new LinkedHashMap<>();
+        long requests;
+        long reused;
+    }
+
+    private final Map<String, Path> paths = new LinkedHashMap<>();
+
+    public synchronized void record(String path, Sample sample) {
+        Path stats = paths.get(path);
+        if (stats == null) {
+            stats = new Path();
+            paths.put(path, stats);
+        }
+        stats.requests++;
+        if (sample.reusedConnection) {
+            stats.reused++;
+        }
+        stats.dns.record(sample.dnsMillis);
+        stats.connect.record(sample.connectMillis);
+        stats.tls.record(sample.tlsMillis);
+        stats.ttfb.record(sample.ttfbMillis);
+        stats.total.record(sample.totalMillis);
+        String protocol = sample.protocol == null || sample.protocol.isEmpty() ? "unknown" : sample.protocol;
+        Long count = stats.protocols.get(protocol);
+        stats.protocols.put(protocol, count == null ? 1 : count + 1);
+    }
+
+    public synchronized long requests(String path) {
+        Path stats = paths.get(path);
+        return stats == null ? 0 : stats.requests;
+    }
+
+    public synchronized void reset() {
+        paths.clear();
+    }
+
+    // {native: {requests, reusedConnections, protocols: {h2: n}, dns: {count, p50, ...}, ...}, webview: {...}}
+    public synchronized JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        for (Map.Entry<String, Path> entry : paths.entrySet()) {
+            Path stats = entry.getValue();
+            JSONObject path = new JSONObject();
+            path.put("requests", stats.requests);
+            path.put("reusedConnections", stats.reused);
+            JSONObject protocols = new JSONObject();
+            for (Map.Entry<String, Long> protocol : stats.protocols.entrySet()) {
+                protocols.put(protocol.getKey(), protocol.getValue());
+            }
+            path.put("protocols", protocols);
+            path.put("dns", stats.dns.toJson());
+            path.put("connect", stats.connect.toJson());
+            path.put("tls", stats.tls.toJson());
+            path.put("ttfb", stats.ttfb.toJson());
+            path.put("total", stats.total.toJson());
+            json.put(entry.getKey(), path);
+        }
+        return json;
+    }
+
+    public synchronized String summary() {
+        StringBuilder text = new StringBuilder();
+        for (Map.Entry<String, Path> entry : paths.entrySet()) {
+            Path stats = entry.getValue();
+            if (text.length() > 0) {
+                text.append("; ");
+            }
+            text.append(entry.getKey()).append(": ").append(stats.requests).append(" requests, ")
+                    .append(stats.reused).append(" reused, dns p50 ").append(stats.dns.percentile(0.5))
+                    .append("ms, connect p50 ").append(stats.connect.percentile(0.5))
+                    .append("ms, tls p50 ").append(stats.tls.percentile(0.5))
+                    .append("ms, ttfb p50/p95 ").append(stats.ttfb.percentile(0.5)).append('/')
+                    .append(stats.ttfb.percentile(0.95)).append("ms ").append(stats.protocols);
+        }
+        return text.toString();
+    }
+}
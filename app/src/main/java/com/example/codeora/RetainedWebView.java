@@ -0,0 +1,64 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.view.ViewGroup;
+import android.webkit.WebView;
+
+// Carries the chat WebView, with its page, JS heap and bridge, from an activity that is being
+// recreated for a configuration change to its replacement, so the page is not reloaded. Only
+// WebViews built on a MutableContextWrapper can be handed over: while parked, the wrapper
+// points at the application so the old activity can be collected.
+public class RetainedWebView {
+
+    private static WebView webView;
+    private static NativeBridge bridge;
+
+    private RetainedWebView() {
+    }
+
+    // A WebView for MainActivity that can later be retained.
+    public static WebView create(Context activity) {
+        return new WebView(new MutableContextWrapper(activity));
+    }
+
+    public static boolean canRetain(WebView view) {
+        return view.getContext() instanceof MutableContextWrapper;
+    }
+
+    // From onDestroy while isChangingConfigurations(). Returns false if the WebView cannot be
+    // retained and should be destroyed instead.
+    public static synchronized boolean retain(WebView view, NativeBridge viewBridge) {
+        if (!canRetain(view)) {
+            return false;
+        }
+        ViewGroup parent = (ViewGroup) view.getParent();
+        if (parent != null) {
+            parent.removeView(view);
+        }
+        MutableContextWrapper wrapper = (MutableContextWrapper) view.getContext();
+        wrapper.setBaseContext(wrapper.getApplicationContext());
+        webView = view;
+        bridge = viewBridge;
+        return true;
+    }
+
+    public static synchronized boolean hasWebView() {
+        return webView != null;
+    }
+
+    // The bridge attached to the retained WebView; read it before adopt().
+    public static synchronized NativeBridge getBridge() {
+        return bridge;
+    }
+
+    public static synchronized WebView adopt(Context activity) {
+        WebView adopted = webView;
+        if (adopted != null) {
+            ((MutableContextWrapper) adopted.getContext()).setBaseContext(activity);
+        }
+        webView = null;
+        bridge = null;
+        return adopted;
+    }
+}
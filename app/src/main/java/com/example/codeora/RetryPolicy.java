@@ -0,0 +1,94 @@
+package com.example.codeora;
+
+import java.util.Random;
+
+// Exponential backoff with jitter, bounded both per load (maxAttempts) and across loads by a
+// retry budget: every successful load earns a fraction of a retry token and every retry
+// spends a whole one, so a failing origin cannot be hammered with retries.
+public class RetryPolicy {
+
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final int maxAttempts;
+    private final double jitter;
+    private final double tokensPerSuccess;
+    private final double maxTokens;
+    private final Random random;
+    private double tokens;
+
+    public RetryPolicy(long baseDelayMillis, long maxDelayMillis, int maxAttempts, double jitter,
+                       double tokensPerSuccess, double maxTokens, Random random) {
+        this.baseDelayMillis = baseDelayMillis;
+        this.maxDelayMillis = maxDelayMillis;
+        this.maxAttempts = maxAttempts;
+        this.jitter = jitter;
+        this.tokensPerSuccess = tokensPerSuccess;
+        this.maxTokens = maxTokens;
+        this.random = random;
+        this.tokens = maxTokens;
+    }
+
+    public static RetryPolicy defaultPolicy() {
+        return new RetryPolicy(500, 8000, 4, 0.5, 0.2, 6, new Random());
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    // Delay before the given retry (1-based). With jitter j the delay is drawn
+    // uniformly from [(1 - j) * d, d] where d = base * 2^(attempt - 1), capped at the maximum.
+    public long delayFor(int attempt) {
+        long delay = baseDelayMillis << Math.min(Math.max(attempt - 1, 0), 20);
+        if (delay <= 0 || delay > maxDelayMillis) {
+            delay = maxDelayMillis;
+        }
+        double spread = delay * jitter * random.nextDouble();
+        return (long) (delay - spread);
+    }
+
+    // Delay before the given retry, honouring the server's Retry-After hint (-1 when there is
+    // none). Returns -1 when the server asks for a longer wait than this policy would ever make.
+    public long delayFor(int attempt, long retryAfterMillis) {
+        if (retryAfterMillis > maxDelayMillis) {
+            return -1;
+        }
+        return Math.max(delayFor(attempt), retryAfterMillis);
+    }
+
+    // Reserves a retry if this load has attempts left and the shared budget allows it.
+    public synchronized boolean tryAcquire(int attempt) {
+        if (attempt > maxAttempts || tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        return true;
+    }
+
+    public synchronized void onSuccess() {
+        tokens = Math.min(maxTokens, tokens + tokensPerSuccess);
+    }
+
+    public synchronized double availableTokens() {
+        return tokens;
+    }
+
+    // Server responses worth retrying; anything else is a real answer from the origin.
+    public static boolean isTransientStatus(int status) {
+        return status == 408 || status == 425 || status == 429
+                || status == 500 || status == 502 || status == 503 || status == 504;
+    }
+
+    // Retry-After in seconds; HTTP-date values are ignored and fall back to backoff.
+    public static long parseRetryAfterMillis(String value) {
+        if (value == null) {
+            return -1;
+        }
+        try {
+            long seconds = Long.parseLong(value.trim());
+            return seconds >= 0 ? seconds * 1000 : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
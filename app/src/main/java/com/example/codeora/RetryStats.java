@@ -0,0 +1,63 @@
+package com.example.codeora;
+
+// Counters for main-frame load failures and what retrying them cost. A load "recovers" when
+// a retry succeeds; its retry latency runs from the first failure to that success.
+public class RetryStats {
+
+    private long failures;
+    private long retries;
+    private long recovered;
+    private long gaveUp;
+    private long firstTrySuccesses;
+    private long totalRecoveryMillis;
+    private long maxRecoveryMillis;
+
+    public synchronized void recordFailure() {
+        failures++;
+    }
+
+    public synchronized void recordRetry() {
+        retries++;
+    }
+
+    public synchronized void recordSuccess(int attempts, long recoveryMillis) {
+        if (attempts == 0) {
+            firstTrySuccesses++;
+            return;
+        }
+        recovered++;
+        totalRecoveryMillis += recoveryMillis;
+        maxRecoveryMillis = Math.max(maxRecoveryMillis, recoveryMillis);
+    }
+
+    public synchronized void recordGaveUp() {
+        gaveUp++;
+    }
+
+    public synchronized long getFailures() {
+        return failures;
+    }
+
+    public synchronized long getRetries() {
+        return retries;
+    }
+
+    public synchronized long getRecovered() {
+        return recovered;
+    }
+
+    public synchronized long getGaveUp() {
+        return gaveUp;
+    }
+
+    public synchronized long averageRecoveryMillis() {
+        return recovered == 0 ? 0 : totalRecoveryMillis / recovered;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "RetryStats failures=" + failures + " retries=" + retries + " recovered=" + recovered
+                + " gaveUp=" + gaveUp + " firstTry=" + firstTrySuccesses
+                + " avgRecovery=" + averageRecoveryMillis() + "ms maxRecovery=" + maxRecoveryMillis + "ms";
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.codeora;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.tracing.Trace;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Process-wide startup milestones. Every mark is stored once, as milliseconds since the
+// process started, so a later warm start in the same process does not overwrite it.
+public final class StartupMetrics {
+
+    private static final String TAG = "StartupMetrics";
+
+    public static final String SPLASH_CREATED = "splash_created";
+    public static final String WEBVIEW_CREATED = "webview_created";
+    public static final String PAGE_STARTED = "page_started";
+    public static final String PAGE_FINISHED = "page_finished";
+    public static final String MAIN_CREATED = "main_created";
+    public static final String INTERACTIVE = "interactive";
+
+    // Trace section names; the :benchmark module measures these by name.
+    public static final String TRACE_SPLASH_ON_CREATE = "splash.onCreate";
+    public static final String TRACE_MAIN_ON_CREATE = "MainActivity.onCreate";
+    public static final String TRACE_WEBVIEW_INIT = "WebViewInit";
+    public static final String TRACE_FIRST_LOAD_URL = "FirstLoadUrl";
+    public static final String TRACE_PAGE_LOAD = "PageLoad";
+    public static final String TRACE_PERMISSION_REQUEST = "PermissionRequest";
+
+    private static final int PAGE_LOAD_COOKIE = 1;
+    private static final int PERMISSION_REQUEST_COOKIE = 2;
+
+    public interface Listener {
+        void onInteractive(long timeToInteractiveMillis, boolean warmedUp, Map<String, Long> marks);
+    }
+
+    private static final long PROCESS_START = processStartUptime();
+    private static final Map<String, Long> marks = new LinkedHashMap<>();
+    private static boolean warmedUp;
+    private static boolean pageLoadOpen;
+    private static boolean permissionRequestOpen;
+    private static Listener listener;
+
+    private StartupMetrics() {
+    }
+
+    public static synchronized void mark(String name) {
+        if (!marks.containsKey(name)) {
+            marks.put(name, SystemClock.uptimeMillis() - PROCESS_START);
+        }
+    }
+
+    public static synchronized Long get(String name) {
+        return marks.get(name);
+    }
+
+    public static synchronized Map<String, Long> snapshot() {
+        return new LinkedHashMap<>(marks);
+    }
+
+    // Spans a chat page load started by startup code, from loadUrl until progress reaches 100.
+    public static synchronized void beginPageLoad() {
+        if (!pageLoadOpen) {
+            pageLoadOpen = true;
+            Trace.beginAsyncSection(TRACE_PAGE_LOAD, PAGE_LOAD_COOKIE);
+        }
+    }
+
+    public static synchronized void endPageLoad() {
+        if (pageLoadOpen) {
+            pageLoadOpen = false;
+            Trace.endAsyncSection(TRACE_PAGE_LOAD, PAGE_LOAD_COOKIE);
+        }
+    }
+
+    public static synchronized void beginPermissionRequest() {
+        if (!permissionRequestOpen) {
+            permissionRequestOpen = true;
+            Trace.beginAsyncSection(TRACE_PERMISSION_REQUEST, PERMISSION_REQUEST_COOKIE);
+        }
+    }
+
+    public static synchronized void endPermissionRequest() {
+        if (permissionRequestOpen) {
+            permissionRequestOpen = false;
+            Trace.endAsyncSection(TRACE_PERMISSION_REQUEST, PERMISSION_REQUEST_COOKIE);
+        }
+    }
+
+    public static synchronized String toJson() {
+        StringBuilder json = new StringBuilder("{\"warmedUp\":").append(warmedUp).append(",\"marks\":{");
+        boolean first = true;
+        for (Map.Entry<String, Long> mark : marks.entrySet()) {
+            if (!first) {
+                json.append(',');
+            }
+            first = false;
+            json.append('"').append(mark.getKey()).append("\":").append(mark.getValue());
+        }
+        return json.append("}}").toString();
+    }
+
+    public static synchronized void setWarmedUp(boolean value) {
+        warmedUp = value;
+    }
+
+    public static synchronized void setListener(Listener value) {
+        listener = value;
+        Long interactive = marks.get(INTERACTIVE);
+        if (listener != null && interactive != null) {
+            listener.onInteractive(interactive, warmedUp, snapshot());
+        }
+    }
+
+    // The chat page has finished loading and is attached to a visible activity.
+    public static synchronized void reportInteractive() {
+        if (marks.containsKey(INTERACTIVE)) {
+            return;
+        }
+        mark(INTERACTIVE);
+        long tti = marks.get(INTERACTIVE);
+        endPageLoad();
+        Log.i(TAG, "Time to interactive: " + tti + " ms " + toJson());
+        if (listener != null) {
+            listener.onInteractive(tti, warmedUp, snapshot());
+        }
+    }
+
+    private static long processStartUptime() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            return Process.getStartUptimeMillis();
+        }
+        // Older releases do not expose the fork time; class loading is the closest we get.
+        return SystemClock.uptimeMillis();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.codeora;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+// Fetches message deltas from the chat backend: GET <endpoint>?cursor=<c>&limit=<n> answering
+// {"messages": [...], "cursor": "<next>", "hasMore": true|false, "self": "<sender>"?}, where self
+// is the sender the signed-in account's own messages carry.
+public class SyncClient {
+
+    public static class Delta {
+        public final List<ChatMessage> messages;
+        public final String cursor;
+        public final boolean hasMore;
+        public final String self;
+
+        Delta(List<ChatMessage> messages, String cursor, boolean hasMore, String self) {
+            this.messages = messages;
+            this.cursor = cursor;
+            this.hasMore = hasMore;
+            this.self = self;
+        }
+    }
+
+    private final String endpoint;
+    private final int timeoutMillis;
+
+    public SyncClient(String endpoint, int timeoutMillis) {
+        this.endpoint = endpoint;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public Delta fetch(String cursor, int limit, String cookie) throws IOException {
+        StringBuilder url = new StringBuilder(endpoint).append("?limit=").append(limit);
+        if (cursor != null) {
+            url.append("&cursor=").append(URLEncoder.encode(cursor, "UTF-8"));
+        }
+        HttpURLConnection connection = (HttpURLConnection) new URL(url.toString()).openConnection();
+        try {
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            connection.setRequestProperty("Accept", "application/json");
+            if (cookie != null) {
+                connection.setRequestProperty("Cookie", cookie);
+            }
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Sync failed with HTTP " + status);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return parse(readFully(in), cursor);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    static Delta parse(String body, String previousCursor) throws IOException {
+        try {
+            JSONObject json = new JSONObject(body);
+            JSONArray array = json.optJSONArray("messages");
+            List<ChatMessage> messages = new ArrayList<>();
+            if (array != null) {
+                for (int i = 0; i < array.length(); i++) {
+                    messages.add(ChatMessage.fromJson(array.getJSONObject(i)));
+                }
+            }
+            String cursor = json.isNull("cursor") ? previousCursor : json.optString("cursor", previousCursor);
+            String self = json.isNull("self") ? null : json.optString("self", null);
+            return new Delta(messages, cursor, json.optBoolean("hasMore", false), self);
+        } catch (JSONException e) {
+            throw new IOException("Malformed sync response", e);
+        }
+    }
+
+    private static String readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
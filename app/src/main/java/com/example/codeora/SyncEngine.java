@@ -0,0 +1,87 @@
+package com.example.codeora;
+
+import android.util.Log;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+// Pulls deltas in batches until the backend reports no more (or the per-run cap is reached),
+// writing each batch to the store atomically with the cursor that follows it.
+public class SyncEngine {
+
+    private static final String TAG = "SyncEngine";
+    public static final String CURSOR_NAME = "sync";
+    private static final int BATCH_SIZE = 200;
+    private static final int MAX_BATCHES_PER_RUN = 10;
+
+    public static class Result {
+        public final List<ChatMessage> received;
+        public final int batches;
+        public final boolean complete;
+        // The account's own sender, when the backend said; null otherwise.
+        public final String self;
+
+        Result(List<ChatMessage> received, int batches, boolean complete, String self) {
+            this.received = received;
+            this.batches = batches;
+            this.complete = complete;
+            this.self = self;
+        }
+
+        // What others sent; the account's own messages, e.g. from another device, are left out.
+        public List<ChatMessage> fromOthers() {
+            if (self == null) {
+                return received;
+            }
+            List<ChatMessage> others = new ArrayList<>();
+            for (ChatMessage message : received) {
+                if (!self.equals(message.sender)) {
+                    others.add(message);
+                }
+            }
+            return others;
+        }
+    }
+
+    public interface CancellationSignal {
+        boolean isCancelled();
+    }
+
+    // Where deltas land; MessageStore in the app, an in-memory list in tests.
+    public interface Store {
+        String getSyncCursor(String name);
+
+        // Must write the messages and the new cursor atomically.
+        void applyDelta(List<ChatMessage> messages, String cursorName, String cursor);
+    }
+
+    private final SyncClient client;
+    private final Store store;
+
+    public SyncEngine(SyncClient client, Store store) {
+        this.client = client;
+        this.store = store;
+    }
+
+    public Result run(String cookie, CancellationSignal cancellation) throws IOException {
+        List<ChatMessage> received = new ArrayList<>();
+        String cursor = store.getSyncCursor(CURSOR_NAME);
+        int batches = 0;
+        boolean hasMore = true;
+        String self = null;
+        while (hasMore && batches < MAX_BATCHES_PER_RUN && !cancellation.isCancelled()) {
+            SyncClient.Delta delta = client.fetch(cursor, BATCH_SIZE, cookie);
+            store.applyDelta(delta.messages, CURSOR_NAME, delta.cursor);
+            received.addAll(delta.messages);
+            cursor = delta.cursor;
+            hasMore = delta.hasMore;
+            if (delta.self != null) {
+                self = delta.self;
+            }
+            batches++;
+        }
+        Log.d(TAG, "Synced " + received.size() + " messages in " + batches + " batches");
+        return new Result(received, batches, !hasMore, self);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.codeora;
+
+import android.app.job.JobParameters;
+import android.app.job.JobService;
+import android.util.Log;
+import android.webkit.CookieManager;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Runs a SyncEngine pass while the app is in the background and posts notifications for what
+// arrived, so the next foreground start reads fresh history from the local store. Messages
+// still in the Outbox are sent first.
+public class SyncJobService extends JobService {
+
+    private static final String TAG = "SyncJobService";
+    static final String SYNC_ENDPOINT = MainActivity.CHAT_URL + "api/sync";
+    private static final int TIMEOUT_MILLIS = 20000;
+    private static final long OUTBOX_DRAIN_MILLIS = 30000;
+
+    private static final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private volatile boolean stopped;
+
+    @Override
+    public boolean onStartJob(JobParameters params) {
+        stopped = false;
+        executor.execute(() -> {
+            boolean reschedule = false;
+            try {
+                Outbox outbox = OutboxChannel.outbox(this);
+                outbox.drain();
+                if (!outbox.awaitIdle(OUTBOX_DRAIN_MILLIS)) {
+                    reschedule = true;
+                }
+                String cookie = CookieManager.getInstance().getCookie(MainActivity.CHAT_URL);
+                SyncEngine engine = new SyncEngine(new SyncClient(SYNC_ENDPOINT, TIMEOUT_MILLIS),
+                        MessageStore.get(this));
+                SyncEngine.Result result = engine.run(cookie, () -> stopped);
+                if (!stopped) {
+                    SyncNotifier.notifyNewMessages(this, result.fromOthers());
+                }
+            } catch (IOException e) {
+                Log.w(TAG, "Background sync failed: " + e.getMessage());
+                reschedule = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                reschedule = true;
+            }
+            if (!stopped) {
+                jobFinished(params, reschedule);
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        stopped = true;
+        return true;
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.codeora;
+
+import android.Manifest;
+import android.app.NotificationChannel;
+import android.app.NotificationManager;
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.PackageManager;
+import android.os.Build;
+
+import androidx.core.app.NotificationCompat;
+import androidx.core.app.NotificationManagerCompat;
+import androidx.core.content.ContextCompat;
+
+import java.util.List;
+
+// Posts one summary notification per sync run rather than one per message. Nothing is posted
+// while the chat is on screen; the page shows new messages itself.
+public class SyncNotifier {
+
+    private static final String CHANNEL_ID = "messages";
+    private static final int NOTIFICATION_ID = 1;
+    private static final int MAX_LINES = 5;
+
+    private static volatile boolean chatVisible;
+
+    // From MainActivity's onStart and onStop.
+    public static void setChatVisible(boolean visible) {
+        chatVisible = visible;
+    }
+
+    public static void notifyNewMessages(Context context, List<ChatMessage> messages) {
+        if (messages.isEmpty() || chatVisible) {
+            return;
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.TIRAMISU
+                && ContextCompat.checkSelfPermission(context, Manifest.permission.POST_NOTIFICATIONS)
+                != PackageManager.PERMISSION_GRANTED) {
+            return;
+        }
+        createChannel(context);
+
+        Intent intent = new Intent(context, MainActivity.class);
+        intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TOP);
+        PendingIntent contentIntent = PendingIntent.getActivity(context, 0, intent,
+                PendingIntent.FLAG_UPDATE_CURRENT | PendingIntent.FLAG_IMMUTABLE);
+
+        ChatMessage latest = messages.get(messages.size() - 1);
+        String title = messages.size() == 1 ? senderOf(latest) : messages.size() + " new messages";
+        NotificationCompat.InboxStyle style = new NotificationCompat.InboxStyle();
+        for (int i = Math.max(0, messages.size() - MAX_LINES); i < messages.size(); i++) {
+            ChatMessage message = messages.get(i);
+            style.addLine(senderOf(message) + ": " + message.body);
+        }
+
+        NotificationCompat.Builder builder = new NotificationCompat.Builder(context, CHANNEL_ID)
+                .setSmallIcon(R.mipmap.ic_launcher)
+                .setContentTitle(title)
+                .setContentText(latest.body)
+                .setStyle(style)
+                .setNumber(messages.size())
+                .setAutoCancel(true)
+                .setContentIntent(contentIntent)
+                .setPriority(NotificationCompat.PRIORITY_DEFAULT);
+        NotificationManagerCompat.from(context).notify(NOTIFICATION_ID, builder.build());
+    }
+
+    private static String senderOf(ChatMessage message) {
+        return message.sender != null ? message.sender : "New message";
+    }
+
+    private static void createChannel(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(CHANNEL_ID, "Messages",
+                    NotificationManager.IMPORTANCE_DEFAULT);
+            NotificationManager manager = context.getSystemService(NotificationManager.class);
+            if (manager != null) {
+                manager.createNotificationChannel(channel);
+            }
+        }
+    }
+}
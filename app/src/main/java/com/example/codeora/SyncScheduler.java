@@ -0,0 +1,74 @@
+package com.example.codeora;
+
+import android.app.job.JobInfo;
+import android.app.job.JobScheduler;
+import android.content.ComponentName;
+import android.content.Context;
+import android.os.Build;
+
+// Schedules background sync with JobScheduler so the system can coalesce it with other work.
+// Unmetered networks get a 15 minute period; on metered networks the same work runs hourly.
+// The two jobs require disjoint networks so they never both run on Wi-Fi. Before N there is
+// no metered-only constraint, so a single hourly job covers every network instead.
+public class SyncScheduler {
+
+    static final int UNMETERED_JOB_ID = 1001;
+    static final int METERED_JOB_ID = 1002;
+
+    private static final long UNMETERED_PERIOD_MILLIS = 15 * 60 * 1000L;
+    private static final long METERED_PERIOD_MILLIS = 60 * 60 * 1000L;
+
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return;
+        }
+        ComponentName service = new ComponentName(context, SyncJobService.class);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            scheduleIfMissing(scheduler, build(UNMETERED_JOB_ID, service, JobInfo.NETWORK_TYPE_UNMETERED,
+                    UNMETERED_PERIOD_MILLIS));
+            scheduleIfMissing(scheduler, build(METERED_JOB_ID, service, JobInfo.NETWORK_TYPE_METERED,
+                    METERED_PERIOD_MILLIS));
+        } else {
+            scheduler.cancel(UNMETERED_JOB_ID);
+            scheduleIfMissing(scheduler, build(METERED_JOB_ID, service, JobInfo.NETWORK_TYPE_ANY,
+                    METERED_PERIOD_MILLIS));
+        }
+    }
+
+    public static void cancel(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler != null) {
+            scheduler.cancel(UNMETERED_JOB_ID);
+            scheduler.cancel(METERED_JOB_ID);
+        }
+    }
+
+    private static JobInfo build(int id, ComponentName service, int networkType, long periodMillis) {
+        JobInfo.Builder builder = new JobInfo.Builder(id, service)
+                .setRequiredNetworkType(networkType)
+                .setPersisted(true);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N) {
+            // A wide flex window lets the system batch us with other apps' jobs.
+            builder.setPeriodic(periodMillis, periodMillis / 2);
+        } else {
+            builder.setPeriodic(periodMillis);
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            builder.setRequiresBatteryNotLow(true);
+        }
+        return builder.build();
+    }
+
+    // Rescheduling an existing periodic job would restart its period, so leave it alone unless
+    // it was scheduled for another network, e.g. the any-network job of earlier versions.
+    @SuppressWarnings("deprecation")
+    private static void scheduleIfMissing(JobScheduler scheduler, JobInfo job) {
+        for (JobInfo pending : scheduler.getAllPendingJobs()) {
+            if (pending.getId() == job.getId() && pending.getNetworkType() == job.getNetworkType()) {
+                return;
+            }
+        }
+        scheduler.schedule(job);
+    }
+}
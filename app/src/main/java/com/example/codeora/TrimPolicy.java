@@ -0,0 +1,91 @@
+package com.example.codeora;
+
+// What to give up at each onTrimMemory level and in which order to take it back. Levels are
+// the ComponentCallbacks2 values; anything at or above BACKGROUND means the process is on the
+// LRU list and a smaller footprint directly lowers the chance of being killed.
+public final class TrimPolicy {
+
+    // ComponentCallbacks2 levels.
+    static final int RUNNING_MODERATE = 5;
+    static final int RUNNING_LOW = 10;
+    static final int RUNNING_CRITICAL = 15;
+    static final int UI_HIDDEN = 20;
+    static final int BACKGROUND = 40;
+    static final int MODERATE = 60;
+    static final int COMPLETE = 80;
+
+    public enum Pressure {
+        NONE("normal"),
+        // Visible but the system is short: shed what can be rebuilt cheaply.
+        LOW("low"),
+        // Hidden or near the kill line: shed everything that can be rebuilt.
+        HIGH("critical");
+
+        public final String label;
+
+        Pressure(String label) {
+            this.label = label;
+        }
+    }
+
+    public final Pressure pressure;
+    // Tell the page to drop decoded images and its own caches.
+    public final boolean dropImages;
+    // Tell the page to drop history rows beyond this many around the viewport; -1 keeps all.
+    public final int keepHistoryRows;
+    // Clear native in-memory caches such as prefetched history pages.
+    public final boolean freeNativeCaches;
+    // Stop the WebView's JS timers and layout; only while nothing is on screen.
+    public final boolean pauseTimers;
+
+    private TrimPolicy(Pressure pressure, boolean dropImages, int keepHistoryRows, boolean freeNativeCaches,
+                       boolean pauseTimers) {
+        this.pressure = pressure;
+        this.dropImages = dropImages;
+        this.keepHistoryRows = keepHistoryRows;
+        this.freeNativeCaches = freeNativeCaches;
+        this.pauseTimers = pauseTimers;
+    }
+
+    public static TrimPolicy forLevel(int level) {
+        if (level >= BACKGROUND || level == RUNNING_CRITICAL) {
+            return new TrimPolicy(Pressure.HIGH, true, 50, true, level >= UI_HIDDEN);
+        }
+        if (level == UI_HIDDEN) {
+            // Just went to the background; nothing is short yet, only stop doing work.
+            return new TrimPolicy(Pressure.NONE, false, -1, false, true);
+        }
+        if (level >= RUNNING_MODERATE) {
+            return new TrimPolicy(Pressure.LOW, level >= RUNNING_LOW, 200, true, false);
+        }
+        return none();
+    }
+
+    public static TrimPolicy none() {
+        return new TrimPolicy(Pressure.NONE, false, -1, false, false);
+    }
+
+    // A level that asks for no more than what is already in effect needs no action.
+    public boolean isCoveredBy(TrimPolicy current) {
+        return pressure.ordinal() <= current.pressure.ordinal()
+                && (!dropImages || current.dropImages)
+                && (keepHistoryRows < 0 || (current.keepHistoryRows >= 0 && current.keepHistoryRows <= keepHistoryRows))
+                && (!freeNativeCaches || current.freeNativeCaches)
+                && (!pauseTimers || current.pauseTimers);
+    }
+
+    // Union of two policies, used while several trims arrive before the next foreground.
+    public TrimPolicy combine(TrimPolicy other) {
+        int keep;
+        if (keepHistoryRows < 0) {
+            keep = other.keepHistoryRows;
+        } else if (other.keepHistoryRows < 0) {
+            keep = keepHistoryRows;
+        } else {
+            keep = Math.min(keepHistoryRows, other.keepHistoryRows);
+        }
+        return new TrimPolicy(pressure.ordinal() >= other.pressure.ordinal() ? pressure : other.pressure,
+                dropImages || other.dropImages, keep, freeNativeCaches || other.freeNativeCaches,
+                pauseTimers || other.pauseTimers);
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.codeora;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+// The small piece of chat UI state worth carrying across a renderer crash: where the user
+// was, what they were looking at and what they had typed. Captured by recovery.js, which
+// asks the page (window.CodeoraState) first and falls back to reading the DOM.
+public class UiSnapshot {
+
+    public final String url;
+    public final String conversationId;
+    // Message at the top of the viewport and how far its top was above the viewport's.
+    public final String anchorMessageId;
+    public final int anchorOffset;
+    public final int scrollY;
+    public final String draft;
+    public final long savedAt;
+
+    public UiSnapshot(String url, String conversationId, String anchorMessageId, int anchorOffset, int scrollY,
+                      String draft, long savedAt) {
+        this.url = url;
+        this.conversationId = conversationId;
+        this.anchorMessageId = anchorMessageId;
+        this.anchorOffset = anchorOffset;
+        this.scrollY = scrollY;
+        this.draft = draft;
+        this.savedAt = savedAt;
+    }
+
+    public static UiSnapshot fromJson(JSONObject json, long savedAt) {
+        return new UiSnapshot(
+                optString(json, "url"),
+                optString(json, "conversationId"),
+                optString(json, "anchorMessageId"),
+                json.optInt("anchorOffset", 0),
+                json.optInt("scrollY", 0),
+                optString(json, "draft"),
+                json.optLong("savedAt", savedAt));
+    }
+
+    public JSONObject toJson() throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("url", url);
+        json.put("conversationId", conversationId);
+        json.put("anchorMessageId", anchorMessageId);
+        json.put("anchorOffset", anchorOffset);
+        json.put("scrollY", scrollY);
+        json.put("draft", draft);
+        json.put("savedAt", savedAt);
+        return json;
+    }
+
+    // Only URLs under the chat origin are reloaded; anything else restarts at the chat.
+    public String urlWithin(String origin) {
+        return url != null && url.startsWith(origin) ? url : origin;
+    }
+
+    public boolean isFresh(long nowMillis, long maxAgeMillis) {
+        return nowMillis - savedAt <= maxAgeMillis;
+    }
+
+    // Nothing to restore beyond reloading the page.
+    public boolean isEmpty() {
+        return conversationId == null && anchorMessageId == null && scrollY == 0
+                && (draft == null || draft.isEmpty());
+    }
+
+    // Same state as other, whenever each was taken.
+    public boolean sameStateAs(UiSnapshot other) {
+        return other != null && equal(url, other.url) && equal(conversationId, other.conversationId)
+                && equal(anchorMessageId, other.anchorMessageId) && anchorOffset == other.anchorOffset
+                && scrollY == other.scrollY && equal(draft, other.draft);
+    }
+
+    private static boolean equal(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private static String optString(JSONObject json, String name) {
+        return json.isNull(name) ? null : json.optString(name, null);
+    }
+}
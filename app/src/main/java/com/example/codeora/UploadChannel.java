@@ -0,0 +1,186 @@
+package com.example.codeora;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.Uri;
+import android.os.ParcelFileDescriptor;
+import android.util.Log;
+import android.webkit.CookieManager;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Bridge channel "upload": streams files picked in the chooser to the backend natively, so the
+// page never reads them into JS memory. Progress and results arrive as "upload" events.
+// A chosen file can be uploaded until its upload ends or a new document starts; a new document
+// also cancels the uploads the old one started.
+public class UploadChannel implements NativeBridge.ChannelHandler, NativeBridge.PageListener {
+
+    public static final String CHANNEL = "upload";
+    private static final String TAG = "UploadChannel";
+    static final String UPLOAD_ENDPOINT = MainActivity.CHAT_URL + "api/upload";
+    private static final String PREFS_NAME = "uploads";
+    private static final int TIMEOUT_MILLIS = 30000;
+    private static final int MAX_CONCURRENT_FILES = 2;
+
+    private static final ExecutorService files = Executors.newFixedThreadPool(MAX_CONCURRENT_FILES);
+    private static final ExecutorService chunks = Executors.newFixedThreadPool(
+            MAX_CONCURRENT_FILES * ChunkedUploader.DEFAULT_PARALLELISM);
+    // Only URIs the user picked in the file chooser may be uploaded.
+    private static final Set<String> allowedUris = Collections.synchronizedSet(new HashSet<>());
+
+    private final Context context;
+    private final NativeBridge bridge;
+    private final ChunkedUploader uploader;
+    private final Map<String, Boolean> active = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> cancelled = new ConcurrentHashMap<>();
+    private final AtomicInteger nextId = new AtomicInteger();
+
+    public UploadChannel(Context context, NativeBridge bridge) {
+        this.context = context.getApplicationContext();
+        this.bridge = bridge;
+        SharedPreferences prefs = this.context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+        this.uploader = new ChunkedUploader(UPLOAD_ENDPOINT, ChunkedUploader.DEFAULT_CHUNK_SIZE,
+                ChunkedUploader.DEFAULT_PARALLELISM, TIMEOUT_MILLIS, RetryPolicy.defaultPolicy(),
+                new PreferenceSessions(prefs), chunks);
+    }
+
+    public static void allow(Uri[] uris) {
+        if (uris != null) {
+            for (Uri uri : uris) {
+                allowedUris.add(uri.toString());
+            }
+        }
+    }
+
+    // start:  {uri}  -> {id}, then events {id, state: "progress" | "done" | "error", ...}
+    // cancel: {id}   -> {}
+    @Override
+    public void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        try {
+            JSONObject request = new JSONObject(message.payloadString());
+            String op = request.getString("op");
+            if ("start".equals(op)) {
+                String uri = request.getString("uri");
+                if (!allowedUris.contains(uri)) {
+                    reply.error("Not a chosen file");
+                    return;
+                }
+                String id = "up" + nextId.incrementAndGet();
+                active.put(id, Boolean.TRUE);
+                reply.success(new JSONObject().put("id", id).toString());
+                files.execute(() -> upload(id, Uri.parse(uri)));
+            } else if ("cancel".equals(op)) {
+                String id = request.getString("id");
+                if (active.containsKey(id)) {
+                    cancelled.put(id, Boolean.TRUE);
+                }
+                reply.success("{}");
+            } else {
+                reply.error("Unknown upload op " + op);
+            }
+        } catch (JSONException e) {
+            reply.error(String.valueOf(e.getMessage()));
+        }
+    }
+
+    @Override
+    public void onPageStarted() {
+        allowedUris.clear();
+        for (String id : active.keySet()) {
+            cancelled.put(id, Boolean.TRUE);
+        }
+    }
+
+    private void upload(String id, Uri uri) {
+        ContentResolver resolver = context.getContentResolver();
+        try (ParcelFileDescriptor pfd = resolver.openFileDescriptor(uri, "r")) {
+            if (pfd == null) {
+                throw new IOException("Cannot open " + uri);
+            }
+            long size = pfd.getStatSize();
+            String name = MediaCompressor.displayName(resolver, uri);
+            String cookie = CookieManager.getInstance().getCookie(MainActivity.CHAT_URL);
+            try (FileInputStream in = new FileInputStream(pfd.getFileDescriptor())) {
+                ChunkedUploader.Result result = uploader.upload(
+                        ChunkedUploader.fileSource(in.getChannel(), size), uri + "|" + size, name,
+                        resolver.getType(uri), cookie,
+                        (uploaded, total) -> emitProgress(id, uploaded, total),
+                        () -> cancelled.containsKey(id));
+                Log.d(TAG, "Uploaded " + result.bytes + " bytes in " + result.chunks + " chunks ("
+                        + result.resumedChunks + " resumed) in " + result.elapsedMillis + " ms");
+                JSONObject event = new JSONObject();
+                event.put("id", id);
+                event.put("state", "done");
+                event.put("bytes", result.bytes);
+                event.put("elapsedMs", result.elapsedMillis);
+                event.put("response", result.response);
+                bridge.emit(CHANNEL, event.toString());
+            }
+        } catch (IOException | RuntimeException | JSONException e) {
+            Log.w(TAG, "Upload " + id + " failed", e);
+            emitError(id, String.valueOf(e.getMessage()));
+        } finally {
+            allowedUris.remove(uri.toString());
+            active.remove(id);
+            cancelled.remove(id);
+        }
+    }
+
+    private void emitProgress(String id, long loaded, long total) {
+        try {
+            JSONObject event = new JSONObject();
+            event.put("id", id);
+            event.put("state", "progress");
+            event.put("loaded", loaded);
+            event.put("total", total);
+            bridge.emit(CHANNEL, event.toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not encode upload event", e);
+        }
+    }
+
+    private void emitError(String id, String message) {
+        try {
+            bridge.emit(CHANNEL, new JSONObject().put("id", id).put("state", "error")
+                    .put("message", message).toString());
+        } catch (JSONException e) {
+            Log.e(TAG, "Could not encode upload event", e);
+        }
+    }
+
+    private static class PreferenceSessions implements ChunkedUploader.SessionStore {
+        private final SharedPreferences prefs;
+
+        PreferenceSessions(SharedPreferences prefs) {
+            this.prefs = prefs;
+        }
+
+        @Override
+        public String get(String key) {
+            return prefs.getString(key, null);
+        }
+
+        @Override
+        public void put(String key, String uploadId) {
+            prefs.edit().putString(key, uploadId).apply();
+        }
+
+        @Override
+        public void remove(String key) {
+            prefs.edit().remove(key).apply();
+        }
+    }
+}
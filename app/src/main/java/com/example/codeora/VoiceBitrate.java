@@ -0,0 +1,50 @@
+package com.example.codeora;
+
+// Picks the AAC bitrate and sample rate for a voice message from the network it will most
+// likely be sent over. Speech stays intelligible down to 16 kbps at 16 kHz, so slow or
+// metered links get the small end and unmetered Wi-Fi/Ethernet get near-transparent quality.
+public final class VoiceBitrate {
+
+    public static final int MIN_BITRATE = 16000;
+    public static final int LOW_BITRATE = 24000;
+    public static final int MEDIUM_BITRATE = 32000;
+    public static final int HIGH_BITRATE = 64000;
+
+    private VoiceBitrate() {
+    }
+
+    public static int forNetwork(ConnectivityMonitor.NetworkState state) {
+        if (state == null || !state.connected) {
+            // Will be sent later over an unknown network.
+            return LOW_BITRATE;
+        }
+        int bitrate;
+        if (state.type == ConnectivityMonitor.Type.WIFI || state.type == ConnectivityMonitor.Type.ETHERNET) {
+            bitrate = HIGH_BITRATE;
+        } else {
+            bitrate = MEDIUM_BITRATE;
+        }
+        // A 0 estimate means the platform did not report one.
+        if (state.upstreamKbps > 0) {
+            if (state.upstreamKbps < 150) {
+                bitrate = Math.min(bitrate, MIN_BITRATE);
+            } else if (state.upstreamKbps < 500) {
+                bitrate = Math.min(bitrate, LOW_BITRATE);
+            }
+        }
+        if (state.metered) {
+            bitrate = Math.min(bitrate, MEDIUM_BITRATE);
+        }
+        return bitrate;
+    }
+
+    public static int sampleRateFor(int bitrate) {
+        if (bitrate <= LOW_BITRATE) {
+            return 16000;
+        }
+        if (bitrate <= MEDIUM_BITRATE) {
+            return 24000;
+        }
+        return 44100;
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.codeora;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Base64;
+import android.util.Log;
+
+import androidx.core.content.ContextCompat;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.IOException;
+
+// Bridge channel "voice": native voice-message recording in place of getUserMedia capture
+// and JS encoding. Audio arrives as "voice" events carrying base64 ADTS/AAC chunks. A recording
+// belongs to the document and the activity that started it: a new document discards it, and the
+// activity stops it when it leaves the foreground.
+public class VoiceChannel implements NativeBridge.ChannelHandler, NativeBridge.PageListener {
+
+    public static final String CHANNEL = "voice";
+    private static final String TAG = "VoiceChannel";
+    private static final long MIN_DURATION_MILLIS = 1000L;
+    private static final long MAX_DURATION_MILLIS = 5 * 60 * 1000L;
+
+    private final Context context;
+    private final NativeBridge bridge;
+    private VoiceRecorder recorder;
+    private String recordingId;
+    private int nextId = 0;
+
+    public VoiceChannel(Context context, NativeBridge bridge) {
+        this.context = context.getApplicationContext();
+        this.bridge = bridge;
+    }
+
+    // start:  {maxDurationMs?} -> {id, bitrate, sampleRate, mimeType}, at most five minutes
+    //         then {id, seq, data} per chunk and finally {id, state: "done" | "error", ...}
+    // stop:   {} -> {}   delivers what was recorded
+    // cancel: {} -> {}   discards it
+    @Override
+    public synchronized void onMessage(BridgeCodec.Message message, NativeBridge.Reply reply) {
+        try {
+            JSONObject request = new JSONObject(message.payloadString());
+            String op = request.getString("op");
+            switch (op) {
+                case "start":
+                    start(request, reply);
+                    break;
+                case "stop":
+                    stop();
+                    reply.success("{}");
+                    break;
+                case "cancel":
+                    cancel();
+                    reply.success("{}");
+                    break;
+                default:
+                    reply.error("Unknown voice op " + op);
+            }
+        } catch (JSONException e) {
+            reply.error(String.valueOf(e.getMessage()));
+        }
+    }
+
+    // The document that started the recording is gone; nobody is left to receive it.
+    @Override
+    public void onPageStarted() {
+        cancel();
+    }
+
+    // From the activity leaving the foreground: the page gets what was recorded so far.
+    public synchronized void stop() {
+        if (recorder != null) {
+            recorder.stop();
+        }
+    }
+
+    public synchronized void cancel() {
+        if (recorder != null) {
+            recorder.cancel();
+            recorder = null;
+            recordingId = null;
+        }
+    }
+
+    private void start(JSONObject request, NativeBridge.Reply reply) throws JSONException {
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.RECORD_AUDIO)
+                != PackageManager.PERMISSION_GRANTED) {
+            reply.error("Microphone permission not granted");
+            return;
+        }
+        if (recorder != null) {
+            reply.error("Already recording");
+            return;
+        }
+        String id = "voice" + (++nextId);
+        int bitrate = VoiceBitrate.forNetwork(ConnectivityMonitor.get(context).getState());
+        long maxDuration = Math.max(MIN_DURATION_MILLIS,
+                Math.min(request.optLong("maxDurationMs", MAX_DURATION_MILLIS), MAX_DURATION_MILLIS));
+        VoiceRecorder newRecorder = new VoiceRecorder(bitrate, maxDuration, new RecorderListener(id));
+        try {
+            newRecorder.start();
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "Could not start recording", e);
+            reply.error(String.valueOf(e.getMessage()));
+            return;
+        }
+        recorder = newRecorder;
+        recordingId = id;
+        JSONObject result = new JSONObject();
+        result.put("id", id);
+        result.put("bitrate", bitrate);
+        result.put("sampleRate", newRecorder.getSampleRate());
+        result.put("mimeType", "audio/aac");
+        reply.success(result.toString());
+    }
+
+    private synchronized void finished(String id) {
+        if (id.equals(recordingId)) {
+            recorder = null;
+            recordingId = null;
+        }
+    }
+
+    private class RecorderListener implements VoiceRecorder.Listener {
+        private final String id;
+
+        RecorderListener(String id) {
+            this.id = id;
+        }
+
+        @Override
+        public void onChunk(int sequence, byte[] data, int length) {
+            StringBuilder event = new StringBuilder(length * 4 / 3 + 64);
+            event.append("{\"id\":\"").append(id).append("\",\"seq\":").append(sequence).append(",\"data\":\"")
+                    .append(Base64.encodeToString(data, 0, length, Base64.NO_WRAP)).append("\"}");
+            bridge.emit(CHANNEL, event);
+        }
+
+        @Override
+        public void onFinished(VoiceRecorder.Stats stats) {
+            Log.d(TAG, stats.toString());
+            finished(id);
+            try {
+                JSONObject event = new JSONObject();
+                event.put("id", id);
+                event.put("state", "done");
+                event.put("durationMs", stats.durationMillis);
+                event.put("bytes", stats.bytes);
+                event.put("bitrate", stats.bitrate);
+                event.put("droppedBytes", stats.droppedBytes);
+                event.put("latencyMs", stats.averageLatencyMillis);
+                event.put("maxLatencyMs", stats.maxLatencyMillis);
+                event.put("encodeCpuMs", stats.encodeCpuMillis);
+                bridge.emit(CHANNEL, event.toString());
+            } catch (JSONException e) {
+                Log.e(TAG, "Could not encode voice event", e);
+            }
+        }
+
+        @Override
+        public void onError(Exception e) {
+            Log.w(TAG, "Recording " + id + " failed", e);
+            finished(id);
+            try {
+                bridge.emit(CHANNEL, new JSONObject().put("id", id).put("state", "error")
+                        .put("message", String.valueOf(e.getMessage())).toString());
+            } catch (JSONException ignored) {
+                // Nothing useful left to report.
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.example.codeora;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+// Records a voice message natively: a capture thread moves PCM from AudioRecord into a ring
+// buffer and an encoder thread turns it into AAC, handing ADTS chunks of about CHUNK_MILLIS
+// to the listener as they are ready, so the page can stream or upload while recording.
+public class VoiceRecorder {
+
+    private static final String TAG = "VoiceRecorder";
+    static final int CHUNK_MILLIS = 250;
+    private static final int RING_MILLIS = 2000;
+    private static final int READ_MILLIS = 20;
+
+    public interface Listener {
+        // Called on the encoder thread; data is only valid during the call.
+        void onChunk(int sequence, byte[] data, int length);
+
+        void onFinished(Stats stats);
+
+        void onError(Exception e);
+    }
+
+    public static class Stats {
+        public final long durationMillis;
+        public final long bytes;
+        public final int bitrate;
+        public final int sampleRate;
+        public final long droppedBytes;
+        public final long averageLatencyMillis;
+        public final long maxLatencyMillis;
+        public final long encodeCpuMillis;
+
+        Stats(long durationMillis, long bytes, int bitrate, int sampleRate, long droppedBytes,
+              long averageLatencyMillis, long maxLatencyMillis, long encodeCpuMillis) {
+            this.durationMillis = durationMillis;
+            this.bytes = bytes;
+            this.bitrate = bitrate;
+            this.sampleRate = sampleRate;
+            this.droppedBytes = droppedBytes;
+            this.averageLatencyMillis = averageLatencyMillis;
+            this.maxLatencyMillis = maxLatencyMillis;
+            this.encodeCpuMillis = encodeCpuMillis;
+        }
+
+        @Override
+        public String toString() {
+            return "VoiceRecorder " + durationMillis + "ms " + bytes + "B @" + bitrate + "bps " + sampleRate
+                    + "Hz dropped=" + droppedBytes + "B latency avg=" + averageLatencyMillis + "ms max="
+                    + maxLatencyMillis + "ms cpu=" + encodeCpuMillis + "ms";
+        }
+    }
+
+    private final int bitrate;
+    private final int sampleRate;
+    private final long maxDurationMillis;
+    private final Listener listener;
+    private final PcmRingBuffer ring;
+    private AudioRecord audioRecord;
+    private Thread captureThread;
+    private Thread encoderThread;
+    private volatile boolean capturing = false;
+    private volatile boolean cancelled = false;
+    private long startedAt;
+    // Encoder thread only
+    private final ByteArrayOutputStream chunk = new ByteArrayOutputStream();
+    private long nextChunkAtUs;
+    private int sequence = 0;
+    private long bytesEmitted = 0;
+    private long latencySumMillis = 0;
+    private long latencyMaxMillis = 0;
+
+    public VoiceRecorder(int bitrate, long maxDurationMillis, Listener listener) {
+        this.bitrate = bitrate;
+        this.sampleRate = VoiceBitrate.sampleRateFor(bitrate);
+        this.maxDurationMillis = maxDurationMillis;
+        this.listener = listener;
+        this.ring = new PcmRingBuffer(bytesFor(RING_MILLIS));
+    }
+
+    public int getBitrate() {
+        return bitrate;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    // The caller checks RECORD_AUDIO first.
+    @SuppressLint("MissingPermission")
+    public void start() throws IOException {
+        int minBuffer = AudioRecord.getMinBufferSize(sampleRate, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT);
+        if (minBuffer <= 0) {
+            throw new IOException("Unsupported capture format at " + sampleRate + " Hz");
+        }
+        audioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, sampleRate, AudioFormat.CHANNEL_IN_MONO,
+                AudioFormat.ENCODING_PCM_16BIT, Math.max(minBuffer * 2, bytesFor(READ_MILLIS * 4)));
+        if (audioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+            audioRecord.release();
+            throw new IOException("Microphone unavailable");
+        }
+        AacEncoder encoder;
+        try {
+            encoder = new AacEncoder(sampleRate, bitrate);
+        } catch (IOException | RuntimeException e) {
+            audioRecord.release();
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        capturing = true;
+        startedAt = SystemClock.elapsedRealtime();
+        audioRecord.startRecording();
+        captureThread = new Thread(this::capture, "VoiceCapture");
+        encoderThread = new Thread(() -> encode(encoder), "VoiceEncoder");
+        captureThread.start();
+        encoderThread.start();
+    }
+
+    // Finishes the message: what was captured so far is encoded and delivered.
+    public void stop() {
+        capturing = false;
+    }
+
+    // Stops without delivering anything further.
+    public void cancel() {
+        cancelled = true;
+        capturing = false;
+    }
+
+    private void capture() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        byte[] buffer = new byte[bytesFor(READ_MILLIS)];
+        try {
+            while (capturing && SystemClock.elapsedRealtime() - startedAt < maxDurationMillis) {
+                int n = audioRecord.read(buffer, 0, buffer.length);
+                if (n < 0) {
+                    Log.w(TAG, "AudioRecord.read failed: " + n);
+                    break;
+                }
+                ring.write(buffer, 0, n);
+            }
+        } finally {
+            audioRecord.stop();
+            audioRecord.release();
+            ring.close();
+        }
+    }
+
+    private void encode(AacEncoder encoder) {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+        long cpuStart = SystemClock.currentThreadTimeMillis();
+        long chunkMicros = CHUNK_MILLIS * 1000L;
+        nextChunkAtUs = chunkMicros;
+        AacEncoder.Sink sink = (data, length, presentationTimeUs) -> {
+            chunk.write(data, 0, length);
+            if (presentationTimeUs >= nextChunkAtUs) {
+                nextChunkAtUs = presentationTimeUs + chunkMicros;
+                emitChunk(presentationTimeUs);
+            }
+        };
+        byte[] pcm = new byte[bytesFor(READ_MILLIS) * 2];
+        try {
+            while (!cancelled) {
+                int n = ring.read(pcm, 0, pcm.length, READ_MILLIS * 5);
+                if (n < 0) {
+                    break;
+                }
+                if (n > 0) {
+                    encoder.encode(pcm, n, sink);
+                }
+            }
+            if (cancelled) {
+                return;
+            }
+            encoder.finish(sink);
+            emitChunk(encoder.presentationTimeUs());
+            listener.onFinished(new Stats(encoder.presentationTimeUs() / 1000, bytesEmitted, bitrate, sampleRate,
+                    ring.getDroppedBytes(), latencySumMillis / Math.max(1, sequence), latencyMaxMillis,
+                    SystemClock.currentThreadTimeMillis() - cpuStart));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (RuntimeException e) {
+            capturing = false;
+            listener.onError(e);
+        } finally {
+            encoder.release();
+        }
+    }
+
+    // Latency is how long ago the end of this chunk's audio was captured.
+    private void emitChunk(long presentationTimeUs) {
+        if (chunk.size() == 0 || cancelled) {
+            return;
+        }
+        long latency = Math.max(0, SystemClock.elapsedRealtime() - startedAt - presentationTimeUs / 1000);
+        bytesEmitted += chunk.size();
+        latencySumMillis += latency;
+        latencyMaxMillis = Math.max(latencyMaxMillis, latency);
+        listener.onChunk(sequence++, chunk.toByteArray(), chunk.size());
+        chunk.reset();
+    }
+
+    private int bytesFor(int millis) {
+        return sampleRate * 2 * millis / 1000;
+    }
+}
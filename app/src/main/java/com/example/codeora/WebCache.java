@@ -0,0 +1,423 @@
+package com.example.codeora;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// Bounded on-disk LRU store for web responses. Each entry is a body file plus a small
+// properties file holding the headers we need to serve and revalidate it.
+public class WebCache {
+
+    private static final String BODY_SUFFIX = ".body";
+    private static final String META_SUFFIX = ".meta";
+    private static final String TMP_SUFFIX = ".tmp";
+
+    public static class Entry {
+        public final String url;
+        public final String mimeType;
+        public final String encoding;
+        public final String etag;
+        public final String lastModified;
+        // The origin's Access-Control-Allow-Origin, replayed as is; null when it sent none.
+        public final String allowOrigin;
+        // Wall-clock time after which the entry is dropped, or 0 when it does not expire.
+        public final long expiresAt;
+        public final long size;
+        final File body;
+
+        Entry(String url, String mimeType, String encoding, String etag, String lastModified, String allowOrigin,
+              long expiresAt, long size, File body) {
+            this.url = url;
+            this.mimeType = mimeType;
+            this.encoding = encoding;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.allowOrigin = allowOrigin;
+            this.expiresAt = expiresAt;
+            this.size = size;
+            this.body = body;
+        }
+
+        boolean isExpired(long nowMillis) {
+            return expiresAt != 0 && nowMillis >= expiresAt;
+        }
+
+        public InputStream open() throws IOException {
+            return new FileInputStream(body);
+        }
+    }
+
+    public static class Stats {
+        public final long hitCount;
+        public final long missCount;
+        public final long revalidatedCount;
+        public final long evictionCount;
+        public final long bytesSaved;
+        public final long size;
+        public final long maxSize;
+        public final int entryCount;
+
+        Stats(long hitCount, long missCount, long revalidatedCount, long evictionCount,
+              long bytesSaved, long size, long maxSize, int entryCount) {
+            this.hitCount = hitCount;
+            this.missCount = missCount;
+            this.revalidatedCount = revalidatedCount;
+            this.evictionCount = evictionCount;
+            this.bytesSaved = bytesSaved;
+            this.size = size;
+            this.maxSize = maxSize;
+            this.entryCount = entryCount;
+        }
+
+        public double hitRatio() {
+            long total = hitCount + missCount;
+            return total == 0 ? 0 : (double) hitCount / total;
+        }
+
+        @Override
+        public String toString() {
+            return "WebCache hits=" + hitCount + " misses=" + missCount
+                    + " revalidated=" + revalidatedCount + " evictions=" + evictionCount
+                    + " saved=" + bytesSaved + "B size=" + size + "/" + maxSize + "B entries=" + entryCount;
+        }
+    }
+
+    private final File directory;
+    private final long maxSize;
+    private final long maxEntrySize;
+    // Access-ordered, so iteration starts at the least recently used entry.
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long size;
+
+    private long hitCount;
+    private long missCount;
+    private long revalidatedCount;
+    private long evictionCount;
+    private long bytesSaved;
+
+    public WebCache(File directory, long maxSize) {
+        this.directory = directory;
+        this.maxSize = maxSize;
+        this.maxEntrySize = maxSize / 8;
+        load();
+    }
+
+    public synchronized Entry get(String url) {
+        String key = keyFor(url);
+        Entry entry = entries.get(key);
+        if (entry == null || !entry.body.exists() || entry.isExpired(System.currentTimeMillis())) {
+            if (entry != null) {
+                entries.remove(key);
+                delete(entry);
+            }
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        bytesSaved += entry.size;
+        entry.body.setLastModified(System.currentTimeMillis());
+        return entry;
+    }
+
+    // Looks an entry up for a conditional request without counting it as a hit yet.
+    public synchronized Entry peek(String url) {
+        Entry entry = entries.get(keyFor(url));
+        return entry != null && entry.body.exists() && !entry.isExpired(System.currentTimeMillis()) ? entry : null;
+    }
+
+    // Called when the server answered 304 for an entry we already hold.
+    public synchronized void markRevalidated(Entry entry) {
+        revalidatedCount++;
+        hitCount++;
+        bytesSaved += entry.size;
+        entry.body.setLastModified(System.currentTimeMillis());
+    }
+
+    public synchronized void markMiss() {
+        missCount++;
+    }
+
+    public synchronized void remove(String url) {
+        Entry entry = entries.remove(keyFor(url));
+        if (entry != null) {
+            delete(entry);
+        }
+    }
+
+    public synchronized void clear() {
+        for (Entry entry : entries.values()) {
+            delete(entry);
+        }
+        entries.clear();
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hitCount, missCount, revalidatedCount, evictionCount, bytesSaved,
+                size, maxSize, entries.size());
+    }
+
+    // Wraps a network body so it is written to disk as the WebView reads it. The entry is
+    // committed only if the stream is read to the end; anything cut short is discarded.
+    public InputStream store(String url, String mimeType, String encoding, String etag,
+                             String lastModified, InputStream body) {
+        return store(url, mimeType, encoding, etag, lastModified, null, 0, body);
+    }
+
+    // As above, for an entry that is dropped once expiresAt (wall-clock millis) has passed.
+    public InputStream store(String url, String mimeType, String encoding, String etag,
+                             String lastModified, long expiresAt, InputStream body) {
+        return store(url, mimeType, encoding, etag, lastModified, null, expiresAt, body);
+    }
+
+    public InputStream store(String url, String mimeType, String encoding, String etag,
+                             String lastModified, String allowOrigin, long expiresAt, InputStream body) {
+        if (!directory.exists() && !directory.mkdirs()) {
+            return body;
+        }
+        String key = keyFor(url);
+        File tmp = new File(directory, key + TMP_SUFFIX + Thread.currentThread().getId());
+        try {
+            OutputStream out = new FileOutputStream(tmp);
+            return new TeeInputStream(body, out, tmp, url, mimeType, encoding, etag, lastModified, allowOrigin,
+                    expiresAt);
+        } catch (IOException e) {
+            return body;
+        }
+    }
+
+    private synchronized void commit(File tmp, long length, String url, String mimeType, String encoding,
+                                     String etag, String lastModified, String allowOrigin, long expiresAt) {
+        String key = keyFor(url);
+        if (length > maxEntrySize) {
+            tmp.delete();
+            return;
+        }
+        Entry previous = entries.remove(key);
+        if (previous != null) {
+            delete(previous);
+        }
+        File body = new File(directory, key + BODY_SUFFIX);
+        if (!tmp.renameTo(body)) {
+            tmp.delete();
+            return;
+        }
+        Properties meta = new Properties();
+        meta.setProperty("url", url);
+        putIfNotNull(meta, "mime", mimeType);
+        putIfNotNull(meta, "encoding", encoding);
+        putIfNotNull(meta, "etag", etag);
+        putIfNotNull(meta, "lastModified", lastModified);
+        putIfNotNull(meta, "allowOrigin", allowOrigin);
+        if (expiresAt != 0) {
+            meta.setProperty("expires", Long.toString(expiresAt));
+        }
+        try (OutputStream out = new FileOutputStream(new File(directory, key + META_SUFFIX))) {
+            meta.store(out, null);
+        } catch (IOException e) {
+            body.delete();
+            return;
+        }
+        entries.put(key, new Entry(url, mimeType, encoding, etag, lastModified, allowOrigin, expiresAt, length,
+                body));
+        size += length;
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Entry eldest = it.next().getValue();
+            it.remove();
+            delete(eldest);
+            evictionCount++;
+        }
+    }
+
+    private void delete(Entry entry) {
+        size -= entry.size;
+        entry.body.delete();
+        new File(directory, keyFor(entry.url) + META_SUFFIX).delete();
+    }
+
+    private void load() {
+        File[] files = directory.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> bodies = new ArrayList<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.contains(TMP_SUFFIX)) {
+                file.delete();
+            } else if (name.endsWith(BODY_SUFFIX)) {
+                bodies.add(file);
+            }
+        }
+        // Oldest first so the rebuilt access order matches the last session.
+        Collections.sort(bodies, (a, b) -> Long.compare(a.lastModified(), b.lastModified()));
+        for (File body : bodies) {
+            String key = body.getName().substring(0, body.getName().length() - BODY_SUFFIX.length());
+            File metaFile = new File(directory, key + META_SUFFIX);
+            Properties meta = new Properties();
+            try (InputStream in = new FileInputStream(metaFile)) {
+                meta.load(in);
+            } catch (IOException e) {
+                body.delete();
+                metaFile.delete();
+                continue;
+            }
+            String url = meta.getProperty("url");
+            if (url == null) {
+                body.delete();
+                metaFile.delete();
+                continue;
+            }
+            long expiresAt;
+            try {
+                expiresAt = Long.parseLong(meta.getProperty("expires", "0"));
+            } catch (NumberFormatException e) {
+                expiresAt = 0;
+            }
+            entries.put(key, new Entry(url, meta.getProperty("mime"), meta.getProperty("encoding"),
+                    meta.getProperty("etag"), meta.getProperty("lastModified"), meta.getProperty("allowOrigin"),
+                    expiresAt, body.length(), body));
+            size += body.length();
+        }
+        trimToSize();
+    }
+
+    private static void putIfNotNull(Properties properties, String key, String value) {
+        if (value != null) {
+            properties.setProperty(key, value);
+        }
+    }
+
+    static String keyFor(String url) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(url.getBytes(StandardCharsets.UTF_8));
+            StringBuilder key = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                key.append(Character.forDigit((b >> 4) & 0xf, 16));
+                key.append(Character.forDigit(b & 0xf, 16));
+            }
+            return key.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return Integer.toHexString(url.hashCode());
+        }
+    }
+
+    private class TeeInputStream extends FilterInputStream {
+        private final OutputStream out;
+        private final File tmp;
+        private final String url;
+        private final String mimeType;
+        private final String encoding;
+        private final String etag;
+        private final String lastModified;
+        private final String allowOrigin;
+        private final long expiresAt;
+        private long length;
+        private boolean failed;
+        private boolean done;
+
+        TeeInputStream(InputStream in, OutputStream out, File tmp, String url, String mimeType,
+                       String encoding, String etag, String lastModified, String allowOrigin, long expiresAt) {
+            super(in);
+            this.out = out;
+            this.tmp = tmp;
+            this.url = url;
+            this.mimeType = mimeType;
+            this.encoding = encoding;
+            this.etag = etag;
+            this.lastModified = lastModified;
+            this.allowOrigin = allowOrigin;
+            this.expiresAt = expiresAt;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b == -1) {
+                finish(true);
+            } else {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int count) throws IOException {
+            int n;
+            try {
+                n = super.read(buffer, offset, count);
+            } catch (IOException e) {
+                finish(false);
+                throw e;
+            }
+            if (n == -1) {
+                finish(true);
+            } else {
+                write(buffer, offset, n);
+            }
+            return n;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            finish(false);
+            super.close();
+        }
+
+        private void write(byte[] buffer, int offset, int count) {
+            if (failed || done) {
+                return;
+            }
+            try {
+                out.write(buffer, offset, count);
+                length += count;
+                if (length > maxEntrySize) {
+                    finish(false);
+                }
+            } catch (IOException e) {
+                finish(false);
+            }
+        }
+
+        private void finish(boolean complete) {
+            if (done) {
+                return;
+            }
+            done = true;
+            try {
+                out.close();
+            } catch (IOException e) {
+                failed = true;
+            }
+            if (complete && !failed) {
+                commit(tmp, length, url, mimeType, encoding, etag, lastModified, allowOrigin, expiresAt);
+            } else {
+                tmp.delete();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.CookieManager;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+// Serves WebView requests through the CacheLoader. Anything it does not handle returns
+// null so the WebView falls back to its own network stack. Documents are fetched with the chat's
+// cookies, so the cache is emptied whenever those change and the offline fallback never shows
+// one account's chat to the next.
+public class WebCacheInterceptor {
+
+    private static final String TAG = "WebCacheInterceptor";
+    private static final long MAX_CACHE_SIZE = 50L * 1024 * 1024;
+    private static final int TIMEOUT_MILLIS = 15000;
+    private static final String PREFS_NAME = "web_cache";
+    private static final String KEY_ACCOUNT = "account";
+
+    private static WebCacheInterceptor instance;
+
+    private final CacheLoader loader;
+    private final String documentHost;
+    // Null when not tracked.
+    private ChatAccount account;
+
+    public static synchronized WebCacheInterceptor get(Context context, String documentUrl) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getCacheDir(), "web");
+            instance = new WebCacheInterceptor(new CacheLoader(new WebCache(directory, MAX_CACHE_SIZE), TIMEOUT_MILLIS),
+                    Uri.parse(documentUrl).getHost());
+            instance.account = new ChatAccount(context.getApplicationContext()
+                    .getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE), KEY_ACCOUNT);
+        }
+        return instance;
+    }
+
+    WebCacheInterceptor(CacheLoader loader, String documentHost) {
+        this.loader = loader;
+        this.documentHost = documentHost;
+    }
+
+    public WebCache.Stats stats() {
+        return loader.getCache().stats();
+    }
+
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        String scheme = request.getUrl().getScheme();
+        if (!"GET".equals(request.getMethod()) || !("https".equals(scheme) || "http".equals(scheme))) {
+            return null;
+        }
+        String url = request.getUrl().toString();
+        Map<String, String> headers = new HashMap<>(request.getRequestHeaders());
+        boolean revalidate;
+        if (CacheLoader.isImmutableAsset(url)) {
+            revalidate = false;
+        } else if (documentHost != null && documentHost.equals(request.getUrl().getHost())
+                && CacheLoader.isDocument(url, headers.get("Accept"))) {
+            revalidate = true;
+            String cookie = CookieManager.getInstance().getCookie(url);
+            if (cookie != null) {
+                headers.put("Cookie", cookie);
+            }
+            if (account != null && account.changed(cookie)) {
+                loader.getCache().clear();
+                Log.d(TAG, "Chat cookies changed; cleared cached pages");
+            }
+        } else {
+            return null;
+        }
+
+        try {
+            CacheLoader.Response response = loader.load(url, headers, revalidate);
+            if (response == null) {
+                return null;
+            }
+            for (String cookie : response.cookies) {
+                CookieManager.getInstance().setCookie(url, cookie);
+            }
+            return new WebResourceResponse(response.mimeType, response.encoding, response.status,
+                    response.reason, response.headers, response.body);
+        } catch (IOException e) {
+            Log.w(TAG, "Cache load failed for " + url + ": " + e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.codeora;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Process-wide counts of what the chat WebView asked for: documents started and requests seen
+// by shouldInterceptRequest (every network, cache or preload fetch goes through it). Lets
+// tests assert that something, e.g. a rotation, caused no loading at all.
+public final class WebViewTraffic {
+
+    private static final AtomicLong documents = new AtomicLong();
+    private static final AtomicLong requests = new AtomicLong();
+
+    private WebViewTraffic() {
+    }
+
+    static void recordDocument() {
+        documents.incrementAndGet();
+    }
+
+    static void recordRequest() {
+        requests.incrementAndGet();
+    }
+
+    public static long documents() {
+        return documents.get();
+    }
+
+    public static long requests() {
+        return requests.get();
+    }
+}
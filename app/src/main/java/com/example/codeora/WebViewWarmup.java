@@ -0,0 +1,211 @@
+package com.example.codeora;
+
+import android.content.Context;
+import android.content.MutableContextWrapper;
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.util.Log;
+import android.webkit.RenderProcessGoneDetail;
+import android.webkit.WebResourceError;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.tracing.Trace;
+
+// Creates the chat WebView off-screen while the splash is showing and starts loading the
+// chat page, so MainActivity can adopt a WebView that is already initialized and loading.
+public class WebViewWarmup {
+
+    private static final String TAG = "WebViewWarmup";
+
+    public interface Callback {
+        void onReady();
+    }
+
+    private static WebViewWarmup instance;
+
+    private MutableContextWrapper contextWrapper;
+    private WebView webView;
+    private NativeBridge bridge;
+    private Callback callback;
+    private boolean pageFinished;
+    private boolean failed;
+
+    public static synchronized WebViewWarmup get() {
+        if (instance == null) {
+            instance = new WebViewWarmup();
+        }
+        return instance;
+    }
+
+    // Must be called on the main thread. Returns false if the WebView provider could not be
+    // loaded, in which case MainActivity falls back to inflating its own WebView.
+    public boolean start(Context context) {
+        if (webView != null) {
+            return true;
+        }
+        Context appContext = context.getApplicationContext();
+        pageFinished = false;
+        failed = false;
+        Trace.beginSection(StartupMetrics.TRACE_WEBVIEW_INIT);
+        try {
+            // Loads the Chromium provider before the first WebView is constructed.
+            WebSettings.getDefaultUserAgent(appContext);
+            contextWrapper = new MutableContextWrapper(appContext);
+            webView = new WebView(contextWrapper);
+        } catch (RuntimeException e) {
+            Log.e(TAG, "WebView warm-up failed", e);
+            webView = null;
+            return false;
+        } finally {
+            Trace.endSection();
+        }
+        StartupMetrics.mark(StartupMetrics.WEBVIEW_CREATED);
+        bridge = MainActivity.configureWebView(webView, appContext);
+        PreloadController preloadController = PreloadController.get(appContext);
+        preloadController.preloadAsync();
+        webView.setWebViewClient(new WarmupWebViewClient(preloadController, ImageInterceptor.get(appContext),
+                WebCacheInterceptor.get(appContext, MainActivity.CHAT_URL)));
+        Trace.beginSection(StartupMetrics.TRACE_FIRST_LOAD_URL);
+        StartupMetrics.beginPageLoad();
+        webView.loadUrl(MainActivity.CHAT_URL);
+        Trace.endSection();
+        return true;
+    }
+
+    // Runs the callback once the page has finished or failed; immediately if it already has.
+    public void whenReady(Callback callback) {
+        if (pageFinished || failed || webView == null) {
+            callback.onReady();
+        } else {
+            this.callback = callback;
+        }
+    }
+
+    public void cancelCallback() {
+        callback = null;
+    }
+
+    public boolean hasWebView() {
+        return webView != null;
+    }
+
+    // The bridge attached to the warmed WebView; read it before adopt().
+    public NativeBridge getBridge() {
+        return bridge;
+    }
+
+    public boolean isPageFinished() {
+        return pageFinished;
+    }
+
+    public boolean hasFailed() {
+        return failed;
+    }
+
+    // Hands the warmed WebView to the activity that will display it. The caller installs its
+    // own clients; the warm-up keeps no reference afterwards.
+    public WebView adopt(Context activity) {
+        WebView adopted = webView;
+        if (adopted != null) {
+            contextWrapper.setBaseContext(activity);
+            StartupMetrics.setWarmedUp(true);
+        }
+        webView = null;
+        bridge = null;
+        contextWrapper = null;
+        callback = null;
+        return adopted;
+    }
+
+    private void notifyReady() {
+        Callback pending = callback;
+        callback = null;
+        if (pending != null) {
+            pending.onReady();
+        }
+    }
+
+    private class WarmupWebViewClient extends WebViewClient {
+        private final PreloadController preloadController;
+        private final ImageInterceptor imageInterceptor;
+        private final WebCacheInterceptor webCacheInterceptor;
+
+        WarmupWebViewClient(PreloadController preloadController, ImageInterceptor imageInterceptor,
+                            WebCacheInterceptor webCacheInterceptor) {
+            this.preloadController = preloadController;
+            this.imageInterceptor = imageInterceptor;
+            this.webCacheInterceptor = webCacheInterceptor;
+        }
+
+        @Override
+        public void onPageStarted(WebView view, String url, Bitmap favicon) {
+            super.onPageStarted(view, url, favicon);
+            bridge.onPageStarted(url);
+            StartupMetrics.mark(StartupMetrics.PAGE_STARTED);
+        }
+
+        @Override
+        public void onPageFinished(WebView view, String url) {
+            super.onPageFinished(view, url);
+            StartupMetrics.mark(StartupMetrics.PAGE_FINISHED);
+            StartupMetrics.endPageLoad();
+            pageFinished = true;
+            notifyReady();
+        }
+
+        @Override
+        public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+            WebResourceResponse response = preloadController.intercept(request);
+            if (response == null) {
+                response = imageInterceptor.intercept(request);
+            }
+            if (response == null) {
+                response = webCacheInterceptor.intercept(request);
+            }
+            if (response == null) {
+                response = NativeNetwork.get(view.getContext()).intercept(request);
+            }
+            return response != null ? response : super.shouldInterceptRequest(view, request);
+        }
+
+        @Override
+        @RequiresApi(Build.VERSION_CODES.O)
+        public boolean onRenderProcessGone(WebView view, RenderProcessGoneDetail detail) {
+            // Nothing on screen to restore yet; drop the WebView so MainActivity builds its own
+            Log.w(TAG, "Renderer gone during warm-up (crashed=" + detail.didCrash() + ")");
+            if (view == webView) {
+                webView.destroy();
+                webView = null;
+                bridge = null;
+                contextWrapper = null;
+                pageFinished = false;
+                notifyReady();
+            }
+            return true;
+        }
+
+        @Override
+        public void onReceivedError(@NonNull WebView view, @NonNull WebResourceRequest request, @NonNull WebResourceError error) {
+            super.onReceivedError(view, request, error);
+            if (request.isForMainFrame()) {
+                failed = true;
+                notifyReady();
+            }
+        }
+
+        @Override
+        public void onReceivedHttpError(@NonNull WebView view, @NonNull WebResourceRequest request, @NonNull WebResourceResponse errorResponse) {
+            super.onReceivedHttpError(view, request, errorResponse);
+            if (request.isForMainFrame()) {
+                failed = true;
+                notifyReady();
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.example.codeora;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Bookkeeping for child windows such as popups: a few spare windows built ahead of time so
+// opening one does not pay for construction, at most maxAlive windows alive at once, and the
+// least recently used beyond that parked as a snapshot and destroyed. Touching a parked
+// window brings it back from its snapshot in a fresh window. Up to maxParked snapshots are
+// kept; older ones are dropped and their windows count as closed. Main thread only.
+public class WindowPool<W, S> {
+
+    public interface Host<W, S> {
+        W create();
+
+        // May return null when there is nothing worth keeping.
+        S snapshot(W window);
+
+        void restore(W window, S snapshot);
+
+        void destroy(W window);
+    }
+
+    private final Host<W, S> host;
+    private final int maxAlive;
+    private final int maxSpares;
+    private final int maxParked;
+    // Access order, so the first entry is the least recently used.
+    private final LinkedHashMap<Integer, W> alive = new LinkedHashMap<>(8, 0.75f, true);
+    private final LinkedHashMap<Integer, S> parked = new LinkedHashMap<>();
+    private final ArrayDeque<W> spares = new ArrayDeque<>();
+    private int nextId = 1;
+
+    private int opened;
+    private int spareHits;
+    private int created;
+    private int evicted;
+    private int restored;
+    private int dropped;
+
+    public WindowPool(Host<W, S> host, int maxAlive, int maxSpares, int maxParked) {
+        this.host = host;
+        this.maxAlive = maxAlive;
+        this.maxSpares = maxSpares;
+        this.maxParked = maxParked;
+    }
+
+    // Opens a window and returns its id; window(id) hands out the window itself.
+    public int open() {
+        int id = nextId++;
+        opened++;
+        alive.put(id, take());
+        evictBeyondLimit();
+        return id;
+    }
+
+    // The window for id, restored from its snapshot if it was parked, or null once closed or dropped.
+    public W window(int id) {
+        W window = alive.get(id);
+        if (window != null) {
+            return window;
+        }
+        if (!parked.containsKey(id)) {
+            return null;
+        }
+        S snapshot = parked.remove(id);
+        window = take();
+        if (snapshot != null) {
+            host.restore(window, snapshot);
+        }
+        restored++;
+        alive.put(id, window);
+        evictBeyondLimit();
+        return window;
+    }
+
+    // The id of an alive window, or -1.
+    public int idOf(W window) {
+        for (Map.Entry<Integer, W> entry : alive.entrySet()) {
+            if (entry.getValue() == window) {
+                return entry.getKey();
+            }
+        }
+        return -1;
+    }
+
+    public boolean isOpen(int id) {
+        return alive.containsKey(id) || parked.containsKey(id);
+    }
+
+    public boolean isParked(int id) {
+        return parked.containsKey(id);
+    }
+
+    public void close(int id) {
+        parked.remove(id);
+        W window = alive.remove(id);
+        if (window != null) {
+            host.destroy(window);
+        }
+    }
+
+    // Builds one spare if fewer than maxSpares are ready; returns true while more are wanted,
+    // so an idle handler can build them one at a time.
+    public boolean prewarm() {
+        if (spares.size() < maxSpares) {
+            spares.add(host.create());
+            created++;
+        }
+        return spares.size() < maxSpares;
+    }
+
+    public void dropSpares() {
+        while (!spares.isEmpty()) {
+            host.destroy(spares.poll());
+        }
+    }
+
+    // Parks every alive window except keepId, e.g. under memory pressure.
+    public void parkAllExcept(int keepId) {
+        List<Integer> ids = new ArrayList<>(alive.keySet());
+        for (int id : ids) {
+            if (id != keepId) {
+                park(id);
+            }
+        }
+    }
+
+    public void closeAll() {
+        for (W window : alive.values()) {
+            host.destroy(window);
+        }
+        alive.clear();
+        parked.clear();
+        dropSpares();
+    }
+
+    public int aliveCount() {
+        return alive.size();
+    }
+
+    public int spareCount() {
+        return spares.size();
+    }
+
+    public String stats() {
+        return "windows opened=" + opened + " spareHits=" + spareHits + " created=" + created
+                + " alive=" + alive.size() + " parked=" + parked.size() + " evicted=" + evicted
+                + " restored=" + restored + " dropped=" + dropped;
+    }
+
+    private W take() {
+        if (!spares.isEmpty()) {
+            spareHits++;
+            return spares.poll();
+        }
+        created++;
+        return host.create();
+    }
+
+    private void evictBeyondLimit() {
+        while (alive.size() > maxAlive) {
+            park(alive.keySet().iterator().next());
+        }
+    }
+
+    private void park(int id) {
+        W window = alive.remove(id);
+        parked.put(id, host.snapshot(window));
+        host.destroy(window);
+        evicted++;
+        if (parked.size() > maxParked) {
+            Iterator<Integer> it = parked.keySet().iterator();
+            it.next();
+            it.remove();
+            dropped++;
+        }
+    }
+}
@@ -8,7 +8,12 @@ import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
-public class internet extends AppCompatActivity {
+// Shown on top of MainActivity while the chat page cannot load. It closes itself once the
+// network comes back and MainActivity reloads the page in its existing WebView.
+public class internet extends AppCompatActivity implements ConnectivityMonitor.Listener {
+
+    private ConnectivityMonitor connectivityMonitor;
+    private boolean sawDisconnected = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -20,5 +25,23 @@ public class internet extends AppCompatActivity {
             v.setPadding(systemBars.left, systemBars.top, systemBars.right, systemBars.bottom);
             return insets;
         });
+
+        connectivityMonitor = ConnectivityMonitor.get(this);
+        connectivityMonitor.addListener(this);
+    }
+
+    @Override
+    public void onNetworkStateChanged(ConnectivityMonitor.NetworkState state) {
+        if (!state.connected) {
+            sawDisconnected = true;
+        } else if (sawDisconnected) {
+            finish();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        connectivityMonitor.removeListener(this);
+        super.onDestroy();
     }
-}
\ No newline at end of file
+}
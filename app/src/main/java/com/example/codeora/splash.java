@@ -3,18 +3,26 @@ package com.example.codeora;
 import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.tracing.Trace;
 import androidx.core.graphics.Insets;
 import androidx.core.view.ViewCompat;
 import androidx.core.view.WindowInsetsCompat;
 
 public class splash extends AppCompatActivity {
 
-    private static final int SPLASH_DISPLAY_LENGTH = 1500; // 1.5 seconds
+    // Upper bound only; the splash normally ends as soon as the warmed-up page is ready.
+    private static final int MAX_SPLASH_DISPLAY_LENGTH = 5000; // 5 seconds
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private boolean launched = false;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
+        Trace.beginSection(StartupMetrics.TRACE_SPLASH_ON_CREATE);
         super.onCreate(savedInstanceState);
+        StartupMetrics.mark(StartupMetrics.SPLASH_CREATED);
         setContentView(R.layout.activity_splash);
 
         // Apply window insets listener to adjust padding for system bars
@@ -24,11 +32,32 @@ public class splash extends AppCompatActivity {
             return insets;
         });
 
-        // Handler to start the main activity after the splash screen delay
-        new Handler().postDelayed(() -> {
-            Intent mainIntent = new Intent(splash.this, MainActivity.class);
-            startActivity(mainIntent);
-            finish();
-        }, SPLASH_DISPLAY_LENGTH);
+        // Create the WebView and start loading the chat page while the splash is showing
+        WebViewWarmup warmup = WebViewWarmup.get();
+        if (warmup.start(this)) {
+            warmup.whenReady(this::launchMain);
+            handler.postDelayed(this::launchMain, MAX_SPLASH_DISPLAY_LENGTH);
+        } else {
+            launchMain();
+        }
+        Trace.endSection();
+    }
+
+    private void launchMain() {
+        if (launched || isFinishing()) {
+            return;
+        }
+        launched = true;
+        handler.removeCallbacksAndMessages(null);
+        Intent mainIntent = new Intent(splash.this, MainActivity.class);
+        startActivity(mainIntent);
+        finish();
+    }
+
+    @Override
+    protected void onDestroy() {
+        handler.removeCallbacksAndMessages(null);
+        WebViewWarmup.get().cancelCallback();
+        super.onDestroy();
     }
 }
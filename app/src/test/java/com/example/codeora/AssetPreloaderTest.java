@@ -0,0 +1,202 @@
+package com.example.codeora;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.*;
+
+/**
+ * Preloads builds from a local stand-in for the web app and checks that a new build only
+ * becomes visible on promote(), all at once.
+ */
+public class AssetPreloaderTest {
+
+    private static final String MAIN_V1 = "/_next/static/chunks/main-3f9a1c2b4d.js";
+    private static final String STYLE_V1 = "/_next/static/css/app-8c1d2e3f4a.css";
+    private static final String MAIN_V2 = "/_next/static/chunks/main-7b6a5c4d3e.js";
+
+    private HttpServer server;
+    private String origin;
+    private File directory;
+    private ExecutorService workers;
+    private final Map<String, byte[]> files = new ConcurrentHashMap<>();
+    private volatile String manifest;
+    private volatile String page;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("preload").toFile();
+        workers = Executors.newFixedThreadPool(3);
+        files.put(MAIN_V1, "console.log('v1');".getBytes(StandardCharsets.UTF_8));
+        files.put(STYLE_V1, "body{margin:0}".getBytes(StandardCharsets.UTF_8));
+        files.put(MAIN_V2, "console.log('v2');".getBytes(StandardCharsets.UTF_8));
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            byte[] body;
+            String type;
+            if ("/asset-manifest.json".equals(path)) {
+                body = manifest == null ? null : manifest.getBytes(StandardCharsets.UTF_8);
+                type = "application/json";
+            } else if ("/".equals(path)) {
+                body = page.getBytes(StandardCharsets.UTF_8);
+                type = "text/html; charset=utf-8";
+            } else {
+                body = files.get(path);
+                type = path.endsWith(".css") ? "text/css; charset=utf-8" : "application/javascript; charset=utf-8";
+            }
+            if (body == null) {
+                exchange.sendResponseHeaders(404, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", type);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.start();
+        origin = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        workers.shutdownNow();
+    }
+
+    @Test
+    public void manifestBuildIsServedOnlyAfterPromote() throws Exception {
+        manifest = "{\"version\":\"build-1\",\"assets\":[{\"url\":\"" + MAIN_V1 + "\",\"sha256\":\""
+                + sha256(files.get(MAIN_V1)) + "\"},\"" + STYLE_V1 + "\",\"/favicon.ico\"]}";
+        AssetStore store = new AssetStore(directory);
+        AssetPreloader preloader = new AssetPreloader(store, 5000, workers);
+
+        AssetManifest loaded = preloader.loadManifest(origin + "asset-manifest.json", origin, null);
+        assertEquals("build-1", loaded.version);
+        // Unhashed URLs are not pinned.
+        assertEquals(2, loaded.assets.size());
+
+        AssetPreloader.Result result = preloader.preload(loaded, null);
+        assertTrue(result.committed);
+        assertEquals(0, result.failed);
+        assertNull(store.lookup(origin + MAIN_V1.substring(1)));
+
+        store.promote();
+        AssetStore.Asset asset = store.lookup(origin + MAIN_V1.substring(1));
+        assertNotNull(asset);
+        assertEquals("application/javascript", asset.mimeType);
+        assertArrayEquals(files.get(MAIN_V1), read(asset));
+        assertEquals("text/css", store.lookup(origin + STYLE_V1.substring(1)).mimeType);
+    }
+
+    @Test
+    public void switchoverReplacesWholeBuildAndSurvivesRestart() throws Exception {
+        AssetStore store = new AssetStore(directory);
+        AssetPreloader preloader = new AssetPreloader(store, 5000, workers);
+        page = "<html><head><script src=\"" + MAIN_V1 + "\"></script>"
+                + "<link rel=\"stylesheet\" href=\"" + STYLE_V1 + "\"></head></html>";
+        AssetManifest v1 = preloader.loadManifest(origin + "asset-manifest.json", origin, null);
+        assertEquals(2, v1.assets.size());
+        assertTrue(preloader.preload(v1, null).committed);
+        store.promote();
+
+        page = "<html><head><script src=\"" + MAIN_V2 + "\"></script></head></html>";
+        AssetManifest v2 = preloader.loadManifest(origin + "asset-manifest.json", origin, null);
+        assertNotEquals(v1.version, v2.version);
+        assertTrue(preloader.preload(v2, null).committed);
+        // Still v1 until the next document.
+        assertNotNull(store.lookup(origin + STYLE_V1.substring(1)));
+        assertNull(store.lookup(origin + MAIN_V2.substring(1)));
+
+        // A restart serves the last committed build from the first document on.
+        AssetStore reopened = new AssetStore(directory);
+        assertEquals(v2.version, reopened.activeVersion());
+        assertNotNull(reopened.lookup(origin + MAIN_V2.substring(1)));
+        assertNull(reopened.lookup(origin + STYLE_V1.substring(1)));
+        assertEquals(1, new File(directory, "versions").listFiles().length);
+    }
+
+    @Test
+    public void incompleteOrCorruptBuildIsNotCommitted() throws Exception {
+        manifest = "{\"version\":\"build-2\",\"assets\":[{\"url\":\"" + MAIN_V1 + "\",\"sha256\":\"00\"},\""
+                + STYLE_V1 + "\"]}";
+        AssetStore store = new AssetStore(directory);
+        AssetPreloader preloader = new AssetPreloader(store, 5000, workers);
+        AssetPreloader.Result result = preloader.preload(
+                preloader.loadManifest(origin + "asset-manifest.json", origin, null), null);
+        assertFalse(result.committed);
+        assertEquals(1, result.failed);
+        assertNull(store.pendingVersion());
+
+        files.remove(STYLE_V1);
+        manifest = "{\"version\":\"build-3\",\"assets\":[\"" + MAIN_V1 + "\",\"" + STYLE_V1 + "\"]}";
+        assertFalse(preloader.preload(
+                preloader.loadManifest(origin + "asset-manifest.json", origin, null), null).committed);
+        store.promote();
+        assertNull(store.activeVersion());
+        // Nothing staged is left behind.
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void rejectsVersionsThatAreNotPlainNames() throws Exception {
+        assertTrue(AssetStore.isValidVersion("build-1.2_a"));
+        for (String version : new String[]{"", ".", "..", "../..", "a/b", "a\\b"}) {
+            assertFalse(version, AssetStore.isValidVersion(version));
+        }
+        manifest = "{\"version\":\"build-1\",\"assets\":[\"" + MAIN_V1 + "\"]}";
+        AssetStore store = new AssetStore(directory);
+        AssetPreloader preloader = new AssetPreloader(store, 5000, workers);
+        assertTrue(preloader.preload(preloader.loadManifest(origin + "asset-manifest.json", origin, null), null)
+                .committed);
+        store.promote();
+
+        manifest = "{\"version\":\"..\",\"assets\":[\"" + MAIN_V1 + "\"]}";
+        try {
+            preloader.preload(preloader.loadManifest(origin + "asset-manifest.json", origin, null), null);
+            fail();
+        } catch (IOException expected) {
+            // Nothing was deleted.
+        }
+        assertNotNull(store.lookup(origin + MAIN_V1.substring(1)));
+    }
+
+    private static byte[] read(AssetStore.Asset asset) throws IOException {
+        try (InputStream in = asset.open()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        }
+    }
+
+    private static String sha256(byte[] data) throws Exception {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : MessageDigest.getInstance("SHA-256").digest(data)) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
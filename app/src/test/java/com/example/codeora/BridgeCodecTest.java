@@ -0,0 +1,70 @@
+package com.example.codeora;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BridgeCodecTest {
+
+    private static final char F = BridgeCodec.FIELD;
+    private static final char R = BridgeCodec.RECORD;
+
+    @Test
+    public void decodesEveryRecordOfABatch() {
+        String batch = "toast" + F + F + "\"hi\"" + R
+                + "store" + F + "7" + F + "{\"op\":\"page\"}" + R
+                + "ping" + F + "8" + F + R;
+        List<String> seen = new ArrayList<>();
+        int count = BridgeCodec.decode(batch, new BridgeCodec.Message(), message ->
+                seen.add(message.channel() + "|" + (message.hasId() ? message.id() : "-") + "|" + message.payload()));
+        assertEquals(3, count);
+        assertEquals("toast|-|\"hi\"", seen.get(0));
+        assertEquals("store|7|{\"op\":\"page\"}", seen.get(1));
+        assertEquals("ping|8|", seen.get(2));
+    }
+
+    @Test
+    public void reusesOneMessageAndMatchesChannelsWithoutCopying() {
+        String batch = "a" + F + F + "1" + R + "bb" + F + F + "2" + R;
+        BridgeCodec.Message message = new BridgeCodec.Message();
+        List<BridgeCodec.Message> instances = new ArrayList<>();
+        BridgeCodec.decode(batch, message, m -> {
+            instances.add(m);
+            assertTrue(m.isChannel("a") || m.isChannel("bb"));
+            assertFalse(m.isChannel("b"));
+        });
+        assertSame(instances.get(0), instances.get(1));
+    }
+
+    @Test
+    public void skipsMalformedRecords() {
+        String batch = "nofields" + R + F + F + "{}" + R + "ok" + F + F + "{}";
+        List<String> seen = new ArrayList<>();
+        BridgeCodec.decode(batch, new BridgeCodec.Message(), m -> seen.add(m.channel()));
+        assertEquals(1, seen.size());
+        assertEquals("ok", seen.get(0));
+    }
+
+    @Test
+    public void encodesRecordsWithKind() {
+        StringBuilder out = new StringBuilder();
+        BridgeCodec.encode(out, BridgeCodec.KIND_RESPONSE, "store", "7", "[1,2]");
+        BridgeCodec.encode(out, BridgeCodec.KIND_EVENT, "net", null, null);
+        assertEquals("r" + F + "store" + F + "7" + F + "[1,2]" + R + "e" + F + "net" + F + F + R, out.toString());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsPayloadsContainingSeparators() {
+        BridgeCodec.encode(new StringBuilder(), BridgeCodec.KIND_EVENT, "x", null, "a" + R);
+    }
+
+    @Test
+    public void escapesJavaScriptStringLiterals() {
+        StringBuilder out = new StringBuilder();
+        BridgeCodec.appendJsString(out, "a\"b\\c\nd" + R + "\u2028");
+        assertEquals("\"a\\\"b\\\\c\\nd\\u001e\\u2028\"", out.toString());
+    }
+}
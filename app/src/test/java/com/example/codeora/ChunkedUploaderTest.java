@@ -0,0 +1,273 @@
+package com.example.codeora;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+/**
+ * Uploads through a local mock of the chunked upload endpoint and checks that the server
+ * reassembles exactly the original bytes, including after an interrupted first attempt.
+ */
+public class ChunkedUploaderTest {
+
+    private static final int CHUNK_SIZE = 64 * 1024;
+
+    private HttpServer server;
+    private String endpoint;
+    private ExecutorService workers;
+    private File file;
+    private byte[] content;
+    private final MemorySessions sessions = new MemorySessions();
+
+    // Server-side state, per upload id.
+    private final Map<String, Map<Integer, byte[]>> uploads = new ConcurrentHashMap<>();
+    private final Map<String, byte[]> completed = new ConcurrentHashMap<>();
+    private final AtomicInteger sessionsCreated = new AtomicInteger();
+    private final AtomicInteger chunkPuts = new AtomicInteger();
+    private final CopyOnWriteArrayList<String> ranges = new CopyOnWriteArrayList<>();
+    private volatile int rejectChunk = -1;
+    private final AtomicInteger transientFailures = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        content = new byte[CHUNK_SIZE * 5 + 1234];
+        new Random(7).nextBytes(content);
+        file = File.createTempFile("upload", ".bin");
+        Files.write(file.toPath(), content);
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newFixedThreadPool(4));
+        server.createContext("/api/upload", this::handle);
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/upload";
+        workers = Executors.newFixedThreadPool(ChunkedUploader.DEFAULT_PARALLELISM);
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        workers.shutdownNow();
+        file.delete();
+    }
+
+    @Test
+    public void uploadsFileInParallelChunks() throws IOException {
+        AtomicLong lastProgress = new AtomicLong();
+        ChunkedUploader.Result result;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            result = newUploader().upload(ChunkedUploader.fileSource(channel, channel.size()), "key",
+                    "clip.bin", "application/octet-stream", "session=abc",
+                    (uploaded, total) -> lastProgress.accumulateAndGet(uploaded, Math::max), () -> false);
+        }
+
+        assertArrayEquals(content, completed.get(result.uploadId));
+        assertEquals(6, result.chunks);
+        assertEquals(content.length, result.bytes);
+        assertEquals(content.length, lastProgress.get());
+        assertEquals(6, chunkPuts.get());
+        assertTrue(ranges.contains("bytes 327680-328913/328914"));
+        assertNull("Finished uploads forget their session", sessions.get("key"));
+    }
+
+    @Test
+    public void resumesOnlyMissingChunks() throws IOException {
+        rejectChunk = 4;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            try {
+                newUploader().upload(ChunkedUploader.fileSource(channel, channel.size()), "key",
+                        "clip.bin", null, null, null, () -> false);
+                fail("Expected chunk 4 to be rejected");
+            } catch (IOException expected) {
+                // The session survives for the next attempt.
+            }
+            assertNotNull(sessions.get("key"));
+            int putsBefore = chunkPuts.get();
+            int storedBefore = uploads.get(sessions.get("key")).size();
+
+            rejectChunk = -1;
+            ChunkedUploader.Result result = newUploader().upload(ChunkedUploader.fileSource(channel, channel.size()),
+                    "key", "clip.bin", null, null, null, () -> false);
+
+            assertArrayEquals(content, completed.get(result.uploadId));
+            assertEquals(1, sessionsCreated.get());
+            assertEquals(storedBefore, result.resumedChunks);
+            assertEquals(6 - storedBefore, chunkPuts.get() - putsBefore);
+        }
+    }
+
+    @Test
+    public void retriesTransientChunkFailures() throws IOException {
+        transientFailures.set(2);
+        ChunkedUploader.Result result;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            result = newUploader().upload(ChunkedUploader.fileSource(channel, channel.size()), "key",
+                    "clip.bin", null, null, null, () -> false);
+        }
+        assertArrayEquals(content, completed.get(result.uploadId));
+        assertEquals(8, chunkPuts.get());
+    }
+
+    @Test
+    public void streamsSourceOfUnknownSize() throws IOException {
+        ReadableByteChannel pipe = Channels.newChannel(new ByteArrayInputStream(content));
+        ChunkedUploader.Source source = new ChunkedUploader.Source() {
+            @Override
+            public long size() {
+                return -1;
+            }
+
+            @Override
+            public boolean isSeekable() {
+                return false;
+            }
+
+            @Override
+            public int read(ByteBuffer dst, long position) throws IOException {
+                return pipe.read(dst);
+            }
+        };
+
+        ChunkedUploader.Result result = newUploader().upload(source, "pipe", "clip.bin", null, null, null, () -> false);
+
+        assertArrayEquals(content, completed.get(result.uploadId));
+        assertEquals(6, result.chunks);
+        assertEquals(content.length, result.bytes);
+    }
+
+    @Test
+    public void startsOverWhenSessionExpired() throws IOException {
+        sessions.put("key", "expired");
+        ChunkedUploader.Result result;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            result = newUploader().upload(ChunkedUploader.fileSource(channel, channel.size()), "key",
+                    "clip.bin", null, null, null, () -> false);
+        }
+        assertNotEquals("expired", result.uploadId);
+        assertArrayEquals(content, completed.get(result.uploadId));
+    }
+
+    private ChunkedUploader newUploader() {
+        RetryPolicy policy = new RetryPolicy(1, 5, 4, 0, 0.2, 6, new Random());
+        return new ChunkedUploader(endpoint, CHUNK_SIZE, ChunkedUploader.DEFAULT_PARALLELISM, 5000,
+                policy, sessions, workers);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        String[] path = exchange.getRequestURI().getPath().substring("/api/upload".length()).split("/");
+        String method = exchange.getRequestMethod();
+        byte[] body = readAll(exchange.getRequestBody());
+        if (path.length <= 1 && "POST".equals(method)) {
+            String id = "u" + sessionsCreated.incrementAndGet();
+            uploads.put(id, new ConcurrentHashMap<>());
+            respond(exchange, 201, "{\"uploadId\":\"" + id + "\"}");
+            return;
+        }
+        Map<Integer, byte[]> chunks = path.length > 1 ? uploads.get(path[1]) : null;
+        if (chunks == null) {
+            respond(exchange, 404, "{}");
+        } else if (path.length == 2 && "GET".equals(method)) {
+            StringBuilder json = new StringBuilder("{\"received\":[");
+            for (Integer index : chunks.keySet()) {
+                json.append(json.charAt(json.length() - 1) == '[' ? "" : ",").append(index);
+            }
+            respond(exchange, 200, json.append("]}").toString());
+        } else if (path.length == 4 && "PUT".equals(method)) {
+            int index = Integer.parseInt(path[3]);
+            chunkPuts.incrementAndGet();
+            ranges.add(exchange.getRequestHeaders().getFirst("Content-Range"));
+            if (index == rejectChunk) {
+                respond(exchange, 400, "{}");
+            } else if (transientFailures.getAndDecrement() > 0) {
+                respond(exchange, 503, "{}");
+            } else {
+                chunks.put(index, body);
+                respond(exchange, 204, null);
+            }
+        } else if (path.length == 3 && "complete".equals(path[2])) {
+            ByteArrayOutputStream assembled = new ByteArrayOutputStream();
+            for (int i = 0; i < chunks.size(); i++) {
+                assembled.write(chunks.get(i));
+            }
+            completed.put(path[1], assembled.toByteArray());
+            respond(exchange, 200, "{\"url\":\"/files/" + path[1] + "\"}");
+        } else {
+            respond(exchange, 405, "{}");
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String json) throws IOException {
+        if (json == null) {
+            exchange.sendResponseHeaders(status, -1);
+            exchange.close();
+            return;
+        }
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[8192];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static class MemorySessions implements ChunkedUploader.SessionStore {
+        private final Map<String, String> ids = new HashMap<>();
+
+        @Override
+        public synchronized String get(String key) {
+            return ids.get(key);
+        }
+
+        @Override
+        public synchronized void put(String key, String uploadId) {
+            ids.put(key, uploadId);
+        }
+
+        @Override
+        public synchronized void remove(String key) {
+            ids.remove(key);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.codeora;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Pages through an in-memory conversation and checks ordering, the prefetch window and how
+ * load failures reach the reader.
+ */
+public class HistoryPagerTest {
+
+    private static final int MESSAGES = 50_000;
+
+    private ExecutorService executor;
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(2);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // Newest first: message i has timestamp i, so cursors count down.
+    private HistoryPager.Source source(int count, long delayMillis) {
+        return (before, limit) -> {
+            loads.incrementAndGet();
+            if (delayMillis > 0) {
+                Thread.sleep(delayMillis);
+            }
+            int start = before == null ? count - 1 : Integer.parseInt(before) - 1;
+            List<ChatMessage> messages = new ArrayList<>(limit);
+            for (int i = start; i >= 0 && messages.size() < limit; i--) {
+                messages.add(new ChatMessage("c", "m" + i, i, "s", "body " + i, null));
+            }
+            long last = messages.isEmpty() ? 0 : messages.get(messages.size() - 1).timestamp;
+            return new HistoryPager.Page(messages, last > 0 ? Long.toString(last) : null);
+        };
+    }
+
+    @Test
+    public void walksWholeThreadNewestFirst() throws Exception {
+        HistoryPager pager = new HistoryPager(source(MESSAGES, 0), 200, 2, executor);
+        long expected = MESSAGES - 1;
+        HistoryPager.Page page;
+        while ((page = pager.next(5000)) != null) {
+            for (ChatMessage message : page.messages) {
+                assertEquals(expected--, message.timestamp);
+            }
+        }
+        assertEquals(-1, expected);
+        assertFalse(pager.hasMore());
+        assertEquals(MESSAGES / 200, pager.stats().pages);
+    }
+
+    @Test
+    public void keepsPagesLoadedAheadOfTheReader() throws Exception {
+        HistoryPager pager = new HistoryPager(source(MESSAGES, 20), 100, 2, executor);
+        assertNotNull(pager.next(5000));
+        // The reader is slower than the source, so every later page is already there.
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(100);
+            assertNotNull(pager.next(5000));
+        }
+        HistoryPager.Stats stats = pager.stats();
+        assertEquals(6, stats.pages);
+        assertEquals(5, stats.prefetchHits);
+        // Never more than the window ahead of what was read.
+        Thread.sleep(100);
+        assertTrue(loads.get() <= 6 + 2);
+    }
+
+    @Test
+    public void resumesBelowACursorAndAfterDroppingPrefetch() throws Exception {
+        HistoryPager pager = new HistoryPager(source(1000, 0), 100, 3, executor, "500");
+        assertEquals(499, pager.next(5000).messages.get(0).timestamp);
+        Thread.sleep(100);
+        pager.dropPrefetched();
+        // Nothing read is lost and nothing is skipped.
+        assertEquals(399, pager.next(5000).messages.get(0).timestamp);
+        assertEquals(299, pager.next(5000).messages.get(0).timestamp);
+    }
+
+    @Test
+    public void failureReachesTheReaderAndPagingResumes() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        HistoryPager.Source flaky = (before, limit) -> {
+            if (calls.incrementAndGet() == 2) {
+                throw new IllegalStateException("disk busy");
+            }
+            return source(1000, 0).load(before, limit);
+        };
+        HistoryPager pager = new HistoryPager(flaky, 100, 1, executor);
+        assertEquals(999, pager.next(5000).messages.get(0).timestamp);
+        try {
+            pager.next(5000);
+            fail();
+        } catch (IllegalStateException expected) {
+            assertEquals("disk busy", expected.getMessage());
+        }
+        assertEquals(899, pager.next(5000).messages.get(0).timestamp);
+    }
+
+    @Test
+    public void timesOutAndUnblocksOnClose() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        HistoryPager pager = new HistoryPager((before, limit) -> {
+            release.await();
+            return new HistoryPager.Page(new ArrayList<>(), null);
+        }, 100, 1, executor);
+        try {
+            pager.next(50);
+            fail();
+        } catch (TimeoutException expected) {
+        }
+        CountDownLatch returned = new CountDownLatch(1);
+        new Thread(() -> {
+            try {
+                pager.next(10000);
+            } catch (Exception ignored) {
+            }
+            returned.countDown();
+        }).start();
+        Thread.sleep(50);
+        pager.close();
+        assertTrue(returned.await(1, TimeUnit.SECONDS));
+        release.countDown();
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.codeora;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the image pipeline with a counting fetcher and a transcoder that tags its output with
+ * the requested size, so each tier and the request sharing can be observed.
+ */
+public class ImagePipelineTest {
+
+    private static final String PHOTO = "https://cdn.example.com/u/photo.jpg";
+
+    private File directory;
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicInteger transcodes = new AtomicInteger();
+    private volatile CountDownLatch fetchGate;
+    private volatile boolean failFetch;
+    private volatile long maxAgeMillis = ImagePipeline.DEFAULT_MAX_AGE_MILLIS;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("images").toFile();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = directory.listFiles();
+        for (int i = 0; files != null && i < files.length; i++) {
+            files[i].delete();
+        }
+        directory.delete();
+    }
+
+    private ImagePipeline pipeline(long memoryBytes) {
+        return new ImagePipeline(new WebCache(directory, 1024 * 1024), memoryBytes, url -> {
+            if (fetchGate != null) {
+                try {
+                    fetchGate.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (failFetch) {
+                throw new IOException("offline");
+            }
+            fetches.incrementAndGet();
+            return new ImagePipeline.Image("image/jpeg", new byte[4096], maxAgeMillis);
+        }, (original, maxDimension) -> {
+            transcodes.incrementAndGet();
+            if (maxDimension >= 4096) {
+                return null;
+            }
+            return new ImagePipeline.Image("image/webp", ("webp@" + maxDimension).getBytes(StandardCharsets.UTF_8));
+        });
+    }
+
+    @Test
+    public void servesFromMemoryThenDiskThenNetwork() throws IOException {
+        ImagePipeline images = pipeline(64 * 1024);
+        ImagePipeline.Image first = images.load(PHOTO, 512);
+        assertEquals("image/webp", first.mimeType);
+        assertEquals("webp@512", new String(first.bytes, StandardCharsets.UTF_8));
+        assertSame(first, images.load(PHOTO, 512));
+        assertEquals(1, fetches.get());
+
+        // Another size of the same photo is its own thumbnail.
+        assertEquals("webp@1024", new String(images.load(PHOTO, 1024).bytes, StandardCharsets.UTF_8));
+        assertEquals(2, fetches.get());
+
+        // A new process starts with an empty memory tier but the same disk.
+        ImagePipeline restarted = pipeline(64 * 1024);
+        assertEquals("webp@512", new String(restarted.load(PHOTO, 512).bytes, StandardCharsets.UTF_8));
+        assertEquals(2, fetches.get());
+        assertEquals(1, restarted.stats().diskHits);
+
+        ImagePipeline.Stats stats = images.stats();
+        assertEquals(3, stats.requests);
+        assertEquals(1, stats.memoryHits);
+        assertEquals(1.0 / 3, stats.hitRatio(), 1e-9);
+    }
+
+    @Test
+    public void sharesOneFetchBetweenConcurrentRequests() throws Exception {
+        ImagePipeline images = pipeline(64 * 1024);
+        fetchGate = new CountDownLatch(1);
+        ExecutorService threads = Executors.newFixedThreadPool(6);
+        try {
+            Future<?>[] loads = new Future<?>[6];
+            for (int i = 0; i < loads.length; i++) {
+                int size = i % 2 == 0 ? 256 : 512;
+                loads[i] = threads.submit(() -> images.load(PHOTO, size));
+            }
+            while (images.stats().joined < 5) {
+                Thread.sleep(5);
+            }
+            fetchGate.countDown();
+            for (Future<?> load : loads) {
+                load.get(5, TimeUnit.SECONDS);
+            }
+        } finally {
+            threads.shutdownNow();
+        }
+        assertEquals(1, fetches.get());
+        assertEquals(2, transcodes.get());
+    }
+
+    @Test
+    public void keepsOriginalsTheTranscoderDeclines() throws IOException {
+        ImagePipeline images = pipeline(64 * 1024);
+        ImagePipeline.Image image = images.load(PHOTO, 4096);
+        assertEquals("image/jpeg", image.mimeType);
+        assertEquals(4096, image.bytes.length);
+    }
+
+    @Test
+    public void trimsMemoryAndRecoversFromFailures() throws IOException {
+        ImagePipeline images = pipeline(64 * 1024);
+        failFetch = true;
+        try {
+            images.load(PHOTO, 512);
+            fail();
+        } catch (IOException expected) {
+            assertEquals(1, images.stats().failures);
+        }
+        failFetch = false;
+        images.load(PHOTO, 512);
+        images.load("https://cdn.example.com/u/other.png", 512);
+        assertTrue(images.stats().memoryBytes > 0);
+
+        images.trimMemory(0);
+        assertEquals(0, images.stats().memoryBytes);
+        images.load(PHOTO, 512);
+        assertEquals(1, images.stats().diskHits);
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    public void followsCacheControl() {
+        assertEquals(ImagePipeline.DEFAULT_MAX_AGE_MILLIS, ImagePipeline.maxAgeOf(null));
+        assertEquals(ImagePipeline.DEFAULT_MAX_AGE_MILLIS, ImagePipeline.maxAgeOf("private"));
+        assertEquals(60_000, ImagePipeline.maxAgeOf("private, max-age=60"));
+        assertEquals(0, ImagePipeline.maxAgeOf("max-age=60, no-store"));
+        assertEquals(0, ImagePipeline.maxAgeOf("No-Cache"));
+    }
+
+    @Test
+    public void neverStoresNoStoreImages() throws IOException {
+        maxAgeMillis = 0;
+        ImagePipeline images = pipeline(64 * 1024);
+        assertEquals("webp@512", new String(images.load(PHOTO, 512).bytes, StandardCharsets.UTF_8));
+        assertEquals(0, images.load(PHOTO, 512).maxAgeMillis);
+        assertEquals(2, fetches.get());
+        assertEquals(0, images.stats().memoryBytes);
+        assertEquals(0, directory.listFiles().length);
+    }
+
+    @Test
+    public void dropsExpiredAndClearedThumbnails() throws Exception {
+        maxAgeMillis = 50;
+        ImagePipeline images = pipeline(64 * 1024);
+        images.load(PHOTO, 512);
+        Thread.sleep(80);
+        images.load(PHOTO, 512);
+        assertEquals(2, fetches.get());
+        assertEquals(0, images.stats().diskHits);
+
+        maxAgeMillis = ImagePipeline.DEFAULT_MAX_AGE_MILLIS;
+        images.load(PHOTO, 256);
+        assertEquals(3, fetches.get());
+        images.clear();
+        assertEquals(0, images.stats().memoryBytes);
+        ImagePipeline restarted = pipeline(64 * 1024);
+        restarted.load(PHOTO, 256);
+        assertEquals(0, restarted.stats().diskHits);
+        assertEquals(4, fetches.get());
+    }
+}
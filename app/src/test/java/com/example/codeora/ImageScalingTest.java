@@ -0,0 +1,45 @@
+package com.example.codeora;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ImageScalingTest {
+
+    @Test
+    public void sampleSizeKeepsDecodeAboveTarget() {
+        assertEquals(1, ImageScaling.sampleSizeFor(1920, 1080, 2048));
+        assertEquals(1, ImageScaling.sampleSizeFor(4000, 3000, 2048));
+        assertEquals(2, ImageScaling.sampleSizeFor(4096, 3072, 2048));
+        assertEquals(4, ImageScaling.sampleSizeFor(3000, 9000, 2048));
+    }
+
+    @Test
+    public void targetSizeFitsLongestEdgeAndKeepsAspect() {
+        assertArrayEquals(new int[]{2048, 1536}, ImageScaling.targetSize(4000, 3000, 2048));
+        assertArrayEquals(new int[]{1152, 2048}, ImageScaling.targetSize(2250, 4000, 2048));
+        assertArrayEquals(new int[]{800, 600}, ImageScaling.targetSize(800, 600, 2048));
+        assertArrayEquals(new int[]{1, 2048}, ImageScaling.targetSize(1, 10000, 2048));
+    }
+
+    @Test
+    public void exifOrientationMapsToRotationAndMirror() {
+        assertEquals(0, ImageScaling.rotationDegrees(1));
+        assertEquals(90, ImageScaling.rotationDegrees(6));
+        assertEquals(180, ImageScaling.rotationDegrees(3));
+        assertEquals(270, ImageScaling.rotationDegrees(8));
+        assertFalse(ImageScaling.isMirrored(6));
+        assertTrue(ImageScaling.isMirrored(7));
+    }
+
+    @Test
+    public void transposeAndTransverseRotateBeforeMirroring() {
+        // 5 swaps the axes (x, y) -> (y, x); 7 flips across the other diagonal, (x, y) -> (-y, -x).
+        assertArrayEquals(new int[]{0, 1, 1, 0}, ImageScaling.orientationTransform(5));
+        assertArrayEquals(new int[]{0, -1, -1, 0}, ImageScaling.orientationTransform(7));
+        assertArrayEquals(new int[]{0, -1, 1, 0}, ImageScaling.orientationTransform(6));
+        assertArrayEquals(new int[]{-1, 0, 0, 1}, ImageScaling.orientationTransform(2));
+        assertArrayEquals(new int[]{1, 0, 0, -1}, ImageScaling.orientationTransform(4));
+        assertArrayEquals(new int[]{1, 0, 0, 1}, ImageScaling.orientationTransform(1));
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.codeora;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how links reported from the page are ranked for mayLaunchUrl.
+ */
+public class LinkPredictorTest {
+
+    private static LinkPredictor.Candidate link(String url, double ratio, long dwellMillis, double position) {
+        return new LinkPredictor.Candidate(url, ratio, dwellMillis, position, false);
+    }
+
+    @Test
+    public void ranksVisibleLongLivedLowerLinksFirst() {
+        LinkPredictor predictor = new LinkPredictor(2);
+        LinkPredictor.Prediction prediction = predictor.update(Arrays.asList(
+                link("https://a.example/", 1, 100, 0.1),
+                link("https://b.example/", 1, 1800, 0.9),
+                link("https://c.example/", 0.6, 800, 0.5),
+                link("https://hidden.example/", 0.2, 5000, 0.9)));
+        assertEquals("https://b.example/", prediction.likely);
+        assertEquals(Arrays.asList("https://c.example/", "https://a.example/"), prediction.others);
+    }
+
+    @Test
+    public void touchedLinkWinsAndUnchangedRankingIsNotRepeated() {
+        LinkPredictor predictor = new LinkPredictor(1);
+        assertNotNull(predictor.update(Collections.singletonList(link("https://a.example/", 1, 2000, 1))));
+        assertNull(predictor.update(Collections.singletonList(link("https://a.example/", 1, 2500, 1))));
+
+        LinkPredictor.Prediction prediction = predictor.update(Arrays.asList(
+                link("https://a.example/", 1, 2000, 1),
+                new LinkPredictor.Candidate("https://b.example/", 0.1, 0, 0, true)));
+        assertEquals("https://b.example/", prediction.likely);
+        assertTrue(predictor.wasPredicted("https://a.example/"));
+        assertFalse(predictor.wasPredicted("https://z.example/"));
+    }
+
+    @Test
+    public void ranksOnlyWebLinks() {
+        LinkPredictor predictor = new LinkPredictor(3);
+        LinkPredictor.Prediction prediction = predictor.update(Arrays.asList(
+                new LinkPredictor.Candidate("intent://scan/#Intent;scheme=zxing;end", 1, 2000, 1, true),
+                link("javascript:alert(1)", 1, 2000, 1),
+                link("file:///sdcard/a.html", 1, 2000, 1),
+                link("HTTPS://a.example/", 1, 100, 0.1),
+                link("http://b.example/", 1, 100, 0.1)));
+        assertEquals("HTTPS://a.example/", prediction.likely);
+        assertEquals(Collections.singletonList("http://b.example/"), prediction.others);
+        assertNull(predictor.update(Collections.singletonList(link("content://media/1", 1, 2000, 1))));
+    }
+
+    @Test
+    public void previouslyOpenedHostsRankHigher() {
+        LinkPredictor predictor = new LinkPredictor(1);
+        predictor.onOpened("https://news.example/earlier");
+        predictor.onOpened("https://news.example/other");
+        LinkPredictor.Prediction prediction = predictor.update(Arrays.asList(
+                link("https://shop.example/", 1, 1000, 0.8),
+                link("https://news.example/today", 1, 1000, 0.5)));
+        assertEquals("https://news.example/today", prediction.likely);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.codeora;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks how the compiled rules route the links a chat page produces.
+ */
+public class NavigationRouterTest {
+
+    private static final String ORIGIN = "https://chat.example.com/";
+
+    private static NavigationRouter router() {
+        return new NavigationRouter.Builder()
+                .webView("chat", ORIGIN)
+                .rule("docs", NavigationRouter.Target.WEBVIEW, null, "https", "*.example.org", "/docs/.*")
+                .handler("dial", "dial", "tel", null, null)
+                .handler("store", "store", "https", "play.google.com", "/store/apps/details")
+                .build(ORIGIN);
+    }
+
+    @Test
+    public void sameOriginStaysInWebViewAndExternalGoesToCustomTab() {
+        NavigationRouter router = router();
+        assertEquals("chat", router.route("https://chat.example.com/c/42?x=1").name);
+        assertEquals(NavigationRouter.Target.WEBVIEW, router.route("https://CHAT.example.com/").target);
+        assertEquals(NavigationRouter.Target.CUSTOM_TAB, router.route("https://news.example.net/story").target);
+        assertEquals(NavigationRouter.Target.CUSTOM_TAB, router.route("https://chat.example.com.evil.io/").target);
+        assertEquals(NavigationRouter.Target.CUSTOM_TAB, router.route("https://example.net/a b").target);
+    }
+
+    @Test
+    public void wildcardHostsAndPathsMatch() {
+        NavigationRouter router = router();
+        assertEquals("docs", router.route("https://www.example.org/docs/intro").name);
+        assertEquals("docs", router.route("https://example.org/docs/").name);
+        assertEquals("external", router.route("https://www.example.org/blog").name);
+        assertEquals("external", router.route("https://badexample.org/docs/x").name);
+    }
+
+    @Test
+    public void schemesGoToHandlers() {
+        NavigationRouter router = router();
+        NavigationRouter.Route dial = router.route("tel:+15551234");
+        assertEquals(NavigationRouter.Target.HANDLER, dial.target);
+        assertEquals("dial", dial.handler);
+        assertEquals("store", router.route("https://play.google.com/store/apps/details?id=com.example").handler);
+        assertEquals("external", router.route("https://play.google.com/store/books").name);
+        assertEquals("view", router.route("geo:0,0?q=cafe").handler);
+    }
+
+    @Test
+    public void claimedPathsGoToThePage() {
+        NavigationRouter router = router();
+        router.setPagePaths(Arrays.asList("/c/", "/settings"));
+        assertSame(NavigationRouter.PAGE, router.route("https://chat.example.com/c/42"));
+        assertSame(NavigationRouter.PAGE, router.route("https://chat.example.com/settings/profile"));
+        assertEquals("chat", router.route("https://chat.example.com/login").name);
+        // Only the chat's own origin
+        assertEquals("external", router.route("https://other.example.com/c/42").name);
+        router.setPagePaths(Collections.<String>emptyList());
+        assertEquals("chat", router.route("https://chat.example.com/c/42").name);
+    }
+
+    @Test
+    public void recordsLatencyPerRoute() throws Exception {
+        NavigationRouter router = router();
+        router.recordLatency(router.route("https://chat.example.com/"), 120);
+        router.recordLatency(router.route("https://chat.example.com/c/1"), 80);
+        router.recordLatency(router.route("https://elsewhere.net/"), 30);
+        JSONObject stats = router.stats();
+        assertEquals(2, stats.getJSONObject("chat").getInt("count"));
+        assertEquals(1, stats.getJSONObject("external").getInt("count"));
+    }
+}
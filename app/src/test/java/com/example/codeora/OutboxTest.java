@@ -0,0 +1,320 @@
+package com.example.codeora;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Drives the outbox and its log against an in-memory server that can be taken offline.
+ */
+public class OutboxTest {
+
+    private File file;
+    private ExecutorService executor;
+    private final FakeServer server = new FakeServer();
+
+    @Before
+    public void setUp() throws IOException {
+        file = new File(Files.createTempDirectory("outbox").toFile(), "log");
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void queuedMessagesSurviveReopenAndDrainOnce() throws Exception {
+        server.online.set(false);
+        Outbox outbox = open();
+        for (int i = 0; i < 5; i++) {
+            assertTrue(outbox.enqueue("m" + i, "c1", payload(i)));
+        }
+        assertFalse(outbox.awaitIdle(5000));
+        assertEquals(5, outbox.depth());
+
+        // The process dies; the next one picks the queue up from disk.
+        server.online.set(true);
+        Outbox reopened = open();
+        assertEquals(5, reopened.depth());
+        reopened.drain();
+        assertTrue(reopened.awaitIdle(5000));
+        assertEquals(listOf("m0", "m1", "m2", "m3", "m4"), server.received("c1"));
+
+        assertEquals(0, open().depth());
+    }
+
+    @Test
+    public void duplicateClientIdsAreDropped() throws Exception {
+        Outbox outbox = open();
+        assertTrue(outbox.enqueue("m1", "c1", payload(1)));
+        assertFalse(outbox.enqueue("m1", "c1", payload(1)));
+        assertTrue(outbox.awaitIdle(5000));
+        assertFalse(outbox.enqueue("m1", "c1", payload(1)));
+        assertFalse(open().enqueue("m1", "c1", payload(1)));
+        assertEquals(1, server.total.get());
+        assertEquals(2, outbox.stats().getInt("duplicates"));
+    }
+
+    @Test
+    public void keepsPerConversationOrderWhilePipelining() throws Exception {
+        server.online.set(false);
+        Outbox outbox = open();
+        for (int i = 0; i < 400; i++) {
+            outbox.enqueue("m" + i, "c" + (i % 4), payload(i));
+        }
+        outbox.awaitIdle(5000);
+        server.online.set(true);
+        server.delayMillis = 5;
+        outbox.drain();
+        assertTrue(outbox.awaitIdle(10000));
+
+        for (int c = 0; c < 4; c++) {
+            List<String> expected = new ArrayList<>();
+            for (int i = c; i < 400; i += 4) {
+                expected.add("m" + i);
+            }
+            assertEquals(expected, server.received("c" + c));
+        }
+        assertTrue("batches overlapped", server.maxConcurrent.get() > 1);
+        JSONObject stats = outbox.stats();
+        assertEquals(400, stats.getInt("delivered"));
+        assertEquals(0, stats.getInt("depth"));
+        assertTrue(stats.getDouble("lastDrainPerSecond") > 0);
+    }
+
+    @Test
+    public void stallsOnlyTheConversationThatFailed() throws Exception {
+        server.rejecting.add("m1");
+        Outbox outbox = open();
+        outbox.enqueue("m1", "c1", payload(1));
+        outbox.enqueue("m2", "c2", payload(2));
+        assertFalse(outbox.awaitIdle(5000));
+        outbox.enqueue("m3", "c1", payload(3));
+        outbox.enqueue("m4", "c2", payload(4));
+        assertFalse(outbox.awaitIdle(5000));
+
+        // c1 waits behind its rejected message; c2 is not held up by it.
+        assertEquals(listOf("m2", "m4"), server.received("c2"));
+        assertEquals(Collections.<String>emptyList(), server.received("c1"));
+        assertEquals(1, outbox.stats().getInt("stalled"));
+
+        server.rejecting.clear();
+        outbox.drain();
+        assertTrue(outbox.awaitIdle(5000));
+        assertEquals(listOf("m1", "m3"), server.received("c1"));
+        assertEquals(0, outbox.stats().getInt("stalled"));
+    }
+
+    @Test
+    public void dropsAndReportsMessagesRejectedTooOften() throws Exception {
+        Outbox outbox = open();
+        List<String> dropped = Collections.synchronizedList(new ArrayList<>());
+        CountDownLatch reported = new CountDownLatch(1);
+        outbox.setListener(new Outbox.Listener() {
+            @Override
+            public void onDelivered(List<String> clientIds) {
+            }
+
+            @Override
+            public void onStalled(int consecutiveFailures) {
+            }
+
+            @Override
+            public void onDropped(List<String> clientIds) {
+                dropped.addAll(clientIds);
+                reported.countDown();
+            }
+        });
+        // Failed requests are not rejections.
+        server.online.set(false);
+        outbox.enqueue("m1", "c1", payload(1));
+        for (int i = 0; i < Outbox.MAX_REJECTIONS + 1; i++) {
+            outbox.drain();
+            outbox.awaitIdle(5000);
+        }
+        assertEquals(1, outbox.depth());
+
+        server.online.set(true);
+        server.rejecting.add("m1");
+        outbox.enqueue("m2", "c1", payload(2));
+        for (int i = 0; i < Outbox.MAX_REJECTIONS; i++) {
+            outbox.drain();
+            outbox.awaitIdle(5000);
+        }
+        assertTrue(outbox.awaitIdle(5000));
+        // Listeners are told after the outbox lets go of its lock.
+        assertTrue(reported.await(5, TimeUnit.SECONDS));
+        assertEquals(listOf("m1"), dropped);
+        assertEquals(listOf("m2"), server.received("c1"));
+        assertEquals(1, outbox.stats().getInt("dropped"));
+
+        // Gone after a restart too, and the page may send it again.
+        Outbox reopened = open();
+        assertEquals(0, reopened.depth());
+        server.rejecting.clear();
+        assertTrue(reopened.enqueue("m1", "c1", payload(1)));
+        assertTrue(reopened.awaitIdle(5000));
+        assertEquals(listOf("m2", "m1"), server.received("c1"));
+    }
+
+    @Test
+    public void concurrentAppendsShareSyncs() throws Exception {
+        server.online.set(false);
+        OutboxLog log = new OutboxLog(file);
+        Outbox outbox = new Outbox(log, server, executor, 50, 1, System::currentTimeMillis);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            int thread = t;
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 50; i++) {
+                    try {
+                        outbox.enqueue("t" + thread + "-" + i, "c" + thread, payload(i));
+                    } catch (IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(400, log.appends());
+        assertTrue("syncs " + log.syncs(), log.syncs() < 400);
+        log.close();
+        assertEquals(400, open().depth());
+    }
+
+    @Test
+    public void tornTailIsDiscarded() throws Exception {
+        server.online.set(false);
+        Outbox outbox = open();
+        outbox.enqueue("m1", "c1", payload(1));
+        outbox.enqueue("m2", "c1", payload(2));
+        outbox.awaitIdle(5000);
+        long size = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(size - 3);
+        }
+        Outbox reopened = open();
+        assertEquals(1, reopened.depth());
+        assertTrue(reopened.enqueue("m3", "c1", payload(3)));
+        server.online.set(true);
+        reopened.drain();
+        assertTrue(reopened.awaitIdle(5000));
+        assertEquals(listOf("m1", "m3"), server.received("c1"));
+    }
+
+    @Test
+    public void compactionKeepsPendingAndDedupe() throws Exception {
+        Outbox outbox = open();
+        for (int i = 0; i < 600; i++) {
+            outbox.enqueue("m" + i, "c1", payload(i));
+        }
+        assertTrue(outbox.awaitIdle(10000));
+        long compacted = file.length();
+        assertEquals(0, open().depth());
+        assertFalse(open().enqueue("m599", "c1", payload(599)));
+        assertTrue("log was compacted: " + compacted, compacted < 600 * 60);
+    }
+
+    private Outbox open() throws IOException {
+        return new Outbox(new OutboxLog(file), server, executor, 16, 3, System::currentTimeMillis);
+    }
+
+    private static JSONObject payload(int i) {
+        try {
+            return new JSONObject().put("text", "message " + i);
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static List<String> listOf(String... ids) {
+        List<String> list = new ArrayList<>();
+        Collections.addAll(list, ids);
+        return list;
+    }
+
+    // Accepts everything when online and keeps what arrived per conversation, ignoring client
+    // IDs it has seen, the way the backend does.
+    private static class FakeServer implements Outbox.Sender {
+        final AtomicBoolean online = new AtomicBoolean(true);
+        // Answered for but never taken.
+        final Set<String> rejecting = ConcurrentHashMap.newKeySet();
+        final AtomicInteger total = new AtomicInteger();
+        final AtomicInteger concurrent = new AtomicInteger();
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        volatile long delayMillis;
+        private final Map<String, List<String>> byConversation = new HashMap<>();
+        private final Set<String> seen = new HashSet<>();
+
+        @Override
+        public Set<String> send(List<Outbox.Entry> batch) throws IOException {
+            if (!online.get()) {
+                throw new IOException("offline");
+            }
+            int now = concurrent.incrementAndGet();
+            maxConcurrent.accumulateAndGet(now, Math::max);
+            try {
+                if (delayMillis > 0) {
+                    Thread.sleep(delayMillis);
+                }
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            } finally {
+                concurrent.decrementAndGet();
+            }
+            Set<String> accepted = new HashSet<>();
+            synchronized (this) {
+                for (Outbox.Entry entry : batch) {
+                    if (rejecting.contains(entry.clientId)) {
+                        continue;
+                    }
+                    if (seen.add(entry.clientId)) {
+                        total.incrementAndGet();
+                        List<String> list = byConversation.get(entry.conversationId);
+                        if (list == null) {
+                            list = new ArrayList<>();
+                            byConversation.put(entry.conversationId, list);
+                        }
+                        list.add(entry.clientId);
+                    }
+                    accepted.add(entry.clientId);
+                }
+            }
+            return accepted;
+        }
+
+        synchronized List<String> received(String conversationId) {
+            List<String> list = byConversation.get(conversationId);
+            return list == null ? Collections.<String>emptyList() : new ArrayList<>(list);
+        }
+    }
+}
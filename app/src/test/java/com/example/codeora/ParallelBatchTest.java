@@ -0,0 +1,62 @@
+package com.example.codeora;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ParallelBatchTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void keepsInputOrder() throws InterruptedException {
+        List<ParallelBatch.Outcome<String>> outcomes = ParallelBatch.run(Arrays.asList(30, 0, 10),
+                delay -> {
+                    Thread.sleep(delay);
+                    return "item" + delay;
+                }, executor);
+
+        assertEquals("item30", outcomes.get(0).value);
+        assertEquals("item0", outcomes.get(1).value);
+        assertEquals("item10", outcomes.get(2).value);
+        assertTrue(outcomes.get(0).runMillis >= 30);
+    }
+
+    @Test
+    public void runsItemsConcurrently() throws InterruptedException {
+        // Each task waits for all three to start, which only works if they run in parallel.
+        CountDownLatch started = new CountDownLatch(3);
+        List<ParallelBatch.Outcome<Boolean>> outcomes = ParallelBatch.run(Arrays.asList(1, 2, 3), input -> {
+            started.countDown();
+            return started.await(2, TimeUnit.SECONDS);
+        }, executor);
+
+        for (ParallelBatch.Outcome<Boolean> outcome : outcomes) {
+            assertTrue(outcome.value);
+        }
+    }
+
+    @Test
+    public void failuresStayWithTheirItem() throws InterruptedException {
+        List<ParallelBatch.Outcome<Integer>> outcomes = ParallelBatch.run(Arrays.asList(1, 0, 2),
+                input -> 10 / input, executor);
+
+        assertEquals(Integer.valueOf(10), outcomes.get(0).value);
+        assertTrue(outcomes.get(1).error instanceof ArithmeticException);
+        assertNull(outcomes.get(1).value);
+        assertEquals(Integer.valueOf(5), outcomes.get(2).value);
+    }
+}
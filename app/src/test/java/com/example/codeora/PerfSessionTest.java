@@ -0,0 +1,69 @@
+package com.example.codeora;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the HUD's percentiles and dropped-frame accounting against known distributions.
+ */
+public class PerfSessionTest {
+
+    private static final double DELTA = 0.26;
+
+    @Test
+    public void percentilesOfAUniformDistribution() {
+        FrameStats stats = new FrameStats(16.67);
+        for (int i = 1; i <= 100; i++) {
+            stats.record(i);
+        }
+        assertEquals(50, stats.percentile(0.50), DELTA);
+        assertEquals(95, stats.percentile(0.95), DELTA);
+        assertEquals(99, stats.percentile(0.99), DELTA);
+        assertEquals(100, stats.percentile(1.0), DELTA);
+        assertEquals(0, new FrameStats(16.67).percentile(0.5), 0);
+    }
+
+    @Test
+    public void countsDroppedAndJankyFrames() {
+        FrameStats stats = new FrameStats(16.67);
+        for (int i = 0; i < 90; i++) {
+            stats.record(16);
+        }
+        // One frame that spanned three vsyncs and one that just missed its deadline.
+        stats.record(50);
+        stats.record(20);
+        assertEquals(92, stats.count());
+        assertEquals(2, stats.dropped());
+        assertEquals(1, stats.janky());
+        // Outliers past the histogram still report their real value.
+        stats.record(2500);
+        assertEquals(2500, stats.percentile(1.0), 0);
+        assertEquals(2500, stats.max(), 0);
+    }
+
+    @Test
+    public void sessionExportsEverySeries() throws Exception {
+        PerfSession session = new PerfSession(1000, 120);
+        assertEquals(8.33, session.frameIntervalMillis, 0.01);
+        session.nativeFrames.record(8);
+        session.nativeFrames.record(25);
+        session.rafIntervals.record(8.3);
+        session.longTasks.record(120);
+        session.recordJsHeap(10 * 1024 * 1024, 20 * 1024 * 1024);
+        session.recordJsHeap(8 * 1024 * 1024, 20 * 1024 * 1024);
+        session.recordAppPss(150_000);
+        session.end(61_000);
+
+        JSONObject json = session.toJson();
+        assertEquals(60_000, json.getLong("durationMs"));
+        assertEquals(2, json.getJSONObject("nativeFrames").getLong("count"));
+        assertEquals(2, json.getJSONObject("nativeFrames").getLong("dropped"));
+        assertEquals(120, json.getJSONObject("longTasks").getLong("totalMs"));
+        assertFalse(json.getJSONObject("longTasks").has("dropped"));
+        assertEquals(10 * 1024 * 1024, json.getJSONObject("memory").getLong("jsHeapUsedMaxBytes"));
+        assertEquals(8 * 1024 * 1024, json.getJSONObject("memory").getLong("jsHeapUsedBytes"));
+        assertTrue(session.hudText().contains("long tasks 1"));
+    }
+}
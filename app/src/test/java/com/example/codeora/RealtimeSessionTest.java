@@ -0,0 +1,82 @@
+package com.example.codeora;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Plays server frames against the session to check batching, acknowledgements, resends after
+ * a reconnect and duplicate suppression on resume.
+ */
+public class RealtimeSessionTest {
+
+    private static JSONObject payload(String text) throws Exception {
+        return new JSONObject().put("text", text);
+    }
+
+    private static String serverBatch(long ack, long... seqs) throws Exception {
+        JSONArray messages = new JSONArray();
+        for (long seq : seqs) {
+            messages.put(new JSONObject().put("seq", seq).put("conversationId", "c1").put("payload", payload("m" + seq)));
+        }
+        return new JSONObject().put("type", "batch").put("messages", messages).put("ack", ack).toString();
+    }
+
+    @Test
+    public void batchesAndResendsWhatWasNotAcknowledged() throws Exception {
+        RealtimeSession session = new RealtimeSession(2);
+        session.enqueue("c1", payload("a"));
+        session.enqueue("c1", payload("b"));
+        session.enqueue("c2", payload("c"));
+
+        JSONObject first = new JSONObject(session.nextBatchFrame());
+        assertEquals("batch", first.getString("type"));
+        assertEquals(2, first.getJSONArray("messages").length());
+        JSONObject second = new JSONObject(session.nextBatchFrame());
+        assertEquals(3, second.getJSONArray("messages").getJSONObject(0).getLong("clientSeq"));
+        assertNull(session.nextBatchFrame());
+
+        session.onFrame(new JSONObject().put("type", "ack").put("clientSeq", 1).toString());
+        assertEquals(2, session.unackedCount());
+
+        session.onDisconnected();
+        session.enqueue("c1", payload("d"));
+        JSONArray resent = new JSONObject(session.nextBatchFrame()).getJSONArray("messages");
+        assertEquals(2, resent.getJSONObject(0).getLong("clientSeq"));
+        assertEquals(3, resent.getJSONObject(1).getLong("clientSeq"));
+        assertEquals(4, new JSONObject(session.nextBatchFrame()).getJSONArray("messages")
+                .getJSONObject(0).getLong("clientSeq"));
+    }
+
+    @Test
+    public void resumesWithoutDuplicatesAndResyncsWhenTheServerForgot() throws Exception {
+        RealtimeSession session = new RealtimeSession(16);
+        session.subscribe("c1");
+        assertNull(session.subscribe("c1"));
+        JSONObject hello = new JSONObject(session.helloFrame());
+        assertFalse(hello.has("session"));
+        assertEquals("c1", hello.getJSONArray("subscribe").getString(0));
+
+        assertFalse(session.onFrame("{\"type\":\"welcome\",\"session\":\"s1\",\"resumed\":false}").resynced);
+        assertEquals(2, session.onFrame(serverBatch(0, 1, 2)).delivered.size());
+
+        session.onDisconnected();
+        hello = new JSONObject(session.helloFrame());
+        assertEquals("s1", hello.getString("session"));
+        assertEquals(2, hello.getLong("lastSeq"));
+        RealtimeSession.Result welcome = session.onFrame("{\"type\":\"welcome\",\"session\":\"s1\",\"resumed\":true}");
+        assertTrue(welcome.welcomed);
+        assertFalse(welcome.resynced);
+        // The replay overlaps what was already delivered.
+        RealtimeSession.Result replay = session.onFrame(serverBatch(0, 2, 3));
+        assertEquals(1, replay.delivered.size());
+        assertEquals(3, replay.delivered.get(0).seq);
+        assertEquals(1, session.stats().getLong("duplicates"));
+
+        session.onDisconnected();
+        assertTrue(session.onFrame("{\"type\":\"welcome\",\"session\":\"s2\",\"resumed\":false}").resynced);
+        assertEquals(1, session.onFrame(serverBatch(0, 1)).delivered.size());
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.codeora;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that the two network paths are kept apart and that skipped phases stay out of the
+ * distributions.
+ */
+public class RequestTimingsTest {
+
+    @Test
+    public void keepsPathsApartAndSkipsMissingPhases() throws Exception {
+        RequestTimings timings = new RequestTimings();
+        timings.record(RequestTimings.NATIVE, new RequestTimings.Sample(12, 30, 20, 80, 140, false, "h2"));
+        timings.record(RequestTimings.NATIVE, new RequestTimings.Sample(-1, -1, -1, 40, 60, true, "h2"));
+        timings.record(RequestTimings.WEBVIEW, new RequestTimings.Sample(15, 35, 25, 90, 150, false, "http/1.1"));
+
+        JSONObject json = timings.toJson();
+        JSONObject nativePath = json.getJSONObject(RequestTimings.NATIVE);
+        assertEquals(2, nativePath.getLong("requests"));
+        assertEquals(1, nativePath.getLong("reusedConnections"));
+        assertEquals(2, nativePath.getJSONObject("protocols").getLong("h2"));
+        assertEquals(1, nativePath.getJSONObject("dns").getLong("count"));
+        assertEquals(2, nativePath.getJSONObject("ttfb").getLong("count"));
+        assertEquals(80, nativePath.getJSONObject("ttfb").getDouble("max"), 0.001);
+        assertEquals(1, json.getJSONObject(RequestTimings.WEBVIEW).getLong("requests"));
+
+        timings.reset();
+        assertEquals(0, timings.requests(RequestTimings.NATIVE));
+    }
+}
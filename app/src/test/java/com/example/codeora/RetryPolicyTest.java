@@ -0,0 +1,93 @@
+package com.example.codeora;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void delaysGrowExponentiallyWithinJitterAndCap() {
+        RetryPolicy policy = new RetryPolicy(500, 8000, 10, 0.5, 0.2, 10, new Random(42));
+        long[] ceilings = {500, 1000, 2000, 4000, 8000, 8000};
+        for (int attempt = 1; attempt <= ceilings.length; attempt++) {
+            long ceiling = ceilings[attempt - 1];
+            for (int i = 0; i < 100; i++) {
+                long delay = policy.delayFor(attempt);
+                assertTrue("attempt " + attempt + " delay " + delay, delay <= ceiling && delay >= ceiling / 2);
+            }
+        }
+    }
+
+    @Test
+    public void noJitterGivesExactBackoff() {
+        RetryPolicy policy = new RetryPolicy(100, 1000, 5, 0, 0.2, 10, new Random());
+        assertEquals(100, policy.delayFor(1));
+        assertEquals(200, policy.delayFor(2));
+        assertEquals(400, policy.delayFor(3));
+        assertEquals(1000, policy.delayFor(30));
+    }
+
+    @Test
+    public void retryAfterIsHonouredUpToTheMaximumDelay() {
+        RetryPolicy policy = new RetryPolicy(100, 1000, 5, 0, 0.2, 10, new Random());
+        assertEquals(100, policy.delayFor(1, -1));
+        assertEquals(700, policy.delayFor(1, 700));
+        assertEquals(1000, policy.delayFor(1, 1000));
+        assertEquals(-1, policy.delayFor(1, 86_400_000));
+    }
+
+    @Test
+    public void stopsAfterMaxAttempts() {
+        RetryPolicy policy = new RetryPolicy(100, 1000, 3, 0, 0.2, 10, new Random());
+        assertTrue(policy.tryAcquire(1));
+        assertTrue(policy.tryAcquire(3));
+        assertFalse(policy.tryAcquire(4));
+    }
+
+    @Test
+    public void budgetIsSpentByRetriesAndRefilledBySuccesses() {
+        RetryPolicy policy = new RetryPolicy(100, 1000, 10, 0, 0.5, 2, new Random());
+        assertTrue(policy.tryAcquire(1));
+        assertTrue(policy.tryAcquire(1));
+        assertFalse(policy.tryAcquire(1));
+        policy.onSuccess();
+        assertFalse(policy.tryAcquire(1));
+        policy.onSuccess();
+        assertTrue(policy.tryAcquire(1));
+        for (int i = 0; i < 100; i++) {
+            policy.onSuccess();
+        }
+        assertEquals(2, policy.availableTokens(), 0.0001);
+    }
+
+    @Test
+    public void classifiesTransientStatusesAndRetryAfter() {
+        assertTrue(RetryPolicy.isTransientStatus(502));
+        assertTrue(RetryPolicy.isTransientStatus(429));
+        assertFalse(RetryPolicy.isTransientStatus(404));
+        assertFalse(RetryPolicy.isTransientStatus(401));
+        assertEquals(3000, RetryPolicy.parseRetryAfterMillis(" 3 "));
+        assertEquals(-1, RetryPolicy.parseRetryAfterMillis("Wed, 21 Oct 2026 07:28:00 GMT"));
+        assertEquals(-1, RetryPolicy.parseRetryAfterMillis(null));
+    }
+
+    @Test
+    public void statsTrackRecoveryLatency() {
+        RetryStats stats = new RetryStats();
+        stats.recordFailure();
+        stats.recordRetry();
+        stats.recordSuccess(1, 300);
+        stats.recordFailure();
+        stats.recordRetry();
+        stats.recordFailure();
+        stats.recordRetry();
+        stats.recordSuccess(2, 900);
+        stats.recordSuccess(0, 0);
+        assertEquals(3, stats.getFailures());
+        assertEquals(2, stats.getRecovered());
+        assertEquals(600, stats.averageRecoveryMillis());
+    }
+}
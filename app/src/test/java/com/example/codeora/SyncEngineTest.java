@@ -0,0 +1,195 @@
+package com.example.codeora;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the sync engine against a local mock of the delta endpoint and an in-memory store.
+ */
+public class SyncEngineTest {
+
+    // Cursor values are indexes into the server's message log.
+    private static final int LOG_SIZE = 450;
+
+    private HttpServer server;
+    private String endpoint;
+    private final List<String> queries = new CopyOnWriteArrayList<>();
+    private final List<String> cookies = new CopyOnWriteArrayList<>();
+    private volatile int failAtCursor = -1;
+    private volatile String self;
+    private final MemoryStore store = new MemoryStore();
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/api/sync", this::handleSync);
+        server.start();
+        endpoint = "http://127.0.0.1:" + server.getAddress().getPort() + "/api/sync";
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void pullsAllBatchesAndStoresCursor() throws IOException {
+        SyncEngine.Result result = newEngine().run("session=abc", () -> false);
+
+        assertTrue(result.complete);
+        assertEquals(3, result.batches);
+        assertEquals(LOG_SIZE, result.received.size());
+        assertEquals(LOG_SIZE, store.messages.size());
+        assertEquals(String.valueOf(LOG_SIZE), store.getSyncCursor(SyncEngine.CURSOR_NAME));
+        assertEquals("limit=200", queries.get(0));
+        assertEquals("limit=200&cursor=200", queries.get(1));
+        assertEquals("session=abc", cookies.get(0));
+    }
+
+    @Test
+    public void resumesFromStoredCursor() throws IOException {
+        store.applyDelta(new ArrayList<>(), SyncEngine.CURSOR_NAME, "400");
+
+        SyncEngine.Result result = newEngine().run(null, () -> false);
+
+        assertEquals(1, queries.size());
+        assertEquals("limit=200&cursor=400", queries.get(0));
+        assertEquals(50, result.received.size());
+        assertEquals("m400", result.received.get(0).messageId);
+    }
+
+    @Test
+    public void failedBatchKeepsEarlierProgress() {
+        failAtCursor = 200;
+        try {
+            newEngine().run(null, () -> false);
+            fail("Expected the second batch to fail");
+        } catch (IOException expected) {
+            // The first batch and its cursor were committed before the failure.
+        }
+        assertEquals(200, store.messages.size());
+        assertEquals("200", store.getSyncCursor(SyncEngine.CURSOR_NAME));
+    }
+
+    @Test
+    public void cancellationStopsBetweenBatches() throws IOException {
+        SyncEngine.Result result = newEngine().run(null, () -> store.applied >= 1);
+
+        assertFalse(result.complete);
+        assertEquals(1, result.batches);
+        assertEquals("200", store.getSyncCursor(SyncEngine.CURSOR_NAME));
+    }
+
+    @Test
+    public void ownMessagesAreLeftOutOfNotifications() throws IOException {
+        self = "bob";
+
+        SyncEngine.Result result = newEngine().run(null, () -> false);
+
+        assertEquals("bob", result.self);
+        assertEquals(LOG_SIZE, result.received.size());
+        assertEquals(LOG_SIZE - LOG_SIZE / 10, result.fromOthers().size());
+        for (ChatMessage message : result.fromOthers()) {
+            assertEquals("alice", message.sender);
+        }
+    }
+
+    @Test
+    public void withoutSelfEverythingIsFromOthers() throws IOException {
+        SyncEngine.Result result = newEngine().run(null, () -> false);
+
+        assertNull(result.self);
+        assertEquals(LOG_SIZE, result.fromOthers().size());
+    }
+
+    @Test(expected = IOException.class)
+    public void malformedResponseIsAnIoError() throws IOException {
+        SyncClient.parse("<html>not json</html>", null);
+    }
+
+    private SyncEngine newEngine() {
+        return new SyncEngine(new SyncClient(endpoint, 5000), store);
+    }
+
+    private void handleSync(HttpExchange exchange) throws IOException {
+        String query = exchange.getRequestURI().getRawQuery();
+        queries.add(query);
+        String cookie = exchange.getRequestHeaders().getFirst("Cookie");
+        if (cookie != null) {
+            cookies.add(cookie);
+        }
+        Map<String, String> params = new HashMap<>();
+        for (String pair : query.split("&")) {
+            int eq = pair.indexOf('=');
+            params.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+        int from = params.containsKey("cursor") ? Integer.parseInt(params.get("cursor")) : 0;
+        int limit = Integer.parseInt(params.get("limit"));
+        if (from == failAtCursor) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+        int to = Math.min(LOG_SIZE, from + limit);
+        StringBuilder body = new StringBuilder("{\"messages\":[");
+        for (int i = from; i < to; i++) {
+            if (i > from) {
+                body.append(',');
+            }
+            body.append("{\"conversationId\":\"c").append(i % 3)
+                    .append("\",\"id\":\"m").append(i)
+                    .append("\",\"timestamp\":").append(1000L + i)
+                    .append(",\"sender\":\"").append(i % 10 == 0 ? "bob" : "alice")
+                    .append("\",\"body\":\"hello ").append(i).append("\"}");
+        }
+        body.append("],\"cursor\":\"").append(to).append("\",\"hasMore\":").append(to < LOG_SIZE);
+        if (self != null) {
+            body.append(",\"self\":\"").append(self).append('"');
+        }
+        body.append('}');
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static class MemoryStore implements SyncEngine.Store {
+        final Map<String, ChatMessage> messages = new HashMap<>();
+        final Map<String, String> cursors = new HashMap<>();
+        int applied;
+
+        @Override
+        public synchronized String getSyncCursor(String name) {
+            return cursors.get(name);
+        }
+
+        @Override
+        public synchronized void applyDelta(List<ChatMessage> delta, String cursorName, String cursor) {
+            for (ChatMessage message : delta) {
+                messages.put(message.conversationId + "/" + message.messageId, message);
+            }
+            if (cursor != null) {
+                cursors.put(cursorName, cursor);
+            }
+            applied++;
+        }
+    }
+}
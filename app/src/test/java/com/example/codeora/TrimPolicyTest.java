@@ -0,0 +1,56 @@
+package com.example.codeora;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks which trim levels shed what, and that repeated trims only escalate.
+ */
+public class TrimPolicyTest {
+
+    @Test
+    public void levelsEscalate() {
+        TrimPolicy moderate = TrimPolicy.forLevel(TrimPolicy.RUNNING_MODERATE);
+        assertEquals(TrimPolicy.Pressure.LOW, moderate.pressure);
+        assertFalse(moderate.dropImages);
+        assertFalse(moderate.pauseTimers);
+
+        TrimPolicy low = TrimPolicy.forLevel(TrimPolicy.RUNNING_LOW);
+        assertTrue(low.dropImages);
+        assertEquals(200, low.keepHistoryRows);
+
+        TrimPolicy critical = TrimPolicy.forLevel(TrimPolicy.RUNNING_CRITICAL);
+        assertEquals(TrimPolicy.Pressure.HIGH, critical.pressure);
+        // Still on screen, so timers keep running.
+        assertFalse(critical.pauseTimers);
+
+        TrimPolicy hidden = TrimPolicy.forLevel(TrimPolicy.UI_HIDDEN);
+        assertEquals(TrimPolicy.Pressure.NONE, hidden.pressure);
+        assertTrue(hidden.pauseTimers);
+        assertFalse(hidden.freeNativeCaches);
+
+        for (int level : new int[]{TrimPolicy.BACKGROUND, TrimPolicy.MODERATE, TrimPolicy.COMPLETE}) {
+            TrimPolicy background = TrimPolicy.forLevel(level);
+            assertEquals(TrimPolicy.Pressure.HIGH, background.pressure);
+            assertTrue(background.pauseTimers);
+            assertTrue(background.dropImages);
+            assertEquals(50, background.keepHistoryRows);
+        }
+    }
+
+    @Test
+    public void repeatedTrimsOnlyEscalate() {
+        TrimPolicy hidden = TrimPolicy.forLevel(TrimPolicy.UI_HIDDEN);
+        TrimPolicy background = TrimPolicy.forLevel(TrimPolicy.BACKGROUND);
+        TrimPolicy combined = TrimPolicy.none().combine(hidden).combine(background);
+        assertEquals(TrimPolicy.Pressure.HIGH, combined.pressure);
+        assertEquals(50, combined.keepHistoryRows);
+
+        assertTrue(TrimPolicy.forLevel(TrimPolicy.MODERATE).isCoveredBy(combined));
+        assertTrue(hidden.isCoveredBy(combined));
+        assertFalse(background.isCoveredBy(hidden));
+        assertFalse(TrimPolicy.forLevel(TrimPolicy.RUNNING_LOW).isCoveredBy(TrimPolicy.none()));
+        assertTrue(TrimPolicy.none().isCoveredBy(TrimPolicy.none()));
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.codeora;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ * Round-trips the renderer-recovery snapshot as recovery.js and the preferences see it.
+ */
+public class UiSnapshotTest {
+
+    private static final String ORIGIN = "https://chat.example/";
+
+    @Test
+    public void readsWhatThePageCaptures() throws Exception {
+        JSONObject captured = new JSONObject("{\"url\":\"https://chat.example/c/42\",\"scrollY\":1200,"
+                + "\"draft\":\"half a sen\",\"anchorMessageId\":\"m17\",\"anchorOffset\":-30,"
+                + "\"conversationId\":\"42\",\"unread\":3}");
+        UiSnapshot snapshot = UiSnapshot.fromJson(captured, 5000);
+        assertEquals("42", snapshot.conversationId);
+        assertEquals("m17", snapshot.anchorMessageId);
+        assertEquals(-30, snapshot.anchorOffset);
+        assertEquals("half a sen", snapshot.draft);
+        assertEquals(5000, snapshot.savedAt);
+        assertFalse(snapshot.isEmpty());
+
+        UiSnapshot restored = UiSnapshot.fromJson(new JSONObject(snapshot.toJson().toString()), 0);
+        assertEquals(snapshot.url, restored.url);
+        assertEquals(snapshot.scrollY, restored.scrollY);
+        assertEquals(5000, restored.savedAt);
+    }
+
+    @Test
+    public void comparesStateButNotWhenItWasTaken() throws Exception {
+        JSONObject state = new JSONObject("{\"url\":\"https://chat.example/c/42\",\"scrollY\":10,\"draft\":\"hi\"}");
+        UiSnapshot first = UiSnapshot.fromJson(state, 1000);
+        assertTrue(first.sameStateAs(UiSnapshot.fromJson(state, 6000)));
+        state.put("draft", "hi there");
+        assertFalse(first.sameStateAs(UiSnapshot.fromJson(state, 6000)));
+        assertFalse(first.sameStateAs(null));
+    }
+
+    @Test
+    public void missingFieldsStayNull() throws Exception {
+        UiSnapshot snapshot = UiSnapshot.fromJson(new JSONObject("{\"url\":\"https://chat.example/\","
+                + "\"draft\":null}"), 1);
+        assertNull(snapshot.draft);
+        assertNull(snapshot.conversationId);
+        assertTrue(snapshot.isEmpty());
+        UiSnapshot roundTripped = UiSnapshot.fromJson(new JSONObject(snapshot.toJson().toString()), 0);
+        assertNull(roundTripped.draft);
+    }
+
+    @Test
+    public void onlyReloadsChatUrlsAndFreshState() {
+        UiSnapshot inside = new UiSnapshot(ORIGIN + "c/7", null, null, 0, 0, null, 1000);
+        UiSnapshot outside = new UiSnapshot("https://elsewhere.example/", null, null, 0, 0, null, 1000);
+        assertEquals(ORIGIN + "c/7", inside.urlWithin(ORIGIN));
+        assertEquals(ORIGIN, outside.urlWithin(ORIGIN));
+        assertTrue(inside.isFresh(2000, 1000));
+        assertFalse(inside.isFresh(2001, 1000));
+    }
+}
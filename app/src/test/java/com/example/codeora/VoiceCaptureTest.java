@@ -0,0 +1,75 @@
+package com.example.codeora;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class VoiceCaptureTest {
+
+    @Test
+    public void ringBufferWrapsAround() throws InterruptedException {
+        PcmRingBuffer ring = new PcmRingBuffer(8);
+        byte[] out = new byte[8];
+        ring.write(new byte[]{1, 2, 3, 4, 5, 6}, 0, 6);
+        assertEquals(4, ring.read(out, 0, 4, 0));
+        ring.write(new byte[]{7, 8, 9, 10, 11}, 0, 5);
+        assertEquals(7, ring.read(out, 0, 8, 0));
+        assertArrayEquals(new byte[]{5, 6, 7, 8, 9, 10, 11, 0}, out);
+        assertEquals(0, ring.getDroppedBytes());
+    }
+
+    @Test
+    public void ringBufferDropsOldestWhenReaderFallsBehind() throws InterruptedException {
+        PcmRingBuffer ring = new PcmRingBuffer(4);
+        ring.write(new byte[]{1, 2, 3}, 0, 3);
+        ring.write(new byte[]{4, 5, 6}, 0, 3);
+        byte[] out = new byte[4];
+        assertEquals(4, ring.read(out, 0, 4, 0));
+        assertArrayEquals(new byte[]{3, 4, 5, 6}, out);
+        assertEquals(2, ring.getDroppedBytes());
+    }
+
+    @Test
+    public void ringBufferReadsTimeOutThenEndAfterClose() throws InterruptedException {
+        PcmRingBuffer ring = new PcmRingBuffer(4);
+        byte[] out = new byte[4];
+        assertEquals(0, ring.read(out, 0, 4, 10));
+        ring.write(new byte[]{1}, 0, 1);
+        ring.close();
+        assertEquals(1, ring.read(out, 0, 4, 10));
+        assertEquals(-1, ring.read(out, 0, 4, 10));
+    }
+
+    @Test
+    public void bitrateFollowsNetworkClass() {
+        assertEquals(VoiceBitrate.HIGH_BITRATE, VoiceBitrate.forNetwork(
+                new ConnectivityMonitor.NetworkState(true, ConnectivityMonitor.Type.WIFI, false, 50000, 20000)));
+        assertEquals(VoiceBitrate.MEDIUM_BITRATE, VoiceBitrate.forNetwork(
+                new ConnectivityMonitor.NetworkState(true, ConnectivityMonitor.Type.WIFI, true, 50000, 20000)));
+        assertEquals(VoiceBitrate.LOW_BITRATE, VoiceBitrate.forNetwork(
+                new ConnectivityMonitor.NetworkState(true, ConnectivityMonitor.Type.CELLULAR, true, 1000, 300)));
+        assertEquals(VoiceBitrate.MIN_BITRATE, VoiceBitrate.forNetwork(
+                new ConnectivityMonitor.NetworkState(true, ConnectivityMonitor.Type.CELLULAR, true, 200, 100)));
+        assertEquals(VoiceBitrate.LOW_BITRATE, VoiceBitrate.forNetwork(ConnectivityMonitor.NetworkState.DISCONNECTED));
+        assertEquals(16000, VoiceBitrate.sampleRateFor(VoiceBitrate.MIN_BITRATE));
+        assertEquals(44100, VoiceBitrate.sampleRateFor(VoiceBitrate.HIGH_BITRATE));
+    }
+
+    @Test
+    public void adtsHeaderEncodesFrameLength() {
+        byte[] header = new byte[Adts.HEADER_SIZE];
+        Adts.writeHeader(header, 0, 300, Adts.sampleRateIndex(16000), 1);
+        assertEquals((byte) 0xFF, header[0]);
+        assertEquals((byte) 0xF1, header[1]);
+        assertEquals(8, (header[2] >> 2) & 0xF);
+        int frameLength = ((header[3] & 3) << 11) | ((header[4] & 0xFF) << 3) | ((header[5] & 0xFF) >> 5);
+        assertEquals(307, frameLength);
+        int channels = ((header[2] & 1) << 2) | ((header[3] & 0xFF) >> 6);
+        assertEquals(1, channels);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void adtsRejectsUnsupportedSampleRate() {
+        Adts.sampleRateIndex(12345);
+    }
+}
@@ -0,0 +1,253 @@
+package com.example.codeora;
+
+import com.sun.net.httpserver.HttpServer;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the cache core against a local HTTP stand-in for the Vercel origin.
+ */
+public class WebCacheTest {
+
+    private static final byte[] SCRIPT = "console.log('chat');".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] PAGE = "<html><body>chat</body></html>".getBytes(StandardCharsets.UTF_8);
+
+    private HttpServer server;
+    private File directory;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger notModified = new AtomicInteger();
+    private String origin;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("webcache").toFile();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/_next/static/chunks/main-3f9a1c2b4d.js", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "application/javascript; charset=utf-8");
+            exchange.getResponseHeaders().set("Access-Control-Allow-Origin", "https://chat.example");
+            exchange.sendResponseHeaders(200, SCRIPT.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(SCRIPT);
+            }
+        });
+        server.createContext("/old/", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Location", "/login");
+            exchange.sendResponseHeaders(302, -1);
+            exchange.close();
+        });
+        server.createContext("/me/", exchange -> {
+            requests.incrementAndGet();
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.getResponseHeaders().set("Cache-Control", "private, max-age=0");
+            exchange.sendResponseHeaders(200, PAGE.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(PAGE);
+            }
+        });
+        server.createContext("/", exchange -> {
+            requests.incrementAndGet();
+            if ("\"v1\"".equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+                exchange.close();
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", "text/html; charset=utf-8");
+            exchange.getResponseHeaders().set("ETag", "\"v1\"");
+            exchange.sendResponseHeaders(200, PAGE.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(PAGE);
+            }
+        });
+        server.start();
+        origin = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+        for (File file : directory.listFiles()) {
+            file.delete();
+        }
+        directory.delete();
+    }
+
+    @Test
+    public void classifiesHashedAssetsAndDocuments() {
+        assertTrue(CacheLoader.isImmutableAsset("https://x.app/_next/static/chunks/app.js"));
+        assertTrue(CacheLoader.isImmutableAsset("https://x.app/assets/index-BxT8q1Zk.css?v=2"));
+        assertFalse(CacheLoader.isImmutableAsset("https://x.app/api/messages"));
+        assertFalse(CacheLoader.isImmutableAsset("https://x.app/logo.png"));
+        assertFalse(CacheLoader.isImmutableAsset("https://x.app/img/chat-background.png"));
+        assertTrue(CacheLoader.isDocument("https://x.app/", null));
+        assertTrue(CacheLoader.isDocument("https://x.app/chat/42", "text/html,application/xhtml+xml"));
+        assertFalse(CacheLoader.isDocument("https://x.app/api/messages", "application/json"));
+    }
+
+    @Test
+    public void servesImmutableAssetFromDiskAfterFirstLoad() throws IOException {
+        CacheLoader loader = new CacheLoader(new WebCache(directory, 1024 * 1024), 5000);
+        String url = origin + "/_next/static/chunks/main-3f9a1c2b4d.js";
+
+        CacheLoader.Response first = loader.load(url, null, false);
+        assertFalse(first.fromCache);
+        assertArrayEquals(SCRIPT, readFully(first.body));
+
+        CacheLoader.Response second = loader.load(url, null, false);
+        assertTrue(second.fromCache);
+        assertEquals("application/javascript", second.mimeType);
+        assertEquals("utf-8", second.encoding);
+        assertEquals("https://chat.example", second.headers.get("Access-Control-Allow-Origin"));
+        assertArrayEquals(SCRIPT, readFully(second.body));
+
+        assertEquals(1, requests.get());
+        WebCache.Stats stats = loader.getCache().stats();
+        assertEquals(1, stats.hitCount);
+        assertEquals(1, stats.missCount);
+        assertEquals(SCRIPT.length, stats.bytesSaved);
+        assertEquals(0.5, stats.hitRatio(), 0.0001);
+    }
+
+    @Test
+    public void revalidatesDocumentWithEtag() throws IOException {
+        CacheLoader loader = new CacheLoader(new WebCache(directory, 1024 * 1024), 5000);
+        String url = origin + "/";
+
+        readFully(loader.load(url, null, true).body);
+        CacheLoader.Response revalidated = loader.load(url, null, true);
+        assertTrue(revalidated.fromCache);
+        // The origin allowed no other origin to read the page, and neither does the cache.
+        assertFalse(revalidated.headers.containsKey("Access-Control-Allow-Origin"));
+        assertArrayEquals(PAGE, readFully(revalidated.body));
+        assertEquals(1, notModified.get());
+        assertEquals(1, loader.getCache().stats().revalidatedCount);
+    }
+
+    @Test
+    public void servesStaleDocumentWhenOffline() throws IOException {
+        CacheLoader loader = new CacheLoader(new WebCache(directory, 1024 * 1024), 5000);
+        String url = origin + "/";
+        readFully(loader.load(url, null, true).body);
+
+        server.stop(0);
+        CacheLoader.Response offline = loader.load(url, null, true);
+        assertTrue(offline.fromCache);
+        assertArrayEquals(PAGE, readFully(offline.body));
+    }
+
+    @Test
+    public void neverStoresPrivateOrNoStoreResponses() throws IOException {
+        assertTrue(CacheLoader.isShareable(null));
+        assertTrue(CacheLoader.isShareable("public, max-age=0, must-revalidate"));
+        assertFalse(CacheLoader.isShareable("Private, max-age=60"));
+        assertFalse(CacheLoader.isShareable("max-age=60, no-store"));
+
+        CacheLoader loader = new CacheLoader(new WebCache(directory, 1024 * 1024), 5000);
+        String url = origin + "/me/";
+        assertArrayEquals(PAGE, readFully(loader.load(url, null, true).body));
+        assertNull(loader.getCache().peek(url));
+    }
+
+    @Test
+    public void leavesRedirectsToTheWebView() throws IOException {
+        WebCache cache = new WebCache(directory, 1024 * 1024);
+        String url = origin + "/old/";
+        put(cache, url, 8);
+        CacheLoader loader = new CacheLoader(cache, 5000);
+        assertNull(loader.load(url, null, true));
+        assertEquals(1, requests.get());
+        assertNull(cache.peek(url));
+    }
+
+    @Test
+    public void discardsPartiallyReadBodies() throws IOException {
+        CacheLoader loader = new CacheLoader(new WebCache(directory, 1024 * 1024), 5000);
+        String url = origin + "/_next/static/chunks/main-3f9a1c2b4d.js";
+        InputStream body = loader.load(url, null, false).body;
+        body.read();
+        body.close();
+        assertNull(loader.getCache().peek(url));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedEntries() throws IOException {
+        WebCache cache = new WebCache(directory, 64);
+        put(cache, "https://x.app/a.js", 8);
+        put(cache, "https://x.app/b.js", 8);
+        put(cache, "https://x.app/c.js", 8);
+        // Touch a so b becomes the eldest entry.
+        assertNotNull(cache.get("https://x.app/a.js"));
+        for (int i = 0; i < 7; i++) {
+            put(cache, "https://x.app/fill" + i + ".js", 8);
+        }
+        assertNull(cache.peek("https://x.app/b.js"));
+        assertTrue(cache.stats().size <= 64);
+        assertTrue(cache.stats().evictionCount > 0);
+    }
+
+    @Test
+    public void reloadsIndexFromDisk() throws IOException {
+        put(new WebCache(directory, 1024), "https://x.app/a.js", 8);
+        WebCache reopened = new WebCache(directory, 1024);
+        WebCache.Entry entry = reopened.get("https://x.app/a.js");
+        assertNotNull(entry);
+        assertEquals(8, entry.size);
+        assertEquals("application/javascript", entry.mimeType);
+    }
+
+    @Test
+    public void dropsEntryWhoseBodyFileIsGone() throws IOException {
+        WebCache cache = new WebCache(directory, 1024);
+        put(cache, "https://x.app/a.js", 8);
+        assertTrue(cache.get("https://x.app/a.js").body.delete());
+        assertNull(cache.get("https://x.app/a.js"));
+        assertEquals(0, cache.stats().entryCount);
+        assertEquals(0, cache.stats().size);
+        assertNull(new WebCache(directory, 1024).peek("https://x.app/a.js"));
+    }
+
+    @Test
+    public void dropsExpiredEntries() throws Exception {
+        WebCache cache = new WebCache(directory, 1024);
+        readFully(cache.store("https://x.app/a.png", "image/png", null, null, null,
+                System.currentTimeMillis() + 50, new ByteArrayInputStream(new byte[8])));
+        assertNotNull(new WebCache(directory, 1024).peek("https://x.app/a.png"));
+        Thread.sleep(80);
+        assertNull(cache.get("https://x.app/a.png"));
+        assertEquals(0, cache.stats().entryCount);
+    }
+
+    private static void put(WebCache cache, String url, int length) throws IOException {
+        InputStream in = cache.store(url, "application/javascript", null, null, null,
+                new ByteArrayInputStream(new byte[length]));
+        readFully(in);
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        in.close();
+        return out.toByteArray();
+    }
+}
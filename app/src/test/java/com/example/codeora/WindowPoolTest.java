@@ -0,0 +1,117 @@
+package com.example.codeora;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Runs the window pool against fake windows that record their state and lifecycle.
+ */
+public class WindowPoolTest {
+
+    private static class FakeWindow {
+        String url;
+        boolean destroyed;
+    }
+
+    private static class FakeHost implements WindowPool.Host<FakeWindow, String> {
+        final List<FakeWindow> created = new ArrayList<>();
+
+        @Override
+        public FakeWindow create() {
+            FakeWindow window = new FakeWindow();
+            created.add(window);
+            return window;
+        }
+
+        @Override
+        public String snapshot(FakeWindow window) {
+            return window.url;
+        }
+
+        @Override
+        public void restore(FakeWindow window, String snapshot) {
+            window.url = snapshot;
+        }
+
+        @Override
+        public void destroy(FakeWindow window) {
+            window.destroyed = true;
+        }
+    }
+
+    @Test
+    public void opensFromPrewarmedSpares() {
+        FakeHost host = new FakeHost();
+        WindowPool<FakeWindow, String> pool = new WindowPool<>(host, 2, 1, 4);
+        assertFalse(pool.prewarm());
+        assertEquals(1, pool.spareCount());
+        FakeWindow spare = host.created.get(0);
+
+        int id = pool.open();
+        assertSame(spare, pool.window(id));
+        assertEquals(0, pool.spareCount());
+        assertTrue(pool.stats().contains("spareHits=1"));
+    }
+
+    @Test
+    public void parksLeastRecentlyUsedAndRestoresIt() {
+        FakeHost host = new FakeHost();
+        WindowPool<FakeWindow, String> pool = new WindowPool<>(host, 2, 0, 4);
+        int first = pool.open();
+        pool.window(first).url = "https://accounts.example.com/login";
+        FakeWindow firstWindow = pool.window(first);
+        int second = pool.open();
+        pool.window(first);
+        int third = pool.open();
+
+        // second was used least recently
+        assertTrue(pool.isParked(second));
+        assertFalse(pool.isParked(first));
+        assertEquals(2, pool.aliveCount());
+
+        int before = host.created.size();
+        FakeWindow restored = pool.window(second);
+        assertNotNull(restored);
+        assertEquals(before + 1, host.created.size());
+        // restoring it parked first, the least recently used of the rest
+        assertTrue(pool.isParked(first));
+        assertTrue(firstWindow.destroyed);
+        assertEquals("https://accounts.example.com/login", pool.window(first).url);
+        assertTrue(pool.isOpen(third));
+    }
+
+    @Test
+    public void dropsOldestSnapshotsBeyondLimit() {
+        WindowPool<FakeWindow, String> pool = new WindowPool<>(new FakeHost(), 1, 0, 2);
+        int first = pool.open();
+        pool.open();
+        pool.open();
+        pool.open();
+        assertFalse(pool.isOpen(first));
+        assertNull(pool.window(first));
+    }
+
+    @Test
+    public void closeAndTrimDestroyWindows() {
+        FakeHost host = new FakeHost();
+        WindowPool<FakeWindow, String> pool = new WindowPool<>(host, 3, 1, 4);
+        int first = pool.open();
+        int second = pool.open();
+        pool.prewarm();
+        pool.parkAllExcept(second);
+        assertTrue(pool.isParked(first));
+        assertEquals(1, pool.aliveCount());
+
+        pool.close(second);
+        assertEquals(-1, pool.idOf(host.created.get(1)));
+        assertTrue(host.created.get(1).destroyed);
+        pool.dropSpares();
+        assertEquals(0, pool.spareCount());
+        pool.closeAll();
+        assertFalse(pool.isOpen(first));
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.codeora.benchmark;
+
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.filters.LargeTest;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import kotlin.Unit;
+
+/**
+ * Measures the splash -> MainActivity -> chat page path for cold, warm and hot starts.
+ * Run with {@code ./gradlew :benchmark:connectedBenchmarkAndroidTest}; results are written as
+ * JSON next to the test output so regressions can be diffed between runs.
+ */
+@LargeTest
+@RunWith(Parameterized.class)
+public class StartupBenchmark {
+
+    private static final String PACKAGE_NAME = "com.example.codeora";
+    private static final int ITERATIONS = 10;
+
+    // Section names emitted by StartupMetrics in the app.
+    private static final String TRACE_MAIN_ON_CREATE = "MainActivity.onCreate";
+    private static final String TRACE_WEBVIEW_INIT = "WebViewInit";
+    private static final String TRACE_FIRST_LOAD_URL = "FirstLoadUrl";
+    private static final String TRACE_PAGE_LOAD = "PageLoad";
+    private static final String TRACE_PERMISSION_REQUEST = "PermissionRequest";
+
+    @Parameterized.Parameters(name = "{0}")
+    public static List<Object[]> startupModes() {
+        return Arrays.asList(new Object[][]{
+                {StartupMode.COLD},
+                {StartupMode.WARM},
+                {StartupMode.HOT},
+        });
+    }
+
+    @Rule
+    public MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    private final StartupMode startupMode;
+
+    public StartupBenchmark(StartupMode startupMode) {
+        this.startupMode = startupMode;
+    }
+
+    @Test
+    public void startup() {
+        List<Metric> metrics = Arrays.asList(
+                new StartupTimingMetric(),
+                section(TRACE_MAIN_ON_CREATE),
+                section(TRACE_WEBVIEW_INIT),
+                section(TRACE_FIRST_LOAD_URL),
+                section(TRACE_PAGE_LOAD));
+        benchmarkRule.measureRepeated(
+                PACKAGE_NAME,
+                metrics,
+                new CompilationMode.Partial(),
+                startupMode,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    return Unit.INSTANCE;
+                });
+    }
+
+    @Test
+    public void permissionRequest() {
+        // Cold start with the microphone permission revoked so the system dialog is shown.
+        benchmarkRule.measureRepeated(
+                PACKAGE_NAME,
+                Arrays.<Metric>asList(section(TRACE_PERMISSION_REQUEST)),
+                new CompilationMode.Partial(),
+                StartupMode.COLD,
+                ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    shell(scope, "pm revoke " + PACKAGE_NAME + " android.permission.RECORD_AUDIO");
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    scope.startActivityAndWait();
+                    scope.getDevice().pressBack();
+                    scope.getDevice().waitForIdle();
+                    return Unit.INSTANCE;
+                });
+    }
+
+    private static void shell(MacrobenchmarkScope scope, String command) {
+        try {
+            scope.getDevice().executeShellCommand(command);
+        } catch (IOException e) {
+            throw new IllegalStateException("Shell command failed: " + command, e);
+        }
+    }
+
+    private static Metric section(String name) {
+        return new TraceSectionMetric(name, TraceSectionMetric.Mode.First);
+    }
+}